@@ -0,0 +1,116 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lyra.vads.ws.v5.GetPaymentDetailsResponse;
+import com.lyra.vads.ws.v5.PaymentAPI;
+import com.lyra.vads.ws.v5.QueryRequest;
+
+import eu.payzen.webservices.sdk.Payment;
+import eu.payzen.webservices.sdk.ServiceResult;
+import eu.payzen.webservices.sdk.client.ClientV5;
+import eu.payzen.webservices.sdk.client.StreamingClientV5;
+
+/**
+ * Measures the clients against {@link StubPaymentAPI} published on a local
+ * port: the construction of a {@link ClientV5} (a port of the service shared
+ * by the clients, see {@link ClientStartupBenchmark}), the calls made through {@link Payment}, which create a
+ * client each time, with JAX-WS and with the streaming client, and a call
+ * through a port created once.
+ *
+ * @author Javier Garcia Alonso
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dcom.sun.xml.bind.v2.bytecode.ClassTailor.noOptimize=true")
+public class ClientBenchmark {
+
+    private static final String UUID = "5c3f8a7e1d2b4c6a9e0f7b8a9c0d1e2f";
+
+    @Setup
+    public void setUp() {
+        Fixtures.stubHost();
+    }
+
+    @Benchmark
+    public PaymentAPI newClientV5() {
+        return new ClientV5(Fixtures.stubConfig()).getPaymentAPIImplPort();
+    }
+
+    @Benchmark
+    public ServiceResult createPayment() {
+        return Payment.create(Fixtures.createPayment(), Fixtures.stubConfig());
+    }
+
+    @Benchmark
+    public ServiceResult createPaymentStreaming() {
+        Map<String, String> config = Fixtures.stubConfig();
+        config.put(StreamingClientV5.STREAMING_SERIALIZER, "true");
+        config.put(StreamingClientV5.STREAMING_PARSER, "true");
+        return Payment.create(Fixtures.createPayment(), config);
+    }
+
+    @Benchmark
+    public ServiceResult details() {
+        return Payment.details(UUID, Fixtures.stubConfig());
+    }
+
+    @Benchmark
+    public ServiceResult detailsStreaming() {
+        Map<String, String> config = Fixtures.stubConfig();
+        config.put(StreamingClientV5.STREAMING_PARSER, "true");
+        return Payment.details(UUID, config);
+    }
+
+    @Benchmark
+    public GetPaymentDetailsResponse.GetPaymentDetailsResult detailsWithPort(ThreadPort state) {
+        return state.port.getPaymentDetails(state.query, null);
+    }
+
+    /**
+     * Port created once for each thread, as JAX-WS ports are not meant to be
+     * shared
+     */
+    @State(Scope.Thread)
+    public static class ThreadPort {
+        PaymentAPI port;
+        QueryRequest query;
+
+        @Setup
+        public void setUp() {
+            port = new ClientV5(Fixtures.stubConfig()).getPaymentAPIImplPort();
+            query = new QueryRequest();
+            query.setUuid(UUID);
+        }
+    }
+}
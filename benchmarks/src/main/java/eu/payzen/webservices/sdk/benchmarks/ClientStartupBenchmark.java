@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lyra.vads.ws.v5.PaymentAPI;
+
+import eu.payzen.webservices.sdk.client.ClientV5;
+import eu.payzen.webservices.sdk.stub.PaymentStub;
+
+/**
+ * Measures the creation of a {@link ClientV5} against the stub of the test
+ * sources: the first one of a new JVM (cold), which downloads the WSDL and
+ * builds the JAX-WS runtime model and the JAXB context of the API, and the
+ * next ones (warm), which reuse them and only create a port. Each cold
+ * sample is a new fork.
+ *
+ * @author Javier Garcia Alonso
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ClientStartupBenchmark {
+
+    private PaymentStub stub;
+
+    @Setup
+    public void setUp() throws IOException {
+        stub = PaymentStub.getBuilder().build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        stub.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(value = 10, jvmArgsAppend = "-Dcom.sun.xml.bind.v2.bytecode.ClassTailor.noOptimize=true")
+    public PaymentAPI coldClient() {
+        return new ClientV5(stub.config()).getPaymentAPIImplPort();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Fork(value = 1, jvmArgsAppend = "-Dcom.sun.xml.bind.v2.bytecode.ClassTailor.noOptimize=true")
+    public PaymentAPI warmClient() {
+        return new ClientV5(stub.config()).getPaymentAPIImplPort();
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+import javax.xml.soap.MessageFactory;
+import javax.xml.soap.SOAPHeader;
+import javax.xml.soap.SOAPMessage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lyra.vads.ws.v5.CreatePayment;
+
+import eu.payzen.webservices.sdk.stream.SoapEnvelopeWriter;
+
+/**
+ * Compares the SAAJ/JAXB envelope construction done by JAX-WS with the
+ * streaming {@link SoapEnvelopeWriter} for a typical createPayment request.<p>
+ *
+ * Run with <code>-prof gc</code> to compare the allocation rate.
+ *
+ * @author Javier Garcia Alonso
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dcom.sun.xml.bind.v2.bytecode.ClassTailor.noOptimize=true")
+public class CreatePaymentSerializationBenchmark {
+
+    private static final QName CREATE_PAYMENT = new QName(SoapEnvelopeWriter.API_NAMESPACE, "createPayment");
+
+    private CreatePayment request;
+    private Map<String, String> headerFields;
+    private JAXBContext jaxbContext;
+    private MessageFactory messageFactory;
+    private SoapEnvelopeWriter writer;
+    private ByteArrayOutputStream out;
+
+    @Setup
+    public void setUp() throws Exception {
+        request = Fixtures.createPayment();
+        headerFields = Fixtures.headerHandler().buildHeaderFields();
+        jaxbContext = JAXBContext.newInstance(CreatePayment.class);
+        messageFactory = MessageFactory.newInstance();
+        writer = new SoapEnvelopeWriter();
+        out = new ByteArrayOutputStream(4096);
+    }
+
+    @Benchmark
+    public int jaxbSaaj() throws Exception {
+        SOAPMessage message = messageFactory.createMessage();
+        Marshaller marshaller = jaxbContext.createMarshaller();
+        marshaller.marshal(new JAXBElement<>(CREATE_PAYMENT, CreatePayment.class, request), message.getSOAPBody());
+
+        SOAPHeader header = message.getSOAPHeader();
+        for (Map.Entry<String, String> field : headerFields.entrySet()) {
+            header.addChildElement(new QName(SoapEnvelopeWriter.HEADER_NAMESPACE, field.getKey()))
+                    .addTextNode(field.getValue());
+        }
+
+        out.reset();
+        message.writeTo(out);
+        return out.size();
+    }
+
+    @Benchmark
+    public int streaming() throws Exception {
+        writer.reset().writeRequest(headerFields, "createPayment", request);
+
+        out.reset();
+        writer.writeTo(out);
+        return out.size();
+    }
+}
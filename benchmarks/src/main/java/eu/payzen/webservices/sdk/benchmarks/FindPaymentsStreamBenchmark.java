@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lyra.vads.ws.v5.FindPaymentsResponse;
+import com.lyra.vads.ws.v5.ObjectFactory;
+import com.lyra.vads.ws.v5.TransactionItem;
+
+import eu.payzen.webservices.sdk.stream.SoapResponseIterator;
+import eu.payzen.webservices.sdk.stream.SoapResponseReader;
+
+/**
+ * Compares reading a synthetic findPayments response into a list (JAXB or
+ * {@link SoapResponseReader}) with iterating over it with
+ * {@link SoapResponseIterator}, which only keeps one transaction alive at a
+ * time.<p>
+ *
+ * Each operation sums the amounts of all the transactions. Run with
+ * <code>-prof gc</code> to compare the allocation rate.
+ *
+ * @author Javier Garcia Alonso
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dcom.sun.xml.bind.v2.bytecode.ClassTailor.noOptimize=true")
+public class FindPaymentsStreamBenchmark {
+
+    @Param({"100", "10000"})
+    public int items;
+
+    private byte[] response;
+    private JAXBContext jaxbContext;
+    private XMLInputFactory inputFactory;
+
+    @Setup
+    public void setUp() throws Exception {
+        response = Fixtures.findPaymentsResponse(items);
+        jaxbContext = JAXBContext.newInstance(ObjectFactory.class);
+        inputFactory = XMLInputFactory.newInstance();
+    }
+
+    @Benchmark
+    public long jaxbList() throws Exception {
+        XMLStreamReader reader = inputFactory.createXMLStreamReader(new ByteArrayInputStream(response));
+        try {
+            SoapResponseReader.moveToBodyContent(reader);
+            FindPaymentsResponse result = jaxbContext.createUnmarshaller()
+                    .unmarshal(reader, FindPaymentsResponse.class).getValue();
+            return sum(result);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Benchmark
+    public long streamingList() {
+        return sum(SoapResponseReader.read(new ByteArrayInputStream(response), FindPaymentsResponse.class));
+    }
+
+    @Benchmark
+    public long streamingIterator() {
+        long total = 0;
+        try (SoapResponseIterator<TransactionItem> iterator = new SoapResponseIterator<>(
+                new ByteArrayInputStream(response), FindPaymentsResponse.class, "transactionItem",
+                TransactionItem.class)) {
+            while (iterator.hasNext()) {
+                total += iterator.next().getAmount();
+            }
+        }
+        return total;
+    }
+
+    private static long sum(FindPaymentsResponse response) {
+        long total = 0;
+        for (TransactionItem item : response.getFindPaymentsResult().getTransactionItem()) {
+            total += item.getAmount();
+        }
+        return total;
+    }
+}
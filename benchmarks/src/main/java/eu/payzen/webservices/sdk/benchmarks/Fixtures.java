@@ -0,0 +1,155 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.ws.Endpoint;
+
+import com.lyra.vads.ws.v5.CreatePayment;
+
+import eu.payzen.webservices.sdk.builder.PaymentTemplate;
+import eu.payzen.webservices.sdk.builder.request.CustomerRequestBuilder;
+import eu.payzen.webservices.sdk.builder.request.TechRequestBuilder;
+import eu.payzen.webservices.sdk.handler.soap.HeaderHandler;
+
+/**
+ * Realistic requests and handlers shared by the benchmarks
+ *
+ * @author Javier Garcia Alonso
+ */
+final class Fixtures {
+
+    static final String SHOP_ID = "12345678";
+    static final String SHOP_KEY = "1111111111111111";
+
+    private static final PaymentTemplate TEMPLATE = PaymentTemplate.getBuilder()
+            .paymentSource("EC")
+            .tech(TechRequestBuilder.create()
+                    .browserUserAgent("Mozilla/5.0 (X11; Linux x86_64; rv:60.0) Gecko/20100101 Firefox/60.0")
+                    .browserAccept("text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8")
+                    .build())
+            .customer(CustomerRequestBuilder.create()
+                    .billingDetailsRequest(CustomerRequestBuilder.BillingDetailsRequestBuilder.create()
+                            .firstName("Jean").lastName("Dupont").email("jean.dupont@example.com")
+                            .address("1 rue de la Paix").zipCode("75002").city("Paris").country("FR")
+                            .language("fr").build())
+                    .build())
+            .build();
+
+    private static String stubHost;
+
+    private Fixtures() {
+    }
+
+    /**
+     * Publishes {@link StubPaymentAPI} on a free local port the first time
+     *
+     * @return host and port to use as endpointHost
+     */
+    static synchronized String stubHost() {
+        if (stubHost == null) {
+            int port;
+            try (ServerSocket socket = new ServerSocket(0)) {
+                port = socket.getLocalPort();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            Endpoint.publish("http://localhost:" + port + "/vads-ws/v5", new StubPaymentAPI());
+            stubHost = "localhost:" + port;
+        }
+        return stubHost;
+    }
+
+    /**
+     * Configuration of a client of the local stub. A new map is returned
+     * each time because the clients remove the values they read.
+     */
+    static Map<String, String> stubConfig() {
+        Map<String, String> config = new HashMap<>();
+        config.put("shopId", SHOP_ID);
+        config.put("shopKey", SHOP_KEY);
+        config.put("mode", "TEST");
+        config.put("endpointHost", stubHost());
+        config.put("secureConnection", "false");
+        return config;
+    }
+
+    static CreatePayment createPayment() {
+        return TEMPLATE.create("Order-2018-000123", 4990, 978, "4970100000000003", 12, 2030, "123");
+    }
+
+    static HeaderHandler headerHandler() {
+        return new HeaderHandler(SHOP_ID, SHOP_KEY, "TEST", null, null, null, null, null);
+    }
+
+    /**
+     * Response of getPaymentDetails for an authorised 3DS card payment, with
+     * the sections usually returned by the platform
+     */
+    static byte[] paymentDetailsResponse() {
+        try (InputStream in = Fixtures.class.getResourceAsStream("/getPaymentDetailsResponse.xml")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Response of findPayments for an order with several transactions
+     *
+     * @param items number of transactions of the order
+     */
+    static byte[] findPaymentsResponse(int items) {
+        StringBuilder xml = new StringBuilder(256 + items * 320);
+        xml.append("<?xml version='1.0' encoding='UTF-8'?>")
+                .append("<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\"><soap:Header>")
+                .append("<shopId xmlns=\"http://v5.ws.vads.lyra.com/Header/\">").append(SHOP_ID).append("</shopId>")
+                .append("<mode xmlns=\"http://v5.ws.vads.lyra.com/Header/\">TEST</mode>")
+                .append("</soap:Header><soap:Body>")
+                .append("<ns2:findPaymentsResponse xmlns:ns2=\"http://v5.ws.vads.lyra.com/\"><findPaymentsResult>")
+                .append("<requestId>5c3f8a7e-1d2b-4c6a-9e0f-7b8a9c0d1e2f</requestId>")
+                .append("<commonResponse><responseCode>0</responseCode>")
+                .append("<responseCodeDetail>Action successfully completed</responseCodeDetail>")
+                .append("<shopId>").append(SHOP_ID).append("</shopId></commonResponse>")
+                .append("<orderResponse><orderId>Order-2018-000123</orderId></orderResponse>");
+        for (int i = 0; i < items; i++) {
+            xml.append("<transactionItem>")
+                    .append("<transactionUuid>").append(String.format("%032x", 0x0a1b2c3d4e5fL + i)).append("</transactionUuid>")
+                    .append("<transactionStatusLabel>").append(i % 4 == 0 ? "REFUSED" : "CAPTURED")
+                    .append("</transactionStatusLabel>")
+                    .append("<amount>").append(1000 + i).append("</amount>")
+                    .append("<currency>978</currency>")
+                    .append("<expectedCaptureDate>2018-06-").append(String.format("%02d", 1 + i % 28))
+                    .append("T08:14:58.000+00:00</expectedCaptureDate>")
+                    .append("</transactionItem>");
+        }
+        xml.append("</findPaymentsResult></ns2:findPaymentsResponse></soap:Body></soap:Envelope>");
+        return xml.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.benchmarks;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.namespace.QName;
+import javax.xml.soap.MessageFactory;
+import javax.xml.soap.SOAPMessage;
+import javax.xml.ws.handler.MessageContext;
+import javax.xml.ws.handler.soap.SOAPMessageContext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eu.payzen.webservices.sdk.handler.soap.HeaderHandler;
+
+/**
+ * Measures the header added to every request: {@link HeaderHandler#handleMessage}
+ * on a new outbound message (the cost of creating the message is given by
+ * {@link #newMessage()}) and {@link HeaderHandler#buildHeaderFields()}, used
+ * by the streaming client.<p>
+ *
+ * The handler is shared by all the threads, as the port shares it.
+ *
+ * @author Javier Garcia Alonso
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dcom.sun.xml.bind.v2.bytecode.ClassTailor.noOptimize=true")
+public class HeaderHandlerBenchmark {
+
+    private HeaderHandler handler;
+    private MessageFactory messageFactory;
+
+    @Setup
+    public void setUp() throws Exception {
+        handler = Fixtures.headerHandler();
+        messageFactory = MessageFactory.newInstance();
+    }
+
+    @Benchmark
+    public SOAPMessage newMessage() throws Exception {
+        return messageFactory.createMessage();
+    }
+
+    @Benchmark
+    public SOAPMessage handleMessage() throws Exception {
+        OutboundContext context = new OutboundContext(messageFactory.createMessage());
+        handler.handleMessage(context);
+        return context.getMessage();
+    }
+
+    @Benchmark
+    public Map<String, String> buildHeaderFields() {
+        return handler.buildHeaderFields();
+    }
+
+    /**
+     * Context of an outbound message, with only what the handler uses
+     */
+    private static final class OutboundContext extends HashMap<String, Object> implements SOAPMessageContext {
+        private static final long serialVersionUID = 1L;
+
+        private SOAPMessage message;
+
+        OutboundContext(SOAPMessage message) {
+            this.message = message;
+            put(MessageContext.MESSAGE_OUTBOUND_PROPERTY, Boolean.TRUE);
+        }
+
+        @Override
+        public SOAPMessage getMessage() {
+            return message;
+        }
+
+        @Override
+        public void setMessage(SOAPMessage message) {
+            this.message = message;
+        }
+
+        @Override
+        public Object[] getHeaders(QName header, JAXBContext context, boolean allRoles) {
+            return new Object[0];
+        }
+
+        @Override
+        public Set<String> getRoles() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public void setScope(String name, MessageContext.Scope scope) {
+        }
+
+        @Override
+        public MessageContext.Scope getScope(String name) {
+            return MessageContext.Scope.APPLICATION;
+        }
+    }
+}
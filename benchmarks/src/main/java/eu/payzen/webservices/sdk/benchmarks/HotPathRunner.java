@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.benchmarks;
+
+import java.io.File;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks of the SDK hot paths twice, with one thread and with
+ * one thread per processor to see the contention, with the GC profiler.
+ * The results are written to <code>jmh-1-threads.json</code> and
+ * <code>jmh-N-threads.json</code>.<p>
+ *
+ * <code>java -cp benchmarks/target/benchmarks.jar eu.payzen.webservices.sdk.benchmarks.HotPathRunner [regexp]</code>
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class HotPathRunner {
+
+    private static final String DEFAULT_INCLUDE =
+            "HeaderHandlerBenchmark|RequestResponseBenchmark|ClientBenchmark";
+
+    private HotPathRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : DEFAULT_INCLUDE;
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        for (int threads : new int[] {1, Math.max(2, processors)}) {
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File("jmh-" + threads + "-threads.json").getPath())
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.lyra.vads.ws.v5.GetPaymentDetailsResponse;
+
+import eu.payzen.webservices.sdk.ResponseSection;
+import eu.payzen.webservices.sdk.stream.ReadStats;
+import eu.payzen.webservices.sdk.stream.SoapResponseReader;
+
+/**
+ * Prints how much of a realistic getPaymentDetails response is decoded
+ * depending on the requested sections.<p>
+ *
+ * <code>java -cp benchmarks/target/benchmarks.jar eu.payzen.webservices.sdk.benchmarks.PayloadSizeReport</code>
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class PayloadSizeReport {
+
+    private PayloadSizeReport() {
+    }
+
+    public static void main(String[] args) {
+        byte[] response = Fixtures.paymentDetailsResponse();
+
+        Map<String, Set<ResponseSection>> cases = new LinkedHashMap<>();
+        cases.put("all sections", EnumSet.allOf(ResponseSection.class));
+        cases.put("common+payment+order", EnumSet.of(ResponseSection.COMMON, ResponseSection.PAYMENT,
+                ResponseSection.ORDER));
+        cases.put("payment", EnumSet.of(ResponseSection.PAYMENT));
+
+        System.out.printf("%-22s %10s %10s %10s%n", "sections", "response", "decoded", "skipped");
+        for (Map.Entry<String, Set<ResponseSection>> entry : cases.entrySet()) {
+            Set<String> names = new HashSet<>();
+            for (ResponseSection section : entry.getValue()) {
+                names.add(section.getElementName());
+            }
+
+            ReadStats stats = new ReadStats();
+            SoapResponseReader.read(new ByteArrayInputStream(response), GetPaymentDetailsResponse.class, names, stats);
+            System.out.printf("%-22s %10d %10d %9.1f%%%n", entry.getKey(), response.length,
+                    response.length - stats.getSkippedBytes(), 100.0 * stats.getSkippedBytes() / response.length);
+        }
+    }
+}
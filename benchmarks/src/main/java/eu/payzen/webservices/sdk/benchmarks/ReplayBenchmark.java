@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lyra.vads.ws.v5.GetPaymentDetailsResponse;
+import com.lyra.vads.ws.v5.PaymentAPI;
+import com.lyra.vads.ws.v5.QueryRequest;
+
+import eu.payzen.webservices.sdk.Payment;
+import eu.payzen.webservices.sdk.ServiceResult;
+import eu.payzen.webservices.sdk.client.ClientV5;
+import eu.payzen.webservices.sdk.client.StreamingClientV5;
+import eu.payzen.webservices.sdk.transport.RecordReplay;
+
+/**
+ * Measures the client alone: the responses of {@link StubPaymentAPI} are
+ * recorded once, then replayed from the mapped recording without any
+ * socket, so the results only contain the CPU and the allocations of the
+ * SDK (header signature, marshalling, handlers and unmarshalling).
+ *
+ * @author Javier Garcia Alonso
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dcom.sun.xml.bind.v2.bytecode.ClassTailor.noOptimize=true")
+public class ReplayBenchmark {
+
+    private static final String UUID = "5c3f8a7e1d2b4c6a9e0f7b8a9c0d1e2f";
+
+    private static File recording;
+
+    @Setup
+    public void setUp() throws IOException {
+        recording = File.createTempFile("payments", ".rec");
+        recording.delete();
+        Payment.create(Fixtures.createPayment(), config(RecordReplay.RECORD_FILE));
+        Payment.details(UUID, config(RecordReplay.RECORD_FILE));
+        Payment.detailsByOrderId("Order-2018-000123", config(RecordReplay.RECORD_FILE));
+        RecordReplay.reset();
+    }
+
+    @TearDown
+    public void tearDown() {
+        RecordReplay.reset();
+        recording.delete();
+    }
+
+    @Benchmark
+    public ServiceResult createPayment() {
+        return Payment.create(Fixtures.createPayment(), config(RecordReplay.REPLAY_FILE));
+    }
+
+    @Benchmark
+    public ServiceResult createPaymentStreaming() {
+        Map<String, String> config = config(RecordReplay.REPLAY_FILE);
+        config.put(StreamingClientV5.STREAMING_SERIALIZER, "true");
+        config.put(StreamingClientV5.STREAMING_PARSER, "true");
+        return Payment.create(Fixtures.createPayment(), config);
+    }
+
+    @Benchmark
+    public ServiceResult details() {
+        return Payment.details(UUID, config(RecordReplay.REPLAY_FILE));
+    }
+
+    @Benchmark
+    public ServiceResult detailsStreaming() {
+        Map<String, String> config = config(RecordReplay.REPLAY_FILE);
+        config.put(StreamingClientV5.STREAMING_PARSER, "true");
+        return Payment.details(UUID, config);
+    }
+
+    @Benchmark
+    public GetPaymentDetailsResponse.GetPaymentDetailsResult detailsWithPort(ThreadPort state) {
+        return state.port.getPaymentDetails(state.query, null);
+    }
+
+    private static Map<String, String> config(String mode) {
+        Map<String, String> config = Fixtures.stubConfig();
+        config.put(mode, recording.getPath());
+        return config;
+    }
+
+    /**
+     * Port created once for each thread, as JAX-WS ports are not meant to be
+     * shared
+     */
+    @State(Scope.Thread)
+    public static class ThreadPort {
+        PaymentAPI port;
+        QueryRequest query;
+
+        @Setup
+        public void setUp() {
+            port = new ClientV5(config(RecordReplay.REPLAY_FILE)).getPaymentAPIImplPort();
+            query = new QueryRequest();
+            query.setUuid(UUID);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.datatype.XMLGregorianCalendar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lyra.vads.ws.v5.CreatePayment;
+import com.lyra.vads.ws.v5.CreatePaymentResponse;
+import com.lyra.vads.ws.v5.GetPaymentDetailsResponse;
+
+import eu.payzen.webservices.sdk.ServiceResult;
+import eu.payzen.webservices.sdk.builder.PaymentBuilder;
+import eu.payzen.webservices.sdk.stream.SoapResponseReader;
+import eu.payzen.webservices.sdk.util.BuilderUtils;
+import eu.payzen.webservices.sdk.util.SessionUtils;
+
+/**
+ * Measures the work done around each call: building the createPayment
+ * request, converting its dates, wrapping the results in a
+ * {@link ServiceResult} and reading the session cookie.
+ *
+ * @author Javier Garcia Alonso
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dcom.sun.xml.bind.v2.bytecode.ClassTailor.noOptimize=true")
+public class RequestResponseBenchmark {
+
+    private Date date;
+    private CreatePayment template;
+    private CreatePaymentResponse.CreatePaymentResult createResult;
+    private GetPaymentDetailsResponse.GetPaymentDetailsResult detailsResult;
+    private Map<String, List<String>> responseHeaders;
+
+    @Setup
+    public void setUp() throws Exception {
+        date = new Date();
+        template = Fixtures.createPayment();
+
+        detailsResult = SoapResponseReader.read(new ByteArrayInputStream(Fixtures.paymentDetailsResponse()),
+                GetPaymentDetailsResponse.class).getGetPaymentDetailsResult();
+        createResult = new CreatePaymentResponse.CreatePaymentResult();
+        createResult.setCommonResponse(detailsResult.getCommonResponse());
+        createResult.setPaymentResponse(detailsResult.getPaymentResponse());
+        createResult.setOrderResponse(detailsResult.getOrderResponse());
+        createResult.setCardResponse(detailsResult.getCardResponse());
+        createResult.setAuthorizationResponse(detailsResult.getAuthorizationResponse());
+        createResult.setCaptureResponse(detailsResult.getCaptureResponse());
+        createResult.setCustomerResponse(detailsResult.getCustomerResponse());
+        createResult.setThreeDSResponse(detailsResult.getThreeDSResponse());
+
+        responseHeaders = Collections.singletonMap(SessionUtils.SET_COOKIE_HEADER,
+                Collections.singletonList("JSESSIONID=8A3F2C1B9D7E6F5A4B3C2D1E0F9A8B7C.node1; Path=/vads-ws; Secure; HttpOnly"));
+    }
+
+    @Benchmark
+    public XMLGregorianCalendar date2XMLGregorianCalendar() {
+        return BuilderUtils.date2XMLGregorianCalendar(date);
+    }
+
+    @Benchmark
+    public CreatePayment buildCreate() {
+        return PaymentBuilder.getBuilder()
+                .paymentSource("EC")
+                .submissionDate(date)
+                .order(template.getOrderRequest())
+                .payment(template.getPaymentRequest())
+                .card(template.getCardRequest())
+                .customer(template.getCustomerRequest())
+                .tech(template.getTechRequest())
+                .buildCreate();
+    }
+
+    @Benchmark
+    public ServiceResult createServiceResult() {
+        return new ServiceResult(createResult, "JSESSIONID=8A3F2C1B9D7E6F5A4B3C2D1E0F9A8B7C.node1;");
+    }
+
+    @Benchmark
+    public ServiceResult detailsServiceResult() {
+        return new ServiceResult(detailsResult);
+    }
+
+    @Benchmark
+    public String httpSessionId() {
+        return SessionUtils.getHttpSessionId(responseHeaders);
+    }
+}
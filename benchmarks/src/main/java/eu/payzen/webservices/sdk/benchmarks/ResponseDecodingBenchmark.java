@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.soap.MessageFactory;
+import javax.xml.soap.SOAPMessage;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Node;
+
+import com.lyra.vads.ws.v5.FindPaymentsResponse;
+import com.lyra.vads.ws.v5.GetPaymentDetailsResponse;
+import com.lyra.vads.ws.v5.ObjectFactory;
+
+import eu.payzen.webservices.sdk.stream.SoapResponseReader;
+
+/**
+ * Compares the decoding of getPaymentDetails and findPayments responses:
+ * SAAJ document + JAXB (JAX-WS with a SOAP handler), StAX + JAXB and the
+ * incremental {@link SoapResponseReader}, with and without section
+ * filtering.<p>
+ *
+ * Run with <code>-prof gc</code> to compare the allocation rate.
+ *
+ * @author Javier Garcia Alonso
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dcom.sun.xml.bind.v2.bytecode.ClassTailor.noOptimize=true")
+public class ResponseDecodingBenchmark {
+
+    @Param({"getPaymentDetails", "findPayments"})
+    public String operation;
+
+    private byte[] response;
+    private Class<?> responseType;
+    private Set<String> sections;
+    private JAXBContext jaxbContext;
+    private MessageFactory messageFactory;
+    private XMLInputFactory inputFactory;
+
+    @Setup
+    public void setUp() throws Exception {
+        if ("getPaymentDetails".equals(operation)) {
+            response = Fixtures.paymentDetailsResponse();
+            responseType = GetPaymentDetailsResponse.class;
+            sections = new HashSet<>(Arrays.asList("commonResponse", "paymentResponse", "orderResponse"));
+        } else {
+            response = Fixtures.findPaymentsResponse(20);
+            responseType = FindPaymentsResponse.class;
+            sections = new HashSet<>(Arrays.asList("commonResponse", "transactionItem"));
+        }
+        jaxbContext = JAXBContext.newInstance(ObjectFactory.class);
+        messageFactory = MessageFactory.newInstance();
+        inputFactory = XMLInputFactory.newInstance();
+    }
+
+    @Benchmark
+    public Object saajJaxb() throws Exception {
+        SOAPMessage message = messageFactory.createMessage(null, new ByteArrayInputStream(response));
+        Node content = message.getSOAPBody().getFirstChild();
+        while (content.getNodeType() != Node.ELEMENT_NODE) {
+            content = content.getNextSibling();
+        }
+        return jaxbContext.createUnmarshaller().unmarshal(content, responseType).getValue();
+    }
+
+    @Benchmark
+    public Object staxJaxb() throws Exception {
+        XMLStreamReader reader = inputFactory.createXMLStreamReader(new ByteArrayInputStream(response));
+        try {
+            SoapResponseReader.moveToBodyContent(reader);
+            return jaxbContext.createUnmarshaller().unmarshal(reader, responseType).getValue();
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Benchmark
+    public Object streaming() {
+        return SoapResponseReader.read(new ByteArrayInputStream(response), responseType);
+    }
+
+    @Benchmark
+    public Object streamingSections() {
+        return SoapResponseReader.read(new ByteArrayInputStream(response), responseType, sections);
+    }
+}
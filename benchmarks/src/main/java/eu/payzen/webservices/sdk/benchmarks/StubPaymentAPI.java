@@ -0,0 +1,264 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.benchmarks;
+
+import java.util.Collections;
+import java.util.UUID;
+
+import javax.annotation.Resource;
+import javax.jws.WebService;
+import javax.xml.ws.WebServiceContext;
+import javax.xml.ws.handler.MessageContext;
+
+import com.lyra.vads.ws.v5.*;
+
+/**
+ * Local implementation of the payment API used by the end-to-end benchmarks.
+ * It answers createPayment, getPaymentDetails and findPayments with a
+ * successful result and the other operations with an empty one, without
+ * checking the header.
+ *
+ * @author Javier Garcia Alonso
+ */
+@WebService(endpointInterface = "com.lyra.vads.ws.v5.PaymentAPI", serviceName = "v5",
+        portName = "PaymentAPIImplPort", targetNamespace = "http://v5.ws.vads.lyra.com/")
+public class StubPaymentAPI implements PaymentAPI {
+
+    @Resource
+    private WebServiceContext context;
+
+    @Override
+    public CancelCapturedPaymentResponse.CancelCapturedPaymentResult cancelCapturedPayment(
+            CommonRequest commonRequest, QueryRequest queryRequest) {
+        return null;
+    }
+
+    @Override
+    public CapturePaymentResponse.CapturePaymentResult capturePayment(SettlementRequest settlementRequest) {
+        return null;
+    }
+
+    @Override
+    public CreateTokenByIbanResponse.CreateTokenByIbanResult createTokenByIban(
+            CommonRequest commonRequest, IbanRequest ibanRequest, CustomerRequest customerRequest) {
+        return null;
+    }
+
+    @Override
+    public ReactivateTokenResponse.ReactivateTokenResult reactivateToken(QueryRequest queryRequest) {
+        return null;
+    }
+
+    @Override
+    public DuplicatePaymentResponse.DuplicatePaymentResult duplicatePayment(
+            CommonRequest commonRequest, PaymentRequest paymentRequest, OrderRequest orderRequest, QueryRequest queryRequest) {
+        return null;
+    }
+
+    @Override
+    public CancelPaymentResponse.CancelPaymentResult cancelPayment(
+            CommonRequest commonRequest, QueryRequest queryRequest) {
+        return null;
+    }
+
+    @Override
+    public CancelRefundResponse.CancelRefundResult cancelRefund(
+            CommonRequest commonRequest, QueryRequest queryRequest) {
+        return null;
+    }
+
+    @Override
+    public CheckThreeDSAuthenticationResponse.CheckThreeDSAuthenticationResult checkThreeDSAuthentication(
+            CommonRequest commonRequest, ThreeDSRequest threeDSRequest) {
+        return null;
+    }
+
+    @Override
+    public UpdatePaymentResponse.UpdatePaymentResult updatePayment(
+            CommonRequest commonRequest, QueryRequest queryRequest, PaymentRequest paymentRequest) {
+        return null;
+    }
+
+    @Override
+    public UpdatePaymentDetailsResponse.UpdatePaymentDetailsResult updatePaymentDetails(
+            QueryRequest queryRequest, ShoppingCartRequest shoppingCartRequest) {
+        return null;
+    }
+
+    @Override
+    public GetPaymentDetailsResponse.GetPaymentDetailsResult getPaymentDetails(
+            QueryRequest queryRequest, ExtendedResponseRequest extendedResponseRequest) {
+        GetPaymentDetailsResponse.GetPaymentDetailsResult result = new GetPaymentDetailsResponse.GetPaymentDetailsResult();
+        result.setCommonResponse(commonResponse());
+        result.setPaymentResponse(paymentResponse(4990L, 978));
+        result.setOrderResponse(orderResponse("Order-2018-000123"));
+        result.setCardResponse(cardResponse());
+        return result;
+    }
+
+    @Override
+    public UpdateTokenResponse.UpdateTokenResult updateToken(
+            CommonRequest commonRequest, QueryRequest queryRequest, CardRequest cardRequest, CustomerRequest customerRequest) {
+        return null;
+    }
+
+    @Override
+    public UpdateRefundResponse.UpdateRefundResult updateRefund(
+            CommonRequest commonRequest, QueryRequest queryRequest, PaymentRequest paymentRequest) {
+        return null;
+    }
+
+    @Override
+    public CancelSubscriptionResponse.CancelSubscriptionResult cancelSubscription(
+            CommonRequest commonRequest, QueryRequest queryRequest) {
+        return null;
+    }
+
+    @Override
+    public RefundPaymentResponse.RefundPaymentResult refundPayment(
+            CommonRequest commonRequest, PaymentRequest paymentRequest, QueryRequest queryRequest) {
+        return null;
+    }
+
+    @Override
+    public CreateTokenFromTransactionResponse.CreateTokenFromTransactionResult createTokenFromTransaction(
+            CommonRequest commonRequest, CardRequest cardRequest, QueryRequest queryRequest) {
+        return null;
+    }
+
+    @Override
+    public VerifyThreeDSEnrollmentResponse.VerifyThreeDSEnrollmentResult verifyThreeDSEnrollment(
+            CommonRequest commonRequest, PaymentRequest paymentRequest, CardRequest cardRequest, TechRequest techRequest, ThreeDSRequest threeDSRequest) {
+        return null;
+    }
+
+    @Override
+    public ValidatePaymentResponse.ValidatePaymentResult validatePayment(
+            CommonRequest commonRequest, QueryRequest queryRequest) {
+        return null;
+    }
+
+    @Override
+    public GetPaymentUuidResponse.LegacyTransactionKeyResult getPaymentUuid(
+            LegacyTransactionKeyRequest legacyTransactionKeyRequest) {
+        return null;
+    }
+
+    @Override
+    public CreatePaymentResponse.CreatePaymentResult createPayment(
+            CommonRequest commonRequest, ThreeDSRequest threeDSRequest, PaymentRequest paymentRequest, OrderRequest orderRequest, CardRequest cardRequest, CustomerRequest customerRequest, TechRequest techRequest, ShoppingCartRequest shoppingCartRequest) {
+        CreatePaymentResponse.CreatePaymentResult result = new CreatePaymentResponse.CreatePaymentResult();
+        result.setCommonResponse(commonResponse());
+        result.setPaymentResponse(paymentResponse(paymentRequest.getAmount(), paymentRequest.getCurrency()));
+        result.setOrderResponse(orderResponse(orderRequest.getOrderId()));
+        result.setCardResponse(cardResponse());
+        setSessionCookie();
+        return result;
+    }
+
+    @Override
+    public CreateSubscriptionResponse.CreateSubscriptionResult createSubscription(
+            CommonRequest commonRequest, OrderRequest orderRequest, SubscriptionRequest subscriptionRequest, CardRequest cardRequest) {
+        return null;
+    }
+
+    @Override
+    public GetSubscriptionDetailsResponse.GetSubscriptionDetailsResult getSubscriptionDetails(
+            QueryRequest queryRequest) {
+        return null;
+    }
+
+    @Override
+    public UpdateSubscriptionResponse.UpdateSubscriptionResult updateSubscription(
+            CommonRequest commonRequest, QueryRequest queryRequest, SubscriptionRequest subscriptionRequest) {
+        return null;
+    }
+
+    @Override
+    public CancelTokenResponse.CancelTokenResult cancelToken(CommonRequest commonRequest, QueryRequest queryRequest) {
+        return null;
+    }
+
+    @Override
+    public CreateTokenResponse.CreateTokenResult createToken(
+            CommonRequest commonRequest, CardRequest cardRequest, CustomerRequest customerRequest) {
+        return null;
+    }
+
+    @Override
+    public FindPaymentsResponse.FindPaymentsResult findPayments(QueryRequest queryRequest) {
+        FindPaymentsResponse.FindPaymentsResult result = new FindPaymentsResponse.FindPaymentsResult();
+        result.setCommonResponse(commonResponse());
+        result.setOrderResponse(orderResponse(queryRequest.getOrderId()));
+        for (int i = 0; i < 3; i++) {
+            TransactionItem item = new TransactionItem();
+            item.setTransactionUuid(String.format("%032x", 0x0a1b2c3d4e5fL + i));
+            item.setTransactionStatusLabel("CAPTURED");
+            item.setAmount(1000L + i);
+            item.setCurrency(978);
+            result.getTransactionItem().add(item);
+        }
+        return result;
+    }
+
+    @Override
+    public GetTokenDetailsResponse.GetTokenDetailsResult getTokenDetails(QueryRequest queryRequest) {
+        return null;
+    }
+
+    private void setSessionCookie() {
+        context.getMessageContext().put(MessageContext.HTTP_RESPONSE_HEADERS, Collections.singletonMap("Set-Cookie",
+                Collections.singletonList("JSESSIONID=" + UUID.randomUUID() + "; Path=/vads-ws; HttpOnly")));
+    }
+
+    private static CommonResponse commonResponse() {
+        CommonResponse response = new CommonResponse();
+        response.setResponseCode(0);
+        response.setResponseCodeDetail("Action successfully completed");
+        response.setTransactionStatusLabel("AUTHORISED");
+        response.setShopId(Fixtures.SHOP_ID);
+        response.setPaymentSource("EC");
+        return response;
+    }
+
+    private static PaymentResponse paymentResponse(Long amount, Integer currency) {
+        PaymentResponse response = new PaymentResponse();
+        response.setTransactionUuid(UUID.randomUUID().toString().replace("-", ""));
+        response.setTransactionId("123456");
+        response.setAmount(amount);
+        response.setCurrency(currency);
+        response.setOperationType(0);
+        response.setSequenceNumber(1);
+        return response;
+    }
+
+    private static OrderResponse orderResponse(String orderId) {
+        OrderResponse response = new OrderResponse();
+        response.setOrderId(orderId);
+        return response;
+    }
+
+    private static CardResponse cardResponse() {
+        CardResponse response = new CardResponse();
+        response.setNumber("497010XXXXXX0003");
+        response.setScheme("VISA");
+        response.setBrand("CB");
+        response.setCountry("FR");
+        response.setExpiryMonth(12);
+        response.setExpiryYear(2030);
+        return response;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.benchmarks.load;
+
+import java.util.Locale;
+
+import eu.payzen.webservices.sdk.Payment;
+import eu.payzen.webservices.sdk.ServiceResult;
+
+/**
+ * Operations that a load test can call. The ones that need an existing
+ * transaction use the captured transactions created by {@link LoadTarget}
+ * before the run.
+ *
+ * @author Javier Garcia Alonso
+ */
+enum LoadOperation {
+
+    CREATE {
+        @Override
+        ServiceResult call(LoadTarget target) {
+            return Payment.create(target.nextOrderId(), 4990, 978, LoadTarget.CARD, 12, 2030, "123",
+                    target.config());
+        }
+    },
+    DETAILS {
+        @Override
+        ServiceResult call(LoadTarget target) {
+            return Payment.details(target.randomTransaction(), target.config());
+        }
+    },
+    FIND {
+        @Override
+        ServiceResult call(LoadTarget target) {
+            return Payment.detailsByOrderId(target.randomOrderId(), target.config());
+        }
+    },
+    REFUND {
+        @Override
+        ServiceResult call(LoadTarget target) {
+            return Payment.refund(target.randomTransaction(), 1, 978, "Load test", target.config());
+        }
+    };
+
+    abstract ServiceResult call(LoadTarget target);
+
+    String label() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    static LoadOperation fromLabel(String label) {
+        try {
+            return valueOf(label.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown operation: " + label + " (create, details, find or refund)");
+        }
+    }
+}
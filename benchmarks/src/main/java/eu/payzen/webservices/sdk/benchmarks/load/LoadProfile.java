@@ -0,0 +1,181 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.benchmarks.load;
+
+import java.util.Locale;
+
+/**
+ * Parameters of a load test, read from the command line:
+ *
+ * <pre>
+ * --model closed|open      closed: each worker sends a call when the previous one ends (default)
+ *                          open: calls arrive at --rate whatever the response times
+ * --concurrency 8          workers, i.e. highest number of calls in flight
+ * --rate 200               calls per second, required by the open model; in the closed model it
+ *                          paces the workers, and latencies are then measured from the planned start
+ * --duration 30            measured seconds
+ * --warmup 10              seconds run before the measure, not reported
+ * --mix create=60,details=30,refund=10    relative weights of create, details, find and refund
+ * --streaming              use streamingSerializer and streamingParser instead of JAX-WS
+ * --stub-latency 5-20      delay added by the stub, in milliseconds (a single value or a range)
+ * --stub-faults 0.001      share of calls answered with a SOAP fault by the stub
+ * --transactions 200       captured transactions created before the run for details, find and refund
+ * --report load-report.json
+ * </pre>
+ *
+ * @author Javier Garcia Alonso
+ */
+final class LoadProfile {
+
+    enum Model {
+        CLOSED, OPEN
+    }
+
+    private Model model = Model.CLOSED;
+    private int concurrency = 8;
+    private double rate;
+    private long durationSeconds = 30;
+    private long warmupSeconds = 10;
+    private OperationMix mix = OperationMix.parse("create=60,details=30,refund=10");
+    private boolean streaming;
+    private long stubMinLatencyMillis;
+    private long stubMaxLatencyMillis;
+    private double stubFaultRatio;
+    private int transactions = 200;
+    private String report = "load-report.json";
+
+    private LoadProfile() {
+    }
+
+    static LoadProfile parse(String[] args) {
+        LoadProfile profile = new LoadProfile();
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if ("--streaming".equals(option)) {
+                profile.streaming = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value of " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--model":
+                    profile.model = Model.valueOf(value.toUpperCase(Locale.ROOT));
+                    break;
+                case "--concurrency":
+                    profile.concurrency = Integer.parseInt(value);
+                    break;
+                case "--rate":
+                    profile.rate = Double.parseDouble(value);
+                    break;
+                case "--duration":
+                    profile.durationSeconds = Long.parseLong(value);
+                    break;
+                case "--warmup":
+                    profile.warmupSeconds = Long.parseLong(value);
+                    break;
+                case "--mix":
+                    profile.mix = OperationMix.parse(value);
+                    break;
+                case "--stub-latency":
+                    int dash = value.indexOf('-');
+                    profile.stubMinLatencyMillis = Long.parseLong(dash < 0 ? value : value.substring(0, dash));
+                    profile.stubMaxLatencyMillis = dash < 0 ? profile.stubMinLatencyMillis
+                            : Long.parseLong(value.substring(dash + 1));
+                    break;
+                case "--stub-faults":
+                    profile.stubFaultRatio = Double.parseDouble(value);
+                    break;
+                case "--transactions":
+                    profile.transactions = Integer.parseInt(value);
+                    break;
+                case "--report":
+                    profile.report = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+        if (profile.concurrency < 1 || profile.durationSeconds < 1 || profile.warmupSeconds < 0
+                || profile.transactions < 1) {
+            throw new IllegalArgumentException("concurrency, duration and transactions must be positive");
+        }
+        if (profile.model == Model.OPEN && profile.rate <= 0) {
+            throw new IllegalArgumentException("The open model needs a --rate");
+        }
+        return profile;
+    }
+
+    Model getModel() {
+        return model;
+    }
+
+    int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * @return calls per second, 0 for a closed model without pacing
+     */
+    double getRate() {
+        return rate;
+    }
+
+    long getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    long getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    OperationMix getMix() {
+        return mix;
+    }
+
+    boolean isStreaming() {
+        return streaming;
+    }
+
+    long getStubMinLatencyMillis() {
+        return stubMinLatencyMillis;
+    }
+
+    long getStubMaxLatencyMillis() {
+        return stubMaxLatencyMillis;
+    }
+
+    double getStubFaultRatio() {
+        return stubFaultRatio;
+    }
+
+    int getTransactions() {
+        return transactions;
+    }
+
+    String getReport() {
+        return report;
+    }
+
+    /**
+     * Latencies are measured from the planned start of each call, so the
+     * time a call waits behind a slow one is counted (coordinated omission)
+     */
+    boolean isCorrected() {
+        return rate > 0;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.benchmarks.load;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import eu.payzen.webservices.sdk.ServiceResult;
+import eu.payzen.webservices.sdk.metrics.LatencyHistogram;
+
+/**
+ * Outcome of the calls of a load test, by operation. Two latencies are
+ * recorded for each call: from its planned start (corrected for coordinated
+ * omission) and from its actual start (service time).
+ *
+ * @author Javier Garcia Alonso
+ */
+final class LoadRecorder {
+
+    private final Map<LoadOperation, Outcomes> operations = new EnumMap<>(LoadOperation.class);
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram serviceTime = new LatencyHistogram();
+    private final LongAdder allocatedBytes = new LongAdder();
+    private final LongAdder missed = new LongAdder();
+
+    LoadRecorder() {
+        for (LoadOperation operation : LoadOperation.values()) {
+            operations.put(operation, new Outcomes());
+        }
+    }
+
+    void record(LoadOperation operation, long latencyNanos, long serviceNanos, ServiceResult result, Throwable error) {
+        Outcomes outcomes = operations.get(operation);
+        outcomes.latency.record(latencyNanos);
+        outcomes.serviceTime.record(serviceNanos);
+        latency.record(latencyNanos);
+        serviceTime.record(serviceNanos);
+        if (error != null) {
+            outcomes.errors.increment();
+            increment(outcomes.exceptions, error.getClass().getName());
+        } else {
+            Integer code = result.getCommonResponse() != null ? result.getCommonResponse().getResponseCode() : null;
+            if (code == null || code != 0) {
+                outcomes.errors.increment();
+            }
+            increment(outcomes.responseCodes, code != null ? code : -1);
+        }
+    }
+
+    void addAllocatedBytes(long bytes) {
+        allocatedBytes.add(bytes);
+    }
+
+    /**
+     * Counts the calls of the open model that were due before the end of the
+     * run but could not be started because every worker was busy
+     */
+    void addMissed(long calls) {
+        missed.add(calls);
+    }
+
+    long getAllocatedBytes() {
+        return allocatedBytes.sum();
+    }
+
+    long getMissed() {
+        return missed.sum();
+    }
+
+    Outcomes get(LoadOperation operation) {
+        return operations.get(operation);
+    }
+
+    LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    LatencyHistogram getServiceTime() {
+        return serviceTime;
+    }
+
+    private static <K> void increment(ConcurrentMap<K, LongAdder> counters, K key) {
+        counters.computeIfAbsent(key, k -> new LongAdder()).increment();
+    }
+
+    static final class Outcomes {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LatencyHistogram serviceTime = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+        final ConcurrentMap<Integer, LongAdder> responseCodes = new ConcurrentHashMap<>();
+        final ConcurrentMap<String, LongAdder> exceptions = new ConcurrentHashMap<>();
+
+        long getCalls() {
+            return latency.getCount();
+        }
+
+        long getErrors() {
+            return errors.sum();
+        }
+
+        Map<Integer, Long> getResponseCodes() {
+            return sum(responseCodes);
+        }
+
+        Map<String, Long> getExceptions() {
+            return sum(exceptions);
+        }
+
+        private static <K> Map<K, Long> sum(ConcurrentMap<K, LongAdder> counters) {
+            Map<K, Long> sums = new TreeMap<>();
+            for (Map.Entry<K, LongAdder> entry : counters.entrySet()) {
+                sums.put(entry.getKey(), entry.getValue().sum());
+            }
+            return sums;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.benchmarks.load;
+
+import java.util.Locale;
+import java.util.Map;
+
+import eu.payzen.webservices.sdk.metrics.LatencyHistogram;
+
+/**
+ * Results of a load test, as JSON for the tools that compare runs and as
+ * text for the console. Latencies are in milliseconds.
+ *
+ * @author Javier Garcia Alonso
+ */
+final class LoadReport {
+
+    private final LoadProfile profile;
+    private final LoadRecorder recorder;
+    private final double seconds;
+    private final long gcCount;
+    private final long gcMillis;
+
+    LoadReport(LoadProfile profile, LoadRecorder recorder, long elapsedNanos, long gcCount, long gcMillis) {
+        this.profile = profile;
+        this.recorder = recorder;
+        this.seconds = elapsedNanos / 1e9;
+        this.gcCount = gcCount;
+        this.gcMillis = gcMillis;
+    }
+
+    String toJson() {
+        long calls = recorder.getLatency().getCount();
+        long errors = 0;
+        for (LoadOperation operation : LoadOperation.values()) {
+            errors += recorder.get(operation).getErrors();
+        }
+        long allocated = recorder.getAllocatedBytes();
+
+        StringBuilder json = new StringBuilder(2048);
+        json.append("{\n");
+        json.append("  \"profile\": {");
+        field(json, "model", profile.getModel().name().toLowerCase(Locale.ROOT)).append(", ");
+        field(json, "concurrency", profile.getConcurrency()).append(", ");
+        field(json, "rate", profile.getRate()).append(", ");
+        field(json, "durationSeconds", profile.getDurationSeconds()).append(", ");
+        field(json, "warmupSeconds", profile.getWarmupSeconds()).append(", ");
+        field(json, "mix", profile.getMix().toString()).append(", ");
+        field(json, "client", profile.isStreaming() ? "streaming" : "jaxws").append(", ");
+        field(json, "stubLatencyMillis", profile.getStubMinLatencyMillis() + "-" + profile.getStubMaxLatencyMillis())
+                .append(", ");
+        field(json, "stubFaultRatio", profile.getStubFaultRatio()).append(", ");
+        field(json, "coordinatedOmissionCorrected", profile.isCorrected());
+        json.append("},\n");
+
+        json.append("  \"summary\": {");
+        field(json, "elapsedSeconds", seconds).append(", ");
+        field(json, "calls", calls).append(", ");
+        field(json, "throughput", calls / seconds).append(", ");
+        field(json, "errors", errors).append(", ");
+        field(json, "errorRate", calls == 0 ? 0 : (double) errors / calls).append(", ");
+        field(json, "missed", recorder.getMissed());
+        json.append("},\n");
+
+        json.append("  \"latency\": ");
+        latency(json, recorder.getLatency().snapshot());
+        json.append(",\n  \"serviceTime\": ");
+        latency(json, recorder.getServiceTime().snapshot());
+        json.append(",\n");
+
+        json.append("  \"operations\": {");
+        boolean first = true;
+        for (LoadOperation operation : LoadOperation.values()) {
+            LoadRecorder.Outcomes outcomes = recorder.get(operation);
+            if (outcomes.getCalls() == 0) {
+                continue;
+            }
+            json.append(first ? "\n" : ",\n").append("    \"").append(operation.label()).append("\": {");
+            first = false;
+            field(json, "calls", outcomes.getCalls()).append(", ");
+            field(json, "throughput", outcomes.getCalls() / seconds).append(", ");
+            field(json, "errors", outcomes.getErrors()).append(", ");
+            json.append("\"responseCodes\": ");
+            map(json, outcomes.getResponseCodes());
+            json.append(", \"exceptions\": ");
+            map(json, outcomes.getExceptions());
+            json.append(", \"latency\": ");
+            latency(json, outcomes.latency.snapshot());
+            json.append(", \"serviceTime\": ");
+            latency(json, outcomes.serviceTime.snapshot());
+            json.append('}');
+        }
+        json.append("\n  },\n");
+
+        json.append("  \"allocation\": {");
+        field(json, "bytes", allocated).append(", ");
+        field(json, "bytesPerCall", calls == 0 ? 0 : allocated / calls).append(", ");
+        field(json, "megabytesPerSecond", allocated / seconds / (1024 * 1024)).append(", ");
+        field(json, "gcCount", gcCount).append(", ");
+        field(json, "gcMillis", gcMillis);
+        json.append("},\n");
+
+        json.append("  \"jvm\": {");
+        field(json, "version", System.getProperty("java.version")).append(", ");
+        field(json, "processors", Runtime.getRuntime().availableProcessors()).append(", ");
+        field(json, "maxHeapBytes", Runtime.getRuntime().maxMemory());
+        json.append("}\n}\n");
+        return json.toString();
+    }
+
+    String toText() {
+        StringBuilder text = new StringBuilder(1024);
+        long calls = recorder.getLatency().getCount();
+        text.append(String.format(Locale.ROOT, "%s model, %d workers, %s client, mix %s%n",
+                profile.getModel().name().toLowerCase(Locale.ROOT), profile.getConcurrency(),
+                profile.isStreaming() ? "streaming" : "JAX-WS", profile.getMix()));
+        text.append(String.format(Locale.ROOT, "%d calls in %.1f s: %.1f calls/s, %d missed%n",
+                calls, seconds, calls / seconds, recorder.getMissed()));
+        text.append(String.format(Locale.ROOT, "%-8s %9s %8s %9s %9s %9s %9s%n",
+                "", "calls", "errors", "p50 ms", "p99 ms", "p99.9 ms", "max ms"));
+        for (LoadOperation operation : LoadOperation.values()) {
+            LoadRecorder.Outcomes outcomes = recorder.get(operation);
+            if (outcomes.getCalls() > 0) {
+                row(text, operation.label(), outcomes.getCalls(), outcomes.getErrors(), outcomes.latency.snapshot());
+            }
+        }
+        LatencyHistogram.Snapshot service = recorder.getServiceTime().snapshot();
+        text.append(String.format(Locale.ROOT, "service time p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms%n",
+                millis(service.getPercentile(50)), millis(service.getPercentile(99)),
+                millis(service.getPercentile(99.9))));
+        long allocated = recorder.getAllocatedBytes();
+        text.append(String.format(Locale.ROOT, "allocated %d bytes/call (%.1f MB/s), %d GCs in %d ms%n",
+                calls == 0 ? 0 : allocated / calls, allocated / seconds / (1024 * 1024), gcCount, gcMillis));
+        return text.toString();
+    }
+
+    private static void row(StringBuilder text, String label, long calls, long errors,
+            LatencyHistogram.Snapshot latency) {
+        text.append(String.format(Locale.ROOT, "%-8s %9d %8d %9.3f %9.3f %9.3f %9.3f%n", label, calls, errors,
+                millis(latency.getPercentile(50)), millis(latency.getPercentile(99)),
+                millis(latency.getPercentile(99.9)), millis(latency.getMax())));
+    }
+
+    private static void latency(StringBuilder json, LatencyHistogram.Snapshot snapshot) {
+        json.append('{');
+        field(json, "mean", millis((long) snapshot.getMean())).append(", ");
+        field(json, "p50", millis(snapshot.getPercentile(50))).append(", ");
+        field(json, "p90", millis(snapshot.getPercentile(90))).append(", ");
+        field(json, "p99", millis(snapshot.getPercentile(99))).append(", ");
+        field(json, "p999", millis(snapshot.getPercentile(99.9))).append(", ");
+        field(json, "max", millis(snapshot.getMax()));
+        json.append('}');
+    }
+
+    private static void map(StringBuilder json, Map<?, Long> values) {
+        json.append('{');
+        boolean first = true;
+        for (Map.Entry<?, Long> entry : values.entrySet()) {
+            if (!first) {
+                json.append(", ");
+            }
+            first = false;
+            field(json, String.valueOf(entry.getKey()), entry.getValue());
+        }
+        json.append('}');
+    }
+
+    private static StringBuilder field(StringBuilder json, String name, Object value) {
+        json.append('"').append(name).append("\": ");
+        if (value instanceof Double) {
+            double number = (Double) value;
+            json.append(Double.isNaN(number) || Double.isInfinite(number) ? "null"
+                    : String.format(Locale.ROOT, "%.3f", number));
+        } else if (value instanceof Number || value instanceof Boolean) {
+            json.append(value);
+        } else {
+            json.append('"').append(String.valueOf(value).replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        }
+        return json;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
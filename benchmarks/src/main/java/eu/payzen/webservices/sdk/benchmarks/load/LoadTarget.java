@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.benchmarks.load;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import eu.payzen.webservices.sdk.Payment;
+import eu.payzen.webservices.sdk.ServiceResult;
+import eu.payzen.webservices.sdk.stub.PaymentStub;
+
+/**
+ * Local stub gateway called by a load test, with captured transactions
+ * created beforehand for the operations that need one (details, find and
+ * refund). They are created with a large amount so that they can be
+ * refunded one cent at a time during the whole run.
+ *
+ * @author Javier Garcia Alonso
+ */
+final class LoadTarget implements Closeable {
+
+    static final String CARD = "4970100000000003";
+
+    private static final long SEED_AMOUNT = 100000000L;
+
+    private final PaymentStub stub;
+    private final boolean streaming;
+    private final String[] transactions;
+    private final String[] orderIds;
+    private final AtomicLong orders = new AtomicLong();
+
+    LoadTarget(LoadProfile profile) throws IOException {
+        stub = PaymentStub.getBuilder()
+                .latency(profile.getStubMinLatencyMillis(), profile.getStubMaxLatencyMillis())
+                .faultRatio(profile.getStubFaultRatio())
+                .build();
+        streaming = profile.isStreaming();
+
+        int count = profile.getTransactions();
+        transactions = new String[count];
+        orderIds = new String[count];
+        for (int i = 0; i < count; i++) {
+            orderIds[i] = "Load-seed-" + i;
+            ServiceResult result = Payment.create(orderIds[i], SEED_AMOUNT, 978, CARD, 12, 2030, "123", stub.config());
+            if (result.getPaymentResponse() == null) {
+                throw new IllegalStateException("Transaction not created: "
+                        + result.getCommonResponse().getResponseCodeDetail());
+            }
+            transactions[i] = result.getPaymentResponse().getTransactionUuid();
+        }
+        stub.capture();
+    }
+
+    /**
+     * Configuration of a call. A new map is returned each time because the
+     * clients remove the values they read.
+     */
+    Map<String, String> config() {
+        Map<String, String> config = stub.config();
+        if (streaming) {
+            config.put("streamingSerializer", "true");
+            config.put("streamingParser", "true");
+        }
+        return config;
+    }
+
+    String nextOrderId() {
+        return "Load-" + orders.incrementAndGet();
+    }
+
+    String randomTransaction() {
+        return transactions[ThreadLocalRandom.current().nextInt(transactions.length)];
+    }
+
+    String randomOrderId() {
+        return orderIds[ThreadLocalRandom.current().nextInt(orderIds.length)];
+    }
+
+    long getStubRequestCount() {
+        return stub.getRequestCount();
+    }
+
+    @Override
+    public void close() {
+        stub.close();
+    }
+}
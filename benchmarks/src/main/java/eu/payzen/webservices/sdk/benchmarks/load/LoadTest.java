@@ -0,0 +1,192 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.benchmarks.load;
+
+import java.io.File;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import eu.payzen.webservices.sdk.ServiceResult;
+
+/**
+ * Load test of the SDK against the local stub gateway, to measure its
+ * throughput ceiling and its latency under load. The options are described
+ * in {@link LoadProfile}; the results are printed and written as JSON.<p>
+ *
+ * In the closed model every worker sends a call as soon as its previous call
+ * ends. In the open model the calls are planned at a fixed rate and started
+ * by the first free worker: when the SDK cannot keep up, the calls wait and
+ * the wait is counted in their latency instead of being hidden by a lower
+ * send rate (coordinated omission). The service time, from the actual start
+ * of each call, is reported too.
+ *
+ * <code>java -cp benchmarks/target/benchmarks.jar eu.payzen.webservices.sdk.benchmarks.load.LoadTest --model open --rate 300</code>
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadProfile profile;
+        try {
+            profile = LoadProfile.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("See the options in the javadoc of " + LoadProfile.class.getName());
+            System.exit(2);
+            return;
+        }
+
+        try (LoadTarget target = new LoadTarget(profile)) {
+            if (profile.getWarmupSeconds() > 0) {
+                run(profile, target, new LoadRecorder(), TimeUnit.SECONDS.toNanos(profile.getWarmupSeconds()));
+            }
+
+            LoadRecorder recorder = new LoadRecorder();
+            long gcCount = gcCount();
+            long gcMillis = gcMillis();
+            long start = System.nanoTime();
+            run(profile, target, recorder, TimeUnit.SECONDS.toNanos(profile.getDurationSeconds()));
+            long elapsed = System.nanoTime() - start;
+
+            LoadReport report = new LoadReport(profile, recorder, elapsed, gcCount() - gcCount, gcMillis() - gcMillis);
+            File file = new File(profile.getReport());
+            try (Writer writer = new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8)) {
+                writer.write(report.toJson());
+            }
+            System.out.print(report.toText());
+            System.out.println("Report written to " + file.getAbsolutePath());
+        }
+    }
+
+    static void run(LoadProfile profile, LoadTarget target, LoadRecorder recorder, long durationNanos)
+            throws InterruptedException {
+        int concurrency = profile.getConcurrency();
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10);
+        long end = start + durationNanos;
+        AtomicLong slots = new AtomicLong();
+
+        Thread[] workers = new Thread[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            int index = i;
+            workers[i] = new Thread(() -> work(profile, target, recorder, slots, index, start, end), "load-" + i);
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        if (profile.getModel() == LoadProfile.Model.OPEN) {
+            long due = (long) Math.ceil(profile.getRate() * durationNanos / 1e9);
+            recorder.addMissed(Math.max(0, due - recorder.getLatency().getCount()));
+        }
+    }
+
+    private static void work(LoadProfile profile, LoadTarget target, LoadRecorder recorder, AtomicLong slots,
+            int index, long start, long end) {
+        Random random = ThreadLocalRandom.current();
+        long allocated = allocatedBytes();
+        boolean open = profile.getModel() == LoadProfile.Model.OPEN;
+        double interval = profile.getRate() > 0 ? 1e9 / profile.getRate() : 0;
+        long calls = 0;
+
+        waitUntil(start);
+        while (true) {
+            long planned;
+            if (open) {
+                planned = start + (long) (slots.getAndIncrement() * interval);
+            } else if (interval > 0) {
+                // Each worker has its own schedule, shifted so that the calls are evenly spread
+                planned = start + (long) ((calls * profile.getConcurrency() + index) * interval);
+            } else {
+                planned = System.nanoTime();
+            }
+            if (planned >= end) {
+                break;
+            }
+            waitUntil(planned);
+            long begin = System.nanoTime();
+            if (begin >= end) {
+                // Calls still waiting for a worker at the end are counted as missed
+                break;
+            }
+
+            LoadOperation operation = profile.getMix().next(random);
+            ServiceResult result = null;
+            Throwable error = null;
+            try {
+                result = operation.call(target);
+            } catch (RuntimeException e) {
+                error = e;
+            }
+            long done = System.nanoTime();
+            recorder.record(operation, done - (profile.isCorrected() ? planned : begin), done - begin, result, error);
+            calls++;
+        }
+
+        if (allocated >= 0) {
+            recorder.addAllocatedBytes(allocatedBytes() - allocated);
+        }
+    }
+
+    private static void waitUntil(long nanoTime) {
+        long remaining;
+        while ((remaining = nanoTime - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    // Bytes allocated by the current thread, -1 if the JVM cannot measure it
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+            if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+                return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.benchmarks.load;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.lyra.vads.ws.v5.CreatePayment;
+
+import eu.payzen.webservices.sdk.PaymentClient;
+import eu.payzen.webservices.sdk.PayzenConfig;
+import eu.payzen.webservices.sdk.ServiceResult;
+import eu.payzen.webservices.sdk.builder.PaymentBuilder;
+import eu.payzen.webservices.sdk.builder.request.CardRequestBuilder;
+import eu.payzen.webservices.sdk.builder.request.PaymentRequestBuilder;
+import eu.payzen.webservices.sdk.client.StreamingClientV5;
+import eu.payzen.webservices.sdk.stub.PaymentStub;
+import eu.payzen.webservices.sdk.transport.HttpTransports;
+
+/**
+ * Compares the HTTP transports of the SDK under the same load: the JVM
+ * <code>HttpURLConnection</code>, the connection pool of the SDK
+ * (<code>maxIdleConnections</code>) and the <code>jdk</code> transport, with
+ * blocking and with non-blocking calls. A fixed number of createPayment calls
+ * is kept in flight against a stub with a constant latency, and the
+ * throughput and the highest number of client threads (the threads of the
+ * stub are not counted) are printed for each of them.<p>
+ *
+ * The blocking transports need a thread per call in flight, the non-blocking
+ * one only the few threads of its HTTP client. The <code>jdk</code> transport
+ * needs Java 11 and is skipped on Java 8.<p>
+ *
+ * <code>java -Dcom.sun.xml.bind.v2.bytecode.ClassTailor.noOptimize=true -cp benchmarks/target/benchmarks.jar eu.payzen.webservices.sdk.benchmarks.load.TransportBenchmark [inFlight] [seconds] [stubLatencyMillis]</code>
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class TransportBenchmark {
+
+    private static final String STUB_THREAD = "payment-stub";
+
+    private TransportBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int inFlight = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int latency = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        try (PaymentStub stub = PaymentStub.getBuilder().latency(latency).build()) {
+            PayzenConfig base = PayzenConfig.from(stub.config()).toBuilder()
+                    .property(StreamingClientV5.STREAMING_SERIALIZER, "true")
+                    .property(StreamingClientV5.STREAMING_PARSER, "true")
+                    .build();
+            Map<String, PayzenConfig> transports = new LinkedHashMap<>();
+            transports.put("HttpURLConnection", base);
+            transports.put("pool", base.toBuilder().maxIdleConnections(inFlight).build());
+            transports.put(HttpTransports.JDK, base.toBuilder().httpTransport(HttpTransports.JDK).build());
+
+            System.out.printf("%d calls in flight, stub latency %d ms, %d s per transport%n", inFlight, latency,
+                    seconds);
+            System.out.printf("%-20s %-12s %12s %16s%n", "transport", "calls", "calls/s", "client threads");
+            for (Map.Entry<String, PayzenConfig> transport : transports.entrySet()) {
+                try {
+                    HttpTransports.of(transport.getValue());
+                } catch (UnsupportedOperationException e) {
+                    System.out.printf("%-20s %s%n", transport.getKey(), e.getMessage());
+                    continue;
+                }
+                // Warm-up, then measure
+                run(transport.getValue(), inFlight, Math.max(1, seconds / 5));
+                Result result = run(transport.getValue(), inFlight, seconds);
+                System.out.printf("%-20s %-12s %12.1f %16d%n", transport.getKey(),
+                        result.nonBlocking ? "non-blocking" : "blocking", result.calls / (double) seconds,
+                        result.peakThreads);
+            }
+        }
+    }
+
+    private static Result run(PayzenConfig config, int inFlight, int seconds) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(inFlight);
+        Semaphore slots = new Semaphore(inFlight);
+        LongAdder calls = new LongAdder();
+        AtomicInteger errors = new AtomicInteger();
+        ThreadSampler sampler = new ThreadSampler();
+        Result result = new Result();
+
+        try (PaymentClient client = PaymentClient.getBuilder().config(config).poolSize(inFlight)
+                .executor(executor).build()) {
+            result.nonBlocking = new StreamingClientV5(config).isNonBlocking();
+            CreatePayment request = createPayment();
+            sampler.start();
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            while (System.nanoTime() < end) {
+                if (!slots.tryAcquire(10, TimeUnit.MILLISECONDS)) {
+                    continue;
+                }
+                CompletableFuture<ServiceResult> call = client.createAsync(request);
+                call.whenComplete((created, error) -> {
+                    if (error != null && errors.getAndIncrement() == 0) {
+                        error.printStackTrace();
+                    }
+                    calls.increment();
+                    slots.release();
+                });
+            }
+            slots.acquire(inFlight);
+        } finally {
+            sampler.interrupt();
+            sampler.join();
+            executor.shutdown();
+        }
+        result.calls = calls.sum();
+        result.peakThreads = sampler.peak;
+        return result;
+    }
+
+    private static CreatePayment createPayment() {
+        return PaymentBuilder.getBuilder()
+                .payment(PaymentRequestBuilder.create().amount(100).currency(978).build())
+                .card(CardRequestBuilder.create().number(LoadTarget.CARD).expiryMonth(12).expiryYear(2030)
+                        .cardSecurityCode("123").scheme("VISA").build())
+                .buildCreate();
+    }
+
+    private static final class Result {
+        boolean nonBlocking;
+        long calls;
+        int peakThreads;
+    }
+
+    // Counts the live threads except the ones of the stub every 50 ms
+    private static final class ThreadSampler extends Thread {
+        volatile int peak;
+
+        ThreadSampler() {
+            super("thread-sampler");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (!isInterrupted()) {
+                int threads = 0;
+                for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                    if (thread.isAlive() && !STUB_THREAD.equals(thread.getName())) {
+                        threads++;
+                    }
+                }
+                peak = Math.max(peak, threads);
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -17,6 +17,9 @@ package eu.payzen.webservices.sdk;
 
 import java.util.Date;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 import com.lyra.vads.ws.v5.*;
 import com.lyra.vads.ws.v5.CancelSubscriptionResponse.CancelSubscriptionResult;
@@ -40,6 +43,9 @@ import com.lyra.vads.ws.v5.ValidatePaymentResponse.ValidatePaymentResult;
  * <li>With/without response handler: the usage of a response handler allows 
  * to create easily a callback model which help to work with the result and 
  * is ready to work with new Java 8 features. </li>
+ * <li>Map/{@link PayzenConfig}: the configuration of ws-sdk-config.properties 
+ * can be overridden with a map, or with a configuration parsed once and 
+ * shared by the calls.</li>
  * </ul>
  * 
  * @author Javier Garcia Alonso
@@ -83,7 +89,26 @@ public final class Payment {
      */
     @SafeVarargs
 	public static ServiceResult create(String orderId, long amount, int currency, String cardNumber, int expMonth, int expYear, String cvvCode, Map<String, String> ... config) {
-        return getInstance().createSimple((config.length>0)?config[0]:null, orderId, amount, currency, cardNumber, expMonth, expYear, cvvCode);
+        return getInstance().createSimple(PayzenConfig.from((config.length>0)?config[0]:null), orderId, amount, currency, cardNumber, expMonth, expYear, cvvCode);
+    }
+
+    /**
+     * Creates a payment request using the common parameters in a simple way.<p>
+     * 
+     * Please read official documentation for more detailed information about parameters.
+     * 
+     * @param orderId Optional, null is none. The order Id. 
+     * @param amount Amount of the payment in cents
+     * @param currency used currency in ISO 4217
+     * @param cardNumber card number
+     * @param expMonth expiration month
+     * @param expYear expiration year
+     * @param cvvCode card verification code
+     * @param config configuration of the call
+     * @return result with all the response objects
+     */
+	public static ServiceResult create(String orderId, long amount, int currency, String cardNumber, int expMonth, int expYear, String cvvCode, PayzenConfig config) {
+        return getInstance().createSimple(config, orderId, amount, currency, cardNumber, expMonth, expYear, cvvCode);
     }
     
     /**
@@ -104,7 +129,27 @@ public final class Payment {
      */
     @SafeVarargs
 	public static ServiceResult create(String orderId, long amount, int currency, String cardNumber, int expMonth, int expYear, String cvvCode, ResponseHandler response, Map<String, String> ... config) {
-        return getInstance().createSimple((config.length>0)?config[0]:null, orderId, amount, currency, cardNumber, expMonth, expYear, cvvCode, response);
+        return getInstance().createSimple(PayzenConfig.from((config.length>0)?config[0]:null), orderId, amount, currency, cardNumber, expMonth, expYear, cvvCode, response);
+    }
+
+    /**
+     * Creates a payment request using the common parameters in a simple way.<p>
+     * 
+     * Please read official documentation for more detailed information about parameters.
+     * 
+     * @param orderId Optional, null is none. The order Id. 
+     * @param amount Amount of the payment in cents
+     * @param currency used currency in ISO 4217
+     * @param cardNumber card number
+     * @param expMonth expiration month
+     * @param expYear expiration year
+     * @param cvvCode card verification code
+     * @param response callback handler to work with the response
+     * @param config configuration of the call
+     * @return result with all the response objects
+     */
+	public static ServiceResult create(String orderId, long amount, int currency, String cardNumber, int expMonth, int expYear, String cvvCode, ResponseHandler response, PayzenConfig config) {
+        return getInstance().createSimple(config, orderId, amount, currency, cardNumber, expMonth, expYear, cvvCode, response);
     }
     
     /**
@@ -117,7 +162,19 @@ public final class Payment {
      */
     @SafeVarargs
 	public static ServiceResult create(CreatePayment createPaymentRequest, Map<String, String> ... config) {
-        return getInstance().create((config.length>0)?config[0]:null, createPaymentRequest); 
+        return getInstance().create(PayzenConfig.from((config.length>0)?config[0]:null), createPaymentRequest); 
+    }
+
+    /**
+     * Creates a payment request using the createPayment object <p>
+     * Please read official documentation for more detailed information about parameter content.
+     * 
+     * @param createPaymentRequest complex object with all the parameters for service call
+     * @param config configuration of the call
+     * @return result with all the response objects
+     */
+	public static ServiceResult create(CreatePayment createPaymentRequest, PayzenConfig config) {
+        return getInstance().create(config, createPaymentRequest); 
     }
     
     /**
@@ -132,7 +189,21 @@ public final class Payment {
      */
     @SafeVarargs
 	public static ServiceResult create(CreatePayment createPaymentRequest, ResponseHandler response, Map<String, String> ... config) {
-        return getInstance().create((config.length>0)?config[0]:null, createPaymentRequest, response); 
+        return getInstance().create(PayzenConfig.from((config.length>0)?config[0]:null), createPaymentRequest, response); 
+    }
+
+    /**
+     * Creates a payment request using the {@link CreatePayment} object <p>
+     * 
+     * Please read official documentation for more detailed information about parameter content.
+     * 
+     * @param createPaymentRequest complex object with all the parameters for service call
+     * @param response callback handler to work with the response
+     * @param config configuration of the call
+     * @return result with all the response objects
+     */
+	public static ServiceResult create(CreatePayment createPaymentRequest, ResponseHandler response, PayzenConfig config) {
+        return getInstance().create(config, createPaymentRequest, response); 
     }
     
     /**
@@ -147,7 +218,21 @@ public final class Payment {
      */
     @SafeVarargs
 	public static ServiceResult create(String paRes, String MD, Map<String, String> ... config) {
-        return getInstance().create3DS((config.length>0)?config[0]:null, paRes, MD);
+        return getInstance().create3DS(PayzenConfig.from((config.length>0)?config[0]:null), paRes, MD);
+    }
+
+    /**
+     * Creates a payment in the system after returning from ACS (payment 3DS) .<p>
+     * 
+     * Please read official documentation for more detailed information about parameters.
+     * 
+     * @param paRes Response from ACS
+     * @param MD Payment session information
+     * @param config configuration of the call
+     * @return result with all the response objects
+     */
+	public static ServiceResult create(String paRes, String MD, PayzenConfig config) {
+        return getInstance().create3DS(config, paRes, MD);
     }
     
     /**
@@ -163,7 +248,22 @@ public final class Payment {
      */
     @SafeVarargs
 	public static ServiceResult create(String paRes, String MD, ResponseHandler response, Map<String, String> ... config) {
-        return getInstance().create3DS((config.length>0)?config[0]:null, paRes, MD, response);
+        return getInstance().create3DS(PayzenConfig.from((config.length>0)?config[0]:null), paRes, MD, response);
+    }
+
+    /**
+     * Creates a payment in the system after returning from ACS (payment 3DS) .<p>
+     * 
+     * Please read official documentation for more detailed information about parameters.
+     * 
+     * @param paRes Response from ACS
+     * @param MD Payment session information
+     * @param response callback handler to work with the response
+     * @param config configuration of the call
+     * @return result with all the response objects
+     */
+	public static ServiceResult create(String paRes, String MD, ResponseHandler response, PayzenConfig config) {
+        return getInstance().create3DS(config, paRes, MD, response);
     }
     
     /**
@@ -177,7 +277,20 @@ public final class Payment {
      */
     @SafeVarargs
 	public static ServiceResult details(String uuidTransaction, Map<String, String> ... config) {
-        return getInstance().detailsSimple((config.length>0)?config[0]:null, uuidTransaction);
+        return getInstance().detailsSimple(PayzenConfig.from((config.length>0)?config[0]:null), uuidTransaction);
+    }
+
+    /**
+     * Get all the details of an existing transaction using the UUID of the transaction<p>
+     * 
+     * Please read official documentation for more detailed information about parameter content.
+     * 
+     * @param uuidTransaction unique identifier of the transaction
+     * @param config configuration of the call
+     * @return result with all the response objects
+     */
+	public static ServiceResult details(String uuidTransaction, PayzenConfig config) {
+        return getInstance().detailsSimple(config, uuidTransaction);
     }
     
     /**
@@ -192,7 +305,21 @@ public final class Payment {
      */
     @SafeVarargs
 	public static ServiceResult details(String transactionId, Date creationDate, int sequenceNumber, Map<String, String> ... config) {
-        return getInstance().detailsByFind((config.length>0)?config[0]:null, transactionId, creationDate, sequenceNumber);
+        return getInstance().detailsByFind(PayzenConfig.from((config.length>0)?config[0]:null), transactionId, creationDate, sequenceNumber);
+    }
+
+    /**
+     * Get all the details of an existing transaction using the three key field that identify a transaction uniquely<p>
+     * Please read official documentation for more detailed information about parameter content.
+     * 
+     * @param transactionId the transaction id number
+     * @param creationDate the creation date. It only takes the day into account
+     * @param sequenceNumber the sequence number in case o multiple payment. Always 1 in case of simple payment
+     * @param config configuration of the call
+     * @return result with all the response objects
+     */
+	public static ServiceResult details(String transactionId, Date creationDate, int sequenceNumber, PayzenConfig config) {
+        return getInstance().detailsByFind(config, transactionId, creationDate, sequenceNumber);
     }
     
     /**
@@ -206,7 +333,20 @@ public final class Payment {
      */
     @SafeVarargs
 	public static ServiceResult details(String uuidTransaction, ResponseHandler response, Map<String, String> ... config) {
-        return getInstance().detailsSimple((config.length>0)?config[0]:null, uuidTransaction, response);
+        return getInstance().detailsSimple(PayzenConfig.from((config.length>0)?config[0]:null), uuidTransaction, response);
+    }
+
+    /**
+     * Get all the details of an existing transaction using the UUID of the transaction<p>
+     * Please read official documentation for more detailed information about parameter content.
+     * 
+     * @param uuidTransaction unique identifier of the transaction
+     * @param response callback handler to work with the response
+     * @param config configuration of the call
+     * @return result with all the response objects
+     */
+	public static ServiceResult details(String uuidTransaction, ResponseHandler response, PayzenConfig config) {
+        return getInstance().detailsSimple(config, uuidTransaction, response);
     }
     
     /**
@@ -222,7 +362,90 @@ public final class Payment {
      */
     @SafeVarargs
 	public static ServiceResult details(String transactionId, Date creationDate, int sequenceNumber, ResponseHandler response, Map<String, String> ... config) {
-        return getInstance().detailsByFind((config.length>0)?config[0]:null, transactionId, creationDate, sequenceNumber, response);
+        return getInstance().detailsByFind(PayzenConfig.from((config.length>0)?config[0]:null), transactionId, creationDate, sequenceNumber, response);
+    }
+
+    /**
+     * Get all the details of an existing transaction using the three key field that identify a transaction uniquely<p>
+     * Please read official documentation for more detailed information about parameter content.
+     * 
+     * @param transactionId the transaction id number
+     * @param creationDate the creation date. It only takes the day into account
+     * @param sequenceNumber the sequence number in case o multiple payment. Always 1 in case of simple payment
+     * @param response callback handler to work with the response
+     * @param config configuration of the call
+     * @return result with all the response objects
+     */
+	public static ServiceResult details(String transactionId, Date creationDate, int sequenceNumber, ResponseHandler response, PayzenConfig config) {
+        return getInstance().detailsByFind(config, transactionId, creationDate, sequenceNumber, response);
+    }
+
+    /**
+     * Get only some sections of the details of an existing transaction using the UUID of the transaction<p>
+     *
+     * The sections that are not requested are null in the result. With the streamingParser option they are not
+     * even decoded.
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param uuidTransaction unique identifier of the transaction
+     * @param sections sections needed, e.g. EnumSet.of(ResponseSection.PAYMENT, ResponseSection.ORDER)
+     * @param config OPTIONAL, allows to override configuration at runtime
+     * @return result with the requested response objects
+     */
+    @SafeVarargs
+    public static ServiceResult details(String uuidTransaction, Set<ResponseSection> sections, Map<String, String> ... config) {
+        return getInstance().detailsSimple(PayzenConfig.from((config.length>0)?config[0]:null), uuidTransaction, sections);
+    }
+
+    /**
+     * Get only some sections of the details of an existing transaction using the UUID of the transaction<p>
+     *
+     * The sections that are not requested are null in the result. With the streamingParser option they are not
+     * even decoded.
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param uuidTransaction unique identifier of the transaction
+     * @param sections sections needed, e.g. EnumSet.of(ResponseSection.PAYMENT, ResponseSection.ORDER)
+     * @param config configuration of the call
+     * @return result with the requested response objects
+     */
+    public static ServiceResult details(String uuidTransaction, Set<ResponseSection> sections, PayzenConfig config) {
+        return getInstance().detailsSimple(config, uuidTransaction, sections);
+    }
+
+    /**
+     * Get only some sections of the details of an existing transaction using the UUID of the transaction<p>
+     *
+     * The sections that are not requested are null in the result. With the streamingParser option they are not
+     * even decoded.
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param uuidTransaction unique identifier of the transaction
+     * @param sections sections needed, e.g. EnumSet.of(ResponseSection.PAYMENT, ResponseSection.ORDER)
+     * @param response callback handler to work with the response
+     * @param config OPTIONAL, allows to override configuration at runtime
+     * @return result with the requested response objects
+     */
+    @SafeVarargs
+    public static ServiceResult details(String uuidTransaction, Set<ResponseSection> sections, ResponseHandler response, Map<String, String> ... config) {
+        return getInstance().detailsSimple(PayzenConfig.from((config.length>0)?config[0]:null), uuidTransaction, sections, response);
+    }
+
+    /**
+     * Get only some sections of the details of an existing transaction using the UUID of the transaction<p>
+     *
+     * The sections that are not requested are null in the result. With the streamingParser option they are not
+     * even decoded.
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param uuidTransaction unique identifier of the transaction
+     * @param sections sections needed, e.g. EnumSet.of(ResponseSection.PAYMENT, ResponseSection.ORDER)
+     * @param response callback handler to work with the response
+     * @param config configuration of the call
+     * @return result with the requested response objects
+     */
+    public static ServiceResult details(String uuidTransaction, Set<ResponseSection> sections, ResponseHandler response, PayzenConfig config) {
+        return getInstance().detailsSimple(config, uuidTransaction, sections, response);
     }
 
     /**
@@ -236,7 +459,20 @@ public final class Payment {
      */
     @SafeVarargs
     public static ServiceResult detailsByOrderId(String orderId, Map<String, String> ... config) {
-        return getInstance().detailsByFind((config.length>0)?config[0]:null, orderId);
+        return getInstance().detailsByFind(PayzenConfig.from((config.length>0)?config[0]:null), orderId);
+    }
+
+    /**
+     * Get all the details of an existing transaction using the order Id<p> As the order Id is not unique, we can have
+     * several transactions as response.
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param orderId the order Id
+     * @param config configuration of the call
+     * @return result with all the response objects
+     */
+    public static ServiceResult detailsByOrderId(String orderId, PayzenConfig config) {
+        return getInstance().detailsByFind(config, orderId);
     }
 
     /**
@@ -251,7 +487,52 @@ public final class Payment {
      */
     @SafeVarargs
     public static ServiceResult detailsByOrderId(String orderId, ResponseHandler response, Map<String, String> ... config) {
-        return getInstance().detailsByFind((config.length>0)?config[0]:null, orderId, response);
+        return getInstance().detailsByFind(PayzenConfig.from((config.length>0)?config[0]:null), orderId, response);
+    }
+
+    /**
+     * Get all the details of an existing transaction using the order Id<p> As the order Id is not unique, we can have
+     * several transactions as response.
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param orderId the order Id
+     * @param response callback handler to work with the response
+     * @param config configuration of the call
+     * @return result with all the response objects
+     */
+    public static ServiceResult detailsByOrderId(String orderId, ResponseHandler response, PayzenConfig config) {
+        return getInstance().detailsByFind(config, orderId, response);
+    }
+
+    /**
+     * Get the transactions of an order as a stream, decoded one by one while the response is read, so memory stays
+     * bounded whatever the number of transactions.<p>
+     * The stream holds the HTTP connection: close it (try-with-resources) if it is not consumed until the end.
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param orderId the order Id
+     * @param config OPTIONAL, allows to override configuration at runtime
+     * @return stream of the transactions of the order
+     * @throws ResponseCodeException if the response code is not 0 (e.g. unknown order)
+     */
+    @SafeVarargs
+    public static Stream<TransactionItem> findPaymentsStream(String orderId, Map<String, String> ... config) {
+        return getInstance().findPaymentsStream(PayzenConfig.from((config.length>0)?config[0]:null), orderId);
+    }
+
+    /**
+     * Get the transactions of an order as a stream, decoded one by one while the response is read, so memory stays
+     * bounded whatever the number of transactions.<p>
+     * The stream holds the HTTP connection: close it (try-with-resources) if it is not consumed until the end.
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param orderId the order Id
+     * @param config configuration of the call
+     * @return stream of the transactions of the order
+     * @throws ResponseCodeException if the response code is not 0 (e.g. unknown order)
+     */
+    public static Stream<TransactionItem> findPaymentsStream(String orderId, PayzenConfig config) {
+        return getInstance().findPaymentsStream(config, orderId);
     }
     
     /**
@@ -265,7 +546,20 @@ public final class Payment {
      */
     @SafeVarargs
 	public static ServiceResult cancel(String uuidTransaction, Map<String, String> ... config) {
-        return getInstance().cancelSimple((config.length>0)?config[0]:null, uuidTransaction);
+        return getInstance().cancelSimple(PayzenConfig.from((config.length>0)?config[0]:null), uuidTransaction);
+    }
+
+    /**
+     * Cancel an existing transaction using the UUID of the transaction<p>
+     * 
+     * Please read official documentation for more detailed information about parameter content.
+     * 
+     * @param uuidTransaction unique identifier of the transaction
+     * @param config configuration of the call
+     * @return result with all the response objects
+     */
+	public static ServiceResult cancel(String uuidTransaction, PayzenConfig config) {
+        return getInstance().cancelSimple(config, uuidTransaction);
     }
     
     /**
@@ -280,7 +574,21 @@ public final class Payment {
      */
     @SafeVarargs
 	public static ServiceResult cancel(String transactionId, Date creationDate, int sequenceNumber, Map<String, String> ... config) {
-        return getInstance().cancelByFind((config.length>0)?config[0]:null, transactionId, creationDate, sequenceNumber);
+        return getInstance().cancelByFind(PayzenConfig.from((config.length>0)?config[0]:null), transactionId, creationDate, sequenceNumber);
+    }
+
+    /**
+     * Cancel an existing transaction using the three key field that identify a transaction uniquely<p>
+     * Please read official documentation for more detailed information about parameter content.
+     * 
+     * @param transactionId the transaction id number
+     * @param creationDate the creation date. It only takes the day into account
+     * @param sequenceNumber the sequence number in case o multiple payment. Always 1 in case of simple payment
+     * @param config configuration of the call
+     * @return result with all the response objects
+     */
+	public static ServiceResult cancel(String transactionId, Date creationDate, int sequenceNumber, PayzenConfig config) {
+        return getInstance().cancelByFind(config, transactionId, creationDate, sequenceNumber);
     }
     
     /**
@@ -294,7 +602,20 @@ public final class Payment {
      */
     @SafeVarargs
 	public static ServiceResult cancel(String uuidTransaction, ResponseHandler response, Map<String, String> ... config) {
-        return getInstance().cancelSimple((config.length>0)?config[0]:null, uuidTransaction, response);
+        return getInstance().cancelSimple(PayzenConfig.from((config.length>0)?config[0]:null), uuidTransaction, response);
+    }
+
+    /**
+     * Cancel an existing transaction using the UUID of the transaction<p>
+     * Please read official documentation for more detailed information about parameter content.
+     * 
+     * @param uuidTransaction unique identifier of the transaction
+     * @param response callback handler to work with the response
+     * @param config configuration of the call
+     * @return result with all the response objects
+     */
+	public static ServiceResult cancel(String uuidTransaction, ResponseHandler response, PayzenConfig config) {
+        return getInstance().cancelSimple(config, uuidTransaction, response);
     }
     
     /**
@@ -310,7 +631,22 @@ public final class Payment {
      */
     @SafeVarargs
 	public static ServiceResult cancel(String transactionId, Date creationDate, int sequenceNumber, ResponseHandler response, Map<String, String> ... config) {
-        return getInstance().cancelByFind((config.length>0)?config[0]:null, transactionId, creationDate, sequenceNumber, response);
+        return getInstance().cancelByFind(PayzenConfig.from((config.length>0)?config[0]:null), transactionId, creationDate, sequenceNumber, response);
+    }
+
+    /**
+     * Cancel an existing transaction using the three key field that identify a transaction uniquely<p>
+     * Please read official documentation for more detailed information about parameter content.
+     * 
+     * @param transactionId the transaction id number
+     * @param creationDate the creation date. It only takes the day into account
+     * @param sequenceNumber the sequence number in case o multiple payment. Always 1 in case of simple payment
+     * @param response callback handler to work with the response
+     * @param config configuration of the call
+     * @return result with all the response objects
+     */
+	public static ServiceResult cancel(String transactionId, Date creationDate, int sequenceNumber, ResponseHandler response, PayzenConfig config) {
+        return getInstance().cancelByFind(config, transactionId, creationDate, sequenceNumber, response);
     }
     
     /**
@@ -327,7 +663,23 @@ public final class Payment {
      */
     @SafeVarargs
 	public static ServiceResult update(String uuidTransaction, long amount, int currency, ResponseHandler response, Map<String, String> ... config) {
-        return getInstance().updateSimple((config.length>0)?config[0]:null, uuidTransaction, amount, currency);
+        return getInstance().updateSimple(PayzenConfig.from((config.length>0)?config[0]:null), uuidTransaction, amount, currency, response);
+    }
+
+    /**
+     * Updates an existing transaction using the UUID of the transaction<p>
+     * 
+     * Please read official documentation for more detailed information about parameter content.
+     * 
+     * @param uuidTransaction unique identifier of the transaction
+     * @param amount the new amount for the transaction
+     * @param currency the currency of the transaction
+     * @param response callback handler to work with the response
+     * @param config configuration of the call
+     * @return result with all the response objects
+     */
+	public static ServiceResult update(String uuidTransaction, long amount, int currency, ResponseHandler response, PayzenConfig config) {
+        return getInstance().updateSimple(config, uuidTransaction, amount, currency, response);
     }
 
     /**
@@ -343,7 +695,22 @@ public final class Payment {
      */
     @SafeVarargs
     public static ServiceResult update(String uuidTransaction, long amount, int currency, Map<String, String> ... config) {
-        return getInstance().updateSimple((config.length>0)?config[0]:null, uuidTransaction, amount, currency);
+        return getInstance().updateSimple(PayzenConfig.from((config.length>0)?config[0]:null), uuidTransaction, amount, currency);
+    }
+
+    /**
+     * Updates an existing transaction using the UUID of the transaction<p>
+     *
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param uuidTransaction unique identifier of the transaction
+     * @param amount the new amount for the transaction
+     * @param currency the currency of the transaction
+     * @param config configuration of the call
+     * @return result with all the response objects
+     */
+    public static ServiceResult update(String uuidTransaction, long amount, int currency, PayzenConfig config) {
+        return getInstance().updateSimple(config, uuidTransaction, amount, currency);
     }
 
     /**
@@ -359,7 +726,22 @@ public final class Payment {
      */
     @SafeVarargs
 	public static ServiceResult update(String uuidTransaction, Date captureDate, ResponseHandler response,  Map<String, String> ... config) {
-        return getInstance().updateSimple((config.length>0)?config[0]:null, uuidTransaction, captureDate);
+        return getInstance().updateSimple(PayzenConfig.from((config.length>0)?config[0]:null), uuidTransaction, captureDate, response);
+    }
+
+    /**
+     * Updates an existing transaction using the {@link UpdatePayment} object<p>
+     * 
+     * Please read official documentation for more detailed information about parameter content.
+     * 
+     * @param uuidTransaction unique identifier of the transaction
+     * @param captureDate the new capture date for the transaction
+     * @param response callback handler to work with the response
+     * @param config configuration of the call
+     * @return result with all the response objects
+     */
+	public static ServiceResult update(String uuidTransaction, Date captureDate, ResponseHandler response, PayzenConfig config) {
+        return getInstance().updateSimple(config, uuidTransaction, captureDate, response);
     }
 
     /**
@@ -374,7 +756,21 @@ public final class Payment {
      */
     @SafeVarargs
     public static ServiceResult validate(String uuidTransaction, String comment, Map<String, String> ... config) {
-        return getInstance().validatePayment((config.length>0)?config[0]:null, uuidTransaction, comment);
+        return getInstance().validatePayment(PayzenConfig.from((config.length>0)?config[0]:null), uuidTransaction, comment);
+    }
+
+    /**
+     * Validate an existing transaction using the UUID of the transaction<p>
+     *
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param uuidTransaction unique identifier of the transaction
+     * @param comment commentary to add to history
+     * @param config configuration of the call
+     * @return result with all the response objects
+     */
+    public static ServiceResult validate(String uuidTransaction, String comment, PayzenConfig config) {
+        return getInstance().validatePayment(config, uuidTransaction, comment);
     }
     
     /**
@@ -390,7 +786,22 @@ public final class Payment {
      */
     @SafeVarargs
 	public static ServiceResult validate(String uuidTransaction, String comment, ResponseHandler response, Map<String, String> ... config) {
-        return getInstance().validatePayment((config.length>0)?config[0]:null, uuidTransaction, comment);
+        return getInstance().validatePayment(PayzenConfig.from((config.length>0)?config[0]:null), uuidTransaction, comment, response);
+    }
+
+    /**
+     * Validate an existing transaction using the UUID of the transaction<p>
+     * 
+     * Please read official documentation for more detailed information about parameter content.
+     * 
+     * @param uuidTransaction unique identifier of the transaction
+     * @param comment commentary to add to history
+     * @param response callback handler to work with the response
+     * @param config configuration of the call
+     * @return result with all the response objects
+     */
+	public static ServiceResult validate(String uuidTransaction, String comment, ResponseHandler response, PayzenConfig config) {
+        return getInstance().validatePayment(config, uuidTransaction, comment, response);
     }
     
     /**
@@ -405,7 +816,21 @@ public final class Payment {
      */
     @SafeVarargs
 	public static ServiceResult createToken(String uuidTransaction, String comment, Map<String, String> ... config) {
-        return getInstance().createTokenFromTransaction((config.length>0)?config[0]:null, uuidTransaction, comment);
+        return getInstance().createTokenFromTransaction(PayzenConfig.from((config.length>0)?config[0]:null), uuidTransaction, comment);
+    }
+
+    /**
+     * Create a token using the card data an existing transaction using the UUID of the transaction<p>
+     * 
+     * Please read official documentation for more detailed information about parameter content.
+     * 
+     * @param uuidTransaction unique identifier of the transaction
+     * @param comment commentary to add to history
+     * @param config configuration of the call
+     * @return result with all the response objects
+     */
+	public static ServiceResult createToken(String uuidTransaction, String comment, PayzenConfig config) {
+        return getInstance().createTokenFromTransaction(config, uuidTransaction, comment);
     }
     
     /**
@@ -422,7 +847,74 @@ public final class Payment {
      */
     @SafeVarargs
 	public static ServiceResult refund(String uuidTransaction, long amount, int currency, String comment, Map<String, String> ... config) {
-        return getInstance().refund((config.length>0)?config[0]:null, uuidTransaction, amount, currency, comment);
+        return getInstance().refund(PayzenConfig.from((config.length>0)?config[0]:null), uuidTransaction, amount, currency, comment);
+    }
+
+    /**
+     * Refund a payment using the transaction UUID <p>
+     * 
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param uuidTransaction unique identifier of the transaction
+     * @param amount Amount to refund in cents
+     * @param currency used currency in ISO 4217
+     * @param comment commentary to add to history
+     * @param config configuration of the call
+     * @return result with all the response objects
+     */
+	public static ServiceResult refund(String uuidTransaction, long amount, int currency, String comment, PayzenConfig config) {
+        return getInstance().refund(config, uuidTransaction, amount, currency, comment);
+    }
+
+    /**
+     * Prepares the SDK for the first calls of a configuration, without
+     * opening connections, see {@link #warmUp(PayzenConfig, int)}
+     *
+     * @param config OPTIONAL, allows to override configuration at runtime
+     * @return time spent in each step
+     */
+    @SafeVarargs
+    public static WarmUpReport warmUp(Map<String, String> ... config) {
+        return warmUp(PayzenConfig.from((config.length>0)?config[0]:null), 0);
+    }
+
+    /**
+     * Prepares the SDK for the first calls of a configuration, without
+     * opening connections, see {@link #warmUp(PayzenConfig, int)}
+     *
+     * @param config configuration of the calls
+     * @return time spent in each step
+     */
+    public static WarmUpReport warmUp(PayzenConfig config) {
+        return warmUp(config, 0);
+    }
+
+    /**
+     * Prepares the SDK for the first calls of a configuration, typically when
+     * the application starts, so that the first payments after a deploy do
+     * not pay for it: initialises the JAX-WS runtime (WSDL, runtime model and
+     * JAXB context, shared by the next clients), initialises the Mac that
+     * signs the headers and opens connections to the endpoint if requested.
+     * A {@link PaymentClient} also fills its pool of ports with
+     * {@link PaymentClient#warmUp(int)}.
+     *
+     * @param config configuration of the calls
+     * @param connections number of connections to open, 0 for none
+     * @return time spent in each step
+     * @throws javax.xml.ws.WebServiceException if the WSDL cannot be loaded or the endpoint cannot be reached
+     */
+    public static WarmUpReport warmUp(PayzenConfig config, int connections) {
+        return WarmUp.run(config, null, connections);
+    }
+
+    /**
+     * Runs {@link #warmUp(PayzenConfig, int)} in a background daemon thread
+     *
+     * @param config configuration of the calls
+     * @param connections number of connections to open, 0 for none
+     * @return time spent in each step, or the exception thrown
+     */
+    public static CompletableFuture<WarmUpReport> warmUpAsync(PayzenConfig config, int connections) {
+        return WarmUp.runAsync(config, connections);
     }
-    
 }
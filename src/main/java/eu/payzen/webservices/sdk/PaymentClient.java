@@ -0,0 +1,774 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import com.lyra.vads.ws.v5.*;
+
+import eu.payzen.webservices.sdk.client.ClientV5;
+import eu.payzen.webservices.sdk.client.StreamingClientV5;
+import eu.payzen.webservices.sdk.metrics.DefaultMetricsRegistry;
+
+/**
+ * Client of the payment operations for one configuration, with the same
+ * operations as {@link Payment}.<p>
+ *
+ * Unlike the static facade, which resolves the configuration and creates a
+ * client for each call, a PaymentClient parses its
+ * {@link PayzenConfig} once and keeps the ports it has created in a pool, so
+ * that only the first calls pay for their creation. It is thread-safe: each
+ * call takes a port from the pool and gives it back when it ends. An
+ * application working with several shops can keep one client per shop.
+ * <pre>
+ * try (PaymentClient client = PaymentClient.getBuilder().config(config).build()) {
+ *     ServiceResult result = client.details(uuid);
+ *     CompletableFuture&lt;ServiceResult&gt; refund = client.async(c -&gt; c.refund(uuid, 100, 978, "Refund"));
+ * }
+ * </pre>
+ * {@link #warmUp(int)} creates the ports beforehand, so that the first
+ * payments after a deploy do not wait for them.<p>
+ *
+ * The calls are also recorded in the metrics of the client
+ * ({@link #getMetrics()}), besides the global ones. Closing the client
+ * releases its ports and stops its executor; calls made afterwards throw
+ * an {@link IllegalStateException}.
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class PaymentClient implements Closeable {
+
+    public static final int DEFAULT_POOL_SIZE = 8;
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final PayzenConfig config;
+    private final int poolSize;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final DefaultMetricsRegistry metrics = new DefaultMetricsRegistry();
+    private final ConcurrentLinkedDeque<Lease> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private volatile StreamingClientV5 asyncClient;
+    private volatile boolean closed;
+
+    private PaymentClient(Builder builder) {
+        this.config = builder.config != null ? builder.config : PayzenConfig.getDefault();
+        this.poolSize = builder.poolSize;
+        this.ownsExecutor = builder.executor == null;
+        this.executor = ownsExecutor ? Executors.newCachedThreadPool(threadFactory(config.getShopId()))
+                : builder.executor;
+    }
+
+    public static Builder getBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Creates a client with the default pool size and executor
+     *
+     * @param config configuration of the calls
+     * @return new client, to be closed
+     */
+    public static PaymentClient create(PayzenConfig config) {
+        return getBuilder().config(config).build();
+    }
+
+    public PayzenConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Gets the metrics of the calls made by this client only
+     *
+     * @return registry of the client
+     */
+    public DefaultMetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Runs operations of this client with its executor
+     *
+     * @param operation operations to run (e.g. <code>c -&gt; c.details(uuid)</code>)
+     * @param <T> type of the result
+     * @return result of the operations
+     */
+    public <T> CompletableFuture<T> async(Function<PaymentClient, T> operation) {
+        checkOpen();
+        return CompletableFuture.supplyAsync(() -> operation.apply(this), executor);
+    }
+
+    /**
+     * Creates a payment without waiting for the response. With a
+     * non-blocking transport (<code>httpTransport=jdk</code>) the request is
+     * written by the streaming client and no thread is held until the
+     * response arrives; the result then has no HTTP session id. Otherwise
+     * the call is made as {@link #create(CreatePayment)} with the executor.
+     *
+     * @param createPaymentRequest complex object with all the parameters for service call
+     * @return result with all the response objects
+     */
+    public CompletableFuture<ServiceResult> createAsync(CreatePayment createPaymentRequest) {
+        StreamingClientV5 client = nonBlockingClient();
+        if (client == null) {
+            return async(c -> c.create(createPaymentRequest));
+        }
+        long start = System.nanoTime();
+        return record("createPayment", start, client.createPaymentAsync(createPaymentRequest, executor)
+                .thenApply(result -> new ServiceResult(result, null)));
+    }
+
+    /**
+     * Gets the details of a transaction without waiting for the response,
+     * see {@link #createAsync(CreatePayment)}
+     *
+     * @param uuidTransaction unique identifier of the transaction
+     * @param sections sections needed by the caller, null for all of them
+     * @return result with the requested response objects
+     */
+    public CompletableFuture<ServiceResult> detailsAsync(String uuidTransaction, Set<ResponseSection> sections) {
+        StreamingClientV5 client = nonBlockingClient();
+        if (client == null) {
+            return async(c -> c.details(uuidTransaction, sections));
+        }
+        QueryRequest queryRequest = new QueryRequest();
+        queryRequest.setUuid(uuidTransaction);
+        long start = System.nanoTime();
+        return record("getPaymentDetails", start, client.getPaymentDetailsAsync(queryRequest, new ExtendedResponseRequest(),
+                ResponseSection.elementNames(sections), executor)
+                .thenApply(result -> new ServiceResult(result, sections)));
+    }
+
+    // Client shared by the non-blocking calls, which do not change its state; null if the transport blocks
+    private StreamingClientV5 nonBlockingClient() {
+        checkOpen();
+        StreamingClientV5 client = asyncClient;
+        if (client == null) {
+            client = new StreamingClientV5(config);
+            asyncClient = client;
+        }
+        return client.isNonBlocking() ? client : null;
+    }
+
+    private CompletableFuture<ServiceResult> record(String operation, long start, CompletableFuture<ServiceResult> call) {
+        return call.whenComplete((result, error) -> metrics.recordCall(operation, config.getShopId(),
+                System.nanoTime() - start, responseCode(result),
+                error instanceof CompletionException && error.getCause() != null ? error.getCause() : error));
+    }
+
+    /**
+     * Prepares the client for its first calls, see {@link #warmUp(int)}
+     *
+     * @return time spent in each step
+     */
+    public WarmUpReport warmUp() {
+        return warmUp(0);
+    }
+
+    /**
+     * Prepares the client for its first calls: initialises the JAX-WS runtime
+     * (WSDL, runtime model and JAXB context), fills the pool with ports up to
+     * its size, initialises the Mac that signs the headers and opens
+     * connections to the endpoint if requested (see
+     * {@link eu.payzen.webservices.sdk.transport.HttpTransports#openConnections(PayzenConfig, int)}).
+     *
+     * @param connections number of connections to open, 0 for none
+     * @return time spent in each step
+     * @throws javax.xml.ws.WebServiceException if the WSDL cannot be loaded or the endpoint cannot be reached
+     */
+    public WarmUpReport warmUp(int connections) {
+        checkOpen();
+        return WarmUp.run(config, this::fillPool, connections);
+    }
+
+    /**
+     * Runs {@link #warmUp(int)} with the executor of the client, e.g. while
+     * the application starts
+     *
+     * @param connections number of connections to open, 0 for none
+     * @return time spent in each step
+     */
+    public CompletableFuture<WarmUpReport> warmUpAsync(int connections) {
+        checkOpen();
+        return CompletableFuture.supplyAsync(() -> warmUp(connections), executor);
+    }
+
+    // Adds ports to the pool until it is full
+    private void fillPool() {
+        Deque<Lease> leases = new ArrayDeque<>();
+        try {
+            for (int i = idleCount.get(); i < poolSize; i++) {
+                Lease lease = new Lease();
+                lease.port(config);
+                leases.add(lease);
+            }
+        } finally {
+            for (Lease lease : leases) {
+                release(lease);
+            }
+        }
+    }
+
+    /**
+     * Releases the pooled ports and stops the executor if it has been created
+     * by the client. Calls in progress are completed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Lease lease;
+        while ((lease = idle.pollFirst()) != null) {
+            idleCount.decrementAndGet();
+            lease.close();
+        }
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    // Number of pooled ports ready to be used
+    int getIdleCount() {
+        return idleCount.get();
+    }
+
+    /**
+     * Creates a payment request using the common parameters in a simple way.<p>
+     *
+     * Please read official documentation for more detailed information about parameters.
+     *
+     * @param orderId Optional, null is none. The order Id.
+     * @param amount Amount of the payment in cents
+     * @param currency used currency in ISO 4217
+     * @param cardNumber card number
+     * @param expMonth expiration month
+     * @param expYear expiration year
+     * @param cvvCode card verification code
+     * @return result with all the response objects
+     */
+    public ServiceResult create(String orderId, long amount, int currency, String cardNumber, int expMonth, int expYear, String cvvCode) {
+        return call("createPayment", instance -> instance.createSimple(config, orderId, amount, currency, cardNumber, expMonth, expYear, cvvCode));
+    }
+
+    /**
+     * Creates a payment request using the common parameters in a simple way.<p>
+     *
+     * Please read official documentation for more detailed information about parameters.
+     *
+     * @param orderId Optional, null is none. The order Id.
+     * @param amount Amount of the payment in cents
+     * @param currency used currency in ISO 4217
+     * @param cardNumber card number
+     * @param expMonth expiration month
+     * @param expYear expiration year
+     * @param cvvCode card verification code
+     * @param response callback handler to work with the response
+     * @return result with all the response objects
+     */
+    public ServiceResult create(String orderId, long amount, int currency, String cardNumber, int expMonth, int expYear, String cvvCode, ResponseHandler response) {
+        return call("createPayment", instance -> instance.createSimple(config, orderId, amount, currency, cardNumber, expMonth, expYear, cvvCode, response));
+    }
+
+    /**
+     * Creates a payment request using the createPayment object <p>
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param createPaymentRequest complex object with all the parameters for service call
+     * @return result with all the response objects
+     */
+    public ServiceResult create(CreatePayment createPaymentRequest) {
+        return call("createPayment", instance -> instance.create(config, createPaymentRequest));
+    }
+
+    /**
+     * Creates a payment request using the {@link CreatePayment} object <p>
+     *
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param createPaymentRequest complex object with all the parameters for service call
+     * @param response callback handler to work with the response
+     * @return result with all the response objects
+     */
+    public ServiceResult create(CreatePayment createPaymentRequest, ResponseHandler response) {
+        return call("createPayment", instance -> instance.create(config, createPaymentRequest, response));
+    }
+
+    /**
+     * Creates a payment in the system after returning from ACS (payment 3DS) .<p>
+     *
+     * Please read official documentation for more detailed information about parameters.
+     *
+     * @param paRes Response from ACS
+     * @param MD Payment session information
+     * @return result with all the response objects
+     */
+    public ServiceResult create(String paRes, String MD) {
+        return call("createPayment", instance -> instance.create3DS(config, paRes, MD));
+    }
+
+    /**
+     * Creates a payment in the system after returning from ACS (payment 3DS) .<p>
+     *
+     * Please read official documentation for more detailed information about parameters.
+     *
+     * @param paRes Response from ACS
+     * @param MD Payment session information
+     * @param response callback handler to work with the response
+     * @return result with all the response objects
+     */
+    public ServiceResult create(String paRes, String MD, ResponseHandler response) {
+        return call("createPayment", instance -> instance.create3DS(config, paRes, MD, response));
+    }
+
+    /**
+     * Get all the details of an existing transaction using the UUID of the transaction<p>
+     *
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param uuidTransaction unique identifier of the transaction
+     * @return result with all the response objects
+     */
+    public ServiceResult details(String uuidTransaction) {
+        return call("getPaymentDetails", instance -> instance.detailsSimple(config, uuidTransaction));
+    }
+
+    /**
+     * Get all the details of an existing transaction using the three key field that identify a transaction uniquely<p>
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param transactionId the transaction id number
+     * @param creationDate the creation date. It only takes the day into account
+     * @param sequenceNumber the sequence number in case o multiple payment. Always 1 in case of simple payment
+     * @return result with all the response objects
+     */
+    public ServiceResult details(String transactionId, Date creationDate, int sequenceNumber) {
+        return call("getPaymentDetails", instance -> instance.detailsByFind(config, transactionId, creationDate, sequenceNumber));
+    }
+
+    /**
+     * Get all the details of an existing transaction using the UUID of the transaction<p>
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param uuidTransaction unique identifier of the transaction
+     * @param response callback handler to work with the response
+     * @return result with all the response objects
+     */
+    public ServiceResult details(String uuidTransaction, ResponseHandler response) {
+        return call("getPaymentDetails", instance -> instance.detailsSimple(config, uuidTransaction, response));
+    }
+
+    /**
+     * Get all the details of an existing transaction using the three key field that identify a transaction uniquely<p>
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param transactionId the transaction id number
+     * @param creationDate the creation date. It only takes the day into account
+     * @param sequenceNumber the sequence number in case o multiple payment. Always 1 in case of simple payment
+     * @param response callback handler to work with the response
+     * @return result with all the response objects
+     */
+    public ServiceResult details(String transactionId, Date creationDate, int sequenceNumber, ResponseHandler response) {
+        return call("getPaymentDetails", instance -> instance.detailsByFind(config, transactionId, creationDate, sequenceNumber, response));
+    }
+
+    /**
+     * Get only some sections of the details of an existing transaction using the UUID of the transaction<p>
+     *
+     * The sections that are not requested are null in the result. With the streamingParser option they are not
+     * even decoded.
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param uuidTransaction unique identifier of the transaction
+     * @param sections sections needed, e.g. EnumSet.of(ResponseSection.PAYMENT, ResponseSection.ORDER)
+     * @return result with the requested response objects
+     */
+    public ServiceResult details(String uuidTransaction, Set<ResponseSection> sections) {
+        return call("getPaymentDetails", instance -> instance.detailsSimple(config, uuidTransaction, sections));
+    }
+
+    /**
+     * Get only some sections of the details of an existing transaction using the UUID of the transaction<p>
+     *
+     * The sections that are not requested are null in the result. With the streamingParser option they are not
+     * even decoded.
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param uuidTransaction unique identifier of the transaction
+     * @param sections sections needed, e.g. EnumSet.of(ResponseSection.PAYMENT, ResponseSection.ORDER)
+     * @param response callback handler to work with the response
+     * @return result with the requested response objects
+     */
+    public ServiceResult details(String uuidTransaction, Set<ResponseSection> sections, ResponseHandler response) {
+        return call("getPaymentDetails", instance -> instance.detailsSimple(config, uuidTransaction, sections, response));
+    }
+
+    /**
+     * Get all the details of an existing transaction using the order Id<p> As the order Id is not unique, we can have
+     * several transactions as response.
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param orderId the order Id
+     * @return result with all the response objects
+     */
+    public ServiceResult detailsByOrderId(String orderId) {
+        return call("findPayments", instance -> instance.detailsByFind(config, orderId));
+    }
+
+    /**
+     * Get all the details of an existing transaction using the order Id<p> As the order Id is not unique, we can have
+     * several transactions as response.
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param orderId the order Id
+     * @param response callback handler to work with the response
+     * @return result with all the response objects
+     */
+    public ServiceResult detailsByOrderId(String orderId, ResponseHandler response) {
+        return call("findPayments", instance -> instance.detailsByFind(config, orderId, response));
+    }
+
+    /**
+     * Get the transactions of an order as a stream, decoded one by one while the response is read, so memory stays
+     * bounded whatever the number of transactions.<p>
+     * The stream holds the HTTP connection: close it (try-with-resources) if it is not consumed until the end.
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param orderId the order Id
+     * @return stream of the transactions of the order
+     * @throws ResponseCodeException if the response code is not 0 (e.g. unknown order)
+     */
+    public Stream<TransactionItem> findPaymentsStream(String orderId) {
+        // Not measured, the call lasts until the stream is closed
+        return call(null, instance -> instance.findPaymentsStream(config, orderId));
+    }
+
+    /**
+     * Cancel an existing transaction using the UUID of the transaction<p>
+     *
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param uuidTransaction unique identifier of the transaction
+     * @return result with all the response objects
+     */
+    public ServiceResult cancel(String uuidTransaction) {
+        return call("cancelPayment", instance -> instance.cancelSimple(config, uuidTransaction));
+    }
+
+    /**
+     * Cancel an existing transaction using the three key field that identify a transaction uniquely<p>
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param transactionId the transaction id number
+     * @param creationDate the creation date. It only takes the day into account
+     * @param sequenceNumber the sequence number in case o multiple payment. Always 1 in case of simple payment
+     * @return result with all the response objects
+     */
+    public ServiceResult cancel(String transactionId, Date creationDate, int sequenceNumber) {
+        return call("cancelPayment", instance -> instance.cancelByFind(config, transactionId, creationDate, sequenceNumber));
+    }
+
+    /**
+     * Cancel an existing transaction using the UUID of the transaction<p>
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param uuidTransaction unique identifier of the transaction
+     * @param response callback handler to work with the response
+     * @return result with all the response objects
+     */
+    public ServiceResult cancel(String uuidTransaction, ResponseHandler response) {
+        return call("cancelPayment", instance -> instance.cancelSimple(config, uuidTransaction, response));
+    }
+
+    /**
+     * Cancel an existing transaction using the three key field that identify a transaction uniquely<p>
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param transactionId the transaction id number
+     * @param creationDate the creation date. It only takes the day into account
+     * @param sequenceNumber the sequence number in case o multiple payment. Always 1 in case of simple payment
+     * @param response callback handler to work with the response
+     * @return result with all the response objects
+     */
+    public ServiceResult cancel(String transactionId, Date creationDate, int sequenceNumber, ResponseHandler response) {
+        return call("cancelPayment", instance -> instance.cancelByFind(config, transactionId, creationDate, sequenceNumber, response));
+    }
+
+    /**
+     * Updates an existing transaction using the UUID of the transaction<p>
+     *
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param uuidTransaction unique identifier of the transaction
+     * @param amount the new amount for the transaction
+     * @param currency the currency of the transaction
+     * @param response callback handler to work with the response
+     * @return result with all the response objects
+     */
+    public ServiceResult update(String uuidTransaction, long amount, int currency, ResponseHandler response) {
+        return call("updatePayment", instance -> instance.updateSimple(config, uuidTransaction, amount, currency, response));
+    }
+
+    /**
+     * Updates an existing transaction using the UUID of the transaction<p>
+     *
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param uuidTransaction unique identifier of the transaction
+     * @param amount the new amount for the transaction
+     * @param currency the currency of the transaction
+     * @return result with all the response objects
+     */
+    public ServiceResult update(String uuidTransaction, long amount, int currency) {
+        return call("updatePayment", instance -> instance.updateSimple(config, uuidTransaction, amount, currency));
+    }
+
+    /**
+     * Updates an existing transaction using the {@link UpdatePayment} object<p>
+     *
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param uuidTransaction unique identifier of the transaction
+     * @param captureDate the new capture date for the transaction
+     * @param response callback handler to work with the response
+     * @return result with all the response objects
+     */
+    public ServiceResult update(String uuidTransaction, Date captureDate, ResponseHandler response) {
+        return call("updatePayment", instance -> instance.updateSimple(config, uuidTransaction, captureDate, response));
+    }
+
+    /**
+     * Validate an existing transaction using the UUID of the transaction<p>
+     *
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param uuidTransaction unique identifier of the transaction
+     * @param comment commentary to add to history
+     * @return result with all the response objects
+     */
+    public ServiceResult validate(String uuidTransaction, String comment) {
+        return call("validatePayment", instance -> instance.validatePayment(config, uuidTransaction, comment));
+    }
+
+    /**
+     * Validate an existing transaction using the UUID of the transaction<p>
+     *
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param uuidTransaction unique identifier of the transaction
+     * @param comment commentary to add to history
+     * @param response callback handler to work with the response
+     * @return result with all the response objects
+     */
+    public ServiceResult validate(String uuidTransaction, String comment, ResponseHandler response) {
+        return call("validatePayment", instance -> instance.validatePayment(config, uuidTransaction, comment, response));
+    }
+
+    /**
+     * Create a token using the card data an existing transaction using the UUID of the transaction<p>
+     *
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param uuidTransaction unique identifier of the transaction
+     * @param comment commentary to add to history
+     * @return result with all the response objects
+     */
+    public ServiceResult createToken(String uuidTransaction, String comment) {
+        return call("createTokenFromTransaction", instance -> instance.createTokenFromTransaction(config, uuidTransaction, comment));
+    }
+
+    /**
+     * Refund a payment using the transaction UUID <p>
+     *
+     * Please read official documentation for more detailed information about parameter content.
+     *
+     * @param uuidTransaction unique identifier of the transaction
+     * @param amount Amount to refund in cents
+     * @param currency used currency in ISO 4217
+     * @param comment commentary to add to history
+     * @return result with all the response objects
+     */
+    public ServiceResult refund(String uuidTransaction, long amount, int currency, String comment) {
+        return call("refundPayment", instance -> instance.refund(config, uuidTransaction, amount, currency, comment));
+    }
+
+    private <T> T call(String operation, Function<PaymentInstance, T> call) {
+        Lease lease = borrow();
+        long start = System.nanoTime();
+        T result = null;
+        Throwable error = null;
+        try {
+            result = call.apply(lease.instance);
+            return result;
+        } catch (RuntimeException | Error e) {
+            error = e;
+            throw e;
+        } finally {
+            if (operation != null) {
+                metrics.recordCall(operation, config.getShopId(), System.nanoTime() - start, responseCode(result), error);
+            }
+            release(lease);
+        }
+    }
+
+    private Lease borrow() {
+        checkOpen();
+        Lease lease = idle.pollFirst();
+        if (lease == null) {
+            return new Lease();
+        }
+        idleCount.decrementAndGet();
+        return lease;
+    }
+
+    // The last used lease is taken first, so that the pool shrinks back to the ports really needed
+    private void release(Lease lease) {
+        boolean open = !closed;
+        if (open && idleCount.incrementAndGet() <= poolSize) {
+            idle.offerFirst(lease);
+            // The client may have been closed meanwhile, after draining the pool
+            if (closed && idle.remove(lease)) {
+                idleCount.decrementAndGet();
+                lease.close();
+            }
+            return;
+        }
+        if (open) {
+            idleCount.decrementAndGet();
+        }
+        lease.close();
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("PaymentClient closed");
+        }
+    }
+
+    private static Integer responseCode(Object result) {
+        if (result instanceof ServiceResult && ((ServiceResult) result).getCommonResponse() != null) {
+            return ((ServiceResult) result).getCommonResponse().getResponseCode();
+        }
+        return null;
+    }
+
+    private static ThreadFactory threadFactory(final String shopId) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, "payzen-client-" + shopId + "-" + THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // Ports used by one call at a time, created on first use
+    private final class Lease implements PaymentInstance.Clients {
+        final PaymentInstance instance = new PaymentInstance(this);
+        private PaymentAPI port;
+        private StreamingClientV5 streaming;
+
+        @Override
+        public PaymentAPI port(PayzenConfig config) {
+            if (port == null) {
+                port = new ClientV5(config).getPaymentAPIImplPort();
+            }
+            return port;
+        }
+
+        @Override
+        public StreamingClientV5 streaming(PayzenConfig config) {
+            if (streaming == null) {
+                streaming = new StreamingClientV5(config);
+            }
+            return streaming;
+        }
+
+        void close() {
+            if (port instanceof Closeable) {
+                try {
+                    ((Closeable) port).close();
+                } catch (IOException e) {
+                    // Nothing else to release
+                }
+            }
+            port = null;
+            streaming = null;
+        }
+    }
+
+    /**
+     * Builder of {@link PaymentClient}
+     */
+    public static final class Builder {
+        private PayzenConfig config;
+        private int poolSize = DEFAULT_POOL_SIZE;
+        private ExecutorService executor;
+
+        private Builder() {
+        }
+
+        /**
+         * @param config configuration of the calls, the default one if not set
+         * @return this builder
+         */
+        public Builder config(PayzenConfig config) {
+            this.config = config;
+            return this;
+        }
+
+        /**
+         * @param poolSize maximum number of idle ports kept, about the number of concurrent calls
+         * @return this builder
+         */
+        public Builder poolSize(int poolSize) {
+            if (poolSize < 0) {
+                throw new IllegalArgumentException("Invalid pool size: " + poolSize);
+            }
+            this.poolSize = poolSize;
+            return this;
+        }
+
+        /**
+         * @param executor executor of {@link PaymentClient#async(Function)}, not shut down by the client.
+         *                 By default the client creates its own one
+         * @return this builder
+         */
+        public Builder executor(ExecutorService executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public PaymentClient build() {
+            return new PaymentClient(this);
+        }
+    }
+}
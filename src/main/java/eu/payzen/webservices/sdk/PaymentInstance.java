@@ -18,6 +18,11 @@ package eu.payzen.webservices.sdk;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.xml.ws.BindingProvider;
 import javax.xml.ws.handler.MessageContext;
@@ -34,6 +39,8 @@ import com.lyra.vads.ws.v5.RefundPaymentResponse.RefundPaymentResult;
 import com.lyra.vads.ws.v5.ValidatePaymentResponse.ValidatePaymentResult;
 
 import eu.payzen.webservices.sdk.client.ClientV5;
+import eu.payzen.webservices.sdk.client.StreamingClientV5;
+import eu.payzen.webservices.sdk.stream.SoapResponseIterator;
 import eu.payzen.webservices.sdk.util.BuilderUtils;
 import eu.payzen.webservices.sdk.util.RequestUtils;
 import eu.payzen.webservices.sdk.util.SessionUtils;
@@ -51,6 +58,32 @@ final class PaymentInstance {
 	// Logger
 	private static final Logger logger = LoggerFactory.getLogger(PaymentInstance.class);
 
+	// New clients for each call, as used by the static facade
+	static final Clients NEW_CLIENTS = new Clients() {
+		@Override
+		public PaymentAPI port(PayzenConfig config) {
+			return new ClientV5(config).getPaymentAPIImplPort();
+		}
+
+		@Override
+		public StreamingClientV5 streaming(PayzenConfig config) {
+			return new StreamingClientV5(config);
+		}
+	};
+
+	private final Clients clients;
+
+	PaymentInstance() {
+		this(NEW_CLIENTS);
+	}
+
+	/**
+	 * @param clients source of the clients used by the calls
+	 */
+	PaymentInstance(Clients clients) {
+		this.clients = clients;
+	}
+
 	/**
 	 * Creates a payment request using the common parameters in a simple way.
 	 * <p>
@@ -77,10 +110,8 @@ final class PaymentInstance {
 	 *
 	 * @see Payment#create(String, long, int, String, int, int, String, Map[])
 	 */
-	ServiceResult createSimple(Map<String, String> config, String orderId, long amount, int currency, String cardNumber,
+	ServiceResult createSimple(PayzenConfig config, String orderId, long amount, int currency, String cardNumber,
 			int expMonth, int expYear, String cvvCode) {
-		PaymentAPI api = new ClientV5(config).getPaymentAPIImplPort();
-
 		OrderRequest orderRequest = new OrderRequest();
 		orderRequest.setOrderId(orderId);
 
@@ -96,13 +127,13 @@ final class PaymentInstance {
 		cardRequest.setExpiryYear(expYear);
 		cardRequest.setCardSecurityCode(cvvCode);
 
-		CreatePaymentResponse.CreatePaymentResult paymentResponse = api.createPayment(new CommonRequest(), null,
-				paymentRequest, orderRequest, cardRequest, null, null, null);
-
-		ServiceResult serviceResult = new ServiceResult(paymentResponse,
-				SessionUtils.getHttpSessionId((BindingProvider) api));
+		CreatePayment createPaymentRequest = new CreatePayment();
+		createPaymentRequest.setCommonRequest(new CommonRequest());
+		createPaymentRequest.setPaymentRequest(paymentRequest);
+		createPaymentRequest.setOrderRequest(orderRequest);
+		createPaymentRequest.setCardRequest(cardRequest);
 
-		return serviceResult;
+		return create(config, createPaymentRequest);
 	}
 
 	/**
@@ -133,7 +164,7 @@ final class PaymentInstance {
 	 *
 	 * @see Payment#create(String, long, int, String, int, int, String, ResponseHandler, Map[])
 	 */
-	ServiceResult createSimple(Map<String, String> config, String orderId, long amount, int currency, String cardNumber,
+	ServiceResult createSimple(PayzenConfig config, String orderId, long amount, int currency, String cardNumber,
 			int expMonth, int expYear, String cvvCode, ResponseHandler response) {
 		ServiceResult serviceResult = createSimple(config, orderId, amount, currency, cardNumber, expMonth, expYear,
 				cvvCode);
@@ -155,8 +186,15 @@ final class PaymentInstance {
 	 *
 	 * @see Payment#create(CreatePayment, Map[])
 	 */
-	ServiceResult create(Map<String, String> config, CreatePayment createPaymentRequest) {
-		PaymentAPI api = new ClientV5(config).getPaymentAPIImplPort();
+	ServiceResult create(PayzenConfig config, CreatePayment createPaymentRequest) {
+		if (config.isStreamingSerializer()) {
+			StreamingClientV5 client = clients.streaming(config);
+			CreatePaymentResponse.CreatePaymentResult paymentResponse = client.createPayment(createPaymentRequest);
+
+			return withCallInfo(new ServiceResult(paymentResponse, client.getHttpSessionId()), client);
+		}
+
+		PaymentAPI api = clients.port(config);
 
 		CreatePaymentResponse.CreatePaymentResult paymentResponse = api.createPayment(
 				createPaymentRequest.getCommonRequest(), createPaymentRequest.getThreeDSRequest(),
@@ -164,8 +202,8 @@ final class PaymentInstance {
 				createPaymentRequest.getCardRequest(), createPaymentRequest.getCustomerRequest(),
 				createPaymentRequest.getTechRequest(), createPaymentRequest.getShoppingCartRequest());
 
-		ServiceResult serviceResult = new ServiceResult(paymentResponse,
-				SessionUtils.getHttpSessionId((BindingProvider) api));
+		ServiceResult serviceResult = withCallInfo(new ServiceResult(paymentResponse,
+				SessionUtils.getHttpSessionId((BindingProvider) api)), api);
 
 		return serviceResult;
 	}
@@ -184,7 +222,7 @@ final class PaymentInstance {
 	 *
 	 * @see Payment#create(CreatePayment, ResponseHandler, Map[])
 	 */
-	ServiceResult create(Map<String, String> config, CreatePayment createPaymentRequest, ResponseHandler response) {
+	ServiceResult create(PayzenConfig config, CreatePayment createPaymentRequest, ResponseHandler response) {
 		ServiceResult serviceResult = create(config, createPaymentRequest);
 
 		handleResponse(response, serviceResult);
@@ -207,8 +245,8 @@ final class PaymentInstance {
 	 *
 	 * @see Payment#create(String, String, Map[])
 	 */
-	ServiceResult create3DS(Map<String, String> config, String paREs, String MD) {
-		PaymentAPI api = new ClientV5(config).getPaymentAPIImplPort();
+	ServiceResult create3DS(PayzenConfig config, String paREs, String MD) {
+		PaymentAPI api = clients.port(config);
 
 		ThreeDSRequest threeDSRequest = new ThreeDSRequest();
 		threeDSRequest.setMode(ThreeDSMode.ENABLED_FINALIZE);
@@ -221,10 +259,17 @@ final class PaymentInstance {
 				Collections.singletonMap("Cookie", Collections.singletonList(RequestUtils.getSessionCookieFromMD(MD))));
 		logger.info("Setting session Cookie: " + RequestUtils.getSessionCookieFromMD(MD));
 
-		CreatePaymentResponse.CreatePaymentResult paymentResponse = api.createPayment(new CommonRequest(),
-				threeDSRequest, null, null, null, null, null, null);
+		CreatePaymentResponse.CreatePaymentResult paymentResponse;
+		try {
+			paymentResponse = api.createPayment(new CommonRequest(), threeDSRequest, null, null, null, null, null,
+					null);
+		} finally {
+			// The port may be reused by other calls
+			((BindingProvider) api).getRequestContext().remove(MessageContext.HTTP_REQUEST_HEADERS);
+		}
 
-		ServiceResult serviceResult = new ServiceResult(paymentResponse, RequestUtils.getSessionCookieFromMD(MD));
+		ServiceResult serviceResult = withCallInfo(
+				new ServiceResult(paymentResponse, RequestUtils.getSessionCookieFromMD(MD)), api);
 
 		return serviceResult;
 	}
@@ -246,7 +291,7 @@ final class PaymentInstance {
 	 *
 	 * @see Payment#create(String, String, ResponseHandler, Map[])
 	 */
-	ServiceResult create3DS(Map<String, String> config, String paREs, String MD, ResponseHandler response) {
+	ServiceResult create3DS(PayzenConfig config, String paREs, String MD, ResponseHandler response) {
 		ServiceResult serviceResult = create3DS(config, paREs, MD);
 
 		handleResponse(response, serviceResult);
@@ -268,14 +313,69 @@ final class PaymentInstance {
 	 *
 	 * @see Payment#details(String, Map[])
 	 */
-	ServiceResult detailsSimple(Map<String, String> config, String uuidTransaction) {
-		PaymentAPI api = new ClientV5(config).getPaymentAPIImplPort();
+	ServiceResult detailsSimple(PayzenConfig config, String uuidTransaction) {
+		return detailsSimple(config, uuidTransaction, (Set<ResponseSection>) null);
+	}
+
+	/**
+	 * Get some sections of the details of an existing transaction using the
+	 * UUID of the transaction
+	 * <p>
+	 *
+	 * The v5 API always sends all the sections: the other ones are skipped
+	 * by the streaming parser (if enabled) and not kept in the result.
+	 *
+	 * @param uuidTransaction
+	 *            unique identifier of the transaction
+	 * @param sections
+	 *            sections needed by the caller, null for all of them
+	 * @return result with the requested response objects
+	 *
+	 * @see Payment#details(String, Set, Map[])
+	 */
+	ServiceResult detailsSimple(PayzenConfig config, String uuidTransaction, Set<ResponseSection> sections) {
 		QueryRequest queryRequest = new QueryRequest();
 		queryRequest.setUuid(uuidTransaction);
 
-		GetPaymentDetailsResponse.GetPaymentDetailsResult detailsResponse = api.getPaymentDetails(queryRequest, new ExtendedResponseRequest());
+		// No optional data (nsu, wallet, bank label) so the response stays as small as possible
+		ExtendedResponseRequest extendedResponseRequest = new ExtendedResponseRequest();
 
-		ServiceResult serviceResult = new ServiceResult(detailsResponse);
+		ServiceResult serviceResult;
+		if (config.isStreamingParser()) {
+			StreamingClientV5 client = clients.streaming(config);
+			GetPaymentDetailsResponse.GetPaymentDetailsResult detailsResponse = client.getPaymentDetails(
+					queryRequest, extendedResponseRequest, ResponseSection.elementNames(sections));
+			serviceResult = withCallInfo(new ServiceResult(detailsResponse, sections), client);
+		} else {
+			PaymentAPI api = clients.port(config);
+			GetPaymentDetailsResponse.GetPaymentDetailsResult detailsResponse = api.getPaymentDetails(queryRequest,
+					extendedResponseRequest);
+			serviceResult = withCallInfo(new ServiceResult(detailsResponse, sections), api);
+		}
+
+		return serviceResult;
+	}
+
+	/**
+	 * Get some sections of the details of an existing transaction using the
+	 * UUID of the transaction
+	 * <p>
+	 *
+	 * @param uuidTransaction
+	 *            unique identifier of the transaction
+	 * @param sections
+	 *            sections needed by the caller, null for all of them
+	 * @param response
+	 *            callback handler to work with the response
+	 * @return result with the requested response objects
+	 *
+	 * @see Payment#details(String, Set, ResponseHandler, Map[])
+	 */
+	ServiceResult detailsSimple(PayzenConfig config, String uuidTransaction, Set<ResponseSection> sections,
+			ResponseHandler response) {
+		ServiceResult serviceResult = detailsSimple(config, uuidTransaction, sections);
+
+		handleResponse(response, serviceResult);
 
 		return serviceResult;
 	}
@@ -296,7 +396,7 @@ final class PaymentInstance {
 	 *
 	 * @see Payment#details(String, ResponseHandler, Map[])
 	 */
-	ServiceResult detailsSimple(Map<String, String> config, String uuidTransaction, ResponseHandler response) {
+	ServiceResult detailsSimple(PayzenConfig config, String uuidTransaction, ResponseHandler response) {
 		ServiceResult serviceResult = detailsSimple(config, uuidTransaction);
 
 		handleResponse(response, serviceResult);
@@ -322,9 +422,9 @@ final class PaymentInstance {
 	 *
 	 * @see Payment#details(String, Date, int, Map[])
 	 */
-	ServiceResult detailsByFind(Map<String, String> config, String transactionId, Date creationDate,
+	ServiceResult detailsByFind(PayzenConfig config, String transactionId, Date creationDate,
 			int sequenceNumber) {
-		PaymentAPI api = new ClientV5(config).getPaymentAPIImplPort();
+		PaymentAPI api = clients.port(config);
 
 		LegacyTransactionKeyRequest transactionKey = new LegacyTransactionKeyRequest();
 		transactionKey.setTransactionId(transactionId);
@@ -337,7 +437,7 @@ final class PaymentInstance {
 		if (keyResult.getPaymentResponse() != null && keyResult.getPaymentResponse().getTransactionUuid() != null) {
 			serviceResult = detailsSimple(config, keyResult.getPaymentResponse().getTransactionUuid());
 		} else {
-			serviceResult = new ServiceResult(keyResult);
+			serviceResult = withCallInfo(new ServiceResult(keyResult), api);
 		}
 
 		return serviceResult;
@@ -363,7 +463,7 @@ final class PaymentInstance {
 	 *
 	 * @see Payment#details(String, Date, int, ResponseHandler, Map[])
 	 */
-	ServiceResult detailsByFind(Map<String, String> config, String transactionId, Date creationDate, int sequenceNumber,
+	ServiceResult detailsByFind(PayzenConfig config, String transactionId, Date creationDate, int sequenceNumber,
 								ResponseHandler response) {
 		ServiceResult serviceResult = detailsByFind(config, transactionId, creationDate, sequenceNumber);
 
@@ -387,16 +487,9 @@ final class PaymentInstance {
 	 *
 	 * @see Payment#details(String, ResponseHandler, Map[])
 	 */
-	ServiceResult detailsByFind(Map<String, String> config, String orderId,
+	ServiceResult detailsByFind(PayzenConfig config, String orderId,
 								ResponseHandler response) {
-		PaymentAPI api = new ClientV5(config).getPaymentAPIImplPort();
-
-		QueryRequest queryRequest = new QueryRequest();
-		queryRequest.setOrderId(orderId);
-
-		FindPaymentsResponse.FindPaymentsResult detailsResponse = api.findPayments(queryRequest);
-
-		ServiceResult serviceResult = new ServiceResult(detailsResponse);
+		ServiceResult serviceResult = detailsByFind(config, orderId);
 
 		handleResponse(response, serviceResult);
 
@@ -417,19 +510,48 @@ final class PaymentInstance {
 	 *
 	 * @see Payment#details(String, ResponseHandler, Map[])
 	 */
-	ServiceResult detailsByFind(Map<String, String> config, String orderId) {
-		PaymentAPI api = new ClientV5(config).getPaymentAPIImplPort();
-
+	ServiceResult detailsByFind(PayzenConfig config, String orderId) {
 		QueryRequest queryRequest = new QueryRequest();
 		queryRequest.setOrderId(orderId);
 
-		FindPaymentsResponse.FindPaymentsResult detailsResponse = api.findPayments(queryRequest);
-
-		ServiceResult serviceResult = new ServiceResult(detailsResponse);
+		ServiceResult serviceResult;
+		if (config.isStreamingParser()) {
+			StreamingClientV5 client = clients.streaming(config);
+			serviceResult = withCallInfo(new ServiceResult(client.findPayments(queryRequest)), client);
+		} else {
+			PaymentAPI api = clients.port(config);
+			serviceResult = withCallInfo(new ServiceResult(api.findPayments(queryRequest)), api);
+		}
 
 		return serviceResult;
 	}
 
+	/**
+	 * Get the transactions of an order one by one, while the response is read
+	 * <p>
+	 * Please read official documentation for more detailed information about
+	 * parameter content.
+	 *
+	 * @param orderId
+	 *            the order Id
+	 *
+	 * @return stream of transactions, to be closed if not fully consumed
+	 *
+	 * @see Payment#findPaymentsStream(String, Map[])
+	 */
+	Stream<TransactionItem> findPaymentsStream(PayzenConfig config, String orderId) {
+		QueryRequest queryRequest = new QueryRequest();
+		queryRequest.setOrderId(orderId);
+
+		// The stream outlives the call, but the iterator only keeps its response: the client
+		// can be given to other calls while the stream is read
+		final SoapResponseIterator<TransactionItem> iterator = clients.streaming(config)
+				.findPaymentsIterator(queryRequest);
+
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+				Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(iterator::close);
+	}
+
 	/**
 	 * Cancel an existing transaction using the UUID of the transaction
 	 * <p>
@@ -443,14 +565,14 @@ final class PaymentInstance {
 	 *
 	 * @see Payment#details(String, Map[])
 	 */
-	ServiceResult cancelSimple(Map<String, String> config, String uuidTransaction) {
-		PaymentAPI api = new ClientV5(config).getPaymentAPIImplPort();
+	ServiceResult cancelSimple(PayzenConfig config, String uuidTransaction) {
+		PaymentAPI api = clients.port(config);
 		QueryRequest queryRequest = new QueryRequest();
 		queryRequest.setUuid(uuidTransaction);
 
 		CancelPaymentResponse.CancelPaymentResult cancelResponse = api.cancelPayment(new CommonRequest(), queryRequest);
 
-		ServiceResult serviceResult = new ServiceResult(cancelResponse);
+		ServiceResult serviceResult = withCallInfo(new ServiceResult(cancelResponse), api);
 
 		return serviceResult;
 	}
@@ -470,7 +592,7 @@ final class PaymentInstance {
 	 *
 	 * @see Payment#details(String, ResponseHandler, Map[])
 	 */
-	ServiceResult cancelSimple(Map<String, String> config, String uuidTransaction, ResponseHandler response) {
+	ServiceResult cancelSimple(PayzenConfig config, String uuidTransaction, ResponseHandler response) {
 		ServiceResult serviceResult = cancelSimple(config, uuidTransaction);
 
 		handleResponse(response, serviceResult);
@@ -496,9 +618,9 @@ final class PaymentInstance {
 	 *
 	 * @see Payment#cancel(String, Date, int, Map[])
 	 */
-	ServiceResult cancelByFind(Map<String, String> config, String transactionId, Date creationDate,
+	ServiceResult cancelByFind(PayzenConfig config, String transactionId, Date creationDate,
 			int sequenceNumber) {
-		PaymentAPI api = new ClientV5(config).getPaymentAPIImplPort();
+		PaymentAPI api = clients.port(config);
 
 		LegacyTransactionKeyRequest transactionKey = new LegacyTransactionKeyRequest();
 		transactionKey.setTransactionId(transactionId);
@@ -511,7 +633,7 @@ final class PaymentInstance {
 		if (keyResult.getPaymentResponse() != null && keyResult.getPaymentResponse().getTransactionUuid() != null) {
 			serviceResult = cancelSimple(config, keyResult.getPaymentResponse().getTransactionUuid());
 		} else {
-			serviceResult = new ServiceResult(keyResult);
+			serviceResult = withCallInfo(new ServiceResult(keyResult), api);
 		}
 
 		return serviceResult;
@@ -538,7 +660,7 @@ final class PaymentInstance {
 	 * @see Payment#cancel(String, Date, int, ResponseHandler, Map[])
 	 *      ResponseHandler)
 	 */
-	ServiceResult cancelByFind(Map<String, String> config, String transactionId, Date creationDate, int sequenceNumber,
+	ServiceResult cancelByFind(PayzenConfig config, String transactionId, Date creationDate, int sequenceNumber,
 			ResponseHandler response) {
 		ServiceResult serviceResult = cancelByFind(config, transactionId, creationDate, sequenceNumber);
 
@@ -563,8 +685,8 @@ final class PaymentInstance {
 	 *
 	 * @see Payment#update(String, long, int, Map[])
 	 */
-	ServiceResult updateSimple(Map<String, String> config, String uuidTransaction, long amount, int currency) {
-		PaymentAPI api = new ClientV5(config).getPaymentAPIImplPort();
+	ServiceResult updateSimple(PayzenConfig config, String uuidTransaction, long amount, int currency) {
+		PaymentAPI api = clients.port(config);
 		QueryRequest queryRequest = new QueryRequest();
 		queryRequest.setUuid(uuidTransaction);
 
@@ -575,7 +697,33 @@ final class PaymentInstance {
 		UpdatePaymentResponse.UpdatePaymentResult updateResponse = api.updatePayment(new CommonRequest(), queryRequest,
 				paymentRequest);
 
-		ServiceResult serviceResult = new ServiceResult(updateResponse);
+		ServiceResult serviceResult = withCallInfo(new ServiceResult(updateResponse), api);
+
+		return serviceResult;
+	}
+
+	/**
+	 * Updates an existing transaction using the UUID of the transaction
+	 * <p>
+	 *
+	 * Please read official documentation for more detailed information about
+	 * parameter content.
+	 *
+	 * @param uuidTransaction
+	 *            unique identifier of the transaction
+	 * @param amount
+	 *            the new amount of the transaction
+	 * @param response
+	 *            callback handler to work with the response
+	 * @return result with all the response objects
+	 *
+	 * @see Payment#update(String, long, int, ResponseHandler, Map[])
+	 */
+	ServiceResult updateSimple(PayzenConfig config, String uuidTransaction, long amount, int currency,
+			ResponseHandler response) {
+		ServiceResult serviceResult = updateSimple(config, uuidTransaction, amount, currency);
+
+		handleResponse(response, serviceResult);
 
 		return serviceResult;
 	}
@@ -596,8 +744,8 @@ final class PaymentInstance {
 	 *
 	 * @see Payment#update(String, Date, ResponseHandler, Map[])
 	 */
-	ServiceResult updateSimple(Map<String, String> config, String uuidTransaction, Date captureDate) {
-		PaymentAPI api = new ClientV5(config).getPaymentAPIImplPort();
+	ServiceResult updateSimple(PayzenConfig config, String uuidTransaction, Date captureDate) {
+		PaymentAPI api = clients.port(config);
 		QueryRequest queryRequest = new QueryRequest();
 		queryRequest.setUuid(uuidTransaction);
 
@@ -607,7 +755,33 @@ final class PaymentInstance {
 		UpdatePaymentResponse.UpdatePaymentResult updateResponse = api.updatePayment(new CommonRequest(), queryRequest,
 				paymentRequest);
 
-		ServiceResult serviceResult = new ServiceResult(updateResponse);
+		ServiceResult serviceResult = withCallInfo(new ServiceResult(updateResponse), api);
+
+		return serviceResult;
+	}
+
+	/**
+	 * Updates an existing transaction using the UUID of the transaction
+	 * <p>
+	 *
+	 * Please read official documentation for more detailed information about
+	 * parameter content.
+	 *
+	 * @param uuidTransaction
+	 *            unique identifier of the transaction
+	 * @param captureDate
+	 *            expected capture date
+	 * @param response
+	 *            callback handler to work with the response
+	 * @return result with all the response objects
+	 *
+	 * @see Payment#update(String, Date, ResponseHandler, Map[])
+	 */
+	ServiceResult updateSimple(PayzenConfig config, String uuidTransaction, Date captureDate,
+			ResponseHandler response) {
+		ServiceResult serviceResult = updateSimple(config, uuidTransaction, captureDate);
+
+		handleResponse(response, serviceResult);
 
 		return serviceResult;
 	}
@@ -624,8 +798,8 @@ final class PaymentInstance {
 	 * @return result with all the response objects
      * @see Payment#validate(String, String, Map[])
 	 */
-	ServiceResult validatePayment(Map<String, String> config, String uuidTransaction, String comment) {
-		PaymentAPI api = new ClientV5(config).getPaymentAPIImplPort();
+	ServiceResult validatePayment(PayzenConfig config, String uuidTransaction, String comment) {
+		PaymentAPI api = clients.port(config);
 		QueryRequest queryRequest = new QueryRequest();
 		queryRequest.setUuid(uuidTransaction);
 
@@ -633,7 +807,31 @@ final class PaymentInstance {
 		commonRequest.setComment(comment);
 
 		ValidatePaymentResult validatePayment = api.validatePayment(commonRequest, queryRequest);
-		ServiceResult serviceResult = new ServiceResult(validatePayment);
+		ServiceResult serviceResult = withCallInfo(new ServiceResult(validatePayment), api);
+
+		return serviceResult;
+	}
+
+	/**
+	 * Validate an existing transaction using the UUID of the transaction
+	 * <p>
+	 *
+	 * Please read official documentation for more detailed information about
+	 * parameter content.
+	 *
+	 * @param uuidTransaction
+	 *            unique identifier of the transaction
+	 * @param response
+	 *            callback handler to work with the response
+	 * @return result with all the response objects
+	 *
+	 * @see Payment#validate(String, String, ResponseHandler, Map[])
+	 */
+	ServiceResult validatePayment(PayzenConfig config, String uuidTransaction, String comment,
+			ResponseHandler response) {
+		ServiceResult serviceResult = validatePayment(config, uuidTransaction, comment);
+
+		handleResponse(response, serviceResult);
 
 		return serviceResult;
 	}
@@ -649,9 +847,9 @@ final class PaymentInstance {
 	 * @return result with all the response objects
      * @see Payment#refund(String, long, int, String, Map[])
      */
-	ServiceResult refund(Map<String, String> config, String uuidTransaction, long amount, int currency, String comment) {
+	ServiceResult refund(PayzenConfig config, String uuidTransaction, long amount, int currency, String comment) {
 
-		PaymentAPI api = new ClientV5(config).getPaymentAPIImplPort();
+		PaymentAPI api = clients.port(config);
 
 		QueryRequest queryRequest = new QueryRequest();
 		queryRequest.setUuid(uuidTransaction);
@@ -664,7 +862,7 @@ final class PaymentInstance {
 		commonRequest.setComment(comment);
 
 		RefundPaymentResult refundPayment = api.refundPayment(commonRequest, paymentRequest, queryRequest);
-		ServiceResult serviceResult = new ServiceResult(refundPayment);
+		ServiceResult serviceResult = withCallInfo(new ServiceResult(refundPayment), api);
 		return serviceResult;
 	}
 
@@ -681,9 +879,9 @@ final class PaymentInstance {
 	 * @return result with all the response objects
      * @see Payment#createToken(String, String, Map[])
      */
-	ServiceResult createTokenFromTransaction(Map<String, String> config, String uuidTransaction,
+	ServiceResult createTokenFromTransaction(PayzenConfig config, String uuidTransaction,
 			String comment) {
-		PaymentAPI api = new ClientV5(config).getPaymentAPIImplPort();
+		PaymentAPI api = clients.port(config);
 		QueryRequest queryRequest = new QueryRequest();
 		queryRequest.setUuid(uuidTransaction);
 		CommonRequest commonRequest = new CommonRequest();
@@ -691,10 +889,31 @@ final class PaymentInstance {
 
 		CreateTokenFromTransactionResult createTokenFromTransaction = api.createTokenFromTransaction(commonRequest,
 				new CardRequest(), queryRequest);
-        ServiceResult serviceResult = new ServiceResult(createTokenFromTransaction);
+        ServiceResult serviceResult = withCallInfo(new ServiceResult(createTokenFromTransaction), api);
         return serviceResult;
 	}
 
+	// Attaches the information about the call that has produced the result
+	private static ServiceResult withCallInfo(ServiceResult serviceResult, PaymentAPI api) {
+		return serviceResult.withPhaseTimings(ClientV5.getPhaseTimings(api))
+				.withRequestId(RequestUtils.getRequestId((BindingProvider) api));
+	}
+
+	private static ServiceResult withCallInfo(ServiceResult serviceResult, StreamingClientV5 client) {
+		return serviceResult.withPhaseTimings(client.getPhaseTimings()).withRequestId(client.getRequestId());
+	}
+
+	/**
+	 * Source of the clients used by the calls. A call only uses the clients
+	 * it gets during the call, so they can be pooled as long as a client is
+	 * not given to two calls at the same time.
+	 */
+	interface Clients {
+		PaymentAPI port(PayzenConfig config);
+
+		StreamingClientV5 streaming(PayzenConfig config);
+	}
+
 	// Handle response in callback way
 	private void handleResponse(ResponseHandler response, ServiceResult serviceResult) {
 		try {
@@ -0,0 +1,773 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.commons.lang.StringUtils;
+
+import eu.payzen.webservices.sdk.client.StreamingClientV5;
+import eu.payzen.webservices.sdk.handler.soap.SoapCapture;
+import eu.payzen.webservices.sdk.metrics.Metrics;
+import eu.payzen.webservices.sdk.transport.HttpConnectionPool;
+import eu.payzen.webservices.sdk.transport.HttpTransports;
+import eu.payzen.webservices.sdk.transport.RecordReplay;
+import eu.payzen.webservices.sdk.transport.TlsContext;
+import eu.payzen.webservices.sdk.util.Config;
+
+/**
+ * Immutable configuration of the calls to the web services.<p>
+ *
+ * The values are parsed and validated once when it is built, instead of on
+ * each call, and can be passed to every operation of {@link Payment} in place
+ * of the configuration map. Values that are not set are taken from
+ * <code>ws-sdk-config.properties</code>:
+ * <pre>
+ * PayzenConfig config = PayzenConfig.getBuilder()
+ *         .shopId("12345678").shopKey("1111111111111111").mode("TEST")
+ *         .requestTimeout(10)
+ *         .build();
+ * ServiceResult result = Payment.details(uuid, config);
+ * </pre>
+ * Two configurations with the same values are equal, so a configuration can
+ * be used as the key of the clients it creates.
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class PayzenConfig {
+
+    private static final String SHOP_ID = "shopId";
+    private static final String SHOP_KEY = "shopKey";
+    private static final String MODE = "mode";
+    private static final String ENDPOINT_HOST = "endpointHost";
+    private static final String SECURE_CONNECTION = "secureConnection";
+    private static final String DISABLE_HOSTNAME_VERIFIER = "disableHostnameVerifier";
+    private static final String WS_USER = "wsUser";
+    private static final String RETURN_URL = "returnUrl";
+    private static final String ECS_PAYMENT_ID = "ecsPaymentId";
+    private static final String REMOTE_ID = "remoteId";
+    private static final String CONNECTION_TIMEOUT = "connectionTimeout";
+    private static final String REQUEST_TIMEOUT = "requestTimeout";
+
+    // Keys read by the SDK, the other keys of a configuration map are sent as header fields
+    private static final List<String> KEYS = Arrays.asList(SHOP_ID, SHOP_KEY, MODE, ENDPOINT_HOST,
+            SECURE_CONNECTION, DISABLE_HOSTNAME_VERIFIER, WS_USER, RETURN_URL, ECS_PAYMENT_ID, REMOTE_ID,
+            CONNECTION_TIMEOUT, REQUEST_TIMEOUT, StreamingClientV5.STREAMING_SERIALIZER,
+            StreamingClientV5.STREAMING_PARSER, Metrics.PHASE_TIMINGS, SoapCapture.SOAP_CAPTURE,
+            SoapCapture.SOAP_CAPTURE_SIZE, RecordReplay.RECORD_FILE, RecordReplay.REPLAY_FILE,
+            TlsContext.TLS_SESSION_CACHE_SIZE, TlsContext.TLS_SESSION_TIMEOUT, HttpConnectionPool.MAX_IDLE_CONNECTIONS,
+            HttpConnectionPool.CONNECTION_IDLE_TIMEOUT, HttpTransports.HTTP_TRANSPORT);
+
+    private static volatile PayzenConfig defaultConfig;
+
+    private final String shopId;
+    private final String shopKey;
+    private final String mode;
+    private final String endpointHost;
+    private final boolean secureConnection;
+    private final boolean disableHostnameVerifier;
+    private final String wsUser;
+    private final String returnUrl;
+    private final String ecsPaymentId;
+    private final String remoteId;
+    private final int connectionTimeoutMillis;
+    private final int requestTimeoutMillis;
+    private final boolean streamingSerializer;
+    private final boolean streamingParser;
+    private final boolean phaseTimings;
+    private final boolean soapCapture;
+    private final int soapCaptureSize;
+    private final String recordFile;
+    private final String replayFile;
+    private final int tlsSessionCacheSize;
+    private final int tlsSessionTimeout;
+    private final SSLContext sslContext;
+    private final int maxIdleConnections;
+    private final int connectionIdleTimeout;
+    private final String httpTransport;
+    private final Map<String, String> headers;
+    private final String endpointUrl;
+    private final int hashCode;
+
+    private PayzenConfig(Builder builder) {
+        this.shopId = builder.shopId;
+        this.shopKey = builder.shopKey;
+        this.mode = builder.mode;
+        this.endpointHost = builder.endpointHost;
+        this.secureConnection = builder.secureConnection;
+        this.disableHostnameVerifier = builder.disableHostnameVerifier;
+        this.wsUser = builder.wsUser;
+        this.returnUrl = builder.returnUrl;
+        this.ecsPaymentId = builder.ecsPaymentId;
+        this.remoteId = builder.remoteId;
+        this.connectionTimeoutMillis = builder.connectionTimeoutMillis;
+        this.requestTimeoutMillis = builder.requestTimeoutMillis;
+        this.streamingSerializer = builder.streamingSerializer;
+        this.streamingParser = builder.streamingParser;
+        this.phaseTimings = builder.phaseTimings;
+        this.soapCapture = builder.soapCapture;
+        this.soapCaptureSize = builder.soapCaptureSize;
+        this.recordFile = builder.recordFile;
+        this.replayFile = builder.replayFile;
+        this.tlsSessionCacheSize = builder.tlsSessionCacheSize;
+        this.tlsSessionTimeout = builder.tlsSessionTimeout;
+        this.sslContext = builder.sslContext;
+        this.maxIdleConnections = builder.maxIdleConnections;
+        this.connectionIdleTimeout = builder.connectionIdleTimeout;
+        this.httpTransport = builder.httpTransport;
+        this.headers = Collections.unmodifiableMap(new LinkedHashMap<>(builder.headers));
+        this.endpointUrl = (secureConnection ? "https://" : "http://") + endpointHost + "/vads-ws/v5";
+        this.hashCode = Objects.hash(shopId, shopKey, mode, endpointHost, secureConnection, disableHostnameVerifier,
+                wsUser, returnUrl, ecsPaymentId, remoteId, connectionTimeoutMillis, requestTimeoutMillis,
+                streamingSerializer, streamingParser, phaseTimings, soapCapture, soapCaptureSize, recordFile,
+                replayFile, tlsSessionCacheSize, tlsSessionTimeout, sslContext, maxIdleConnections,
+                connectionIdleTimeout, httpTransport, headers);
+    }
+
+    /**
+     * Gets a builder initialised with the values of
+     * <code>ws-sdk-config.properties</code>
+     *
+     * @return new builder
+     */
+    public static Builder getBuilder() {
+        return new Builder(Config.getConfig());
+    }
+
+    /**
+     * Gets the configuration of <code>ws-sdk-config.properties</code>
+     *
+     * @return default configuration, parsed once
+     * @throws IllegalArgumentException if a value of the file is not valid
+     */
+    public static PayzenConfig getDefault() {
+        PayzenConfig config = defaultConfig;
+        if (config == null) {
+            config = getBuilder().build();
+            defaultConfig = config;
+        }
+        return config;
+    }
+
+    /**
+     * Gets the configuration of a call from a configuration map, as accepted
+     * by the operations of {@link Payment}. The map is not modified.
+     *
+     * @param config values overriding <code>ws-sdk-config.properties</code>,
+     *               the keys that are not configuration properties are sent
+     *               as header fields. May be null
+     * @return configuration of the call
+     * @throws IllegalArgumentException if a value is not valid
+     */
+    public static PayzenConfig from(Map<String, String> config) {
+        if (config == null || config.isEmpty()) {
+            return getDefault();
+        }
+        Builder builder = getBuilder();
+        for (Map.Entry<String, String> entry : config.entrySet()) {
+            if (entry.getValue() != null) {
+                builder.property(entry.getKey(), entry.getValue());
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Gets a builder initialised with the values of this configuration, to
+     * derive another one
+     *
+     * @return new builder
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    public String getShopId() {
+        return shopId;
+    }
+
+    public String getShopKey() {
+        return shopKey;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public String getEndpointHost() {
+        return endpointHost;
+    }
+
+    public boolean isSecureConnection() {
+        return secureConnection;
+    }
+
+    public boolean isDisableHostnameVerifier() {
+        return disableHostnameVerifier;
+    }
+
+    public String getWsUser() {
+        return wsUser;
+    }
+
+    public String getReturnUrl() {
+        return returnUrl;
+    }
+
+    public String getEcsPaymentId() {
+        return ecsPaymentId;
+    }
+
+    public String getRemoteId() {
+        return remoteId;
+    }
+
+    /**
+     * @return connection timeout in milliseconds, 0 if not set
+     */
+    public int getConnectionTimeoutMillis() {
+        return connectionTimeoutMillis;
+    }
+
+    /**
+     * @return request timeout in milliseconds, 0 if not set
+     */
+    public int getRequestTimeoutMillis() {
+        return requestTimeoutMillis;
+    }
+
+    public boolean isStreamingSerializer() {
+        return streamingSerializer;
+    }
+
+    public boolean isStreamingParser() {
+        return streamingParser;
+    }
+
+    public boolean isPhaseTimings() {
+        return phaseTimings;
+    }
+
+    public boolean isSoapCapture() {
+        return soapCapture;
+    }
+
+    public int getSoapCaptureSize() {
+        return soapCaptureSize;
+    }
+
+    /**
+     * @return file where the exchanges are recorded, null if they are not
+     */
+    public String getRecordFile() {
+        return recordFile;
+    }
+
+    /**
+     * @return file the calls are answered from, null to send them
+     */
+    public String getReplayFile() {
+        return replayFile;
+    }
+
+    /**
+     * @return maximum number of TLS sessions kept for resumption, 0 for the default of the JDK
+     */
+    public int getTlsSessionCacheSize() {
+        return tlsSessionCacheSize;
+    }
+
+    /**
+     * @return lifetime of the TLS sessions kept for resumption in seconds, 0 for the default of the JDK
+     */
+    public int getTlsSessionTimeout() {
+        return tlsSessionTimeout;
+    }
+
+    /**
+     * @return context the TLS connections are created from, null to use the one of the SDK
+     */
+    public SSLContext getSslContext() {
+        return sslContext;
+    }
+
+    /**
+     * @return idle connections kept per endpoint by the pool of the SDK, -1 to use the keep-alive cache of the JDK
+     */
+    public int getMaxIdleConnections() {
+        return maxIdleConnections;
+    }
+
+    /**
+     * @return seconds an idle connection of the pool is kept, 0 for the default
+     */
+    public int getConnectionIdleTimeout() {
+        return connectionIdleTimeout;
+    }
+
+    /**
+     * @return name of the transport of the calls, null for the default one
+     * @see HttpTransports
+     */
+    public String getHttpTransport() {
+        return httpTransport;
+    }
+
+    /**
+     * Gets the additional header fields sent with each request
+     *
+     * @return unmodifiable map of header field names and values, in order
+     */
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * @return URL of the v5 endpoint (e.g. https://secure.payzen.eu/vads-ws/v5)
+     */
+    public String getEndpointUrl() {
+        return endpointUrl;
+    }
+
+    /**
+     * @return URL of the WSDL served by the endpoint
+     */
+    public String getWsdlUrl() {
+        return endpointUrl + "?wsdl";
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof PayzenConfig)) {
+            return false;
+        }
+        PayzenConfig other = (PayzenConfig) obj;
+        return hashCode == other.hashCode
+                && secureConnection == other.secureConnection
+                && disableHostnameVerifier == other.disableHostnameVerifier
+                && connectionTimeoutMillis == other.connectionTimeoutMillis
+                && requestTimeoutMillis == other.requestTimeoutMillis
+                && streamingSerializer == other.streamingSerializer
+                && streamingParser == other.streamingParser
+                && phaseTimings == other.phaseTimings
+                && soapCapture == other.soapCapture
+                && soapCaptureSize == other.soapCaptureSize
+                && tlsSessionCacheSize == other.tlsSessionCacheSize
+                && tlsSessionTimeout == other.tlsSessionTimeout
+                && sslContext == other.sslContext
+                && maxIdleConnections == other.maxIdleConnections
+                && connectionIdleTimeout == other.connectionIdleTimeout
+                && Objects.equals(httpTransport, other.httpTransport)
+                && Objects.equals(shopId, other.shopId)
+                && Objects.equals(shopKey, other.shopKey)
+                && Objects.equals(mode, other.mode)
+                && Objects.equals(endpointHost, other.endpointHost)
+                && Objects.equals(wsUser, other.wsUser)
+                && Objects.equals(returnUrl, other.returnUrl)
+                && Objects.equals(ecsPaymentId, other.ecsPaymentId)
+                && Objects.equals(remoteId, other.remoteId)
+                && Objects.equals(recordFile, other.recordFile)
+                && Objects.equals(replayFile, other.replayFile)
+                && headers.equals(other.headers);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    /**
+     * The shop key is not included
+     */
+    @Override
+    public String toString() {
+        return "PayzenConfig[shopId=" + shopId + ", mode=" + mode + ", endpoint=" + endpointUrl + "]";
+    }
+
+    /**
+     * Builder of {@link PayzenConfig}
+     */
+    public static final class Builder {
+        private String shopId;
+        private String shopKey;
+        private String mode;
+        private String endpointHost;
+        private boolean secureConnection = true;
+        private boolean disableHostnameVerifier;
+        private String wsUser;
+        private String returnUrl;
+        private String ecsPaymentId;
+        private String remoteId;
+        private int connectionTimeoutMillis;
+        private int requestTimeoutMillis;
+        private boolean streamingSerializer;
+        private boolean streamingParser;
+        private boolean phaseTimings;
+        private boolean soapCapture;
+        private int soapCaptureSize = SoapCapture.DEFAULT_SIZE;
+        private String recordFile;
+        private String replayFile;
+        private int tlsSessionCacheSize;
+        private int tlsSessionTimeout;
+        private SSLContext sslContext;
+        private int maxIdleConnections = -1;
+        private int connectionIdleTimeout;
+        private String httpTransport;
+        private final Map<String, String> headers = new LinkedHashMap<>();
+
+        private Builder(Properties defaults) {
+            for (String key : KEYS) {
+                String value = defaults.getProperty(key);
+                if (value != null) {
+                    property(key, value);
+                }
+            }
+        }
+
+        private Builder(PayzenConfig config) {
+            shopId = config.shopId;
+            shopKey = config.shopKey;
+            mode = config.mode;
+            endpointHost = config.endpointHost;
+            secureConnection = config.secureConnection;
+            disableHostnameVerifier = config.disableHostnameVerifier;
+            wsUser = config.wsUser;
+            returnUrl = config.returnUrl;
+            ecsPaymentId = config.ecsPaymentId;
+            remoteId = config.remoteId;
+            connectionTimeoutMillis = config.connectionTimeoutMillis;
+            requestTimeoutMillis = config.requestTimeoutMillis;
+            streamingSerializer = config.streamingSerializer;
+            streamingParser = config.streamingParser;
+            phaseTimings = config.phaseTimings;
+            soapCapture = config.soapCapture;
+            soapCaptureSize = config.soapCaptureSize;
+            recordFile = config.recordFile;
+            replayFile = config.replayFile;
+            tlsSessionCacheSize = config.tlsSessionCacheSize;
+            tlsSessionTimeout = config.tlsSessionTimeout;
+            sslContext = config.sslContext;
+            maxIdleConnections = config.maxIdleConnections;
+            connectionIdleTimeout = config.connectionIdleTimeout;
+            httpTransport = config.httpTransport;
+            headers.putAll(config.headers);
+        }
+
+        public Builder shopId(String shopId) {
+            this.shopId = shopId;
+            return this;
+        }
+
+        public Builder shopKey(String shopKey) {
+            this.shopKey = shopKey;
+            return this;
+        }
+
+        /**
+         * @param mode TEST or PRODUCTION
+         * @return this builder
+         */
+        public Builder mode(String mode) {
+            this.mode = mode;
+            return this;
+        }
+
+        /**
+         * @param endpointHost host of the web services, with the port if needed (e.g. secure.payzen.eu)
+         * @return this builder
+         */
+        public Builder endpointHost(String endpointHost) {
+            this.endpointHost = endpointHost;
+            return this;
+        }
+
+        public Builder secureConnection(boolean secureConnection) {
+            this.secureConnection = secureConnection;
+            return this;
+        }
+
+        public Builder disableHostnameVerifier(boolean disableHostnameVerifier) {
+            this.disableHostnameVerifier = disableHostnameVerifier;
+            return this;
+        }
+
+        public Builder wsUser(String wsUser) {
+            this.wsUser = wsUser;
+            return this;
+        }
+
+        public Builder returnUrl(String returnUrl) {
+            this.returnUrl = returnUrl;
+            return this;
+        }
+
+        public Builder ecsPaymentId(String ecsPaymentId) {
+            this.ecsPaymentId = ecsPaymentId;
+            return this;
+        }
+
+        public Builder remoteId(String remoteId) {
+            this.remoteId = remoteId;
+            return this;
+        }
+
+        /**
+         * @param seconds connection timeout in seconds, 0 for the default of the JDK
+         * @return this builder
+         */
+        public Builder connectionTimeout(int seconds) {
+            this.connectionTimeoutMillis = toMillis(CONNECTION_TIMEOUT, seconds);
+            return this;
+        }
+
+        /**
+         * @param seconds request timeout in seconds, 0 for the default of the JDK
+         * @return this builder
+         */
+        public Builder requestTimeout(int seconds) {
+            this.requestTimeoutMillis = toMillis(REQUEST_TIMEOUT, seconds);
+            return this;
+        }
+
+        public Builder streamingSerializer(boolean streamingSerializer) {
+            this.streamingSerializer = streamingSerializer;
+            return this;
+        }
+
+        public Builder streamingParser(boolean streamingParser) {
+            this.streamingParser = streamingParser;
+            return this;
+        }
+
+        public Builder phaseTimings(boolean phaseTimings) {
+            this.phaseTimings = phaseTimings;
+            return this;
+        }
+
+        public Builder soapCapture(boolean soapCapture) {
+            this.soapCapture = soapCapture;
+            return this;
+        }
+
+        public Builder soapCaptureSize(int soapCaptureSize) {
+            if (soapCaptureSize <= 0) {
+                throw new IllegalArgumentException(SoapCapture.SOAP_CAPTURE_SIZE + " must be positive: " + soapCaptureSize);
+            }
+            this.soapCaptureSize = soapCaptureSize;
+            return this;
+        }
+
+        public Builder recordFile(String recordFile) {
+            this.recordFile = StringUtils.isNotBlank(recordFile) ? recordFile : null;
+            return this;
+        }
+
+        public Builder replayFile(String replayFile) {
+            this.replayFile = StringUtils.isNotBlank(replayFile) ? replayFile : null;
+            return this;
+        }
+
+        /**
+         * @param size maximum number of TLS sessions kept for resumption, 0 for the default of the JDK
+         * @return this builder
+         */
+        public Builder tlsSessionCacheSize(int size) {
+            this.tlsSessionCacheSize = notNegative(TlsContext.TLS_SESSION_CACHE_SIZE, size);
+            return this;
+        }
+
+        /**
+         * @param seconds lifetime of the TLS sessions kept for resumption, 0 for the default of the JDK
+         * @return this builder
+         */
+        public Builder tlsSessionTimeout(int seconds) {
+            this.tlsSessionTimeout = notNegative(TlsContext.TLS_SESSION_TIMEOUT, seconds);
+            return this;
+        }
+
+        /**
+         * Sets the context the TLS connections are created from, e.g. to
+         * trust a private certificate authority or to present a client
+         * certificate. The session cache options are applied to it.
+         *
+         * @param sslContext initialised context, null to use the one of the SDK
+         * @return this builder
+         */
+        public Builder sslContext(SSLContext sslContext) {
+            this.sslContext = sslContext;
+            return this;
+        }
+
+        /**
+         * Sends the calls through a pool of the SDK that keeps this number of
+         * idle connections per endpoint, instead of the keep-alive cache of
+         * the JDK configured by the <code>http.keepAlive</code> and
+         * <code>http.maxConnections</code> system properties
+         *
+         * @param maxIdleConnections idle connections kept, 0 to close the connections after each call,
+         *        -1 to use the cache of the JDK
+         * @return this builder
+         * @see HttpConnectionPool
+         */
+        public Builder maxIdleConnections(int maxIdleConnections) {
+            if (maxIdleConnections < -1) {
+                throw new IllegalArgumentException(HttpConnectionPool.MAX_IDLE_CONNECTIONS + " out of range: "
+                        + maxIdleConnections);
+            }
+            this.maxIdleConnections = maxIdleConnections;
+            return this;
+        }
+
+        /**
+         * @param seconds time an idle connection of the pool is kept, 0 for the default
+         * @return this builder
+         */
+        public Builder connectionIdleTimeout(int seconds) {
+            this.connectionIdleTimeout = notNegative(HttpConnectionPool.CONNECTION_IDLE_TIMEOUT, seconds);
+            return this;
+        }
+
+        /**
+         * Chooses the transport of the calls, checked when a client is created
+         *
+         * @param httpTransport {@link HttpTransports#JDK} or the name of a
+         *        {@link eu.payzen.webservices.sdk.transport.HttpTransportProvider},
+         *        null for the default transport
+         * @return this builder
+         * @see HttpTransports
+         */
+        public Builder httpTransport(String httpTransport) {
+            this.httpTransport = StringUtils.isNotBlank(httpTransport) ? httpTransport.trim() : null;
+            return this;
+        }
+
+        /**
+         * Adds a field to the header of the requests
+         *
+         * @param name name of the field
+         * @param value value of the field, null to remove it
+         * @return this builder
+         */
+        public Builder header(String name, String value) {
+            if (value != null) {
+                headers.put(name, value);
+            } else {
+                headers.remove(name);
+            }
+            return this;
+        }
+
+        /**
+         * Sets a value by the name of its property in
+         * <code>ws-sdk-config.properties</code>. Unknown names are added to
+         * the header of the requests.
+         *
+         * @param key name of the property
+         * @param value value as written in the properties file
+         * @return this builder
+         * @throws IllegalArgumentException if the value is not valid
+         */
+        public Builder property(String key, String value) {
+            switch (key) {
+                case SHOP_ID: return shopId(value);
+                case SHOP_KEY: return shopKey(value);
+                case MODE: return mode(value);
+                case ENDPOINT_HOST: return endpointHost(value);
+                case SECURE_CONNECTION: return secureConnection("true".equalsIgnoreCase(value));
+                case DISABLE_HOSTNAME_VERIFIER: return disableHostnameVerifier("true".equalsIgnoreCase(value));
+                case WS_USER: return wsUser(value);
+                case RETURN_URL: return returnUrl(value);
+                case ECS_PAYMENT_ID: return ecsPaymentId(value);
+                case REMOTE_ID: return remoteId(value);
+                case CONNECTION_TIMEOUT: return connectionTimeout(parseInt(key, value, 0));
+                case REQUEST_TIMEOUT: return requestTimeout(parseInt(key, value, 0));
+                case StreamingClientV5.STREAMING_SERIALIZER: return streamingSerializer("true".equalsIgnoreCase(value));
+                case StreamingClientV5.STREAMING_PARSER: return streamingParser("true".equalsIgnoreCase(value));
+                case Metrics.PHASE_TIMINGS: return phaseTimings("true".equalsIgnoreCase(value));
+                case SoapCapture.SOAP_CAPTURE: return soapCapture("true".equalsIgnoreCase(value));
+                case SoapCapture.SOAP_CAPTURE_SIZE: return soapCaptureSize(parseInt(key, value, SoapCapture.DEFAULT_SIZE));
+                case RecordReplay.RECORD_FILE: return recordFile(value);
+                case RecordReplay.REPLAY_FILE: return replayFile(value);
+                case TlsContext.TLS_SESSION_CACHE_SIZE: return tlsSessionCacheSize(parseInt(key, value, 0));
+                case TlsContext.TLS_SESSION_TIMEOUT: return tlsSessionTimeout(parseInt(key, value, 0));
+                case HttpConnectionPool.MAX_IDLE_CONNECTIONS: return maxIdleConnections(parseInt(key, value, -1));
+                case HttpConnectionPool.CONNECTION_IDLE_TIMEOUT: return connectionIdleTimeout(parseInt(key, value, 0));
+                case HttpTransports.HTTP_TRANSPORT: return httpTransport(value);
+                default: return header(key, value);
+            }
+        }
+
+        /**
+         * Builds the configuration
+         *
+         * @return immutable configuration
+         * @throws IllegalArgumentException if the shop or the endpoint is not set or is not valid
+         */
+        public PayzenConfig build() {
+            for (String[] required : new String[][] {{SHOP_ID, shopId}, {SHOP_KEY, shopKey}, {MODE, mode},
+                    {ENDPOINT_HOST, endpointHost}}) {
+                if (StringUtils.isBlank(required[1])) {
+                    throw new IllegalArgumentException(required[0] + " is not set");
+                }
+            }
+            PayzenConfig config = new PayzenConfig(this);
+            try {
+                new URL(config.getEndpointUrl());
+            } catch (MalformedURLException e) {
+                throw new IllegalArgumentException("Invalid host: " + endpointHost, e);
+            }
+            return config;
+        }
+
+        private static int toMillis(String key, int seconds) {
+            if (seconds < 0 || seconds > Integer.MAX_VALUE / 1000) {
+                throw new IllegalArgumentException(key + " out of range: " + seconds);
+            }
+            return seconds * 1000;
+        }
+
+        private static int notNegative(String key, int value) {
+            if (value < 0) {
+                throw new IllegalArgumentException(key + " out of range: " + value);
+            }
+            return value;
+        }
+
+        private static int parseInt(String key, String value, int blank) {
+            if (StringUtils.isBlank(value)) {
+                return blank;
+            }
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid " + key + ": " + value, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk;
+
+import javax.xml.ws.WebServiceException;
+
+/**
+ * Thrown by the calls that return the items of a response as they are read
+ * (e.g. <code>findPaymentsStream</code>) when the gateway answers with an
+ * error, which could not be told apart from an empty result otherwise.
+ *
+ * @author Javier Garcia Alonso
+ */
+public class ResponseCodeException extends WebServiceException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int responseCode;
+    private final String responseCodeDetail;
+
+    /**
+     * @param operation name of the operation (e.g. findPayments)
+     * @param responseCode response code of the commonResponse, not 0
+     * @param responseCodeDetail detail of the response code, may be null
+     */
+    public ResponseCodeException(String operation, int responseCode, String responseCodeDetail) {
+        super(operation + " failed with response code " + responseCode
+                + (responseCodeDetail != null ? ": " + responseCodeDetail : ""));
+        this.responseCode = responseCode;
+        this.responseCodeDetail = responseCodeDetail;
+    }
+
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    public String getResponseCodeDetail() {
+        return responseCodeDetail;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Sections of a payment details response that can be requested through
+ * {@link Payment#details(String, Set, java.util.Map[])}.<p>
+ *
+ * The v5 API always returns every section; the ones that have not been
+ * requested are skipped by the SDK and are null in {@link ServiceResult}.
+ * {@link #COMMON} is always kept, as it tells whether the call succeeded.
+ *
+ * @author Javier Garcia Alonso
+ */
+public enum ResponseSection {
+
+    COMMON("commonResponse"),
+    PAYMENT("paymentResponse"),
+    ORDER("orderResponse"),
+    CARD("cardResponse"),
+    AUTHORIZATION("authorizationResponse"),
+    CAPTURE("captureResponse"),
+    CUSTOMER("customerResponse"),
+    MARK("markResponse"),
+    SUBSCRIPTION("subscriptionResponse"),
+    EXTRA("extraResponse"),
+    FRAUD_MANAGEMENT("fraudManagementResponse"),
+    THREE_DS("threeDSResponse"),
+    TOKEN("tokenResponse");
+
+    private final String elementName;
+
+    ResponseSection(String elementName) {
+        this.elementName = elementName;
+    }
+
+    /**
+     * Gets the name of the section in the SOAP response
+     *
+     * @return element name
+     */
+    public String getElementName() {
+        return elementName;
+    }
+
+    /**
+     * Converts sections to the element names used by the streaming parser
+     *
+     * @param sections requested sections, null for all of them
+     * @return element names with the one of {@link #COMMON}, null for all of them
+     */
+    static Set<String> elementNames(Set<ResponseSection> sections) {
+        if (sections == null) {
+            return null;
+        }
+        Set<String> names = new HashSet<>();
+        names.add(COMMON.elementName);
+        for (ResponseSection section : sections) {
+            names.add(section.elementName);
+        }
+        return names;
+    }
+
+    static boolean includes(Set<ResponseSection> sections, ResponseSection section) {
+        return sections == null || sections.contains(section);
+    }
+}
@@ -17,9 +17,11 @@ package eu.payzen.webservices.sdk;
 
 import com.lyra.vads.ws.v5.*;
 import com.lyra.vads.ws.v5.RefundPaymentResponse.RefundPaymentResult;
+import eu.payzen.webservices.sdk.metrics.PhaseTimings;
 import eu.payzen.webservices.sdk.util.Config;
 
 import java.util.List;
+import java.util.Set;
 
 /**
  * Result object that encapsulates the response of a Payzen Web Service.
@@ -44,6 +46,8 @@ public final class ServiceResult {
     private SubscriptionResponse subscriptionResponse = null;
     private List<TransactionItem> transactionItems = null;
     private String serviceSessionId = null;
+    private PhaseTimings phaseTimings = null;
+    private String requestId = null;
 
     public ServiceResult(CreatePaymentResponse.CreatePaymentResult createPaymentResult, String httpSessionId) {
         commonResponse = createPaymentResult.getCommonResponse();
@@ -62,20 +66,62 @@ public final class ServiceResult {
         serviceSessionId = httpSessionId;
     }
 
+    /**
+     * Builds the result with every section of the response, the token
+     * response included
+     *
+     * @param detailsPaymentResult response of getPaymentDetails
+     */
     public ServiceResult(GetPaymentDetailsResponse.GetPaymentDetailsResult detailsPaymentResult) {
+        this(detailsPaymentResult, null);
+    }
+
+    /**
+     * Builds the result keeping only some sections of the response
+     *
+     * @param detailsPaymentResult response of getPaymentDetails
+     * @param sections sections to keep, null for all of them, the common response is always kept
+     */
+    public ServiceResult(GetPaymentDetailsResponse.GetPaymentDetailsResult detailsPaymentResult,
+            Set<ResponseSection> sections) {
         commonResponse = detailsPaymentResult.getCommonResponse();
-        paymentResponse = detailsPaymentResult.getPaymentResponse();
-        orderResponse = detailsPaymentResult.getOrderResponse();
-        cardResponse = detailsPaymentResult.getCardResponse();
-        authorizationResponse = detailsPaymentResult.getAuthorizationResponse();
-        captureResponse = detailsPaymentResult.getCaptureResponse();
-        customerResponse = detailsPaymentResult.getCustomerResponse();
-        extraResponse = detailsPaymentResult.getExtraResponse();
-        fraudManagementResponse = detailsPaymentResult.getFraudManagementResponse();
-        markResponse = detailsPaymentResult.getMarkResponse();
+        if (ResponseSection.includes(sections, ResponseSection.PAYMENT)) {
+            paymentResponse = detailsPaymentResult.getPaymentResponse();
+        }
+        if (ResponseSection.includes(sections, ResponseSection.ORDER)) {
+            orderResponse = detailsPaymentResult.getOrderResponse();
+        }
+        if (ResponseSection.includes(sections, ResponseSection.CARD)) {
+            cardResponse = detailsPaymentResult.getCardResponse();
+        }
+        if (ResponseSection.includes(sections, ResponseSection.AUTHORIZATION)) {
+            authorizationResponse = detailsPaymentResult.getAuthorizationResponse();
+        }
+        if (ResponseSection.includes(sections, ResponseSection.CAPTURE)) {
+            captureResponse = detailsPaymentResult.getCaptureResponse();
+        }
+        if (ResponseSection.includes(sections, ResponseSection.CUSTOMER)) {
+            customerResponse = detailsPaymentResult.getCustomerResponse();
+        }
+        if (ResponseSection.includes(sections, ResponseSection.EXTRA)) {
+            extraResponse = detailsPaymentResult.getExtraResponse();
+        }
+        if (ResponseSection.includes(sections, ResponseSection.FRAUD_MANAGEMENT)) {
+            fraudManagementResponse = detailsPaymentResult.getFraudManagementResponse();
+        }
+        if (ResponseSection.includes(sections, ResponseSection.MARK)) {
+            markResponse = detailsPaymentResult.getMarkResponse();
+        }
         //shoppingCartResponse = detailsPaymentResult.getShoppingCartResponse();
-        subscriptionResponse = detailsPaymentResult.getSubscriptionResponse();
-        threeDSResponse = detailsPaymentResult.getThreeDSResponse();
+        if (ResponseSection.includes(sections, ResponseSection.SUBSCRIPTION)) {
+            subscriptionResponse = detailsPaymentResult.getSubscriptionResponse();
+        }
+        if (ResponseSection.includes(sections, ResponseSection.THREE_DS)) {
+            threeDSResponse = detailsPaymentResult.getThreeDSResponse();
+        }
+        if (ResponseSection.includes(sections, ResponseSection.TOKEN)) {
+            tokenResponse = detailsPaymentResult.getTokenResponse();
+        }
     }
     
     public ServiceResult(CancelPaymentResponse.CancelPaymentResult cancelResult) {
@@ -199,6 +245,35 @@ public final class ServiceResult {
 
     public List<TransactionItem> getTransactionItems() { return transactionItems; }
 
+    /**
+     * Gets the time spent in each phase of the call
+     *
+     * @return timings, null unless <code>phaseTimings</code> is enabled
+     */
+    public PhaseTimings getPhaseTimings() {
+        return phaseTimings;
+    }
+
+    ServiceResult withPhaseTimings(PhaseTimings phaseTimings) {
+        this.phaseTimings = phaseTimings;
+        return this;
+    }
+
+    /**
+     * Gets the identifier of the request sent in the SOAP header, to find the
+     * call in the gateway logs
+     *
+     * @return requestId of the call that has produced the result
+     */
+    public String getRequestId() {
+        return requestId;
+    }
+
+    ServiceResult withRequestId(String requestId) {
+        this.requestId = requestId;
+        return this;
+    }
+
     public String getWebServiceSession() {
         return serviceSessionId;
     }
@@ -0,0 +1,461 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+import eu.payzen.webservices.sdk.metrics.Metrics;
+
+/**
+ * Keeps a {@link PaymentClient} for each of many shops.<p>
+ *
+ * Shops are registered with their key (or their whole configuration), which
+ * costs a few objects; the client of a shop, with its pool of ports and its
+ * signer initialised with the shop key, is only created on the first call
+ * of the shop. At most <code>maxShops</code> clients are kept: when a new one
+ * is needed, the least recently used is closed, and clients that have not
+ * been used for <code>idleTimeout</code> are closed too. The memory used is
+ * so bounded by <code>maxShops</code> &times; <code>poolSize</code> ports.
+ * <pre>
+ * ShopRegistry registry = ShopRegistry.getBuilder().config(baseConfig).maxShops(50).build();
+ * registry.register("12345678", "1111111111111111");
+ * ServiceResult result = registry.call("12345678", client -&gt; client.details(uuid));
+ * </pre>
+ * The lookup of a shop that has a client takes no global lock, so busy shops
+ * are not slowed down by the creation or eviction of the clients of the
+ * others. A client is never closed while a call of its shop is running, nor
+ * while a {@link CompletionStage} returned by a call (e.g.
+ * <code>client -&gt; client.async(...)</code>) has not completed: it is not
+ * evicted, and the client of a shop unregistered, replaced or closed meanwhile
+ * is only closed once the stage completes. The registration of the shop of a
+ * running call cannot be changed from within the call.
+ * The counters of each shop ({@link #getStats(String)}) are kept after its
+ * client is evicted, while its latency histograms in {@link Metrics} are
+ * removed with the client, so that they are bounded by <code>maxShops</code> too.
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class ShopRegistry implements Closeable {
+
+    public static final int DEFAULT_MAX_SHOPS = 100;
+    public static final int DEFAULT_POOL_SIZE = 2;
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final PayzenConfig config;
+    private final int maxShops;
+    private final int poolSize;
+    private final long idleTimeoutNanos;
+    private final ExecutorService executor;
+    private final ConcurrentMap<String, Shop> shops = new ConcurrentHashMap<>();
+    private final AtomicInteger activeShops = new AtomicInteger();
+    private final AtomicLong nextSweep;
+    private volatile boolean closed;
+
+    private ShopRegistry(Builder builder) {
+        this.config = builder.config != null ? builder.config : PayzenConfig.getDefault();
+        this.maxShops = builder.maxShops;
+        this.poolSize = builder.poolSize;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(builder.idleTimeoutMillis);
+        this.nextSweep = new AtomicLong(System.nanoTime() + idleTimeoutNanos / 4);
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "payzen-shop-registry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static Builder getBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Registers a shop with the configuration of the registry
+     *
+     * @param shopId shop identifier
+     * @param shopKey key of the shop (test or production, depending on the mode)
+     */
+    public void register(String shopId, String shopKey) {
+        register(config.toBuilder().shopId(shopId).shopKey(shopKey).build());
+    }
+
+    /**
+     * Registers a shop with its own configuration. The client of a shop that
+     * was already registered is closed.
+     *
+     * @param shopConfig configuration of the calls of the shop
+     * @throws IllegalStateException if called from a call of the shop
+     */
+    public void register(PayzenConfig shopConfig) {
+        checkNotInCall(shops.get(shopConfig.getShopId()));
+        Shop previous = shops.put(shopConfig.getShopId(), new Shop(shopConfig));
+        if (previous != null) {
+            previous.lock.writeLock().lock();
+            try {
+                closeClient(previous);
+            } finally {
+                previous.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Forgets a shop and closes its client
+     *
+     * @param shopId shop identifier
+     * @throws IllegalStateException if called from a call of the shop
+     */
+    public void unregister(String shopId) {
+        checkNotInCall(shops.get(shopId));
+        Shop shop = shops.remove(shopId);
+        if (shop != null) {
+            shop.lock.writeLock().lock();
+            try {
+                closeClient(shop);
+            } finally {
+                shop.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Makes calls with the client of a shop, created if needed. The client
+     * must not be used once the operation has returned, as it may be evicted,
+     * except by a {@link CompletionStage} returned by the operation, which
+     * keeps the client until it completes.
+     *
+     * @param shopId shop identifier
+     * @param operation calls to make (e.g. <code>client -&gt; client.details(uuid)</code>)
+     * @param <T> type of the result
+     * @return result of the operation
+     * @throws IllegalArgumentException if the shop is not registered
+     */
+    public <T> T call(String shopId, Function<PaymentClient, T> operation) {
+        Shop shop = lockShop(shopId);
+        boolean created = false;
+        try {
+            PaymentClient client = shop.client;
+            if (client == null) {
+                synchronized (shop) {
+                    client = shop.client;
+                    if (client == null) {
+                        client = PaymentClient.getBuilder().config(shop.config).poolSize(poolSize)
+                                .executor(executor).build();
+                        shop.client = client;
+                        shop.clientsCreated.increment();
+                        activeShops.incrementAndGet();
+                        created = true;
+                    }
+                }
+            }
+            shop.lastUsed = System.nanoTime();
+            try {
+                T result = operation.apply(client);
+                if (result instanceof CompletionStage) {
+                    keepUntilCompleted(shop, (CompletionStage<?>) result);
+                }
+                return result;
+            } catch (RuntimeException | Error e) {
+                shop.errors.increment();
+                throw e;
+            } finally {
+                shop.calls.increment();
+                shop.lastUsed = System.nanoTime();
+            }
+        } finally {
+            shop.lock.readLock().unlock();
+            if (created) {
+                evictLeastRecentlyUsed();
+            }
+            sweepIfDue();
+        }
+    }
+
+    /**
+     * Makes calls with the client of a shop in the executor of the registry
+     *
+     * @param shopId shop identifier
+     * @param operation calls to make
+     * @param <T> type of the result
+     * @return result of the operation
+     */
+    public <T> CompletableFuture<T> async(String shopId, Function<PaymentClient, T> operation) {
+        return CompletableFuture.supplyAsync(() -> call(shopId, operation), executor);
+    }
+
+    /**
+     * Gets the counters of a shop
+     *
+     * @param shopId shop identifier
+     * @return counters, null if the shop is not registered
+     */
+    public ShopStats getStats(String shopId) {
+        Shop shop = shops.get(shopId);
+        if (shop == null) {
+            return null;
+        }
+        PaymentClient client = shop.client;
+        long lastUsed = shop.lastUsed;
+        return new ShopStats(shopId, shop.calls.sum(), shop.errors.sum(), shop.clientsCreated.sum(),
+                shop.evictions.sum(), client != null, client != null ? client.getIdleCount() : 0,
+                lastUsed != 0 ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastUsed) : -1);
+    }
+
+    /**
+     * @return sorted identifiers of the registered shops
+     */
+    public Set<String> getShopIds() {
+        return Collections.unmodifiableSet(new TreeSet<>(shops.keySet()));
+    }
+
+    /**
+     * @return number of shops that have a client
+     */
+    public int getActiveShopCount() {
+        return activeShops.get();
+    }
+
+    /**
+     * Closes the clients that have not been used for the idle timeout. It is
+     * also done regularly by the calls.
+     */
+    public void evictIdle() {
+        long now = System.nanoTime();
+        for (Shop shop : shops.values()) {
+            if (shop.client != null && now - shop.lastUsed > idleTimeoutNanos) {
+                evict(shop);
+            }
+        }
+    }
+
+    /**
+     * Closes the clients of all the shops and the executor. The registered
+     * shops are kept.
+     *
+     * @throws IllegalStateException if called from a call of a shop
+     */
+    @Override
+    public void close() {
+        for (Shop shop : shops.values()) {
+            checkNotInCall(shop);
+        }
+        closed = true;
+        for (Shop shop : shops.values()) {
+            shop.lock.writeLock().lock();
+            try {
+                closeClient(shop);
+            } finally {
+                shop.lock.writeLock().unlock();
+            }
+        }
+        executor.shutdown();
+    }
+
+    // Takes the read lock of the registered shop: a shop replaced, unregistered or closed
+    // before that would get a client that nobody closes
+    private Shop lockShop(String shopId) {
+        while (true) {
+            if (closed) {
+                throw new IllegalStateException("ShopRegistry closed");
+            }
+            Shop shop = shops.get(shopId);
+            if (shop == null) {
+                throw new IllegalArgumentException("Unknown shop: " + shopId);
+            }
+            shop.lock.readLock().lock();
+            if (!closed && shops.get(shopId) == shop) {
+                return shop;
+            }
+            shop.lock.readLock().unlock();
+        }
+    }
+
+    // The write lock cannot be taken while the thread holds the read lock of a call
+    private static void checkNotInCall(Shop shop) {
+        if (shop != null && shop.lock.getReadHoldCount() > 0) {
+            throw new IllegalStateException("Registration of shop " + shop.config.getShopId()
+                    + " changed from one of its calls");
+        }
+    }
+
+    // Called with the read lock of the shop, so the client cannot be closed before the count is taken
+    private void keepUntilCompleted(Shop shop, CompletionStage<?> stage) {
+        shop.pending.incrementAndGet();
+        stage.whenComplete((result, error) -> {
+            synchronized (shop) {
+                if (shop.pending.decrementAndGet() == 0 && shop.retired != null) {
+                    shop.retired.close();
+                    shop.retired = null;
+                }
+            }
+            shop.lastUsed = System.nanoTime();
+        });
+    }
+
+    // Shops in use are skipped, the limit may then be exceeded until the next client creation
+    private void evictLeastRecentlyUsed() {
+        while (activeShops.get() > maxShops) {
+            Shop oldest = null;
+            for (Shop shop : shops.values()) {
+                if (shop.client != null && (oldest == null || shop.lastUsed - oldest.lastUsed < 0)
+                        && !shop.lock.isWriteLocked() && shop.lock.getReadLockCount() == 0
+                        && shop.pending.get() == 0) {
+                    oldest = shop;
+                }
+            }
+            if (oldest == null || !evict(oldest)) {
+                return;
+            }
+        }
+    }
+
+    private void sweepIfDue() {
+        long next = nextSweep.get();
+        long now = System.nanoTime();
+        if (now - next >= 0 && nextSweep.compareAndSet(next, now + idleTimeoutNanos / 4)) {
+            evictIdle();
+        }
+    }
+
+    private boolean evict(Shop shop) {
+        if (!shop.lock.writeLock().tryLock()) {
+            return false;
+        }
+        try {
+            if (shop.client == null || shop.pending.get() > 0) {
+                return false;
+            }
+            closeClient(shop);
+            shop.evictions.increment();
+            return true;
+        } finally {
+            shop.lock.writeLock().unlock();
+        }
+    }
+
+    // Called with the write lock of the shop. A client still used by a pending stage is closed
+    // when the stage completes; only replaced, unregistered and closed shops get there, not evicted ones
+    private void closeClient(Shop shop) {
+        synchronized (shop) {
+            if (shop.client != null) {
+                if (shop.pending.get() > 0) {
+                    shop.retired = shop.client;
+                } else {
+                    shop.client.close();
+                }
+                shop.client = null;
+                activeShops.decrementAndGet();
+                Metrics.removeShop(shop.config.getShopId());
+            }
+        }
+    }
+
+    private static final class Shop {
+        final PayzenConfig config;
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        final LongAdder calls = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder clientsCreated = new LongAdder();
+        final LongAdder evictions = new LongAdder();
+        final AtomicInteger pending = new AtomicInteger();
+        volatile PaymentClient client;
+        // Client of the shop that is closed when the pending stages complete
+        PaymentClient retired;
+        volatile long lastUsed;
+
+        Shop(PayzenConfig config) {
+            this.config = config;
+        }
+    }
+
+    /**
+     * Builder of {@link ShopRegistry}
+     */
+    public static final class Builder {
+        private PayzenConfig config;
+        private int maxShops = DEFAULT_MAX_SHOPS;
+        private int poolSize = DEFAULT_POOL_SIZE;
+        private long idleTimeoutMillis = DEFAULT_IDLE_TIMEOUT_MILLIS;
+
+        private Builder() {
+        }
+
+        /**
+         * @param config configuration of the shops registered with their key only
+         *               (endpoint, mode, timeouts...), the default one if not set
+         * @return this builder
+         */
+        public Builder config(PayzenConfig config) {
+            this.config = config;
+            return this;
+        }
+
+        /**
+         * @param maxShops maximum number of shops with a client
+         * @return this builder
+         */
+        public Builder maxShops(int maxShops) {
+            if (maxShops <= 0) {
+                throw new IllegalArgumentException("Invalid maximum number of shops: " + maxShops);
+            }
+            this.maxShops = maxShops;
+            return this;
+        }
+
+        /**
+         * @param poolSize maximum number of idle ports kept by each shop
+         * @return this builder
+         */
+        public Builder poolSize(int poolSize) {
+            if (poolSize < 0) {
+                throw new IllegalArgumentException("Invalid pool size: " + poolSize);
+            }
+            this.poolSize = poolSize;
+            return this;
+        }
+
+        /**
+         * @param idleTimeout time after which the client of a shop without calls is closed
+         * @param unit unit of the time
+         * @return this builder
+         */
+        public Builder idleTimeout(long idleTimeout, TimeUnit unit) {
+            if (idleTimeout <= 0) {
+                throw new IllegalArgumentException("Invalid idle timeout: " + idleTimeout);
+            }
+            this.idleTimeoutMillis = unit.toMillis(idleTimeout);
+            return this;
+        }
+
+        public ShopRegistry build() {
+            return new ShopRegistry(this);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk;
+
+/**
+ * Counters of a shop of a {@link ShopRegistry}
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class ShopStats {
+    private final String shopId;
+    private final long calls;
+    private final long errors;
+    private final long clientsCreated;
+    private final long evictions;
+    private final boolean active;
+    private final int idlePorts;
+    private final long idleMillis;
+
+    ShopStats(String shopId, long calls, long errors, long clientsCreated, long evictions, boolean active,
+            int idlePorts, long idleMillis) {
+        this.shopId = shopId;
+        this.calls = calls;
+        this.errors = errors;
+        this.clientsCreated = clientsCreated;
+        this.evictions = evictions;
+        this.active = active;
+        this.idlePorts = idlePorts;
+        this.idleMillis = idleMillis;
+    }
+
+    public String getShopId() {
+        return shopId;
+    }
+
+    /**
+     * @return number of operations made through the registry
+     */
+    public long getCalls() {
+        return calls;
+    }
+
+    /**
+     * @return number of operations that have thrown an exception
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return number of clients created for the shop, more than one if it has been evicted
+     */
+    public long getClientsCreated() {
+        return clientsCreated;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return true if the shop has a client
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * @return number of ports pooled by the client of the shop
+     */
+    public int getIdlePorts() {
+        return idlePorts;
+    }
+
+    /**
+     * @return time since the last operation of the shop, -1 if it has never been used
+     */
+    public long getIdleMillis() {
+        return idleMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ShopStats[shopId=" + shopId + ", calls=" + calls + ", errors=" + errors + ", clientsCreated="
+                + clientsCreated + ", evictions=" + evictions + ", active=" + active + ", idlePorts=" + idlePorts
+                + ", idleMillis=" + idleMillis + "]";
+    }
+}
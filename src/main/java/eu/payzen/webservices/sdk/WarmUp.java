@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.ws.WebServiceException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.lyra.vads.ws.v5.PaymentAPI;
+
+import eu.payzen.webservices.sdk.client.ClientV5;
+import eu.payzen.webservices.sdk.handler.soap.HeaderHandler;
+import eu.payzen.webservices.sdk.transport.HttpTransports;
+
+/**
+ * Runs the steps of a warm-up, so that the first payments do not pay for
+ * the initialisation of the SDK
+ *
+ * @author Javier Garcia Alonso
+ */
+final class WarmUp {
+
+    private static final Logger logger = LoggerFactory.getLogger(WarmUp.class);
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private WarmUp() {
+    }
+
+    /**
+     * @param config configuration of the calls to prepare
+     * @param ports creates the ports of a client, null if there are none to keep
+     * @param connections number of connections to open, 0 for none
+     * @return time spent in each step
+     */
+    static WarmUpReport run(PayzenConfig config, Runnable ports, int connections) {
+        WarmUpReport report = new WarmUpReport();
+
+        long start = System.nanoTime();
+        PaymentAPI port = new ClientV5(config).getPaymentAPIImplPort();
+        if (port instanceof Closeable) {
+            try {
+                ((Closeable) port).close();
+            } catch (IOException e) {
+                // Nothing else to release
+            }
+        }
+        long end = System.nanoTime();
+        report.add(WarmUpStep.RUNTIME, end - start);
+
+        if (ports != null) {
+            start = end;
+            ports.run();
+            end = System.nanoTime();
+            report.add(WarmUpStep.PORTS, end - start);
+        }
+
+        start = end;
+        new HeaderHandler(config.getShopId(), config.getShopKey(), config.getMode(), config.getWsUser(),
+                config.getReturnUrl(), config.getEcsPaymentId(), config.getRemoteId(), config.getHeaders())
+                .buildHeaderFields();
+        end = System.nanoTime();
+        report.add(WarmUpStep.SIGNING, end - start);
+
+        if (connections > 0) {
+            start = end;
+            try {
+                report.setConnections(HttpTransports.openConnections(config, connections));
+            } catch (IOException e) {
+                throw new WebServiceException("Unable to connect to " + config.getEndpointUrl(), e);
+            }
+            report.add(WarmUpStep.CONNECTIONS, System.nanoTime() - start);
+        }
+
+        logger.info("Warm-up of shop {}: {}", config.getShopId(), report);
+        return report;
+    }
+
+    /**
+     * Runs a warm-up without ports in a new daemon thread
+     *
+     * @see #run(PayzenConfig, Runnable, int)
+     */
+    static CompletableFuture<WarmUpReport> runAsync(PayzenConfig config, int connections) {
+        CompletableFuture<WarmUpReport> future = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                future.complete(run(config, null, connections));
+            } catch (RuntimeException | Error e) {
+                future.completeExceptionally(e);
+            }
+        }, "payzen-warm-up-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        thread.start();
+        return future;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Time spent in each {@link WarmUpStep} of a warm-up. Steps that have not
+ * been run (e.g. {@link WarmUpStep#CONNECTIONS} when no connection is
+ * requested) are not measured.
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class WarmUpReport {
+
+    private final Map<WarmUpStep, Long> nanos = new EnumMap<>(WarmUpStep.class);
+    private int connections;
+
+    WarmUpReport() {
+    }
+
+    void add(WarmUpStep step, long duration) {
+        nanos.put(step, duration);
+    }
+
+    void setConnections(int connections) {
+        this.connections = connections;
+    }
+
+    /**
+     * Gets the time spent in a step
+     *
+     * @param step step
+     * @return duration in nanoseconds, 0 if it has not been run
+     */
+    public long get(WarmUpStep step) {
+        Long duration = nanos.get(step);
+        return duration != null ? duration : 0;
+    }
+
+    /**
+     * Gets the sum of all the steps
+     *
+     * @return duration in nanoseconds
+     */
+    public long getTotal() {
+        long total = 0;
+        for (long step : nanos.values()) {
+            total += step;
+        }
+        return total;
+    }
+
+    /**
+     * Gets the steps that have been run
+     *
+     * @return durations in nanoseconds, in the order of the steps
+     */
+    public Map<WarmUpStep, Long> asMap() {
+        return Collections.unmodifiableMap(new EnumMap<>(nanos));
+    }
+
+    /**
+     * @return number of connections opened by {@link WarmUpStep#CONNECTIONS}
+     */
+    public int getConnections() {
+        return connections;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<WarmUpStep, Long> entry : nanos.entrySet()) {
+            if (text.length() > 0) {
+                text.append(", ");
+            }
+            text.append(entry.getKey()).append('=').append(String.format(Locale.ROOT, "%.3f", entry.getValue() / 1000000.0))
+                    .append("ms");
+        }
+        if (nanos.containsKey(WarmUpStep.CONNECTIONS)) {
+            text.append(" (").append(connections).append(" connections)");
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk;
+
+/**
+ * Steps of a warm-up, measured by {@link WarmUpReport}.
+ *
+ * @see PaymentClient#warmUp(int)
+ * @see Payment#warmUp(PayzenConfig, int)
+ * @author Javier Garcia Alonso
+ */
+public enum WarmUpStep {
+
+    /**
+     * Creation of a first client: class loading, WSDL download, JAX-WS
+     * runtime model and JAXB context, shared by the next clients
+     */
+    RUNTIME,
+    /** Creation of the ports kept by a {@link PaymentClient}, up to its pool size */
+    PORTS,
+    /** Lookup and initialisation of the HMAC-SHA-256 Mac, and a first signature */
+    SIGNING,
+    /** TCP connections and TLS handshakes with the endpoint, if requested */
+    CONNECTIONS
+}
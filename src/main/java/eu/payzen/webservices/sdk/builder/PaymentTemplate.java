@@ -0,0 +1,215 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.builder;
+
+import com.lyra.vads.ws.v5.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Template holding the parts of a {@link CreatePayment} request that are
+ * shared by every payment of a shop (common request, tech request and
+ * customer data).<p>
+ *
+ * The template is validated once when it is built and can then be used
+ * concurrently to create payments. Each request gets its own common request
+ * (a copy of three fields) and its per-transaction objects (order, payment
+ * and card). The customer and tech requests are shared as they are. They are
+ * read-only: they must not be modified once given to the builder, nor through
+ * the requests created, as the change would reach every later and concurrent
+ * payment of the template.
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class PaymentTemplate {
+
+    // Allowed values of paymentSource in Payzen API v5
+    private static final Set<String> PAYMENT_SOURCES = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList("EC", "MOTO", "CC", "OTHER")));
+
+    // It does not matter. It will be recalified by the platform
+    private static final String DEFAULT_SCHEME = "VISA";
+
+    private final String paymentSource;
+    private final String contractNumber;
+    private final String comment;
+    private final CustomerRequest customer;
+    private final TechRequest tech;
+
+    private PaymentTemplate(Builder builder) {
+        this.paymentSource = builder.paymentSource;
+        this.contractNumber = builder.contractNumber;
+        this.comment = builder.comment;
+        this.customer = builder.customer;
+        this.tech = builder.tech;
+    }
+
+    public static Builder getBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Creates a payment request paid with a card
+     *
+     * @param orderId Optional, null is none. The order Id.
+     * @param amount Amount of the payment in cents
+     * @param currency used currency in ISO 4217
+     * @param cardNumber card number
+     * @param expMonth expiration month
+     * @param expYear expiration year
+     * @param cvvCode card verification code
+     * @return request ready to be sent
+     */
+    public CreatePayment create(String orderId, long amount, int currency, String cardNumber, int expMonth, int expYear, String cvvCode) {
+        CardRequest card = new CardRequest();
+        card.setNumber(cardNumber);
+        card.setScheme(DEFAULT_SCHEME);
+        card.setExpiryMonth(expMonth);
+        card.setExpiryYear(expYear);
+        card.setCardSecurityCode(cvvCode);
+
+        return create(orderId, amount, currency, card);
+    }
+
+    /**
+     * Creates a payment request paid with a previously registered token
+     *
+     * @param orderId Optional, null is none. The order Id.
+     * @param amount Amount of the payment in cents
+     * @param currency used currency in ISO 4217
+     * @param paymentToken token identifying the payment method
+     * @return request ready to be sent
+     */
+    public CreatePayment createWithToken(String orderId, long amount, int currency, String paymentToken) {
+        CardRequest card = new CardRequest();
+        card.setPaymentToken(paymentToken);
+
+        return create(orderId, amount, currency, card);
+    }
+
+    /**
+     * Creates a payment request using a card request built by the caller
+     *
+     * @param orderId Optional, null is none. The order Id.
+     * @param amount Amount of the payment in cents
+     * @param currency used currency in ISO 4217
+     * @param card card or token information
+     * @return request ready to be sent
+     */
+    public CreatePayment create(String orderId, long amount, int currency, CardRequest card) {
+        OrderRequest order = new OrderRequest();
+        order.setOrderId(orderId);
+
+        PaymentRequest payment = new PaymentRequest();
+        payment.setAmount(amount);
+        payment.setCurrency(currency);
+
+        // The common request is often changed per payment (e.g. its comment), so it is not shared
+        CommonRequest common = new CommonRequest();
+        common.setPaymentSource(paymentSource);
+        common.setContractNumber(contractNumber);
+        common.setComment(comment);
+
+        CreatePayment createPayment = new CreatePayment();
+        createPayment.setCommonRequest(common);
+        createPayment.setOrderRequest(order);
+        createPayment.setPaymentRequest(payment);
+        createPayment.setCardRequest(card);
+        createPayment.setCustomerRequest(customer);
+        createPayment.setTechRequest(tech);
+
+        return createPayment;
+    }
+
+    public String getPaymentSource() {
+        return paymentSource;
+    }
+
+    public String getContractNumber() {
+        return contractNumber;
+    }
+
+    public String getComment() {
+        return comment;
+    }
+
+    /**
+     * Builder class used to validate and create a {@link PaymentTemplate}
+     */
+    public static final class Builder {
+
+        private String paymentSource;
+        private String contractNumber;
+        private String comment;
+        private CustomerRequest customer;
+        private TechRequest tech;
+
+        private Builder() {
+        }
+
+        public Builder paymentSource(String paymentSource) {
+            this.paymentSource = paymentSource;
+            return this;
+        }
+
+        public Builder contractNumber(String contractNumber) {
+            this.contractNumber = contractNumber;
+            return this;
+        }
+
+        public Builder comment(String comment) {
+            this.comment = comment;
+            return this;
+        }
+
+        public Builder customer(CustomerRequest customer) {
+            this.customer = customer;
+            return this;
+        }
+
+        public Builder tech(TechRequest tech) {
+            this.tech = tech;
+            return this;
+        }
+
+        /**
+         * Validates the shared fields and creates the template
+         *
+         * @return the template
+         * @throws IllegalStateException if a shared field has an invalid value
+         */
+        public PaymentTemplate build() {
+            if (paymentSource != null && !PAYMENT_SOURCES.contains(paymentSource)) {
+                throw new IllegalStateException("Invalid paymentSource: " + paymentSource
+                        + ". Allowed values are " + PAYMENT_SOURCES);
+            }
+            if (contractNumber != null && StringUtils.isBlank(contractNumber)) {
+                throw new IllegalStateException("contractNumber cannot be blank");
+            }
+            if (customer != null && customer.getBillingDetails() == null
+                    && customer.getShippingDetails() == null && customer.getExtraDetails() == null) {
+                throw new IllegalStateException("customer request is empty");
+            }
+
+            return new PaymentTemplate(this);
+        }
+    }
+}
@@ -16,26 +16,32 @@
 package eu.payzen.webservices.sdk.client;
 
 import java.io.IOException;
-import java.net.URL;
 import java.util.Map;
 
-import javax.net.ssl.HostnameVerifier;
-import javax.net.ssl.HttpsURLConnection;
-import javax.xml.namespace.QName;
 import javax.xml.ws.BindingProvider;
-import javax.xml.ws.Service;
 
 import com.lyra.vads.ws.v5.PaymentAPI;
 
 import com.sun.xml.ws.client.BindingProviderProperties;
+import com.sun.xml.ws.developer.JAXWSProperties;
+import eu.payzen.webservices.sdk.PayzenConfig;
 import eu.payzen.webservices.sdk.handler.soap.HeaderHandlerResolver;
-import eu.payzen.webservices.sdk.util.Config;
-import eu.payzen.webservices.sdk.util.NullHostnameVerifier;
-import eu.payzen.webservices.sdk.util.PayzenHostnameVerifier;
-import org.apache.commons.lang.StringUtils;
+import eu.payzen.webservices.sdk.handler.soap.RecordReplayHandler;
+import eu.payzen.webservices.sdk.handler.soap.SoapCapture;
+import eu.payzen.webservices.sdk.handler.soap.SoapCaptureHandler;
+import eu.payzen.webservices.sdk.jfr.JfrEvents;
+import eu.payzen.webservices.sdk.metrics.Metrics;
+import eu.payzen.webservices.sdk.metrics.PhaseTimings;
+import eu.payzen.webservices.sdk.tracing.Tracing;
+import eu.payzen.webservices.sdk.transport.HttpTransport;
+import eu.payzen.webservices.sdk.transport.HttpTransports;
+import eu.payzen.webservices.sdk.transport.RecordReplay;
+import eu.payzen.webservices.sdk.transport.TlsContext;
 
 /**
- * Encapsulates the client WS to call Payment operations
+ * Encapsulates the client WS to call Payment operations. The clients of the
+ * same WSDL share its JAX-WS service, so the WSDL is downloaded and the
+ * runtime model built once.
  *
  * @author Javier Garcia Alonso
  */
@@ -43,47 +49,74 @@ public class ClientV5 {
 
 	private final PaymentAPI port;
 
+	/**
+	 * Creates a client from a configuration map. The map is not modified.
+	 *
+	 * @param config values overriding ws-sdk-config.properties, may be null
+	 * @see PayzenConfig#from(Map)
+	 */
 	public ClientV5(Map<String, String> config) {
-		// Read client properties - ws-sdk-config.properties
-		String shopId = getProperty("shopId", config);
-		String shopKey = getProperty("shopKey", config);
-		String mode = getProperty("mode", config);
-		String endpointHost = getProperty("endpointHost", config);
-		String secureConnection = getProperty("secureConnection", config);
-		String disableHostnameVerifier = getProperty("disableHostnameVerifier", config);
-		String wsUser = getProperty("wsUser", config);
-		String returnUrl = getProperty("returnUrl", config);
-		String ecsPaymentId = getProperty("ecsPaymentId", config);
-		String remoteId = getProperty("remoteId", config);
-		String connectionTimeout = getProperty("connectionTimeout", config);
-		String requestTimeout = getProperty("requestTimeout", config);
-
-		String protocol = "https://";
-		if (!("true".equalsIgnoreCase(secureConnection))) {
-			protocol = "http://";
-		}
+		this(PayzenConfig.from(config));
+	}
 
-		// Adds hostnameverifier to check domain/certificate
-		HostnameVerifier verifier = ("true".equalsIgnoreCase(disableHostnameVerifier)) ? new NullHostnameVerifier()
-				: new PayzenHostnameVerifier();
-		HttpsURLConnection.setDefaultHostnameVerifier(verifier);
+	public ClientV5(PayzenConfig config) {
+		long start = System.nanoTime();
+		Object creationEvent = JfrEvents.beginClientCreation();
 
-		// Initialises port
-		StringBuilder wsdlURLStr = new StringBuilder(protocol);
-		wsdlURLStr.append(endpointHost).append("/vads-ws/v5?wsdl");
-		URL wsdlURL;
+		String shopId = config.getShopId();
+		String replayFile = config.getReplayFile();
+
+		// Socket factory and hostnameverifier to check domain/certificate, set on
+		// the connections of this client only
+		TlsContext tls = TlsContext.of(config);
+
+		// Initialises port, the runtime model is shared with the other clients of the WSDL
 		try {
-			wsdlURL = new URL(wsdlURLStr.toString());
-			QName qname = new QName("http://v5.ws.vads.lyra.com/", "v5");
-			Service service = Service.create(wsdlURL, qname);
-			service.setHandlerResolver(new HeaderHandlerResolver(shopId, shopKey, mode, wsUser, returnUrl, ecsPaymentId, remoteId, config));
-			port = service.getPort(PaymentAPI.class);
+			PaymentService service;
+			RecordReplayHandler recordReplayHandler = null;
+			if (replayFile != null) {
+				// Nothing is downloaded, the WSDL bundled with the library is used
+				recordReplayHandler = RecordReplayHandler.replay(RecordReplay.store(replayFile));
+				service = PaymentService.bundled();
+			} else {
+				service = PaymentService.of(config, tls);
+				if (config.getRecordFile() != null) {
+					recordReplayHandler = RecordReplayHandler.record(RecordReplay.writer(config.getRecordFile()));
+				}
+			}
+			SoapCaptureHandler captureHandler = null;
+			if (config.isSoapCapture()) {
+				captureHandler = new SoapCaptureHandler(shopId, config.getSoapCaptureSize());
+				SoapCapture.registerJmx();
+			}
+			PaymentAPI servicePort = service.newPort(new HeaderHandlerResolver(shopId, config.getShopKey(),
+					config.getMode(), config.getWsUser(), config.getReturnUrl(), config.getEcsPaymentId(),
+					config.getRemoteId(), config.getHeaders(), captureHandler, recordReplayHandler)
+					.getHandlerChain(null));
+			if (replayFile != null) {
+				((BindingProvider) servicePort).getRequestContext().put(BindingProvider.ENDPOINT_ADDRESS_PROPERTY,
+						config.getEndpointUrl());
+			}
 
-			//Set timeout values if necessary
-			if (StringUtils.isNotBlank(connectionTimeout) || StringUtils.isNotBlank(requestTimeout)) {
-				setTimeoutValues(port, connectionTimeout, requestTimeout);
+			setTlsValues(servicePort, tls);
+
+			// Transport of the SDK replacing HttpURLConnection, see HttpTransportTubeFactory
+			HttpTransport transport = HttpTransports.of(config);
+			if (transport != null) {
+				((BindingProvider) servicePort).getRequestContext().put(HttpTransport.REQUEST_CONTEXT_PROPERTY,
+						transport);
 			}
 
+			//Set timeout values if necessary
+			setTimeoutValues(servicePort, config.getConnectionTimeoutMillis(), config.getRequestTimeoutMillis());
+
+			// Records latency and outcome of each call
+			boolean phaseTimings = config.isPhaseTimings();
+			port = (Metrics.isEnabled() || phaseTimings || Tracing.isEnabled() || JfrEvents.isAvailable())
+					? MeteredPaymentAPI.wrap(servicePort, shopId, phaseTimings, System.nanoTime() - start)
+					: servicePort;
+			JfrEvents.commitClientCreation(creationEvent, shopId, config.getEndpointHost());
+
 		}  catch (IOException e) {
 			throw new RuntimeException(e.getMessage(), e);
 		}
@@ -98,22 +131,31 @@ public class ClientV5 {
 		return port;
 	}
 	
-	private String getProperty(String key, Map<String, String> config) {
-		String value = (config != null && config.get(key) != null) ? config.remove(key)
-				:Config.getConfig().getProperty(key);
-		return value;
+	/**
+	 * Gets the phase timings of the last call made through a port, if they
+	 * have been enabled with the <code>phaseTimings</code> property
+	 *
+	 * @param port port returned by {@link #getPaymentAPIImplPort()}
+	 * @return timings of the last call, null if they are not enabled
+	 */
+	public static PhaseTimings getPhaseTimings(PaymentAPI port) {
+		return MeteredPaymentAPI.getLastPhaseTimings(port);
+	}
+
+	private void setTlsValues(PaymentAPI port, TlsContext tls) {
+		Map<String, Object> requestContext = ((BindingProvider) port).getRequestContext();
+		requestContext.put(JAXWSProperties.SSL_SOCKET_FACTORY, tls.getSocketFactory());
+		requestContext.put(JAXWSProperties.HOSTNAME_VERIFIER, tls.getHostnameVerifier());
 	}
 
-	private void setTimeoutValues(PaymentAPI port, String connectionTimeout, String requestTimeout) {
+	private void setTimeoutValues(PaymentAPI port, int connectionTimeoutMillis, int requestTimeoutMillis) {
 		BindingProvider bindingProvider = (BindingProvider)port;
 
-		if (StringUtils.isNotBlank(connectionTimeout)) {
-			bindingProvider.getRequestContext().put(BindingProviderProperties.CONNECT_TIMEOUT,
-					Integer.valueOf(connectionTimeout).intValue() * 1000);
+		if (connectionTimeoutMillis > 0) {
+			bindingProvider.getRequestContext().put(BindingProviderProperties.CONNECT_TIMEOUT, connectionTimeoutMillis);
 		}
-		if (StringUtils.isNotBlank(requestTimeout)) {
-			bindingProvider.getRequestContext().put(BindingProviderProperties.REQUEST_TIMEOUT,
-					Integer.valueOf(requestTimeout).intValue() * 1000);
+		if (requestTimeoutMillis > 0) {
+			bindingProvider.getRequestContext().put(BindingProviderProperties.REQUEST_TIMEOUT, requestTimeoutMillis);
 		}
 	}
 }
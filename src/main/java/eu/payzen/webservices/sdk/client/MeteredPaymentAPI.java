@@ -0,0 +1,202 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.client;
+
+import java.io.Closeable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.ws.BindingProvider;
+import javax.xml.ws.handler.MessageContext;
+
+import com.lyra.vads.ws.v5.PaymentAPI;
+
+import eu.payzen.webservices.sdk.handler.soap.HeaderHandler;
+import eu.payzen.webservices.sdk.jfr.JfrEvents;
+import eu.payzen.webservices.sdk.metrics.CallPhase;
+import eu.payzen.webservices.sdk.metrics.Metrics;
+import eu.payzen.webservices.sdk.metrics.PhaseTimings;
+import eu.payzen.webservices.sdk.tracing.Span;
+import eu.payzen.webservices.sdk.tracing.Tracer;
+import eu.payzen.webservices.sdk.tracing.Tracing;
+
+/**
+ * Wraps a JAX-WS port to record the latency and the outcome of every
+ * operation in {@link Metrics}. The proxy is still a {@link BindingProvider},
+ * so the request and response contexts of the port are available.<p>
+ *
+ * When phase timings are enabled, the {@link PhaseTimings} of each call are
+ * put in the request context so that {@link HeaderHandler} marks the phases
+ * run by the handler chain; the construction of the client is added to the
+ * first call.<p>
+ *
+ * When a {@link Tracer} has been set, a span is started for each call and put
+ * in the request context, where {@link HeaderHandler} adds the requestId.
+ * Each call is also a {@link JfrEvents} event when it is being recorded.
+ *
+ * @author Javier Garcia Alonso
+ */
+final class MeteredPaymentAPI implements InvocationHandler {
+
+	private final PaymentAPI port;
+	private final String shopId;
+	private final boolean phaseTimings;
+	private long clientInitNanos;
+	private volatile PhaseTimings lastPhaseTimings;
+
+	private MeteredPaymentAPI(PaymentAPI port, String shopId, boolean phaseTimings, long clientInitNanos) {
+		this.port = port;
+		this.shopId = shopId;
+		this.phaseTimings = phaseTimings;
+		this.clientInitNanos = clientInitNanos;
+	}
+
+	/**
+	 * Wraps a port
+	 *
+	 * @param port JAX-WS port
+	 * @param shopId shop used by the port
+	 * @param phaseTimings true to measure the phases of each call
+	 * @param clientInitNanos time spent creating the port
+	 * @return proxy that records the calls
+	 */
+	static PaymentAPI wrap(PaymentAPI port, String shopId, boolean phaseTimings, long clientInitNanos) {
+		return (PaymentAPI) Proxy.newProxyInstance(MeteredPaymentAPI.class.getClassLoader(),
+				new Class<?>[] { PaymentAPI.class, BindingProvider.class, Closeable.class },
+				new MeteredPaymentAPI(port, shopId, phaseTimings, clientInitNanos));
+	}
+
+	/**
+	 * Gets the phase timings of the last call made through a port
+	 *
+	 * @param port port returned by {@link ClientV5#getPaymentAPIImplPort()}
+	 * @return timings, null if they are not enabled or no call has been made
+	 */
+	static PhaseTimings getLastPhaseTimings(PaymentAPI port) {
+		if (port != null && Proxy.isProxyClass(port.getClass())) {
+			InvocationHandler handler = Proxy.getInvocationHandler(port);
+			if (handler instanceof MeteredPaymentAPI) {
+				return ((MeteredPaymentAPI) handler).lastPhaseTimings;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		if (method.getDeclaringClass() != PaymentAPI.class) {
+			return invokePort(method, args);
+		}
+
+		long start = System.nanoTime();
+		PhaseTimings timings = phaseTimings ? startTimings() : null;
+		Span span = Tracing.isEnabled() ? startSpan(method.getName()) : null;
+		Object event = JfrEvents.beginCall();
+		Object result = null;
+		Throwable error = null;
+		try {
+			result = invokePort(method, args);
+			return result;
+		} catch (Throwable e) {
+			error = e;
+			throw e;
+		} finally {
+			if (timings != null) {
+				// The rest of the call goes to the phase after the last one marked by the handler
+				timings.mark(timings.isMeasured(CallPhase.SERVER) ? CallPhase.UNMARSHAL
+						: timings.isMeasured(CallPhase.SIGN) ? CallPhase.SERVER : CallPhase.MARSHAL);
+				lastPhaseTimings = timings;
+				Metrics.recordPhases(method.getName(), shopId, timings);
+			}
+			if (span != null) {
+				endSpan(span, result, error);
+			}
+			if (event != null) {
+				JfrEvents.commitCall(event, method.getName(), shopId, "JAX-WS", Metrics.responseCode(result), -1,
+						error == null ? contentLength((BindingProvider) port) : -1);
+			}
+			Metrics.recordCall(method.getName(), shopId, start, result, error);
+		}
+	}
+
+	private Span startSpan(String operation) {
+		Span span = Tracing.getTracer().startSpan(operation, shopId);
+		((BindingProvider) port).getRequestContext().put(Span.CONTEXT_PROPERTY, span);
+		return span;
+	}
+
+	private void endSpan(Span span, Object result, Throwable error) {
+		BindingProvider bindingProvider = (BindingProvider) port;
+		bindingProvider.getRequestContext().remove(Span.CONTEXT_PROPERTY);
+		try {
+			Integer responseCode = Metrics.responseCode(result);
+			if (responseCode != null) {
+				span.setAttribute(Span.RESPONSE_CODE, responseCode);
+			}
+			if (error != null) {
+				span.recordError(error);
+			} else {
+				long responseBytes = contentLength(bindingProvider);
+				if (responseBytes >= 0) {
+					span.setAttribute(Span.RESPONSE_BYTES, responseBytes);
+				}
+			}
+		} finally {
+			span.end();
+		}
+	}
+
+	private static long contentLength(BindingProvider bindingProvider) {
+		@SuppressWarnings("unchecked")
+		Map<String, List<String>> headers = (Map<String, List<String>>) bindingProvider.getResponseContext()
+				.get(MessageContext.HTTP_RESPONSE_HEADERS);
+		if (headers != null) {
+			for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+				if ("Content-Length".equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+					try {
+						return Long.parseLong(header.getValue().get(0).trim());
+					} catch (NumberFormatException e) {
+						return -1;
+					}
+				}
+			}
+		}
+		return -1;
+	}
+
+	private synchronized PhaseTimings startTimings() {
+		PhaseTimings timings = new PhaseTimings();
+		if (clientInitNanos >= 0) {
+			timings.add(CallPhase.CLIENT_INIT, clientInitNanos);
+			clientInitNanos = -1;
+		}
+		((BindingProvider) port).getRequestContext().put(PhaseTimings.CONTEXT_PROPERTY, timings);
+		return timings;
+	}
+
+	private Object invokePort(Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(port, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.ws.BindingProvider;
+import javax.xml.ws.Service;
+import javax.xml.ws.handler.Handler;
+import javax.xml.ws.spi.ServiceDelegate;
+
+import com.lyra.vads.ws.v5.PaymentAPI;
+
+import com.sun.xml.ws.client.WSServiceDelegate;
+import eu.payzen.webservices.sdk.PayzenConfig;
+import eu.payzen.webservices.sdk.jfr.JfrEvents;
+import eu.payzen.webservices.sdk.transport.TlsContext;
+
+/**
+ * JAX-WS service of the v5 API, shared by all the clients of a WSDL.<p>
+ *
+ * The service keeps the parsed WSDL, and the runtime model of
+ * {@link PaymentAPI} and its JAXB context built by its first port: the most
+ * expensive part of creating a client. They are built once per WSDL in the
+ * JVM, usually once as all the clients use the WSDL of the gateway, and the
+ * next ports only create a proxy. The WSDL is downloaded once too. As the
+ * service is shared, the handlers are set on each port, never on the
+ * service.
+ *
+ * @author Javier Garcia Alonso
+ */
+final class PaymentService {
+
+	// WSDL of the v5 API, the same as the one served by the gateway
+	private static final String BUNDLED_WSDL = "v5.wsdl";
+	private static final QName QNAME = new QName("http://v5.ws.vads.lyra.com/", "v5");
+	private static final ConcurrentMap<String, PaymentService> SERVICES = new ConcurrentHashMap<>();
+	private static final String NO_OPTIMIZE = "com.sun.xml.bind.v2.bytecode.ClassTailor.noOptimize";
+
+	static {
+		configureJaxb();
+	}
+
+	private final ServiceDelegate delegate;
+
+	private PaymentService(ServiceDelegate delegate) {
+		this.delegate = delegate;
+	}
+
+	/**
+	 * @return service of the WSDL bundled with the library, nothing is downloaded
+	 */
+	static PaymentService bundled() {
+		URL wsdl = PaymentService.class.getResource(BUNDLED_WSDL);
+		return SERVICES.computeIfAbsent(wsdl.toExternalForm(),
+				k -> new PaymentService(new WSServiceDelegate(wsdl, QNAME, Service.class)));
+	}
+
+	/**
+	 * Gets the service of the WSDL of a configuration, downloaded the first
+	 * time with the TLS settings of the client (JAX-WS would use the defaults
+	 * of the JVM)
+	 *
+	 * @param config configuration of the client
+	 * @param tls TLS settings of the client
+	 * @return service shared with the clients of the same WSDL
+	 * @throws IOException if the WSDL cannot be downloaded, the next client tries again
+	 */
+	static PaymentService of(PayzenConfig config, TlsContext tls) throws IOException {
+		String wsdlUrl = config.getWsdlUrl();
+		PaymentService service = SERVICES.get(wsdlUrl);
+		if (service == null) {
+			try {
+				service = SERVICES.computeIfAbsent(wsdlUrl, k -> {
+					try {
+						return new PaymentService(load(config, tls));
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+		}
+		return service;
+	}
+
+	/**
+	 * Creates a port, the first one of the service builds the runtime model
+	 *
+	 * @param handlers handler chain of the port
+	 * @return new port
+	 */
+	@SuppressWarnings("rawtypes")
+	PaymentAPI newPort(List<Handler> handlers) {
+		PaymentAPI port;
+		// The ports and models of WSServiceDelegate are kept in plain maps
+		synchronized (this) {
+			port = delegate.getPort(PaymentAPI.class);
+		}
+		((BindingProvider) port).getBinding().setHandlerChain(handlers);
+		return port;
+	}
+
+	/**
+	 * Makes JAXB use reflection in a native image, which cannot define the
+	 * optimized accessors that JAXB generates. Called before any JAXB context
+	 * is created. This only works if JAXB is initialized at run time, so the
+	 * native-image.properties of the SDK also sets the property in the image
+	 * builder.
+	 */
+	static void configureJaxb() {
+		if (System.getProperty("org.graalvm.nativeimage.imagecode") != null && System.getProperty(NO_OPTIMIZE) == null) {
+			System.setProperty(NO_OPTIMIZE, "true");
+		}
+	}
+
+	private static ServiceDelegate load(PayzenConfig config, TlsContext tls) throws IOException {
+		Object wsdlEvent = JfrEvents.beginWsdlLoad();
+		URLConnection connection = new URL(config.getWsdlUrl()).openConnection();
+		tls.configure(connection);
+		connection.setConnectTimeout(config.getConnectionTimeoutMillis());
+		connection.setReadTimeout(config.getRequestTimeoutMillis());
+		try (InputStream in = connection.getInputStream()) {
+			ServiceDelegate delegate = new WSServiceDelegate(new StreamSource(in, config.getWsdlUrl()), QNAME,
+					Service.class);
+			JfrEvents.commitWsdlLoad(wsdlEvent, config.getWsdlUrl());
+			return delegate;
+		}
+	}
+}
@@ -0,0 +1,680 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.ws.WebServiceException;
+
+import com.lyra.vads.ws.v5.CommonResponse;
+import com.lyra.vads.ws.v5.CreatePayment;
+import com.lyra.vads.ws.v5.CreatePaymentResponse;
+import com.lyra.vads.ws.v5.ExtendedResponseRequest;
+import com.lyra.vads.ws.v5.FindPayments;
+import com.lyra.vads.ws.v5.FindPaymentsResponse;
+import com.lyra.vads.ws.v5.GetPaymentDetails;
+import com.lyra.vads.ws.v5.GetPaymentDetailsResponse;
+import com.lyra.vads.ws.v5.ObjectFactory;
+import com.lyra.vads.ws.v5.QueryRequest;
+import com.lyra.vads.ws.v5.TransactionItem;
+
+import eu.payzen.webservices.sdk.PayzenConfig;
+import eu.payzen.webservices.sdk.ResponseCodeException;
+import eu.payzen.webservices.sdk.handler.soap.HeaderHandler;
+import eu.payzen.webservices.sdk.jfr.JfrEvents;
+import eu.payzen.webservices.sdk.metrics.CallPhase;
+import eu.payzen.webservices.sdk.metrics.Metrics;
+import eu.payzen.webservices.sdk.metrics.PayloadMetrics;
+import eu.payzen.webservices.sdk.metrics.PhaseTimings;
+import eu.payzen.webservices.sdk.stream.ReadStats;
+import eu.payzen.webservices.sdk.stream.SoapEnvelopeWriter;
+import eu.payzen.webservices.sdk.stream.SoapResponseIterator;
+import eu.payzen.webservices.sdk.stream.SoapResponseReader;
+import eu.payzen.webservices.sdk.tracing.Span;
+import eu.payzen.webservices.sdk.tracing.Tracing;
+import eu.payzen.webservices.sdk.transport.HttpConnectionPool;
+import eu.payzen.webservices.sdk.transport.HttpTransport;
+import eu.payzen.webservices.sdk.transport.HttpTransports;
+import eu.payzen.webservices.sdk.transport.RecordReplay;
+import eu.payzen.webservices.sdk.transport.RecordWriter;
+import eu.payzen.webservices.sdk.transport.RecordedExchange;
+import eu.payzen.webservices.sdk.transport.ReplayStore;
+import eu.payzen.webservices.sdk.transport.TlsContext;
+import eu.payzen.webservices.sdk.transport.TransportRequest;
+import eu.payzen.webservices.sdk.transport.TransportResponse;
+import eu.payzen.webservices.sdk.util.Config;
+import eu.payzen.webservices.sdk.util.SessionUtils;
+
+/**
+ * Fast-path client that writes the SOAP envelope of the request straight to
+ * the HTTP connection with {@link SoapEnvelopeWriter}, instead of going
+ * through the JAX-WS stack (JAXB marshalling, SAAJ DOM and handler chain).<p>
+ *
+ * It is used for createPayment with the <code>streamingSerializer=true</code>
+ * configuration property. With <code>streamingParser=true</code> the responses
+ * are decoded incrementally by {@link SoapResponseReader} instead of JAXB, and
+ * getPaymentDetails and findPayments also go through this client. The header
+ * fields and the authentication token are computed by
+ * {@link HeaderHandler}, exactly as in the JAX-WS client.<p>
+ *
+ * The asynchronous methods do not hold a thread while waiting for the
+ * response when the {@link HttpTransport} of the configuration is
+ * non-blocking (<code>httpTransport=jdk</code>).
+ *
+ * @author Javier Garcia Alonso
+ */
+public class StreamingClientV5 {
+
+	public static final String STREAMING_SERIALIZER = "streamingSerializer";
+	public static final String STREAMING_PARSER = "streamingParser";
+
+	private static final Map<String, List<String>> REQUEST_HEADERS = requestHeaders();
+
+	// Envelope buffers are reused by each thread
+	private static final ThreadLocal<SoapEnvelopeWriter> WRITERS = new ThreadLocal<SoapEnvelopeWriter>() {
+		@Override
+		protected SoapEnvelopeWriter initialValue() {
+			return new SoapEnvelopeWriter();
+		}
+	};
+
+	private final URL endpoint;
+	private final String shopId;
+	private final HeaderHandler headerHandler;
+	private final TlsContext tls;
+	private final HttpTransport transport;
+	private final int connectionTimeout;
+	private final int requestTimeout;
+	private final boolean streamingParser;
+	private final boolean phaseTimings;
+	private final ReplayStore replayStore;
+	private final RecordWriter recordWriter;
+	private long clientInitNanos;
+
+	private Map<String, List<String>> responseHeaders;
+	private PhaseTimings lastPhaseTimings;
+	private String lastRequestId;
+
+	/**
+	 * Creates a client from a configuration map. The map is not modified.
+	 *
+	 * @param config values overriding ws-sdk-config.properties, may be null
+	 * @see PayzenConfig#from(Map)
+	 */
+	public StreamingClientV5(Map<String, String> config) {
+		this(PayzenConfig.from(config));
+	}
+
+	public StreamingClientV5(PayzenConfig config) {
+		long start = System.nanoTime();
+
+		this.shopId = config.getShopId();
+		this.tls = TlsContext.of(config);
+		this.transport = HttpTransports.of(config);
+		this.headerHandler = new HeaderHandler(shopId, config.getShopKey(), config.getMode(), config.getWsUser(),
+				config.getReturnUrl(), config.getEcsPaymentId(), config.getRemoteId(), config.getHeaders());
+		this.connectionTimeout = config.getConnectionTimeoutMillis();
+		this.requestTimeout = config.getRequestTimeoutMillis();
+		this.streamingParser = config.isStreamingParser();
+		this.phaseTimings = config.isPhaseTimings();
+		this.replayStore = config.getReplayFile() != null ? RecordReplay.store(config.getReplayFile()) : null;
+		this.recordWriter = replayStore == null && config.getRecordFile() != null
+				? RecordReplay.writer(config.getRecordFile()) : null;
+
+		try {
+			this.endpoint = new URL(config.getEndpointUrl());
+		} catch (IOException e) {
+			throw new RuntimeException(e.getMessage(), e);
+		}
+		this.clientInitNanos = System.nanoTime() - start;
+	}
+
+	/**
+	 * Checks if a streaming option has been enabled for a call
+	 *
+	 * @param option {@link #STREAMING_SERIALIZER} or {@link #STREAMING_PARSER}
+	 * @param config configuration overridden at runtime, may be null
+	 * @return true if the fast path must be used
+	 */
+	public static boolean isEnabled(String option, Map<String, String> config) {
+		String value = (config != null && config.get(option) != null) ? config.get(option)
+				: Config.getConfig().getProperty(option);
+		return "true".equalsIgnoreCase(value);
+	}
+
+	/**
+	 * Calls createPayment operation
+	 *
+	 * @param request complex object with all the parameters for service call
+	 * @return result of the operation
+	 */
+	public CreatePaymentResponse.CreatePaymentResult createPayment(CreatePayment request) {
+		CreatePaymentResponse response = call("createPayment", request, CreatePaymentResponse.class, null);
+		return response.getCreatePaymentResult();
+	}
+
+	/**
+	 * Calls getPaymentDetails operation
+	 *
+	 * @param queryRequest identifier of the transaction
+	 * @param extendedResponseRequest optional information to add to the response
+	 * @param sections element names of the result sections to decode, null for all of them.
+	 *                 Only used by the streaming parser
+	 * @return result of the operation
+	 */
+	public GetPaymentDetailsResponse.GetPaymentDetailsResult getPaymentDetails(QueryRequest queryRequest,
+			ExtendedResponseRequest extendedResponseRequest, Set<String> sections) {
+		GetPaymentDetails request = new GetPaymentDetails();
+		request.setQueryRequest(queryRequest);
+		request.setExtendedResponseRequest(extendedResponseRequest);
+
+		GetPaymentDetailsResponse response = call("getPaymentDetails", request, GetPaymentDetailsResponse.class,
+				sections);
+		return response.getGetPaymentDetailsResult();
+	}
+
+	/**
+	 * Calls createPayment operation without waiting for the response
+	 *
+	 * @param request complex object with all the parameters for service call
+	 * @param executor makes the call if the transport is not non-blocking
+	 * @return result of the operation
+	 * @see #isNonBlocking()
+	 */
+	public CompletableFuture<CreatePaymentResponse.CreatePaymentResult> createPaymentAsync(CreatePayment request,
+			Executor executor) {
+		return callAsync("createPayment", request, CreatePaymentResponse.class, null, executor)
+				.thenApply(CreatePaymentResponse::getCreatePaymentResult);
+	}
+
+	/**
+	 * Calls getPaymentDetails operation without waiting for the response
+	 *
+	 * @param queryRequest identifier of the transaction
+	 * @param extendedResponseRequest optional information to add to the response
+	 * @param sections element names of the result sections to decode, null for all of them
+	 * @param executor makes the call if the transport is not non-blocking
+	 * @return result of the operation
+	 * @see #isNonBlocking()
+	 */
+	public CompletableFuture<GetPaymentDetailsResponse.GetPaymentDetailsResult> getPaymentDetailsAsync(
+			QueryRequest queryRequest, ExtendedResponseRequest extendedResponseRequest, Set<String> sections,
+			Executor executor) {
+		GetPaymentDetails request = new GetPaymentDetails();
+		request.setQueryRequest(queryRequest);
+		request.setExtendedResponseRequest(extendedResponseRequest);
+
+		return callAsync("getPaymentDetails", request, GetPaymentDetailsResponse.class, sections, executor)
+				.thenApply(GetPaymentDetailsResponse::getGetPaymentDetailsResult);
+	}
+
+	/**
+	 * Tells whether the asynchronous calls hold a thread while waiting for
+	 * their response. When they do not, they leave the values of the last
+	 * call ({@link #getHttpSessionId()}, {@link #getPhaseTimings()},
+	 * {@link #getRequestId()}) unchanged, so that the client can make many
+	 * calls at the same time. Otherwise they are made as the other calls, in
+	 * a thread of the executor.
+	 *
+	 * @return true if the transport is non-blocking and the calls are neither recorded nor replayed
+	 */
+	public boolean isNonBlocking() {
+		return transport != null && transport.isNonBlocking() && replayStore == null && recordWriter == null;
+	}
+
+	/**
+	 * Calls findPayments operation
+	 *
+	 * @param queryRequest identifier of the order
+	 * @return result of the operation
+	 */
+	public FindPaymentsResponse.FindPaymentsResult findPayments(QueryRequest queryRequest) {
+		FindPayments request = new FindPayments();
+		request.setQueryRequest(queryRequest);
+
+		FindPaymentsResponse response = call("findPayments", request, FindPaymentsResponse.class, null);
+		return response.getFindPaymentsResult();
+	}
+
+	/**
+	 * Calls findPayments operation, decoding the transactions one by one while
+	 * they are read from the connection, whatever the streaming options.
+	 *
+	 * @param queryRequest identifier of the order
+	 * @return iterator over the transactions, that must be closed if it is not
+	 *         read until the end
+	 * @throws ResponseCodeException if the response code is not 0, the
+	 *         iterator is then closed
+	 */
+	public SoapResponseIterator<TransactionItem> findPaymentsIterator(QueryRequest queryRequest) {
+		FindPayments request = new FindPayments();
+		request.setQueryRequest(queryRequest);
+
+		// Only the time until the response starts is recorded, the items are read later
+		long start = System.nanoTime();
+		PhaseTimings timings = startTimings();
+		Span span = Tracing.getTracer().startSpan("findPayments", shopId);
+		try {
+			SoapResponseIterator<TransactionItem> iterator = new SoapResponseIterator<>(
+					send("findPayments", request, timings, span), FindPaymentsResponse.class, "transactionItem",
+					TransactionItem.class);
+			// Reads up to the first item, commonResponse comes before the items
+			iterator.hasNext();
+			endTimings("findPayments", timings);
+			FindPaymentsResponse.FindPaymentsResult result = iterator
+					.getResult(FindPaymentsResponse.FindPaymentsResult.class);
+			CommonResponse common = result.getCommonResponse();
+			Integer responseCode = common != null ? common.getResponseCode() : null;
+			if (responseCode != null && responseCode != 0) {
+				iterator.close();
+				ResponseCodeException error = new ResponseCodeException("findPayments", responseCode,
+						common.getResponseCodeDetail());
+				span.recordError(error);
+				Metrics.recordCall("findPayments", shopId, start, result, error);
+				throw error;
+			}
+			Metrics.recordCall("findPayments", shopId, start, result, null);
+			return iterator;
+		} catch (ResponseCodeException e) {
+			throw e;
+		} catch (IOException e) {
+			WebServiceException error = new WebServiceException(e.getMessage(), e);
+			span.recordError(error);
+			Metrics.recordCall("findPayments", shopId, start, null, error);
+			throw error;
+		} catch (RuntimeException e) {
+			span.recordError(e);
+			Metrics.recordCall("findPayments", shopId, start, null, e);
+			throw e;
+		} finally {
+			span.end();
+		}
+	}
+
+	/**
+	 * Gets the session cookie sent by the last call
+	 *
+	 * @return value of session in cookie
+	 */
+	public String getHttpSessionId() {
+		return SessionUtils.getHttpSessionId(responseHeaders);
+	}
+
+	/**
+	 * Gets the phase timings of the last call, if they have been enabled with
+	 * the <code>phaseTimings</code> property
+	 *
+	 * @return timings of the last call, null if they are not enabled
+	 */
+	public PhaseTimings getPhaseTimings() {
+		return lastPhaseTimings;
+	}
+
+	/**
+	 * Gets the requestId sent in the header of the last call, that identifies
+	 * it in the gateway logs
+	 *
+	 * @return requestId of the last call, null if no call has been made
+	 */
+	public String getRequestId() {
+		return lastRequestId;
+	}
+
+	private <T> T call(String operation, Object request, Class<T> responseType, Set<String> sections) {
+		long start = System.nanoTime();
+		PhaseTimings timings = startTimings();
+		Span span = Tracing.getTracer().startSpan(operation, shopId);
+		Object event = JfrEvents.beginCall();
+		long requestBytes = -1;
+		long responseBytes = -1;
+		Object result = null;
+		RuntimeException error = null;
+		try {
+			MeteredInputStream in = send(operation, request, timings, span);
+			try {
+				T response = readResponse(in, responseType, sections, in.stats);
+				result = response;
+				return response;
+			} finally {
+				in.close();
+				mark(timings, CallPhase.UNMARSHAL);
+				span.setAttribute(Span.RESPONSE_BYTES, in.responseBytes);
+				requestBytes = in.requestBytes;
+				responseBytes = in.responseBytes;
+			}
+		} catch (IOException | XMLStreamException | JAXBException e) {
+			error = new WebServiceException(e.getMessage(), e);
+			throw error;
+		} catch (RuntimeException e) {
+			error = e;
+			throw e;
+		} finally {
+			endTimings(operation, timings);
+			endSpan(span, result, error);
+			if (event != null) {
+				JfrEvents.commitCall(event, operation, shopId, "streaming", Metrics.responseCode(result),
+						requestBytes, responseBytes);
+			}
+			Metrics.recordCall(operation, shopId, start, result, error);
+		}
+	}
+
+	private <T> CompletableFuture<T> callAsync(String operation, Object request, Class<T> responseType,
+			Set<String> sections, Executor executor) {
+		if (!isNonBlocking()) {
+			return CompletableFuture.supplyAsync(() -> call(operation, request, responseType, sections), executor);
+		}
+		long start = System.nanoTime();
+		Span span = Tracing.getTracer().startSpan(operation, shopId);
+		Object event = JfrEvents.beginCall();
+		CompletableFuture<T> result = new CompletableFuture<>();
+		byte[] content;
+		try {
+			Map<String, String> headers = headerHandler.buildHeaderFields();
+			span.setAttribute(Span.REQUEST_ID, headers.get("requestId"));
+			SoapEnvelopeWriter writer = WRITERS.get().reset();
+			writer.writeRequest(headers, operation, request);
+			// Copied, the writer is reused by the next call of this thread
+			content = writer.toByteArray();
+			span.setAttribute(Span.REQUEST_BYTES, content.length);
+		} catch (RuntimeException e) {
+			endSpan(span, null, e);
+			Metrics.recordCall(operation, shopId, start, null, e);
+			result.completeExceptionally(e);
+			return result;
+		}
+
+		TransportRequest transportRequest = new TransportRequest(endpoint, REQUEST_HEADERS, content,
+				connectionTimeout, requestTimeout);
+		transport.sendAsync(transportRequest, executor).whenComplete((response, sendError) -> {
+			T value = null;
+			RuntimeException error = null;
+			long responseBytes = -1;
+			try {
+				if (sendError != null) {
+					Throwable cause = sendError instanceof CompletionException && sendError.getCause() != null
+							? sendError.getCause() : sendError;
+					throw cause instanceof RuntimeException ? (RuntimeException) cause
+							: new WebServiceException(cause.getMessage(), cause);
+				}
+				MeteredInputStream in = new MeteredInputStream(response.getContent(), operation, content.length);
+				try {
+					value = readResponse(in, responseType, sections, in.stats);
+				} finally {
+					in.close();
+					responseBytes = in.responseBytes;
+					span.setAttribute(Span.RESPONSE_BYTES, responseBytes);
+				}
+			} catch (IOException | XMLStreamException | JAXBException e) {
+				error = new WebServiceException(e.getMessage(), e);
+			} catch (RuntimeException e) {
+				error = e;
+			} finally {
+				endSpan(span, value, error);
+				if (event != null) {
+					JfrEvents.commitCall(event, operation, shopId, "streaming", Metrics.responseCode(value),
+							content.length, responseBytes);
+				}
+				Metrics.recordCall(operation, shopId, start, value, error);
+			}
+			if (error != null) {
+				result.completeExceptionally(error);
+			} else {
+				result.complete(value);
+			}
+		});
+		return result;
+	}
+
+	private static void endSpan(Span span, Object result, Throwable error) {
+		try {
+			Integer responseCode = Metrics.responseCode(result);
+			if (responseCode != null) {
+				span.setAttribute(Span.RESPONSE_CODE, responseCode);
+			}
+			if (error != null) {
+				span.recordError(error);
+			}
+		} finally {
+			span.end();
+		}
+	}
+
+	private PhaseTimings startTimings() {
+		if (!phaseTimings) {
+			return null;
+		}
+		PhaseTimings timings = new PhaseTimings();
+		if (clientInitNanos >= 0) {
+			timings.add(CallPhase.CLIENT_INIT, clientInitNanos);
+			clientInitNanos = -1;
+		}
+		return timings;
+	}
+
+	private void endTimings(String operation, PhaseTimings timings) {
+		if (timings != null) {
+			lastPhaseTimings = timings;
+			Metrics.recordPhases(operation, shopId, timings);
+		}
+	}
+
+	private static void mark(PhaseTimings timings, CallPhase phase) {
+		if (timings != null) {
+			timings.mark(phase);
+		}
+	}
+
+	// Posts the request and returns the content of the response, that must be closed
+	private MeteredInputStream send(String operation, Object request, PhaseTimings timings, Span span)
+			throws IOException {
+		Map<String, String> headers = headerHandler.buildHeaderFields();
+		mark(timings, CallPhase.SIGN);
+		lastRequestId = headers.get("requestId");
+		span.setAttribute(Span.REQUEST_ID, lastRequestId);
+
+		SoapEnvelopeWriter writer = WRITERS.get().reset();
+		writer.writeRequest(headers, operation, request);
+		mark(timings, CallPhase.MARSHAL);
+		span.setAttribute(Span.REQUEST_BYTES, writer.size());
+
+		if (replayStore != null) {
+			// No connection, the response is read from the mapped recording
+			RecordedExchange exchange = replayStore.next(operation);
+			mark(timings, CallPhase.SERVER);
+			responseHeaders = exchange.getHeaders();
+			return new MeteredInputStream(exchange.openResponse(), operation, writer.size());
+		}
+
+		int status;
+		InputStream in;
+		if (transport != null) {
+			// The connection time is part of the server phase
+			TransportResponse response = transport.send(new TransportRequest(endpoint, REQUEST_HEADERS,
+					writer::writeTo, writer.size(), connectionTimeout, requestTimeout));
+			status = response.getStatus();
+			mark(timings, CallPhase.SERVER);
+			responseHeaders = response.getHeaders();
+			in = response.getContent();
+		} else {
+			HttpURLConnection connection = (HttpURLConnection) endpoint.openConnection();
+			tls.configure(connection);
+			connection.setConnectTimeout(connectionTimeout);
+			connection.setReadTimeout(requestTimeout);
+			connection.setRequestMethod("POST");
+			connection.setDoOutput(true);
+			connection.setFixedLengthStreamingMode(writer.size());
+			connection.setRequestProperty("Content-Type", "text/xml; charset=utf-8");
+			connection.setRequestProperty("Accept", "text/xml");
+			connection.setRequestProperty("SOAPAction", "\"\"");
+			if (timings != null) {
+				connection.connect();
+				timings.mark(CallPhase.CONNECT);
+			}
+
+			try (OutputStream out = connection.getOutputStream()) {
+				writer.writeTo(out);
+			}
+
+			status = connection.getResponseCode();
+			mark(timings, CallPhase.SERVER);
+			responseHeaders = connection.getHeaderFields();
+			in = (status >= HttpURLConnection.HTTP_BAD_REQUEST) ? connection.getErrorStream()
+					: connection.getInputStream();
+		}
+		if (in == null) {
+			throw new WebServiceException("HTTP " + status + " without content calling " + operation);
+		}
+		if (recordWriter != null) {
+			byte[] response = readAll(in);
+			recordWriter.record(operation, status, responseHeaders, writer.toByteArray(), response);
+			in = new ByteArrayInputStream(response);
+		}
+		return new MeteredInputStream(in, operation, writer.size());
+	}
+
+	private static Map<String, List<String>> requestHeaders() {
+		Map<String, List<String>> headers = new LinkedHashMap<>();
+		headers.put("Content-Type", Collections.singletonList("text/xml; charset=utf-8"));
+		headers.put("Accept", Collections.singletonList("text/xml"));
+		headers.put("SOAPAction", Collections.singletonList("\"\""));
+		return Collections.unmodifiableMap(headers);
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		try (InputStream content = in) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = content.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		}
+	}
+
+	private <T> T readResponse(InputStream in, Class<T> responseType, Set<String> sections, ReadStats stats)
+			throws XMLStreamException, JAXBException {
+		if (streamingParser) {
+			return SoapResponseReader.read(in, responseType, sections, stats);
+		}
+
+		XMLStreamReader reader = SoapResponseReader.inputFactory().createXMLStreamReader(in);
+		try {
+			// Envelope > Body > operation response
+			SoapResponseReader.moveToBodyContent(reader);
+
+			Unmarshaller unmarshaller = JaxbContextHolder.CONTEXT.createUnmarshaller();
+			return unmarshaller.unmarshal(reader, responseType).getValue();
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Counts the bytes of the response and records the payload sizes in
+	 * {@link PayloadMetrics} when it is closed.
+	 */
+	private static final class MeteredInputStream extends FilterInputStream {
+		private final String operation;
+		private final long requestBytes;
+		private final ReadStats stats = new ReadStats();
+		private long responseBytes;
+		private boolean closed;
+
+		MeteredInputStream(InputStream in, String operation, long requestBytes) {
+			super(in);
+			this.operation = operation;
+			this.requestBytes = requestBytes;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1) {
+				responseBytes++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			if (read > 0) {
+				responseBytes += read;
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			responseBytes += skipped;
+			return skipped;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!closed) {
+				closed = true;
+				try {
+					// Whatever is left is read so that the connection can be reused
+					HttpConnectionPool.drain(in, HttpConnectionPool.MAX_DRAIN_BYTES);
+				} catch (IOException e) {
+					// The connection is not reused
+				}
+				super.close();
+				PayloadMetrics.getInstance().record(operation, requestBytes, responseBytes, stats.getSkippedBytes());
+			}
+		}
+	}
+
+	/**
+	 * Initializes JAXB context only when the fast path is used.
+	 */
+	private static class JaxbContextHolder {
+		private static final JAXBContext CONTEXT = newContext();
+
+		private static JAXBContext newContext() {
+			PaymentService.configureJaxb();
+			try {
+				return JAXBContext.newInstance(ObjectFactory.class);
+			} catch (JAXBException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+}
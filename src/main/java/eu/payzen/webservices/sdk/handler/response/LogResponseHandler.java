@@ -22,7 +22,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Response handler (callback) that writes all the response in the logs
+ * Response handler (callback) that writes all the response in the logs.
+ * <p>
+ * Meant for debugging: for production traffic use
+ * {@link StructuredLogResponseHandler}, which writes a single masked event
+ * per response outside of the payment thread.
  * 
  * @author Javier Garcia Alonso
  */
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.handler.response;
+
+import eu.payzen.webservices.sdk.util.EnvelopeMasker;
+
+/**
+ * Masks card data before it is written: authentication tokens and card
+ * security codes are removed and card numbers only keep their first 6 and
+ * last 4 digits.<p>
+ *
+ * The fields are recognized with the rules of {@link EnvelopeMasker}, so the
+ * logs and the captured envelopes mask the same values: the digits of a
+ * number or cardNumber field, valid Luhn checksum or not, and any value that
+ * looks like a card number, whatever the name of the field.
+ *
+ * @author Javier Garcia Alonso
+ */
+final class SensitiveData {
+
+    private SensitiveData() {
+    }
+
+    /**
+     * Masks a value if it is sensitive
+     *
+     * @param name name of the property
+     * @param value value of the property
+     * @return value to write, null if it must not be written
+     */
+    static Object mask(String name, Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (EnvelopeMasker.isSecret(name)) {
+            return null;
+        }
+        if (value instanceof String && EnvelopeMasker.isCardNumber(name, (String) value)) {
+            return maskCardNumber((String) value);
+        }
+        return value;
+    }
+
+    static String maskCardNumber(String number) {
+        StringBuilder masked = new StringBuilder(number.length());
+        masked.append(number, 0, 6);
+        for (int i = 6; i < number.length() - 4; i++) {
+            masked.append('X');
+        }
+        return masked.append(number, number.length() - 4, number.length()).toString();
+    }
+}
@@ -0,0 +1,464 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.handler.response;
+
+import java.io.Closeable;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import javax.xml.datatype.XMLGregorianCalendar;
+
+import eu.payzen.webservices.sdk.ResponseHandler;
+import eu.payzen.webservices.sdk.ServiceResult;
+import eu.payzen.webservices.sdk.metrics.CallPhase;
+import eu.payzen.webservices.sdk.metrics.PhaseTimings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Response handler (callback) that writes a single structured event (one
+ * JSON object) per response, as a lighter replacement of
+ * {@link LogResponseHandler}.<p>
+ *
+ * The payment thread only takes the sampling decision and puts the response
+ * in a bounded queue; the event is formatted and written by a background
+ * thread. When the queue is full the event is dropped and counted instead of
+ * blocking the payment. Only the fields of the allow-list are written, card
+ * numbers are masked and card security codes are never written.<p>
+ *
+ * The handler can be shared by all the calls and should be closed when the
+ * application stops.
+ *
+ * <pre>
+ * StructuredLogResponseHandler handler = StructuredLogResponseHandler.getBuilder()
+ *         .fields("commonResponse.responseCode", "orderResponse.orderId", "cardResponse.*")
+ *         .sampleRatio(0.1)
+ *         .build();
+ * </pre>
+ *
+ * @author Javier Garcia Alonso
+ */
+public class StructuredLogResponseHandler implements ResponseHandler, Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(StructuredLogResponseHandler.class);
+
+    /**
+     * Fields written when no allow-list is given
+     */
+    public static final List<String> DEFAULT_FIELDS = Collections.unmodifiableList(Arrays.asList(
+            "commonResponse.responseCode", "commonResponse.responseCodeDetail",
+            "commonResponse.transactionStatusLabel", "commonResponse.shopId", "paymentResponse.transactionUuid",
+            "paymentResponse.amount", "paymentResponse.currency", "paymentResponse.operationType",
+            "orderResponse.orderId", "cardResponse.number", "cardResponse.brand",
+            "authorizationResponse.result", "phases.*"));
+
+    // Getters of the response sections of ServiceResult, by name of the section
+    private static final Map<String, Method> SECTIONS = sectionGetters();
+    // Simple properties of each section type, sorted by name
+    private static final ClassValue<Map<String, Method>> PROPERTIES = new ClassValue<Map<String, Method>>() {
+        @Override
+        protected Map<String, Method> computeValue(Class<?> type) {
+            Map<String, Method> properties = new TreeMap<>();
+            for (Method method : type.getMethods()) {
+                String name = propertyName(method);
+                if (name != null && method.getDeclaringClass() != Object.class && isSimple(method.getReturnType())) {
+                    properties.put(name, method);
+                }
+            }
+            return properties;
+        }
+    };
+
+    private final Consumer<String> sink;
+    private final Logger eventLogger;
+    private final Set<String> fields;
+    private final Set<String> sectionsWithAllFields;
+    private final double sampleRatio;
+    private final int maxEventsPerSecond;
+    private final boolean alwaysLogErrors;
+    private final BlockingQueue<ServiceResult> queue;
+    private final Thread worker;
+
+    // Second of the rate window in the upper bits, events of the window in the lower 20 bits
+    private final AtomicLong rateWindow = new AtomicLong();
+    // nanoTime may be negative, the seconds are counted from the creation of the handler
+    private final long startNanos = System.nanoTime();
+    private final LongAdder logged = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean closed;
+
+    private StructuredLogResponseHandler(Builder builder) {
+        this.eventLogger = LoggerFactory.getLogger(builder.loggerName);
+        this.sink = builder.sink;
+        this.fields = new LinkedHashSet<>();
+        this.sectionsWithAllFields = new LinkedHashSet<>();
+        for (String field : builder.fields) {
+            if (field.endsWith(".*")) {
+                sectionsWithAllFields.add(field.substring(0, field.length() - 2));
+            } else {
+                fields.add(field);
+            }
+        }
+        this.sampleRatio = builder.sampleRatio;
+        this.maxEventsPerSecond = builder.maxEventsPerSecond;
+        this.alwaysLogErrors = builder.alwaysLogErrors;
+        this.queue = new ArrayBlockingQueue<>(builder.queueCapacity);
+
+        this.worker = new Thread(this::writeEvents, "payzen-structured-log");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public static Builder getBuilder() {
+        return new Builder();
+    }
+
+    @Override
+    public void handle(ServiceResult response) {
+        if (closed || (sink == null && !eventLogger.isInfoEnabled())) {
+            return;
+        }
+        if (!isSampled(response)) {
+            sampledOut.increment();
+            return;
+        }
+        if (!queue.offer(response)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Gets the number of events written
+     *
+     * @return events written since the creation of the handler
+     */
+    public long getLoggedEvents() {
+        return logged.sum();
+    }
+
+    /**
+     * Gets the number of responses not written because of the sampling
+     *
+     * @return responses skipped by the sampling
+     */
+    public long getSampledOutEvents() {
+        return sampledOut.sum();
+    }
+
+    /**
+     * Gets the number of events lost because the queue was full
+     *
+     * @return dropped events
+     */
+    public long getDroppedEvents() {
+        return dropped.sum();
+    }
+
+    /**
+     * Writes the events still in the queue and stops the background thread
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Builds the event of a response, as written by the handler
+     *
+     * @param response response of a call
+     * @return one-line JSON object
+     */
+    public String format(ServiceResult response) {
+        StringBuilder json = new StringBuilder(256).append('{');
+        for (Map.Entry<String, Method> section : SECTIONS.entrySet()) {
+            Object value = invoke(section.getValue(), response);
+            if (value == null) {
+                continue;
+            }
+            boolean allFields = sectionsWithAllFields.contains(section.getKey());
+            for (Map.Entry<String, Method> property : PROPERTIES.get(value.getClass()).entrySet()) {
+                String path = section.getKey() + '.' + property.getKey();
+                if (allFields || fields.contains(path)) {
+                    appendField(json, path, SensitiveData.mask(property.getKey(), invoke(property.getValue(), value)));
+                }
+            }
+        }
+
+        PhaseTimings phases = response.getPhaseTimings();
+        if (phases != null) {
+            boolean allPhases = sectionsWithAllFields.contains("phases");
+            for (Map.Entry<CallPhase, Long> phase : phases.asMap().entrySet()) {
+                String path = "phases." + phase.getKey().name();
+                if (allPhases || fields.contains(path)) {
+                    appendField(json, path, phase.getValue() / 1000000.0);
+                }
+            }
+        }
+        return json.append('}').toString();
+    }
+
+    private boolean isSampled(ServiceResult response) {
+        if (alwaysLogErrors && isError(response)) {
+            return true;
+        }
+        if (sampleRatio < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRatio) {
+            return false;
+        }
+        return maxEventsPerSecond <= 0 || acquireRate();
+    }
+
+    // Fixed one-second windows, without locks
+    private boolean acquireRate() {
+        long second = (System.nanoTime() - startNanos) / 1000000000L;
+        while (true) {
+            long state = rateWindow.get();
+            long count = (state >>> 20 == second) ? state & 0xFFFFF : 0;
+            if (count >= maxEventsPerSecond) {
+                return false;
+            }
+            if (rateWindow.compareAndSet(state, (second << 20) | (count + 1))) {
+                return true;
+            }
+        }
+    }
+
+    private static boolean isError(ServiceResult response) {
+        return response.getCommonResponse() == null || response.getCommonResponse().getResponseCode() == null
+                || response.getCommonResponse().getResponseCode() != 0;
+    }
+
+    private void writeEvents() {
+        while (!closed || !queue.isEmpty()) {
+            try {
+                ServiceResult response = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (response != null) {
+                    write(format(response));
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                logger.warn("Cannot write response event", e);
+            }
+        }
+    }
+
+    private void write(String event) {
+        if (sink != null) {
+            sink.accept(event);
+        } else {
+            eventLogger.info(event);
+        }
+        logged.increment();
+    }
+
+    private static void appendField(StringBuilder json, String name, Object value) {
+        if (value == null) {
+            return;
+        }
+        if (json.length() > 1) {
+            json.append(',');
+        }
+        appendString(json, name);
+        json.append(':');
+        if (value instanceof Number || value instanceof Boolean) {
+            json.append(value);
+        } else if (value instanceof XMLGregorianCalendar) {
+            appendString(json, ((XMLGregorianCalendar) value).toXMLFormat());
+        } else {
+            appendString(json, value.toString());
+        }
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '"':
+                json.append("\\\"");
+                break;
+            case '\\':
+                json.append("\\\\");
+                break;
+            case '\n':
+                json.append("\\n");
+                break;
+            case '\r':
+                json.append("\\r");
+                break;
+            case '\t':
+                json.append("\\t");
+                break;
+            default:
+                if (c < 0x20) {
+                    json.append(String.format("\\u%04x", (int) c));
+                } else {
+                    json.append(c);
+                }
+            }
+        }
+        json.append('"');
+    }
+
+    private static Object invoke(Method getter, Object target) {
+        try {
+            return getter.invoke(target);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            return null;
+        }
+    }
+
+    private static Map<String, Method> sectionGetters() {
+        Map<String, Method> sections = new LinkedHashMap<>();
+        for (String name : new String[] { "commonResponse", "paymentResponse", "orderResponse", "cardResponse",
+                "authorizationResponse", "captureResponse", "customerResponse", "markResponse",
+                "subscriptionResponse", "extraResponse", "fraudManagementResponse", "threeDSResponse",
+                "tokenResponse", "shoppingCartResponse" }) {
+            try {
+                sections.put(name, ServiceResult.class.getMethod(
+                        "get" + Character.toUpperCase(name.charAt(0)) + name.substring(1)));
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return sections;
+    }
+
+    private static String propertyName(Method method) {
+        if (method.getParameterTypes().length > 0) {
+            return null;
+        }
+        String name = method.getName();
+        int prefix = name.startsWith("get") ? 3 : (name.startsWith("is") ? 2 : 0);
+        if (prefix == 0 || name.length() == prefix) {
+            return null;
+        }
+        return Character.toLowerCase(name.charAt(prefix)) + name.substring(prefix + 1);
+    }
+
+    private static boolean isSimple(Class<?> type) {
+        return type.isPrimitive() || type == String.class || Number.class.isAssignableFrom(type)
+                || type == Boolean.class || type.isEnum() || XMLGregorianCalendar.class.isAssignableFrom(type);
+    }
+
+    /**
+     * Builder of {@link StructuredLogResponseHandler}
+     */
+    public static final class Builder {
+        private List<String> fields = DEFAULT_FIELDS;
+        private double sampleRatio = 1;
+        private int maxEventsPerSecond;
+        private boolean alwaysLogErrors = true;
+        private int queueCapacity = 1024;
+        private String loggerName = StructuredLogResponseHandler.class.getName();
+        private Consumer<String> sink;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the fields to write, as <code>section.property</code> (e.g.
+         * <code>paymentResponse.amount</code>), <code>section.*</code> for all
+         * the properties of a section and <code>phases.*</code> for the phase
+         * timings. {@link #DEFAULT_FIELDS} by default.
+         */
+        public Builder fields(String... fields) {
+            this.fields = new ArrayList<>(Arrays.asList(fields));
+            return this;
+        }
+
+        /**
+         * Sets the part of the responses to write, between 0 and 1. All of them by default.
+         */
+        public Builder sampleRatio(double sampleRatio) {
+            if (sampleRatio < 0 || sampleRatio > 1) {
+                throw new IllegalArgumentException("Sample ratio must be between 0 and 1: " + sampleRatio);
+            }
+            this.sampleRatio = sampleRatio;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of events written per second, 0 for no limit (default)
+         */
+        public Builder maxEventsPerSecond(int maxEventsPerSecond) {
+            if (maxEventsPerSecond < 0 || maxEventsPerSecond > 0xFFFFF) {
+                throw new IllegalArgumentException("Invalid events per second: " + maxEventsPerSecond);
+            }
+            this.maxEventsPerSecond = maxEventsPerSecond;
+            return this;
+        }
+
+        /**
+         * Writes the responses with a response code other than 0 whatever the
+         * sampling. True by default.
+         */
+        public Builder alwaysLogErrors(boolean alwaysLogErrors) {
+            this.alwaysLogErrors = alwaysLogErrors;
+            return this;
+        }
+
+        /**
+         * Sets the number of responses waiting to be written before new ones are dropped. 1024 by default.
+         */
+        public Builder queueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * Sets the name of the logger used to write the events (at INFO level)
+         */
+        public Builder loggerName(String loggerName) {
+            this.loggerName = loggerName;
+            return this;
+        }
+
+        /**
+         * Sends the events to a consumer instead of the logger. It is called
+         * from the background thread.
+         */
+        public Builder sink(Consumer<String> sink) {
+            this.sink = sink;
+            return this;
+        }
+
+        public StructuredLogResponseHandler build() {
+            return new StructuredLogResponseHandler(this);
+        }
+    }
+}
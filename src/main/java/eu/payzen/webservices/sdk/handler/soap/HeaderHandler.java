@@ -17,12 +17,12 @@ package eu.payzen.webservices.sdk.handler.soap;
 
 import java.io.UnsupportedEncodingException;
 import java.security.NoSuchAlgorithmException;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
-import java.util.TimeZone;
 import java.util.UUID;
 
 import javax.crypto.Mac;
@@ -38,13 +38,24 @@ import javax.xml.ws.handler.MessageContext;
 import javax.xml.ws.handler.soap.SOAPHandler;
 import javax.xml.ws.handler.soap.SOAPMessageContext;
 
+import eu.payzen.webservices.sdk.jfr.JfrEvents;
+import eu.payzen.webservices.sdk.metrics.CallPhase;
+import eu.payzen.webservices.sdk.metrics.PhaseTimings;
+import eu.payzen.webservices.sdk.tracing.Span;
 import org.apache.commons.codec.binary.Base64;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * This SOAP handler class generates the header of the message with all the 
- * authentication token information
+ * authentication token information.
+ * <p>
+ * It also marks the phases of the call in the {@link PhaseTimings} of the
+ * request context, if any, and exposes the requestId of the call in the
+ * response context ({@link #REQUEST_ID_PROPERTY}) and in its {@link Span}.
+ * <p>
+ * The header fields that are the same for every request and the HMAC key
+ * are prepared once, when the handler is created.
  * 
  * @author Javier Garcia Alonso
  */
@@ -61,7 +72,19 @@ public class HeaderHandler implements SOAPHandler<SOAPMessageContext> {
     
     private final Map<String, String> dynamicHeaders;
 
+    // Header fields that are the same for every request, in the order they are sent
+    private final Map<String, String> headerTemplate;
+    // Initialised with the shop key once, cloned for each signature
+    private final Mac macPrototype;
+
     private static final String NAMESPACE = "http://v5.ws.vads.lyra.com/Header/";
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'")
+            .withZone(ZoneOffset.UTC);
+
+    /**
+     * Property of the response context with the requestId sent in the header
+     */
+    public static final String REQUEST_ID_PROPERTY = "eu.payzen.webservices.sdk.requestId";
 
     public HeaderHandler(String shopId, String shopKey, String mode, String wsUser, String returnUrl, String ecsPaymentId, String remoteId, Map<String, String> dynamicHeaders) {
         this.shopId = shopId;
@@ -73,6 +96,8 @@ public class HeaderHandler implements SOAPHandler<SOAPMessageContext> {
         this.remoteId = remoteId;
         
         this.dynamicHeaders = dynamicHeaders;
+        this.headerTemplate = buildHeaderTemplate();
+        this.macPrototype = initMac(shopKey);
     }
     
 
@@ -86,81 +111,126 @@ public class HeaderHandler implements SOAPHandler<SOAPMessageContext> {
     public boolean handleMessage(SOAPMessageContext smc) {
 
         Boolean outboundProperty = (Boolean) smc.get(MessageContext.MESSAGE_OUTBOUND_PROPERTY);
+        PhaseTimings timings = (PhaseTimings) smc.get(PhaseTimings.CONTEXT_PROPERTY);
         
         if (Boolean.TRUE.equals(outboundProperty)) {
-
             SOAPMessage message = smc.getMessage();
 
             try {
+                // JAX-WS marshals the request into the SAAJ message lazily, when it is first read
                 SOAPEnvelope envelope = message.getSOAPPart().getEnvelope();
-                
+                if (timings != null) {
+                    timings.mark(CallPhase.MARSHAL);
+                }
+
                 //Creates header into SOAP envelope
                 SOAPHeader header = envelope.getHeader();
                 if (header == null) {
                     header = envelope.addHeader();
                 }
 
-                // Add shopId
-                addHeaderField(header, "shopId", this.shopId);
-                
-                // Add User name
-                if (wsUser != null) {                	
-                	addHeaderField(header, "wsUser", this.wsUser);
+                Map<String, String> fields = buildHeaderFields();
+                for (Map.Entry<String, String> field : fields.entrySet()) {
+                    addHeaderField(header, field.getKey(), field.getValue());
                 }
-                
-                // Add return url
-                if (returnUrl != null) {                	
-                	addHeaderField(header, "returnUrl", this.returnUrl);
-                }
-                
-                // Add ecsPaymentId
-                if (ecsPaymentId != null) {                	
-                	addHeaderField(header, "ecsPaymentId", this.ecsPaymentId);
-                }
-                
-                // Add remoteId
-                if (remoteId != null) {                	
-                	addHeaderField(header, "remoteId", this.remoteId);
-                }
-                
-                //DynamicHeaders
-                if (dynamicHeaders != null) {
-                	for (String key : dynamicHeaders.keySet()) {
-                		String value = dynamicHeaders.get(key);
-						if (value != null) {
-							addHeaderField(header, key, value);
-						}	
-					}
-                }
-
-                // Timestamp
-                TimeZone tz = TimeZone.getTimeZone("UTC");
-                DateFormat df = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
-                df.setTimeZone(tz);
-                String nowAsISO = df.format(new Date());
-                addHeaderField(header, "timestamp", nowAsISO);
-
-                // Mode
-                addHeaderField(header, "mode", this.mode);
-
-                // Add requestId
-                String requestId = UUID.randomUUID().toString();
-                addHeaderField(header, "requestId", requestId);
 
-                // Authentication token
-                String tokenString = requestId + nowAsISO;
-                addHeaderField(header, "authToken", sign(tokenString, shopKey));
+                // Exposes the requestId to the caller and to the span of the call
+                String requestId = fields.get("requestId");
+                smc.put(REQUEST_ID_PROPERTY, requestId);
+                smc.setScope(REQUEST_ID_PROPERTY, MessageContext.Scope.APPLICATION);
+                Span span = (Span) smc.get(Span.CONTEXT_PROPERTY);
+                if (span != null) {
+                    span.setAttribute(Span.REQUEST_ID, requestId);
+                }
 
             } catch (SOAPException e) {
                 logger.error("Error sending header", e);
             }
+
+            if (timings != null) {
+                timings.mark(CallPhase.SIGN);
+            }
+        } else if (timings != null) {
+            timings.mark(CallPhase.SERVER);
         }
 
         return outboundProperty;
 
     }
 
+    /**
+     * Computes the header fields of a new request, in the order they are sent.
+     * Each call generates a new requestId, timestamp and authentication token.
+     *
+     * @return ordered map of header field names and values
+     */
+    public Map<String, String> buildHeaderFields() {
+        Map<String, String> fields = new LinkedHashMap<>(headerTemplate);
+
+        // Timestamp
+        String nowAsISO = TIMESTAMP_FORMAT.format(Instant.now());
+        fields.put("timestamp", nowAsISO);
+
+        // Mode
+        fields.put("mode", this.mode);
+
+        // Add requestId
+        String requestId = UUID.randomUUID().toString();
+        fields.put("requestId", requestId);
+
+        // Authentication token
+        String tokenString = requestId + nowAsISO;
+        Object signingEvent = JfrEvents.beginSigning();
+        fields.put("authToken", sign(tokenString, shopKey));
+        JfrEvents.commitSigning(signingEvent, shopId);
+
+        return fields;
+    }
+
+    private Map<String, String> buildHeaderTemplate() {
+        Map<String, String> fields = new LinkedHashMap<>();
+
+        // Add shopId
+        fields.put("shopId", this.shopId);
+
+        // Add User name
+        if (wsUser != null) {
+            fields.put("wsUser", this.wsUser);
+        }
+
+        // Add return url
+        if (returnUrl != null) {
+            fields.put("returnUrl", this.returnUrl);
+        }
+
+        // Add ecsPaymentId
+        if (ecsPaymentId != null) {
+            fields.put("ecsPaymentId", this.ecsPaymentId);
+        }
+
+        // Add remoteId
+        if (remoteId != null) {
+            fields.put("remoteId", this.remoteId);
+        }
+
+        //DynamicHeaders
+        if (dynamicHeaders != null) {
+            for (String key : dynamicHeaders.keySet()) {
+                String value = dynamicHeaders.get(key);
+                if (value != null) {
+                    fields.put(key, value);
+                }
+            }
+        }
+
+        return fields;
+    }
+
     public boolean handleFault(SOAPMessageContext context) {
+        PhaseTimings timings = (PhaseTimings) context.get(PhaseTimings.CONTEXT_PROPERTY);
+        if (timings != null && !Boolean.TRUE.equals(context.get(MessageContext.MESSAGE_OUTBOUND_PROPERTY))) {
+            timings.mark(CallPhase.SERVER);
+        }
         return true;
     }
 
@@ -175,7 +245,8 @@ public class HeaderHandler implements SOAPHandler<SOAPMessageContext> {
 
     private String sign(String stringToSign, String key) {
         try {
-            byte[] bytes = encode256(key.getBytes("UTF-8"), stringToSign.getBytes("UTF-8"));
+            byte[] text = stringToSign.getBytes("UTF-8");
+            byte[] bytes = macPrototype != null ? cloneMac().doFinal(text) : encode256(key.getBytes("UTF-8"), text);
 
             return Base64.encodeBase64String(bytes);
         } catch (UnsupportedEncodingException e) {
@@ -187,14 +258,40 @@ public class HeaderHandler implements SOAPHandler<SOAPMessageContext> {
         }
     }
 
-    private static byte[] encode256(byte[] keyBytes, byte[] text) throws NoSuchAlgorithmException, InvalidKeyException {
+    private Mac cloneMac() {
+        try {
+            return (Mac) macPrototype.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Null if the provider cannot clone its Macs, they are then initialised for each signature
+    private static Mac initMac(String key) {
+        if (key == null) {
+            return null;
+        }
+        try {
+            Mac mac = getMac();
+            mac.init(new SecretKeySpec(key.getBytes("UTF-8"), "RAW"));
+            mac.clone();
+            return mac;
+        } catch (Exception e) {
+            return null;
+        }
+    }
 
-        Mac hmacSha1;
+    private static Mac getMac() throws NoSuchAlgorithmException {
         try {
-            hmacSha1 = Mac.getInstance("HmacSHA256");
+            return Mac.getInstance("HmacSHA256");
         } catch (NoSuchAlgorithmException nsae) {
-            hmacSha1 = Mac.getInstance("HMAC-SHA-256");
+            return Mac.getInstance("HMAC-SHA-256");
         }
+    }
+
+    private static byte[] encode256(byte[] keyBytes, byte[] text) throws NoSuchAlgorithmException, InvalidKeyException {
+
+        Mac hmacSha1 = getMac();
         SecretKeySpec macKey = new SecretKeySpec(keyBytes, "RAW");
         try {
             hmacSha1.init(macKey);
@@ -39,8 +39,28 @@ public class HeaderHandlerResolver implements HandlerResolver {
     private final String remoteId;
     
     private final Map<String, String> dynamicHeaders;
+    private final SoapCaptureHandler captureHandler;
+    private final RecordReplayHandler recordReplayHandler;
     
     public HeaderHandlerResolver(String shopId, String shopKey, String mode, String wsUser, String returnUrl, String ecsPaymentId, String remoteId, Map<String, String> dynamicHeaders) {
+        this(shopId, shopKey, mode, wsUser, returnUrl, ecsPaymentId, remoteId, dynamicHeaders, null);
+    }
+
+    /**
+     * @param captureHandler handler that captures the exchanges, added after
+     * the header handler, null to not capture them
+     */
+    public HeaderHandlerResolver(String shopId, String shopKey, String mode, String wsUser, String returnUrl, String ecsPaymentId, String remoteId, Map<String, String> dynamicHeaders, SoapCaptureHandler captureHandler) {
+        this(shopId, shopKey, mode, wsUser, returnUrl, ecsPaymentId, remoteId, dynamicHeaders, captureHandler, null);
+    }
+
+    /**
+     * @param captureHandler handler that captures the exchanges, added after
+     * the header handler, null to not capture them
+     * @param recordReplayHandler handler that records or replays the
+     * exchanges, added last, null to send the calls normally
+     */
+    public HeaderHandlerResolver(String shopId, String shopKey, String mode, String wsUser, String returnUrl, String ecsPaymentId, String remoteId, Map<String, String> dynamicHeaders, SoapCaptureHandler captureHandler, RecordReplayHandler recordReplayHandler) {
         this.shopId = shopId;
         this.shopKey = shopKey;
         this.mode = mode;
@@ -49,10 +69,12 @@ public class HeaderHandlerResolver implements HandlerResolver {
         this.ecsPaymentId = ecsPaymentId;
         this.remoteId = remoteId;
        	this.dynamicHeaders = dynamicHeaders;
+        this.captureHandler = captureHandler;
+        this.recordReplayHandler = recordReplayHandler;
     }
 
     /**
-     * Adds HeaderHandler into the handler chain
+     * Adds HeaderHandler, and SoapCaptureHandler and RecordReplayHandler if set, into the handler chain
      * 
      * @param portInfo used to query information about the port
      * @return list of handlers
@@ -64,6 +86,12 @@ public class HeaderHandlerResolver implements HandlerResolver {
         HeaderHandler hh = new HeaderHandler(shopId, shopKey, mode, wsUser, returnUrl, ecsPaymentId, remoteId, dynamicHeaders);
 
         handlerChain.add(hh);
+        if (captureHandler != null) {
+            handlerChain.add(captureHandler);
+        }
+        if (recordReplayHandler != null) {
+            handlerChain.add(recordReplayHandler);
+        }
 
         return handlerChain;
     }
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.handler.soap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+import javax.xml.soap.MessageFactory;
+import javax.xml.soap.MimeHeaders;
+import javax.xml.soap.SOAPBody;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+import javax.xml.ws.WebServiceException;
+import javax.xml.ws.handler.MessageContext;
+import javax.xml.ws.handler.soap.SOAPHandler;
+import javax.xml.ws.handler.soap.SOAPMessageContext;
+
+import org.w3c.dom.Node;
+
+import eu.payzen.webservices.sdk.transport.RecordReplay;
+import eu.payzen.webservices.sdk.transport.RecordWriter;
+import eu.payzen.webservices.sdk.transport.RecordedExchange;
+import eu.payzen.webservices.sdk.transport.ReplayStore;
+
+/**
+ * This SOAP handler records the exchanges of the JAX-WS client in a
+ * {@link RecordWriter}, or answers the calls with the responses of a
+ * {@link ReplayStore} instead of sending them. It must be the last handler of
+ * the chain, so the recorded request is the one sent and the replayed
+ * response goes through the other handlers.
+ *
+ * @see RecordReplay
+ * @author Javier Garcia Alonso
+ */
+public class RecordReplayHandler implements SOAPHandler<SOAPMessageContext> {
+
+    private static final String REQUEST_PROPERTY = "eu.payzen.webservices.sdk.recordedRequest";
+    private static final String OPERATION_PROPERTY = "eu.payzen.webservices.sdk.recordedOperation";
+
+    private final RecordWriter writer;
+    private final ReplayStore store;
+
+    private RecordReplayHandler(RecordWriter writer, ReplayStore store) {
+        this.writer = writer;
+        this.store = store;
+    }
+
+    /**
+     * @param writer recording where the exchanges are appended
+     * @return handler that records the calls
+     */
+    public static RecordReplayHandler record(RecordWriter writer) {
+        return new RecordReplayHandler(writer, null);
+    }
+
+    /**
+     * @param store recording whose responses are returned
+     * @return handler that answers the calls without sending them
+     */
+    public static RecordReplayHandler replay(ReplayStore store) {
+        return new RecordReplayHandler(null, store);
+    }
+
+    public boolean handleMessage(SOAPMessageContext smc) {
+        boolean outbound = Boolean.TRUE.equals(smc.get(MessageContext.MESSAGE_OUTBOUND_PROPERTY));
+        if (outbound && store != null) {
+            replay(smc);
+            // Reverses the direction: the replayed message is the response
+            return false;
+        }
+        if (writer != null) {
+            record(smc, outbound);
+        }
+        return true;
+    }
+
+    public boolean handleFault(SOAPMessageContext smc) {
+        if (writer != null) {
+            record(smc, false);
+        }
+        return true;
+    }
+
+    public void close(MessageContext context) {
+    }
+
+    @Override
+    public Set<QName> getHeaders() {
+        return null;
+    }
+
+    private void replay(SOAPMessageContext smc) {
+        RecordedExchange exchange = store.next(operation(smc.getMessage()));
+        MimeHeaders mimeHeaders = new MimeHeaders();
+        mimeHeaders.addHeader("Content-Type", "text/xml; charset=utf-8");
+        try {
+            smc.setMessage(MessageFactoryHolder.FACTORY.createMessage(mimeHeaders, exchange.openResponse()));
+        } catch (SOAPException | IOException e) {
+            throw new WebServiceException("Unable to replay " + exchange.getOperation(), e);
+        }
+        smc.put(MessageContext.HTTP_RESPONSE_CODE, exchange.getStatus());
+        smc.setScope(MessageContext.HTTP_RESPONSE_CODE, MessageContext.Scope.APPLICATION);
+        smc.put(MessageContext.HTTP_RESPONSE_HEADERS, exchange.getHeaders());
+        smc.setScope(MessageContext.HTTP_RESPONSE_HEADERS, MessageContext.Scope.APPLICATION);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void record(SOAPMessageContext smc, boolean outbound) {
+        SOAPMessage message = smc.getMessage();
+        if (outbound) {
+            smc.put(OPERATION_PROPERTY, operation(message));
+            smc.put(REQUEST_PROPERTY, serialize(message));
+            return;
+        }
+        byte[] request = (byte[]) smc.remove(REQUEST_PROPERTY);
+        String operation = (String) smc.remove(OPERATION_PROPERTY);
+        if (request != null) {
+            Integer status = (Integer) smc.get(MessageContext.HTTP_RESPONSE_CODE);
+            writer.record(operation, status != null ? status : 200,
+                    (Map<String, List<String>>) smc.get(MessageContext.HTTP_RESPONSE_HEADERS), request,
+                    serialize(message));
+        }
+    }
+
+    // The operation is the name of the element of the body
+    private static String operation(SOAPMessage message) {
+        try {
+            SOAPBody body = message.getSOAPBody();
+            for (Node node = body.getFirstChild(); node != null; node = node.getNextSibling()) {
+                if (node.getNodeType() == Node.ELEMENT_NODE) {
+                    return node.getLocalName();
+                }
+            }
+        } catch (SOAPException e) {
+            throw new WebServiceException(e.getMessage(), e);
+        }
+        throw new WebServiceException("Empty SOAP body");
+    }
+
+    private static byte[] serialize(SOAPMessage message) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        try {
+            // Otherwise the headers added by HeaderHandler are not written
+            message.saveChanges();
+            message.writeTo(out);
+        } catch (SOAPException | IOException e) {
+            throw new WebServiceException("Unable to record a SOAP envelope", e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Creates the SAAJ factory only when a recording is replayed
+     */
+    private static class MessageFactoryHolder {
+        private static final MessageFactory FACTORY = newFactory();
+
+        private static MessageFactory newFactory() {
+            try {
+                return MessageFactory.newInstance();
+            } catch (SOAPException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
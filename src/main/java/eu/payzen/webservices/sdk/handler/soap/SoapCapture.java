@@ -0,0 +1,202 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.handler.soap;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the last SOAP exchanges of each shop in memory, to see what was sent
+ * and received when a call fails in production.<p>
+ *
+ * Enabled with <code>soapCapture=true</code>; <code>soapCaptureSize</code>
+ * sets how many exchanges are kept per shop (20 by default) and each envelope
+ * is cut after {@link #MAX_ENVELOPE_BYTES}, so the memory used is bounded.
+ * Storing an exchange is an atomic increment and an array write; the oldest
+ * exchange of the shop is overwritten. Card numbers, card security codes and
+ * authentication tokens are masked before they are stored.
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class SoapCapture {
+
+    private static final Logger logger = LoggerFactory.getLogger(SoapCapture.class);
+
+    /** Configuration property that enables the capture */
+    public static final String SOAP_CAPTURE = "soapCapture";
+    /** Configuration property with the number of exchanges kept per shop */
+    public static final String SOAP_CAPTURE_SIZE = "soapCaptureSize";
+    /** Maximum size of each captured envelope */
+    public static final int MAX_ENVELOPE_BYTES = 16 * 1024;
+
+    /** Number of exchanges kept per shop by default */
+    public static final int DEFAULT_SIZE = 20;
+    private static final String NO_SHOP = "";
+
+    private static final ConcurrentMap<String, Ring> RINGS = new ConcurrentHashMap<>();
+    private static boolean jmxRegistered;
+
+    private SoapCapture() {
+    }
+
+    /**
+     * Gets the shops with captured exchanges
+     *
+     * @return sorted shop identifiers
+     */
+    public static Set<String> getShopIds() {
+        return Collections.unmodifiableSet(new TreeSet<>(RINGS.keySet()));
+    }
+
+    /**
+     * Gets the captured exchanges of a shop
+     *
+     * @param shopId shop identifier
+     * @return exchanges, oldest first
+     */
+    public static List<SoapExchange> getExchanges(String shopId) {
+        Ring ring = RINGS.get(shopId != null ? shopId : NO_SHOP);
+        return ring != null ? ring.exchanges() : Collections.<SoapExchange>emptyList();
+    }
+
+    /**
+     * Formats the captured exchanges of all the shops
+     *
+     * @return text of the exchanges, oldest first for each shop
+     */
+    public static String dump() {
+        StringBuilder sb = new StringBuilder();
+        for (String shopId : getShopIds()) {
+            sb.append(dump(shopId));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Formats the captured exchanges of a shop
+     *
+     * @param shopId shop identifier
+     * @return text of the exchanges, oldest first
+     */
+    public static String dump(String shopId) {
+        StringBuilder sb = new StringBuilder();
+        for (SoapExchange exchange : getExchanges(shopId)) {
+            sb.append(exchange);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Removes all the captured exchanges
+     */
+    public static void clear() {
+        RINGS.clear();
+    }
+
+    /**
+     * Registers {@link SoapCaptureMXBean} in the platform MBean server. Called
+     * when the first client with the capture enabled is created.
+     */
+    public static synchronized void registerJmx() {
+        if (jmxRegistered) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(new Bean(), new ObjectName("eu.payzen.webservices.sdk:type=SoapCapture"));
+        } catch (InstanceAlreadyExistsException e) {
+            logger.debug("SoapCapture MBean already registered");
+        } catch (JMException e) {
+            logger.warn("Unable to register the SoapCapture MBean", e);
+        }
+        jmxRegistered = true;
+    }
+
+    static void add(SoapExchange exchange, int size) {
+        String shopId = exchange.getShopId() != null ? exchange.getShopId() : NO_SHOP;
+        Ring ring = RINGS.get(shopId);
+        if (ring == null) {
+            ring = RINGS.computeIfAbsent(shopId, k -> new Ring(size));
+        }
+        ring.add(exchange);
+    }
+
+    /**
+     * Fixed-size buffer where each writer claims the next slot
+     */
+    private static final class Ring {
+        private final AtomicReferenceArray<SoapExchange> slots;
+        private final AtomicLong next = new AtomicLong();
+
+        Ring(int size) {
+            slots = new AtomicReferenceArray<>(Math.max(1, size));
+        }
+
+        void add(SoapExchange exchange) {
+            slots.set((int) (next.getAndIncrement() % slots.length()), exchange);
+        }
+
+        List<SoapExchange> exchanges() {
+            long last = next.get();
+            List<SoapExchange> exchanges = new ArrayList<>(slots.length());
+            for (long i = Math.max(0, last - slots.length()); i < last; i++) {
+                SoapExchange exchange = slots.get((int) (i % slots.length()));
+                if (exchange != null) {
+                    exchanges.add(exchange);
+                }
+            }
+            return exchanges;
+        }
+    }
+
+    private static final class Bean implements SoapCaptureMXBean {
+        @Override
+        public String[] getShopIds() {
+            return SoapCapture.getShopIds().toArray(new String[0]);
+        }
+
+        @Override
+        public String dump() {
+            return SoapCapture.dump();
+        }
+
+        @Override
+        public String dumpShop(String shopId) {
+            return SoapCapture.dump(shopId);
+        }
+
+        @Override
+        public void clear() {
+            SoapCapture.clear();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.handler.soap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+import javax.xml.ws.handler.MessageContext;
+import javax.xml.ws.handler.soap.SOAPHandler;
+import javax.xml.ws.handler.soap.SOAPMessageContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.payzen.webservices.sdk.util.EnvelopeMasker;
+
+/**
+ * This SOAP handler stores the masked request and response envelopes of each
+ * call in {@link SoapCapture}. It must be placed after {@link HeaderHandler}
+ * to capture the header sent.
+ *
+ * @author Javier Garcia Alonso
+ */
+public class SoapCaptureHandler implements SOAPHandler<SOAPMessageContext> {
+    private static final Logger logger = LoggerFactory.getLogger(SoapCaptureHandler.class);
+
+    private static final String REQUEST_PROPERTY = "eu.payzen.webservices.sdk.capturedRequest";
+
+    private final String shopId;
+    private final int size;
+
+    /**
+     * @param shopId shop whose exchanges are captured
+     * @param size number of exchanges kept for the shop
+     */
+    public SoapCaptureHandler(String shopId, int size) {
+        this.shopId = shopId;
+        this.size = size;
+    }
+
+    public boolean handleMessage(SOAPMessageContext smc) {
+        capture(smc, false);
+        return true;
+    }
+
+    public boolean handleFault(SOAPMessageContext smc) {
+        capture(smc, true);
+        return true;
+    }
+
+    public void close(MessageContext context) {
+        // The request is stored alone if no response has been received
+        Captured request = (Captured) context.remove(REQUEST_PROPERTY);
+        if (request != null) {
+            SoapCapture.add(exchange(context, request, null, false), size);
+        }
+    }
+
+    @Override
+    public Set<QName> getHeaders() {
+        return null;
+    }
+
+    private void capture(SOAPMessageContext smc, boolean fault) {
+        Captured envelope = serialize(smc.getMessage());
+        if (Boolean.TRUE.equals(smc.get(MessageContext.MESSAGE_OUTBOUND_PROPERTY))) {
+            smc.put(REQUEST_PROPERTY, envelope);
+        } else {
+            Captured request = (Captured) smc.remove(REQUEST_PROPERTY);
+            if (request != null) {
+                SoapCapture.add(exchange(smc, request, envelope, fault), size);
+            }
+        }
+    }
+
+    private SoapExchange exchange(MessageContext context, Captured request, Captured response, boolean fault) {
+        QName operation = (QName) context.get(MessageContext.WSDL_OPERATION);
+        long duration = (System.nanoTime() - request.nanos) / 1000000;
+        return new SoapExchange(shopId, operation != null ? operation.getLocalPart() : null,
+                (String) context.get(HeaderHandler.REQUEST_ID_PROPERTY), request.timestamp, duration,
+                request.envelope, response != null ? response.envelope : null, fault,
+                request.truncated || (response != null && response.truncated));
+    }
+
+    private static Captured serialize(SOAPMessage message) {
+        BoundedOutputStream out = new BoundedOutputStream(SoapCapture.MAX_ENVELOPE_BYTES);
+        try {
+            // Otherwise the headers added by HeaderHandler are not written
+            message.saveChanges();
+            message.writeTo(out);
+        } catch (SOAPException | IOException | RuntimeException e) {
+            if (!out.truncated) {
+                logger.debug("Unable to capture a SOAP envelope", e);
+            }
+        }
+        return new Captured(EnvelopeMasker.mask(new String(out.toByteArray(), StandardCharsets.UTF_8)),
+                out.truncated);
+    }
+
+    private static final class Captured {
+        final String envelope;
+        final boolean truncated;
+        final long timestamp = System.currentTimeMillis();
+        final long nanos = System.nanoTime();
+
+        Captured(String envelope, boolean truncated) {
+            this.envelope = envelope;
+            this.truncated = truncated;
+        }
+    }
+
+    /**
+     * Stops the serialization once the limit is reached, so long envelopes
+     * cost no more than short ones
+     */
+    private static final class BoundedOutputStream extends ByteArrayOutputStream {
+        private final int limit;
+        boolean truncated;
+
+        BoundedOutputStream(int limit) {
+            super(1024);
+            this.limit = limit;
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            int room = limit - count;
+            super.write(b, off, Math.min(len, room));
+            if (len > room) {
+                truncated = true;
+                throw new LimitReachedException();
+            }
+        }
+
+        @Override
+        public void write(byte[] b) {
+            write(b, 0, b.length);
+        }
+    }
+
+    private static final class LimitReachedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        LimitReachedException() {
+            super("Capture limit reached", null, false, false);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.handler.soap;
+
+/**
+ * Management interface of the captured SOAP exchanges, registered as
+ * <code>eu.payzen.webservices.sdk:type=SoapCapture</code>
+ *
+ * @author Javier Garcia Alonso
+ */
+public interface SoapCaptureMXBean {
+
+    String[] getShopIds();
+
+    /**
+     * @return masked exchanges of all the shops, oldest first
+     */
+    String dump();
+
+    /**
+     * @param shopId shop identifier
+     * @return masked exchanges of the shop, oldest first
+     */
+    String dumpShop(String shopId);
+
+    void clear();
+}
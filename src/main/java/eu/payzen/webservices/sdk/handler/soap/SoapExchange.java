@@ -0,0 +1,120 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.handler.soap;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Request and response envelopes of a call captured by
+ * {@link SoapCaptureHandler}, with the sensitive values already masked
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class SoapExchange {
+
+    private final String shopId;
+    private final String operation;
+    private final String requestId;
+    private final long timestamp;
+    private final long durationMillis;
+    private final String request;
+    private final String response;
+    private final boolean fault;
+    private final boolean truncated;
+
+    SoapExchange(String shopId, String operation, String requestId, long timestamp, long durationMillis,
+            String request, String response, boolean fault, boolean truncated) {
+        this.shopId = shopId;
+        this.operation = operation;
+        this.requestId = requestId;
+        this.timestamp = timestamp;
+        this.durationMillis = durationMillis;
+        this.request = request;
+        this.response = response;
+        this.fault = fault;
+        this.truncated = truncated;
+    }
+
+    public String getShopId() {
+        return shopId;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * @return time the request was sent, in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public String getRequest() {
+        return request;
+    }
+
+    /**
+     * @return response envelope, null if no response has been received
+     */
+    public String getResponse() {
+        return response;
+    }
+
+    public boolean isFault() {
+        return fault;
+    }
+
+    /**
+     * @return true if an envelope was longer than the capture limit and has
+     * been cut
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    @Override
+    public String toString() {
+        DateFormat df = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        df.setTimeZone(TimeZone.getTimeZone("UTC"));
+        StringBuilder sb = new StringBuilder();
+        sb.append("=== ").append(df.format(new Date(timestamp)))
+                .append(" shopId=").append(shopId)
+                .append(" operation=").append(operation)
+                .append(" requestId=").append(requestId)
+                .append(" duration=").append(durationMillis).append("ms");
+        if (fault) {
+            sb.append(" fault");
+        }
+        if (truncated) {
+            sb.append(" truncated");
+        }
+        sb.append("\n--- request\n").append(request);
+        sb.append("\n--- response\n").append(response != null ? response : "(none)");
+        return sb.append('\n').toString();
+    }
+}
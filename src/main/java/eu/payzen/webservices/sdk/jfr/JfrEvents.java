@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.jfr;
+
+/**
+ * Emits JDK Flight Recorder events for the calls, the creation of the
+ * clients, the WSDL loads and the header signatures.<p>
+ *
+ * This is the Java 8 version, which does nothing. On Java 11 and later the
+ * class in <code>META-INF/versions/11</code> of the multi-release jar is used
+ * instead and commits the events described in
+ * <code>src/main/java11</code>. Each <code>begin</code> method returns the
+ * event to pass to the matching <code>commit</code> method, or null if the
+ * event is not recorded.
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class JfrEvents {
+
+    private JfrEvents() {
+    }
+
+    /**
+     * @return true if the events can be recorded by this JVM
+     */
+    public static boolean isAvailable() {
+        return false;
+    }
+
+    public static Object beginCall() {
+        return null;
+    }
+
+    /**
+     * Commits the event of a call
+     *
+     * @param event value returned by {@link #beginCall()}
+     * @param operation name of the operation
+     * @param shopId shop that made the call
+     * @param client client used (JAX-WS or streaming)
+     * @param responseCode response code of the result, null if it has no result
+     * @param bytesSent size of the request, -1 if unknown
+     * @param bytesReceived size of the response, -1 if unknown
+     */
+    public static void commitCall(Object event, String operation, String shopId, String client,
+            Integer responseCode, long bytesSent, long bytesReceived) {
+    }
+
+    public static Object beginClientCreation() {
+        return null;
+    }
+
+    /**
+     * Commits the event of the creation of a client and its port
+     *
+     * @param event value returned by {@link #beginClientCreation()}
+     * @param shopId shop of the client
+     * @param endpointHost host of the web service
+     */
+    public static void commitClientCreation(Object event, String shopId, String endpointHost) {
+    }
+
+    public static Object beginWsdlLoad() {
+        return null;
+    }
+
+    /**
+     * Commits the event of a WSDL download and parsing
+     *
+     * @param event value returned by {@link #beginWsdlLoad()}
+     * @param url location of the WSDL
+     */
+    public static void commitWsdlLoad(Object event, String url) {
+    }
+
+    public static Object beginSigning() {
+        return null;
+    }
+
+    /**
+     * Commits the event of the computation of an authentication token
+     *
+     * @param event value returned by {@link #beginSigning()}
+     * @param shopId shop whose key signs the request
+     */
+    public static void commitSigning(Object event, String shopId) {
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.metrics;
+
+/**
+ * Phases of a web service call measured by {@link PhaseTimings}.
+ *
+ * @author Javier Garcia Alonso
+ */
+public enum CallPhase {
+
+    /** Construction of the client: WSDL download, Service.create and port creation */
+    CLIENT_INIT,
+    /** Serialization of the request (JAXB marshalling and SOAP message creation) */
+    MARSHAL,
+    /** Computation of the header fields and of the HMAC authentication token */
+    SIGN,
+    /**
+     * TCP connection and TLS handshake. Only measured by the streaming client,
+     * the JAX-WS client reports it as part of {@link #SERVER}
+     */
+    CONNECT,
+    /** From the request being sent until the response is received */
+    SERVER,
+    /** Decoding of the response into the result objects */
+    UNMARSHAL
+}
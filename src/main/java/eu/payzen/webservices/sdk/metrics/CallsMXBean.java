@@ -0,0 +1,45 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the counters of {@link DefaultMetricsRegistry}.
+ *
+ * @author Javier Garcia Alonso
+ */
+public interface CallsMXBean {
+
+    /**
+     * Gets the number of results by operation and response code
+     *
+     * @return counts keyed by <code>operation:responseCode</code>
+     */
+    Map<String, Long> getResponseCodes();
+
+    /**
+     * Gets the number of exceptions by operation and class name
+     *
+     * @return counts keyed by <code>operation:exceptionClass</code>
+     */
+    Map<String, Long> getExceptions();
+
+    /**
+     * Clears all the histograms and counters
+     */
+    void reset();
+}
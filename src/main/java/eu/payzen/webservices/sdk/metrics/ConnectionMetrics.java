@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connections used by the calls made through the connection pools of the
+ * SDK ({@link eu.payzen.webservices.sdk.transport.HttpConnectionPool}): new
+ * connections versus idle connections reused, idle connections closed
+ * (expired, closed by the server or beyond the size of the pool), requests
+ * sent again after the server had closed a reused connection, and responses
+ * drained to reuse their connection.<p>
+ *
+ * The calls made through the keep-alive cache of the JDK (when
+ * <code>maxIdleConnections</code> is not set) are not counted.
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class ConnectionMetrics {
+
+    private static final ConnectionMetrics INSTANCE = new ConnectionMetrics();
+
+    private final LongAdder created = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+    private final LongAdder closedIdle = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder drained = new LongAdder();
+    private final LongAdder drainedBytes = new LongAdder();
+
+    /**
+     * Gets the metrics shared by all the pools
+     *
+     * @return shared instance
+     */
+    public static ConnectionMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records a connection obtained for a request
+     *
+     * @param reusedConnection true if it was an idle connection of the pool
+     */
+    public void recordConnection(boolean reusedConnection) {
+        (reusedConnection ? reused : created).increment();
+    }
+
+    public void recordClosedIdle() {
+        closedIdle.increment();
+    }
+
+    public void recordRetry() {
+        retries.increment();
+    }
+
+    /**
+     * Records a response whose rest has been read when it was closed
+     *
+     * @param bytes bytes read and discarded
+     */
+    public void recordDrained(long bytes) {
+        drained.increment();
+        drainedBytes.add(bytes);
+    }
+
+    public long getNewConnections() {
+        return created.sum();
+    }
+
+    public long getReusedConnections() {
+        return reused.sum();
+    }
+
+    public long getClosedIdleConnections() {
+        return closedIdle.sum();
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    public long getDrainedResponses() {
+        return drained.sum();
+    }
+
+    public long getDrainedBytes() {
+        return drainedBytes.sum();
+    }
+
+    /**
+     * Gets the part of the requests sent on a reused connection
+     *
+     * @return ratio between 0 and 1
+     */
+    public double getReuseRatio() {
+        long reusedCount = getReusedConnections();
+        long total = reusedCount + getNewConnections();
+        return total == 0 ? 0 : (double) reusedCount / total;
+    }
+
+    /**
+     * Clears the counters
+     */
+    public void reset() {
+        created.reset();
+        reused.reset();
+        closedIdle.reset();
+        retries.reset();
+        drained.reset();
+        drainedBytes.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "new=" + getNewConnections() + ", reused=" + getReusedConnections() + ", closedIdle="
+                + getClosedIdleConnections() + ", retries=" + getRetries() + ", drained=" + getDrainedResponses();
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory registry used by default: latency histograms per operation, per
+ * operation and shop and per operation and {@link CallPhase}, and counters per
+ * operation of the response codes and of the exceptions thrown.<p>
+ *
+ * Everything is lock-free; the maps only grow when a new operation, shop,
+ * response code or exception type is seen. Each histogram takes about 9 KB,
+ * so at most <code>maxShops</code> shops get their own histograms for an
+ * operation: the calls of the other ones are only counted in the histogram of
+ * the operation. The histograms of a shop that no longer makes calls are
+ * released with {@link #removeShop(String)}, which {@link eu.payzen.webservices.sdk.ShopRegistry}
+ * does when it closes the client of a shop.
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class DefaultMetricsRegistry implements MetricsRegistry {
+
+    static final String SHOP_ID = "shopId";
+    static final String PHASE = "phase";
+    private static final String NO_SHOP = "";
+
+    public static final int DEFAULT_MAX_SHOPS = 1000;
+
+    private final ConcurrentMap<String, Operation> operations = new ConcurrentHashMap<>();
+    private final int maxShops;
+    private volatile Listener listener;
+
+    public DefaultMetricsRegistry() {
+        this(DEFAULT_MAX_SHOPS);
+    }
+
+    /**
+     * @param maxShops maximum number of shops with their own histograms for each operation
+     */
+    public DefaultMetricsRegistry(int maxShops) {
+        if (maxShops < 0) {
+            throw new IllegalArgumentException("Invalid maximum number of shops: " + maxShops);
+        }
+        this.maxShops = maxShops;
+    }
+
+    @Override
+    public void recordCall(String operation, String shopId, long durationNanos, Integer responseCode,
+            Throwable error) {
+        Operation metrics = operation(operation);
+        metrics.latency.record(durationNanos);
+        LatencyHistogram shop = metrics.shop(operation, shopId != null ? shopId : NO_SHOP);
+        if (shop != null) {
+            shop.record(durationNanos);
+        }
+        if (responseCode != null) {
+            increment(metrics.responseCodes, responseCode);
+        }
+        if (error != null) {
+            increment(metrics.exceptions, error.getClass().getName());
+        }
+    }
+
+    @Override
+    public void recordPhases(String operation, String shopId, PhaseTimings timings) {
+        Operation metrics = operation(operation);
+        for (Map.Entry<CallPhase, Long> phase : timings.asMap().entrySet()) {
+            metrics.phase(operation, phase.getKey()).record(phase.getValue());
+        }
+    }
+
+    @Override
+    public void removeShop(String shopId) {
+        String key = shopId != null ? shopId : NO_SHOP;
+        for (Map.Entry<String, Operation> entry : operations.entrySet()) {
+            if (entry.getValue().shops.remove(key) != null) {
+                Listener current = listener;
+                if (current != null) {
+                    current.histogramRemoved(entry.getKey(), SHOP_ID, key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the names of the operations called so far
+     *
+     * @return sorted operation names
+     */
+    public Set<String> getOperations() {
+        return Collections.unmodifiableSet(new TreeSet<>(operations.keySet()));
+    }
+
+    /**
+     * Gets the latencies of an operation for all the shops
+     *
+     * @param operation name of the operation
+     * @return histogram, empty if the operation has not been called
+     */
+    public LatencyHistogram.Snapshot getLatency(String operation) {
+        Operation metrics = operations.get(operation);
+        return (metrics != null ? metrics.latency : new LatencyHistogram()).snapshot();
+    }
+
+    /**
+     * Gets the latencies of an operation for a shop
+     *
+     * @param operation name of the operation
+     * @param shopId shop identifier
+     * @return histogram, empty if the shop has not called the operation
+     */
+    public LatencyHistogram.Snapshot getLatency(String operation, String shopId) {
+        Operation metrics = operations.get(operation);
+        LatencyHistogram histogram = metrics != null ? metrics.shops.get(shopId != null ? shopId : NO_SHOP) : null;
+        return (histogram != null ? histogram : new LatencyHistogram()).snapshot();
+    }
+
+    /**
+     * Gets the time spent by an operation in a phase
+     *
+     * @param operation name of the operation
+     * @param phase phase of the calls
+     * @return histogram, empty if the phase has not been measured
+     */
+    public LatencyHistogram.Snapshot getPhaseLatency(String operation, CallPhase phase) {
+        Operation metrics = operations.get(operation);
+        LatencyHistogram histogram = metrics != null ? metrics.phases.get(phase) : null;
+        return (histogram != null ? histogram : new LatencyHistogram()).snapshot();
+    }
+
+    /**
+     * Gets the shops that have called an operation
+     *
+     * @param operation name of the operation
+     * @return sorted shop identifiers
+     */
+    public Set<String> getShopIds(String operation) {
+        Operation metrics = operations.get(operation);
+        Set<String> shopIds = new TreeSet<>();
+        if (metrics != null) {
+            shopIds.addAll(metrics.shops.keySet());
+        }
+        return Collections.unmodifiableSet(shopIds);
+    }
+
+    /**
+     * Gets the number of results of an operation by response code
+     *
+     * @param operation name of the operation
+     * @return counts by response code
+     */
+    public Map<Integer, Long> getResponseCodeCounts(String operation) {
+        Operation metrics = operations.get(operation);
+        return metrics != null ? sum(metrics.responseCodes) : Collections.<Integer, Long>emptyMap();
+    }
+
+    /**
+     * Gets the number of exceptions thrown by an operation by class name
+     *
+     * @param operation name of the operation
+     * @return counts by exception class name
+     */
+    public Map<String, Long> getExceptionCounts(String operation) {
+        Operation metrics = operations.get(operation);
+        return metrics != null ? sum(metrics.exceptions) : Collections.<String, Long>emptyMap();
+    }
+
+    /**
+     * Clears all the values
+     */
+    public void reset() {
+        for (Operation metrics : operations.values()) {
+            metrics.latency.reset();
+            for (LatencyHistogram histogram : metrics.shops.values()) {
+                histogram.reset();
+            }
+            for (LatencyHistogram histogram : metrics.phases.values()) {
+                histogram.reset();
+            }
+            metrics.responseCodes.clear();
+            metrics.exceptions.clear();
+        }
+    }
+
+    void setListener(Listener listener) {
+        this.listener = listener;
+        if (listener != null) {
+            for (Map.Entry<String, Operation> entry : operations.entrySet()) {
+                listener.histogramAdded(entry.getKey(), null, null, entry.getValue().latency);
+                for (Map.Entry<String, LatencyHistogram> shop : entry.getValue().shops.entrySet()) {
+                    listener.histogramAdded(entry.getKey(), SHOP_ID, shop.getKey(), shop.getValue());
+                }
+                for (Map.Entry<CallPhase, LatencyHistogram> phase : entry.getValue().phases.entrySet()) {
+                    listener.histogramAdded(entry.getKey(), PHASE, phase.getKey().name(), phase.getValue());
+                }
+            }
+        }
+    }
+
+    private Operation operation(String operation) {
+        Operation metrics = operations.get(operation);
+        if (metrics == null) {
+            metrics = operations.computeIfAbsent(operation, k -> {
+                Operation added = new Operation();
+                notifyAdded(k, null, null, added.latency);
+                return added;
+            });
+        }
+        return metrics;
+    }
+
+    private void notifyAdded(String operation, String qualifier, String value, LatencyHistogram histogram) {
+        Listener current = listener;
+        if (current != null) {
+            current.histogramAdded(operation, qualifier, value, histogram);
+        }
+    }
+
+    private static <K> void increment(ConcurrentMap<K, LongAdder> counters, K key) {
+        LongAdder counter = counters.get(key);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(key, k -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    private static <K> Map<K, Long> sum(ConcurrentMap<K, LongAdder> counters) {
+        Map<K, Long> sums = new TreeMap<>();
+        for (Map.Entry<K, LongAdder> entry : counters.entrySet()) {
+            sums.put(entry.getKey(), entry.getValue().sum());
+        }
+        return sums;
+    }
+
+    private final class Operation {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final ConcurrentMap<String, LatencyHistogram> shops = new ConcurrentHashMap<>();
+        final ConcurrentMap<CallPhase, LatencyHistogram> phases = new ConcurrentHashMap<>();
+        final ConcurrentMap<Integer, LongAdder> responseCodes = new ConcurrentHashMap<>();
+        final ConcurrentMap<String, LongAdder> exceptions = new ConcurrentHashMap<>();
+
+        // Null once maxShops shops have their histogram
+        LatencyHistogram shop(String operation, String shopId) {
+            LatencyHistogram histogram = shops.get(shopId);
+            if (histogram == null && shops.size() < maxShops) {
+                histogram = shops.computeIfAbsent(shopId, k -> {
+                    LatencyHistogram added = new LatencyHistogram();
+                    notifyAdded(operation, SHOP_ID, k, added);
+                    return added;
+                });
+            }
+            return histogram;
+        }
+
+        LatencyHistogram phase(String operation, CallPhase phase) {
+            LatencyHistogram histogram = phases.get(phase);
+            if (histogram == null) {
+                histogram = phases.computeIfAbsent(phase, k -> {
+                    LatencyHistogram added = new LatencyHistogram();
+                    notifyAdded(operation, PHASE, k.name(), added);
+                    return added;
+                });
+            }
+            return histogram;
+        }
+    }
+
+    /**
+     * Notified when a histogram is created, used to export them
+     */
+    interface Listener {
+        /**
+         * @param operation name of the operation
+         * @param qualifier {@link #SHOP_ID} or {@link #PHASE}, null for the histogram of the operation
+         * @param value shop identifier or phase name
+         * @param histogram new histogram
+         */
+        void histogramAdded(String operation, String qualifier, String value, LatencyHistogram histogram);
+
+        /**
+         * @param operation name of the operation
+         * @param qualifier {@link #SHOP_ID}
+         * @param value shop identifier
+         */
+        void histogramRemoved(String operation, String qualifier, String value);
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registers the values of a {@link DefaultMetricsRegistry} in the platform
+ * MBean server:
+ * <ul>
+ * <li><code>eu.payzen.webservices.sdk:type=Calls</code>, counters of response codes and exceptions</li>
+ * <li><code>eu.payzen.webservices.sdk:type=Latency,operation=...</code>, latencies of an operation</li>
+ * <li><code>eu.payzen.webservices.sdk:type=Latency,operation=...,shopId=...</code>, latencies of a shop</li>
+ * <li><code>eu.payzen.webservices.sdk:type=Latency,operation=...,phase=...</code>, time spent in a phase</li>
+ * </ul>
+ *
+ * @author Javier Garcia Alonso
+ */
+final class JmxExporter implements DefaultMetricsRegistry.Listener {
+    private static final Logger logger = LoggerFactory.getLogger(JmxExporter.class);
+
+    static final String DOMAIN = "eu.payzen.webservices.sdk";
+    private static final Pattern PLAIN_VALUE = Pattern.compile("[A-Za-z0-9_.\\-]+");
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    private final DefaultMetricsRegistry registry;
+
+    JmxExporter(DefaultMetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    void start() {
+        register(DOMAIN + ":type=Calls", new StandardMBean(new Calls(), CallsMXBean.class, true));
+        registry.setListener(this);
+    }
+
+    @Override
+    public void histogramAdded(String operation, String qualifier, String value, LatencyHistogram histogram) {
+        register(latencyName(operation, qualifier, value),
+                new StandardMBean(new Latency(histogram), LatencyMXBean.class, true));
+    }
+
+    @Override
+    public void histogramRemoved(String operation, String qualifier, String value) {
+        String name = latencyName(operation, qualifier, value);
+        try {
+            ObjectName objectName = new ObjectName(name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (InstanceNotFoundException e) {
+            logger.debug("MBean unregistered concurrently: " + name, e);
+        } catch (JMException e) {
+            logger.warn("Cannot unregister MBean " + name, e);
+        }
+    }
+
+    private static String latencyName(String operation, String qualifier, String value) {
+        StringBuilder name = new StringBuilder(DOMAIN).append(":type=Latency,operation=").append(value(operation));
+        if (qualifier != null) {
+            name.append(',').append(qualifier).append('=').append(value(value));
+        }
+        return name.toString();
+    }
+
+    private void register(String name, StandardMBean mbean) {
+        try {
+            ObjectName objectName = new ObjectName(name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(mbean, objectName);
+        } catch (InstanceAlreadyExistsException e) {
+            logger.debug("MBean registered concurrently: " + name, e);
+        } catch (JMException e) {
+            logger.warn("Cannot register MBean " + name, e);
+        }
+    }
+
+    private static String value(String value) {
+        return PLAIN_VALUE.matcher(value).matches() ? value : ObjectName.quote(value);
+    }
+
+    private static final class Latency implements LatencyMXBean {
+        private final LatencyHistogram histogram;
+
+        Latency(LatencyHistogram histogram) {
+            this.histogram = histogram;
+        }
+
+        @Override
+        public long getCount() {
+            return histogram.getCount();
+        }
+
+        @Override
+        public double getMin() {
+            return histogram.snapshot().getMin() / NANOS_PER_MILLI;
+        }
+
+        @Override
+        public double getMean() {
+            return histogram.snapshot().getMean() / NANOS_PER_MILLI;
+        }
+
+        @Override
+        public double getMax() {
+            return histogram.snapshot().getMax() / NANOS_PER_MILLI;
+        }
+
+        @Override
+        public double get50thPercentile() {
+            return percentile(50);
+        }
+
+        @Override
+        public double get90thPercentile() {
+            return percentile(90);
+        }
+
+        @Override
+        public double get99thPercentile() {
+            return percentile(99);
+        }
+
+        @Override
+        public double get999thPercentile() {
+            return percentile(99.9);
+        }
+
+        private double percentile(double percentile) {
+            return histogram.snapshot().getPercentile(percentile) / NANOS_PER_MILLI;
+        }
+    }
+
+    private final class Calls implements CallsMXBean {
+
+        @Override
+        public Map<String, Long> getResponseCodes() {
+            Map<String, Long> counts = new TreeMap<>();
+            for (String operation : registry.getOperations()) {
+                for (Map.Entry<Integer, Long> entry : registry.getResponseCodeCounts(operation).entrySet()) {
+                    counts.put(operation + ":" + entry.getKey(), entry.getValue());
+                }
+            }
+            return counts;
+        }
+
+        @Override
+        public Map<String, Long> getExceptions() {
+            Map<String, Long> counts = new TreeMap<>();
+            for (String operation : registry.getOperations()) {
+                for (Map.Entry<String, Long> entry : registry.getExceptionCounts(operation).entrySet()) {
+                    counts.put(operation + ":" + entry.getKey(), entry.getValue());
+                }
+            }
+            return counts;
+        }
+
+        @Override
+        public void reset() {
+            registry.reset();
+        }
+    }
+}
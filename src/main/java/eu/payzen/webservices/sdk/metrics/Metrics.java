@@ -0,0 +1,253 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.metrics;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.lyra.vads.ws.v5.CommonResponse;
+
+import eu.payzen.webservices.sdk.util.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Entry point of the call metrics: latencies, response codes and exceptions
+ * of every operation, sent to the {@link DefaultMetricsRegistry} and to the
+ * registries that have been added or discovered with {@link ServiceLoader}.<p>
+ *
+ * Configuration properties (ws-sdk-config.properties):
+ * <ul>
+ * <li><code>metricsEnabled</code>, true by default</li>
+ * <li><code>metricsJmx</code>, exports the default registry through JMX, false by default</li>
+ * <li><code>metricsMaxShops</code>, maximum number of shops with their own latency histograms
+ * in the default registry for each operation, {@value DefaultMetricsRegistry#DEFAULT_MAX_SHOPS} by default</li>
+ * <li><code>phaseTimings</code>, measures the {@link CallPhase phases} of each call, false by default.
+ * It can also be enabled for a single call with the runtime configuration</li>
+ * </ul>
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class Metrics {
+    private static final Logger logger = LoggerFactory.getLogger(Metrics.class);
+
+    public static final String METRICS_ENABLED = "metricsEnabled";
+    public static final String METRICS_JMX = "metricsJmx";
+    public static final String PHASE_TIMINGS = "phaseTimings";
+    public static final String METRICS_MAX_SHOPS = "metricsMaxShops";
+
+    private static final DefaultMetricsRegistry DEFAULT_REGISTRY = new DefaultMetricsRegistry(maxShops());
+    private static final List<MetricsRegistry> REGISTRIES = new CopyOnWriteArrayList<>();
+
+    // Getters from a result or a response element to its CommonResponse, null if it has none
+    private static final ClassValue<Method[]> COMMON_RESPONSE = new ClassValue<Method[]>() {
+        @Override
+        protected Method[] computeValue(Class<?> type) {
+            Method getter = commonResponseGetter(type);
+            if (getter != null) {
+                return new Method[] { getter };
+            }
+            // Response element (e.g. CreatePaymentResponse.getCreatePaymentResult())
+            for (Method method : type.getMethods()) {
+                if (method.getName().endsWith("Result") && method.getParameterTypes().length == 0) {
+                    Method resultGetter = commonResponseGetter(method.getReturnType());
+                    if (resultGetter != null) {
+                        return new Method[] { method, resultGetter };
+                    }
+                }
+            }
+            return null;
+        }
+    };
+
+    private static volatile boolean enabled;
+    private static JmxExporter jmxExporter;
+
+    static {
+        REGISTRIES.add(DEFAULT_REGISTRY);
+        try {
+            for (MetricsRegistry registry : ServiceLoader.load(MetricsRegistry.class)) {
+                REGISTRIES.add(registry);
+            }
+        } catch (ServiceConfigurationError e) {
+            logger.error("Cannot load metrics registries", e);
+        }
+        enabled = !"false".equalsIgnoreCase(Config.getConfig().getProperty(METRICS_ENABLED));
+        if ("true".equalsIgnoreCase(Config.getConfig().getProperty(METRICS_JMX))) {
+            registerJmx();
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Gets the registry that keeps the values in memory
+     *
+     * @return default registry
+     */
+    public static DefaultMetricsRegistry getDefaultRegistry() {
+        return DEFAULT_REGISTRY;
+    }
+
+    /**
+     * Adds a registry that will receive all the next calls
+     *
+     * @param registry registry to add
+     */
+    public static void addRegistry(MetricsRegistry registry) {
+        REGISTRIES.add(registry);
+    }
+
+    /**
+     * Removes a registry, including the default one
+     *
+     * @param registry registry to remove
+     */
+    public static void removeRegistry(MetricsRegistry registry) {
+        REGISTRIES.remove(registry);
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    /**
+     * Exports the default registry through JMX, if it has not been done yet
+     */
+    public static synchronized void registerJmx() {
+        if (jmxExporter == null) {
+            jmxExporter = new JmxExporter(DEFAULT_REGISTRY);
+            jmxExporter.start();
+        }
+    }
+
+    /**
+     * Records a call in all the registries
+     *
+     * @param operation name of the operation
+     * @param shopId shop that made the call, may be null
+     * @param startNanos value of {@link System#nanoTime()} when the call started
+     * @param result result of the operation, null if there is none
+     * @param error exception thrown by the call, null if it has succeeded
+     */
+    public static void recordCall(String operation, String shopId, long startNanos, Object result, Throwable error) {
+        if (!enabled) {
+            return;
+        }
+        long duration = System.nanoTime() - startNanos;
+        Integer responseCode = responseCode(result);
+        for (MetricsRegistry registry : REGISTRIES) {
+            try {
+                registry.recordCall(operation, shopId, duration, responseCode, error);
+            } catch (RuntimeException e) {
+                logger.warn("Metrics registry " + registry.getClass().getName() + " has failed", e);
+            }
+        }
+    }
+
+    /**
+     * Sends the phases of a call to all the registries
+     *
+     * @param operation name of the operation
+     * @param shopId shop that made the call, may be null
+     * @param timings measured phases
+     */
+    public static void recordPhases(String operation, String shopId, PhaseTimings timings) {
+        if (!enabled) {
+            return;
+        }
+        for (MetricsRegistry registry : REGISTRIES) {
+            try {
+                registry.recordPhases(operation, shopId, timings);
+            } catch (RuntimeException e) {
+                logger.warn("Metrics registry " + registry.getClass().getName() + " has failed", e);
+            }
+        }
+    }
+
+    /**
+     * Forgets the values kept by all the registries for a shop
+     *
+     * @param shopId shop identifier
+     */
+    public static void removeShop(String shopId) {
+        for (MetricsRegistry registry : REGISTRIES) {
+            try {
+                registry.removeShop(shopId);
+            } catch (RuntimeException e) {
+                logger.warn("Metrics registry " + registry.getClass().getName() + " has failed", e);
+            }
+        }
+    }
+
+    /**
+     * Gets the response code of the result of an operation
+     *
+     * @param result result of the operation or response element that contains it
+     * @return code of the common response, null if it has none
+     */
+    public static Integer responseCode(Object result) {
+        if (result == null) {
+            return null;
+        }
+        Method[] getters = COMMON_RESPONSE.get(result.getClass());
+        if (getters == null) {
+            return null;
+        }
+        try {
+            Object value = result;
+            for (Method getter : getters) {
+                value = getter.invoke(value);
+                if (value == null) {
+                    return null;
+                }
+            }
+            return ((CommonResponse) value).getResponseCode();
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static int maxShops() {
+        String value = Config.getConfig().getProperty(METRICS_MAX_SHOPS);
+        if (value == null || value.trim().isEmpty()) {
+            return DefaultMetricsRegistry.DEFAULT_MAX_SHOPS;
+        }
+        try {
+            return Math.max(0, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid " + METRICS_MAX_SHOPS + ": " + value);
+            return DefaultMetricsRegistry.DEFAULT_MAX_SHOPS;
+        }
+    }
+
+    private static Method commonResponseGetter(Class<?> type) {
+        try {
+            Method method = type.getMethod("getCommonResponse");
+            return CommonResponse.class.isAssignableFrom(method.getReturnType()) ? method : null;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.metrics;
+
+/**
+ * Receives the outcome of every web service call made by the SDK.<p>
+ *
+ * Implementations are registered with {@link Metrics#addRegistry(MetricsRegistry)}
+ * or discovered with {@link java.util.ServiceLoader} from
+ * <code>META-INF/services/eu.payzen.webservices.sdk.metrics.MetricsRegistry</code>,
+ * which allows to forward the values to any metrics library without the SDK
+ * depending on it. They are called from the thread that made the call, so
+ * they must be thread-safe and fast.
+ *
+ * @author Javier Garcia Alonso
+ */
+public interface MetricsRegistry {
+
+    /**
+     * Records a call
+     *
+     * @param operation name of the operation (e.g. createPayment)
+     * @param shopId shop that made the call, may be null
+     * @param durationNanos duration of the call in nanoseconds
+     * @param responseCode response code of the result, null if it has no result
+     * @param error exception thrown by the call, null if it has succeeded
+     */
+    void recordCall(String operation, String shopId, long durationNanos, Integer responseCode, Throwable error);
+
+    /**
+     * Records the time spent in each phase of a call, only called when
+     * <code>phaseTimings</code> is enabled
+     *
+     * @param operation name of the operation
+     * @param shopId shop that made the call, may be null
+     * @param timings measured phases
+     */
+    default void recordPhases(String operation, String shopId, PhaseTimings timings) {
+    }
+
+    /**
+     * Forgets the values kept for a shop that no longer makes calls, e.g.
+     * when its client is closed by a {@link eu.payzen.webservices.sdk.ShopRegistry}
+     *
+     * @param shopId shop identifier
+     */
+    default void removeShop(String shopId) {
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sizes of the SOAP payloads exchanged by the streaming client, per
+ * operation: bytes sent, bytes received and bytes of the response sections
+ * that have been skipped instead of decoded.<p>
+ *
+ * Counters are lock-free and can be updated from any thread.
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class PayloadMetrics {
+
+    private static final PayloadMetrics INSTANCE = new PayloadMetrics();
+
+    private final ConcurrentMap<String, Counters> operations = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the metrics shared by all the clients
+     *
+     * @return shared instance
+     */
+    public static PayloadMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records a call
+     *
+     * @param operation name of the operation (e.g. getPaymentDetails)
+     * @param requestBytes size of the request envelope
+     * @param responseBytes size of the response envelope
+     * @param skippedBytes size of the response sections that have not been decoded
+     */
+    public void record(String operation, long requestBytes, long responseBytes, long skippedBytes) {
+        Counters counters = operations.get(operation);
+        if (counters == null) {
+            counters = operations.computeIfAbsent(operation, k -> new Counters());
+        }
+        counters.calls.increment();
+        counters.requestBytes.add(requestBytes);
+        counters.responseBytes.add(responseBytes);
+        counters.skippedBytes.add(skippedBytes);
+    }
+
+    /**
+     * Gets the totals of an operation
+     *
+     * @param operation name of the operation
+     * @return snapshot of the totals, all zero if the operation has not been called
+     */
+    public Stats getStats(String operation) {
+        Counters counters = operations.get(operation);
+        return counters != null ? counters.snapshot() : new Stats(0, 0, 0, 0);
+    }
+
+    /**
+     * Gets the totals of all the operations called so far
+     *
+     * @return snapshot of the totals by operation name
+     */
+    public Map<String, Stats> getStats() {
+        Map<String, Stats> stats = new TreeMap<>();
+        for (Map.Entry<String, Counters> entry : operations.entrySet()) {
+            stats.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return stats;
+    }
+
+    /**
+     * Clears all the counters
+     */
+    public void reset() {
+        operations.clear();
+    }
+
+    private static final class Counters {
+        final LongAdder calls = new LongAdder();
+        final LongAdder requestBytes = new LongAdder();
+        final LongAdder responseBytes = new LongAdder();
+        final LongAdder skippedBytes = new LongAdder();
+
+        Stats snapshot() {
+            return new Stats(calls.sum(), requestBytes.sum(), responseBytes.sum(), skippedBytes.sum());
+        }
+    }
+
+    /**
+     * Immutable totals of an operation
+     */
+    public static final class Stats {
+        private final long calls;
+        private final long requestBytes;
+        private final long responseBytes;
+        private final long skippedBytes;
+
+        Stats(long calls, long requestBytes, long responseBytes, long skippedBytes) {
+            this.calls = calls;
+            this.requestBytes = requestBytes;
+            this.responseBytes = responseBytes;
+            this.skippedBytes = skippedBytes;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getRequestBytes() {
+            return requestBytes;
+        }
+
+        public long getResponseBytes() {
+            return responseBytes;
+        }
+
+        public long getSkippedBytes() {
+            return skippedBytes;
+        }
+
+        /**
+         * Gets the size of the response content actually decoded
+         *
+         * @return response bytes minus skipped bytes
+         */
+        public long getDecodedBytes() {
+            return responseBytes - skippedBytes;
+        }
+
+        /**
+         * Gets the part of the responses that has not been decoded
+         *
+         * @return ratio between 0 and 1
+         */
+        public double getSkippedRatio() {
+            return responseBytes == 0 ? 0 : (double) skippedBytes / responseBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "calls=" + calls + ", requestBytes=" + requestBytes + ", responseBytes=" + responseBytes
+                    + ", skippedBytes=" + skippedBytes;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.metrics;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Time spent in each {@link CallPhase} of a single call, enabled with the
+ * <code>phaseTimings=true</code> configuration property.<p>
+ *
+ * Each {@link #mark(CallPhase)} assigns the time elapsed since the previous
+ * mark to a phase, so the phases add up to the duration of the call. The
+ * timings are filled by the thread that makes the call and can be read once
+ * it has returned, from {@link eu.payzen.webservices.sdk.ServiceResult} or
+ * from {@link MetricsRegistry#recordPhases(String, String, PhaseTimings)}.
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class PhaseTimings {
+
+    /**
+     * Property of the JAX-WS request context through which the handler chain
+     * gets the timings of the call
+     */
+    public static final String CONTEXT_PROPERTY = "eu.payzen.webservices.sdk.phaseTimings";
+
+    private static final CallPhase[] PHASES = CallPhase.values();
+
+    private final long[] nanos = new long[PHASES.length];
+    private int measured;
+    private long lastMark = System.nanoTime();
+
+    /**
+     * Assigns the time elapsed since the previous mark (or the creation of
+     * the timings) to a phase
+     *
+     * @param phase phase that has just ended
+     */
+    public void mark(CallPhase phase) {
+        long now = System.nanoTime();
+        add(phase, now - lastMark);
+        lastMark = now;
+    }
+
+    /**
+     * Adds a duration measured separately to a phase
+     *
+     * @param phase phase
+     * @param duration duration in nanoseconds
+     */
+    public void add(CallPhase phase, long duration) {
+        nanos[phase.ordinal()] += duration;
+        measured |= 1 << phase.ordinal();
+    }
+
+    public boolean isMeasured(CallPhase phase) {
+        return (measured & (1 << phase.ordinal())) != 0;
+    }
+
+    /**
+     * Gets the time spent in a phase
+     *
+     * @param phase phase
+     * @return duration in nanoseconds, 0 if it has not been measured
+     */
+    public long get(CallPhase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    /**
+     * Gets the sum of all the phases
+     *
+     * @return duration in nanoseconds
+     */
+    public long getTotal() {
+        long total = 0;
+        for (long phase : nanos) {
+            total += phase;
+        }
+        return total;
+    }
+
+    /**
+     * Gets the measured phases
+     *
+     * @return durations in nanoseconds, in the order of the phases
+     */
+    public Map<CallPhase, Long> asMap() {
+        Map<CallPhase, Long> map = new EnumMap<>(CallPhase.class);
+        for (CallPhase phase : PHASES) {
+            if (isMeasured(phase)) {
+                map.put(phase, nanos[phase.ordinal()]);
+            }
+        }
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<CallPhase, Long> entry : asMap().entrySet()) {
+            if (text.length() > 0) {
+                text.append(", ");
+            }
+            text.append(entry.getKey()).append('=').append(String.format(Locale.ROOT, "%.3f", entry.getValue() / 1000000.0))
+                    .append("ms");
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Number of TLS handshakes made by the clients of the SDK, split between
+ * full handshakes and resumptions of a cached session.<p>
+ *
+ * A handshake is counted when it completes, from a thread started by the
+ * JDK, so the counters may lag behind the call by a few milliseconds. A low
+ * resumption ratio means that the connections are not kept alive and the
+ * sessions are evicted from the cache (see
+ * {@link eu.payzen.webservices.sdk.transport.TlsContext}).
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class TlsMetrics {
+
+    private static final TlsMetrics INSTANCE = new TlsMetrics();
+
+    private final LongAdder handshakes = new LongAdder();
+    private final LongAdder resumed = new LongAdder();
+
+    /**
+     * Gets the metrics shared by all the clients
+     *
+     * @return shared instance
+     */
+    public static TlsMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records a completed handshake
+     *
+     * @param resumedSession true if a cached session has been resumed
+     */
+    public void recordHandshake(boolean resumedSession) {
+        handshakes.increment();
+        if (resumedSession) {
+            resumed.increment();
+        }
+    }
+
+    public long getHandshakes() {
+        return handshakes.sum();
+    }
+
+    public long getResumedHandshakes() {
+        return resumed.sum();
+    }
+
+    public long getFullHandshakes() {
+        return getHandshakes() - getResumedHandshakes();
+    }
+
+    /**
+     * Gets the part of the handshakes that have resumed a session
+     *
+     * @return ratio between 0 and 1
+     */
+    public double getResumedRatio() {
+        long total = getHandshakes();
+        return total == 0 ? 0 : (double) getResumedHandshakes() / total;
+    }
+
+    /**
+     * Clears the counters
+     */
+    public void reset() {
+        handshakes.reset();
+        resumed.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "handshakes=" + getHandshakes() + ", resumed=" + getResumedHandshakes();
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.stream;
+
+/**
+ * Collects the amount of content skipped by {@link SoapResponseReader} while
+ * reading a single response.<p>
+ *
+ * Sizes come from the parser offsets, so they are counted in characters,
+ * which is the same as bytes for the ASCII content of most responses.
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class ReadStats {
+
+    private long skippedBytes;
+
+    void skipped(long bytes) {
+        skippedBytes += bytes;
+    }
+
+    /**
+     * Gets the size of the sections that have not been decoded
+     *
+     * @return skipped size
+     */
+    public long getSkippedBytes() {
+        return skippedBytes;
+    }
+}
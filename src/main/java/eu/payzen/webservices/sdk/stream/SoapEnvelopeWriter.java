@@ -0,0 +1,338 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.stream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.bind.DatatypeConverter;
+import javax.xml.datatype.XMLGregorianCalendar;
+
+/**
+ * Serializes SOAP requests of the v5 API straight into UTF-8 bytes, without
+ * going through JAXB and the SAAJ DOM.<p>
+ *
+ * All the constant parts of the envelope (tags, namespaces) are pre-encoded
+ * byte templates; only the variable values are escaped and encoded on each
+ * call. The body is byte-for-byte identical to the output of the JAXB
+ * runtime for the same request object.<p>
+ *
+ * Instances are not thread-safe but can be reused after {@link #reset()}, so
+ * the internal buffer is allocated only once per instance.
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class SoapEnvelopeWriter {
+
+    public static final String SOAP_NAMESPACE = "http://schemas.xmlsoap.org/soap/envelope/";
+    public static final String API_NAMESPACE = "http://v5.ws.vads.lyra.com/";
+    public static final String HEADER_NAMESPACE = "http://v5.ws.vads.lyra.com/Header/";
+
+    private static final byte[] ENVELOPE_START = bytes("<?xml version='1.0' encoding='UTF-8'?>"
+            + "<S:Envelope xmlns:S=\"" + SOAP_NAMESPACE + "\"><S:Header>");
+    private static final byte[] BODY_START = bytes("</S:Header><S:Body>");
+    private static final byte[] ENVELOPE_END = bytes("</S:Body></S:Envelope>");
+    private static final byte[] OPERATION_NAMESPACE = bytes(" xmlns:ns2=\"" + API_NAMESPACE + "\"");
+    private static final byte[] HEADER_NAMESPACE_ATTR = bytes(" xmlns=\"" + HEADER_NAMESPACE + "\">");
+    private static final byte[] LT_NS2 = bytes("<ns2:");
+    private static final byte[] LT_SLASH_NS2 = bytes("</ns2:");
+    private static final byte[] EMPTY_END = bytes("/>");
+    private static final byte[] TRUE = bytes("true");
+    private static final byte[] FALSE = bytes("false");
+    private static final byte[] ESC_LT = bytes("&lt;");
+    private static final byte[] ESC_GT = bytes("&gt;");
+    private static final byte[] ESC_AMP = bytes("&amp;");
+    private static final byte[] ESC_CR = bytes("&#13;");
+
+    private static final byte[] REPLACEMENT_CHARACTER = bytes("\uFFFD");
+    // Operation and header field names; the header fields can be set by the caller, so the cache is bounded
+    private static final int MAX_NAMES = 256;
+    private static final Map<String, byte[]> NAMES = new ConcurrentHashMap<>();
+
+    private byte[] buf;
+    private int count;
+
+    // True when the last start tag has not been closed with '>' yet
+    private boolean pendingStart;
+
+    public SoapEnvelopeWriter() {
+        this(4096);
+    }
+
+    public SoapEnvelopeWriter(int initialCapacity) {
+        this.buf = new byte[initialCapacity];
+    }
+
+    /**
+     * Discards the content so the writer can be reused
+     *
+     * @return this writer
+     */
+    public SoapEnvelopeWriter reset() {
+        count = 0;
+        pendingStart = false;
+        return this;
+    }
+
+    /**
+     * Writes a complete SOAP envelope
+     *
+     * @param headerFields header fields, in order, as computed by the header handler; null values are skipped
+     * @param operation name of the operation (e.g. createPayment)
+     * @param request request wrapper object of the operation (e.g. CreatePayment)
+     */
+    public void writeRequest(Map<String, String> headerFields, String operation, Object request) {
+        write(ENVELOPE_START);
+        for (Map.Entry<String, String> field : headerFields.entrySet()) {
+            if (field.getValue() != null) {
+                writeHeaderField(field.getKey(), field.getValue());
+            }
+        }
+        write(BODY_START);
+        writeOperation(operation, request);
+        write(ENVELOPE_END);
+    }
+
+    /**
+     * Writes the body element of an operation, exactly as the JAXB runtime
+     * marshals it
+     *
+     * @param operation name of the operation (e.g. createPayment)
+     * @param request request wrapper object of the operation (e.g. CreatePayment)
+     */
+    public void writeOperation(String operation, Object request) {
+        byte[] name = name(operation);
+        write(LT_NS2);
+        write(name);
+        write(OPERATION_NAMESPACE);
+        pendingStart = true;
+
+        writeProperties(XmlBinding.of(request.getClass()), request);
+
+        if (pendingStart) {
+            write(EMPTY_END);
+            pendingStart = false;
+        } else {
+            write(LT_SLASH_NS2);
+            write(name);
+            write('>');
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, count);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buf, 0, count);
+    }
+
+    private void writeHeaderField(String fieldName, String value) {
+        byte[] name = name(fieldName);
+        write('<');
+        write(name);
+        write(HEADER_NAMESPACE_ATTR);
+        writeText(value);
+        write('<');
+        write('/');
+        write(name);
+        write('>');
+    }
+
+    private void writeProperties(XmlBinding binding, Object bean) {
+        for (XmlBinding.Property property : binding.getProperties()) {
+            Object value = property.get(bean);
+            if (value == null) {
+                continue;
+            }
+            if (property.list) {
+                for (Object item : (List<?>) value) {
+                    if (item != null) {
+                        writeElement(property, item);
+                    }
+                }
+            } else {
+                writeElement(property, value);
+            }
+        }
+    }
+
+    private void writeElement(XmlBinding.Property property, Object value) {
+        closePendingStart();
+        write(property.startTag);
+
+        if (property.kind == XmlBinding.Kind.COMPLEX) {
+            pendingStart = true;
+            writeProperties(property.nested(), value);
+            if (pendingStart) {
+                write(EMPTY_END);
+                pendingStart = false;
+                return;
+            }
+        } else {
+            write('>');
+            writeValue(property, value);
+        }
+        write(property.endTag);
+    }
+
+    private void writeValue(XmlBinding.Property property, Object value) {
+        switch (property.kind) {
+            case STRING:
+                writeText((String) value);
+                break;
+            case LONG:
+            case INTEGER:
+                writeLong(((Number) value).longValue());
+                break;
+            case BOOLEAN:
+                write((Boolean) value ? TRUE : FALSE);
+                break;
+            case DOUBLE:
+                writeText(DatatypeConverter.printDouble((Double) value));
+                break;
+            case DECIMAL:
+                writeText(((BigDecimal) value).toPlainString());
+                break;
+            case DATE_TIME:
+                writeText(((XMLGregorianCalendar) value).toXMLFormat());
+                break;
+            case ENUM:
+                writeText(property.enumValue(value));
+                break;
+            default:
+                throw new IllegalStateException("Unexpected value kind " + property.kind);
+        }
+    }
+
+    private void closePendingStart() {
+        if (pendingStart) {
+            write('>');
+            pendingStart = false;
+        }
+    }
+
+    // Same escaping rules as the JAXB runtime for element content
+    private void writeText(String text) {
+        int length = text.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                switch (c) {
+                    case '<':
+                        write(ESC_LT);
+                        break;
+                    case '>':
+                        write(ESC_GT);
+                        break;
+                    case '&':
+                        write(ESC_AMP);
+                        break;
+                    case '\r':
+                        write(ESC_CR);
+                        break;
+                    default:
+                        write(c);
+                }
+            } else if (c < 0x800) {
+                write(0xC0 | (c >> 6));
+                write(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                write(0xF0 | (codePoint >> 18));
+                write(0x80 | ((codePoint >> 12) & 0x3F));
+                write(0x80 | ((codePoint >> 6) & 0x3F));
+                write(0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired, it has no UTF-8 encoding
+                write(REPLACEMENT_CHARACTER);
+            } else {
+                write(0xE0 | (c >> 12));
+                write(0x80 | ((c >> 6) & 0x3F));
+                write(0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeText(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            write('-');
+            value = -value;
+        }
+        ensureCapacity(20);
+        int start = count;
+        do {
+            buf[count++] = (byte) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+
+        // Digits were written in reverse order
+        for (int i = start, j = count - 1; i < j; i++, j--) {
+            byte tmp = buf[i];
+            buf[i] = buf[j];
+            buf[j] = tmp;
+        }
+    }
+
+    private void write(int b) {
+        if (count == buf.length) {
+            ensureCapacity(1);
+        }
+        buf[count++] = (byte) b;
+    }
+
+    private void write(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buf, count, bytes.length);
+        count += bytes.length;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (count + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length << 1, count + extra));
+        }
+    }
+
+    private static byte[] name(String name) {
+        byte[] encoded = NAMES.get(name);
+        if (encoded == null) {
+            encoded = bytes(name);
+            if (NAMES.size() < MAX_NAMES) {
+                NAMES.put(name, encoded);
+            }
+        }
+        return encoded;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
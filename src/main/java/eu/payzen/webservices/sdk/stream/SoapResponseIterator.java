@@ -0,0 +1,165 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.stream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.ws.WebServiceException;
+
+/**
+ * Iterates over a repeated element of a SOAP response (e.g. the
+ * transactionItem of findPayments) while the response is being read, so only
+ * one item is held in memory at a time whatever the size of the result.<p>
+ *
+ * The other sections of the result (e.g. commonResponse) are decoded into
+ * the object returned by {@link #getResult(Class)} as they are found. The
+ * underlying stream is closed when the last item has been read, when an
+ * error occurs or when {@link #close()} is called.<p>
+ *
+ * Instances are not thread-safe.
+ *
+ * @param <T> type of the items
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class SoapResponseIterator<T> implements Iterator<T>, Closeable {
+
+    private final InputStream in;
+    private final XMLStreamReader reader;
+    private final String itemElement;
+    private final Class<T> itemType;
+    private final XmlBinding itemBinding;
+    private final XmlBinding resultBinding;
+    private final Object result;
+
+    private T next;
+    private boolean closed;
+
+    /**
+     * Starts reading a response, up to the body content
+     *
+     * @param in SOAP envelope of the response, owned by the iterator from now on
+     * @param responseType response wrapper class of the operation (e.g. FindPaymentsResponse)
+     * @param itemElement name of the repeated element of the result (e.g. transactionItem)
+     * @param itemType class of the items (e.g. TransactionItem)
+     */
+    public SoapResponseIterator(InputStream in, Class<?> responseType, String itemElement, Class<T> itemType) {
+        this.in = in;
+        this.itemElement = itemElement;
+        this.itemType = itemType;
+        this.itemBinding = XmlBinding.of(itemType);
+
+        XmlBinding.Property resultProperty = XmlBinding.of(responseType).getProperties()[0];
+        this.resultBinding = resultProperty.nested();
+        this.result = resultBinding.newInstance();
+
+        try {
+            this.reader = SoapResponseReader.inputFactory().createXMLStreamReader(in);
+            SoapResponseReader.moveToBodyContent(reader);
+
+            // Wrapper > result, an empty wrapper has no items
+            if (reader.nextTag() != XMLStreamConstants.START_ELEMENT) {
+                close();
+            }
+        } catch (XMLStreamException | RuntimeException e) {
+            closeQuietly();
+            throw e instanceof WebServiceException ? (WebServiceException) e
+                    : new WebServiceException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !closed) {
+            next = advance();
+        }
+        return next != null;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T item = next;
+        next = null;
+        return item;
+    }
+
+    /**
+     * Gets the result with the sections read so far. The list of items is
+     * never filled.
+     *
+     * @param resultType class of the result (e.g. FindPaymentsResult)
+     * @return partial result
+     */
+    public <R> R getResult(Class<R> resultType) {
+        return resultType.cast(result);
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            try {
+                reader.close();
+                in.close();
+            } catch (XMLStreamException | IOException e) {
+                throw new WebServiceException(e.getMessage(), e);
+            }
+        }
+    }
+
+    private T advance() {
+        try {
+            while (SoapResponseReader.nextElement(reader)) {
+                String name = reader.getLocalName();
+                if (itemElement.equals(name)) {
+                    return itemType.cast(SoapResponseReader.readBean(reader, itemBinding));
+                }
+
+                XmlBinding.Property property = resultBinding.getProperty(name);
+                if (property == null) {
+                    SoapResponseReader.skipElement(reader);
+                } else {
+                    SoapResponseReader.readProperty(reader, result, property);
+                }
+            }
+            close();
+            return null;
+        } catch (XMLStreamException | RuntimeException e) {
+            closeQuietly();
+            throw e instanceof WebServiceException ? (WebServiceException) e
+                    : new WebServiceException(e.getMessage(), e);
+        }
+    }
+
+    private void closeQuietly() {
+        closed = true;
+        try {
+            in.close();
+        } catch (IOException e) {
+            // Already failing
+        }
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.stream;
+
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.XMLConstants;
+import javax.xml.bind.DatatypeConverter;
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.ws.WebServiceException;
+
+/**
+ * Decodes SOAP responses of the v5 API incrementally with StAX, straight
+ * into the classes generated from the WSDL.<p>
+ *
+ * Unlike the JAX-WS stack, no SAAJ document is built before unmarshalling,
+ * so the response is never held twice in memory. Unknown elements are
+ * skipped, and so are the sections of the result that have not been
+ * requested: they are tokenized by the parser but no object is built for
+ * them.<p>
+ *
+ * This class is thread-safe.
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class SoapResponseReader {
+
+    private static final XMLInputFactory INPUT_FACTORY = newInputFactory();
+    private static final DatatypeFactory DATATYPE_FACTORY = newDatatypeFactory();
+
+    private SoapResponseReader() {
+    }
+
+    /**
+     * Reads a complete response
+     *
+     * @param in SOAP envelope of the response
+     * @param responseType response wrapper class of the operation (e.g. GetPaymentDetailsResponse)
+     * @return decoded response
+     */
+    public static <T> T read(InputStream in, Class<T> responseType) {
+        return read(in, responseType, null, null);
+    }
+
+    /**
+     * Reads a response, decoding only some sections of the result
+     *
+     * @param in SOAP envelope of the response
+     * @param responseType response wrapper class of the operation (e.g. GetPaymentDetailsResponse)
+     * @param sections element names of the result sections to decode (e.g. paymentResponse),
+     *                 null to decode all of them
+     * @return decoded response
+     */
+    public static <T> T read(InputStream in, Class<T> responseType, Set<String> sections) {
+        return read(in, responseType, sections, null);
+    }
+
+    /**
+     * Reads a response, decoding only some sections of the result
+     *
+     * @param in SOAP envelope of the response
+     * @param responseType response wrapper class of the operation (e.g. GetPaymentDetailsResponse)
+     * @param sections element names of the result sections to decode (e.g. paymentResponse),
+     *                 null to decode all of them
+     * @param stats optional, receives the size of the skipped content
+     * @return decoded response
+     */
+    public static <T> T read(InputStream in, Class<T> responseType, Set<String> sections, ReadStats stats) {
+        try {
+            XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(in);
+            try {
+                moveToBodyContent(reader);
+                return responseType.cast(readWrapper(reader, XmlBinding.of(responseType), sections, stats));
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new WebServiceException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Moves the reader to the first element inside the SOAP body, throwing an
+     * exception if it is a SOAP fault
+     *
+     * @param reader reader positioned before the envelope
+     */
+    public static void moveToBodyContent(XMLStreamReader reader) throws XMLStreamException {
+        boolean inBody = false;
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                if (inBody) {
+                    if ("Fault".equals(reader.getLocalName())
+                            && SoapEnvelopeWriter.SOAP_NAMESPACE.equals(reader.getNamespaceURI())) {
+                        throw readFault(reader);
+                    }
+                    return;
+                }
+                inBody = "Body".equals(reader.getLocalName())
+                        && SoapEnvelopeWriter.SOAP_NAMESPACE.equals(reader.getNamespaceURI());
+            }
+        }
+        throw new WebServiceException("SOAP body not found in response");
+    }
+
+    /**
+     * Skips the current element and all its content
+     *
+     * @param reader reader positioned on a start element
+     */
+    public static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Reads the element the reader is positioned on into a new instance of a
+     * generated class
+     *
+     * @param reader reader positioned on a start element
+     * @param type class generated from the WSDL (e.g. TransactionItem)
+     * @return decoded object, the reader is left on its end element
+     */
+    public static <T> T readObject(XMLStreamReader reader, Class<T> type) throws XMLStreamException {
+        return type.cast(readBean(reader, XmlBinding.of(type)));
+    }
+
+    // The wrapper only contains the result, whose sections may be filtered
+    private static Object readWrapper(XMLStreamReader reader, XmlBinding binding, Set<String> sections,
+            ReadStats stats) throws XMLStreamException {
+        Object wrapper = binding.newInstance();
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            XmlBinding.Property property = binding.getProperty(reader.getLocalName());
+            if (property == null || property.kind != XmlBinding.Kind.COMPLEX || isNil(reader)) {
+                skipElement(reader);
+            } else {
+                property.set(wrapper, readResult(reader, property.nested(), sections, stats));
+            }
+        }
+        return wrapper;
+    }
+
+    // Simple values of the result (e.g. requestId) are always decoded
+    private static Object readResult(XMLStreamReader reader, XmlBinding binding, Set<String> sections,
+            ReadStats stats) throws XMLStreamException {
+        Object result = binding.newInstance();
+        while (nextElement(reader)) {
+            String name = reader.getLocalName();
+            XmlBinding.Property property = binding.getProperty(name);
+            if (property == null || (sections != null && property.kind == XmlBinding.Kind.COMPLEX
+                    && !sections.contains(name))) {
+                if (stats != null) {
+                    long start = reader.getLocation().getCharacterOffset();
+                    skipElement(reader);
+                    // Offset of the end element is the start of its tag: </name>
+                    stats.skipped(reader.getLocation().getCharacterOffset() - start + name.length() + 3);
+                } else {
+                    skipElement(reader);
+                }
+            } else {
+                readProperty(reader, result, property);
+            }
+        }
+        return result;
+    }
+
+    static Object readBean(XMLStreamReader reader, XmlBinding binding) throws XMLStreamException {
+        Object bean = binding.newInstance();
+        while (nextElement(reader)) {
+            XmlBinding.Property property = binding.getProperty(reader.getLocalName());
+            if (property == null) {
+                skipElement(reader);
+            } else {
+                readProperty(reader, bean, property);
+            }
+        }
+        return bean;
+    }
+
+    // Reads the current element into a property of the bean, adding it if the property is a list
+    static void readProperty(XMLStreamReader reader, Object bean, XmlBinding.Property property)
+            throws XMLStreamException {
+        if (isNil(reader)) {
+            skipElement(reader);
+            return;
+        }
+
+        Object value = property.kind == XmlBinding.Kind.COMPLEX ? readBean(reader, property.nested())
+                : readValue(reader, property);
+        if (property.list) {
+            @SuppressWarnings("unchecked")
+            List<Object> list = (List<Object>) property.get(bean);
+            if (list == null) {
+                list = new ArrayList<>();
+                property.set(bean, list);
+            }
+            list.add(value);
+        } else if (value != null || !property.primitive) {
+            property.set(bean, value);
+        }
+    }
+
+    // Like nextTag() but also tolerates comments and processing instructions
+    static boolean nextElement(XMLStreamReader reader) throws XMLStreamException {
+        while (true) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            } else if (event == XMLStreamConstants.END_DOCUMENT) {
+                throw new WebServiceException("Unexpected end of SOAP response");
+            }
+        }
+    }
+
+    private static Object readValue(XMLStreamReader reader, XmlBinding.Property property)
+            throws XMLStreamException {
+        String text = reader.getElementText();
+        switch (property.kind) {
+            case STRING:
+                return text;
+            case LONG:
+                return text.isEmpty() ? null : Long.valueOf(text.trim());
+            case INTEGER:
+                return text.isEmpty() ? null : Integer.valueOf(text.trim());
+            case BOOLEAN:
+                text = text.trim();
+                return text.isEmpty() ? null : ("true".equals(text) || "1".equals(text));
+            case DOUBLE:
+                return text.isEmpty() ? null : DatatypeConverter.parseDouble(text.trim());
+            case DECIMAL:
+                return text.isEmpty() ? null : new BigDecimal(text.trim());
+            case DATE_TIME:
+                return text.isEmpty() ? null : DATATYPE_FACTORY.newXMLGregorianCalendar(text.trim());
+            case ENUM:
+                return property.enumConstant(text.trim());
+            default:
+                throw new IllegalStateException("Unexpected value kind " + property.kind);
+        }
+    }
+
+    private static boolean isNil(XMLStreamReader reader) {
+        String nil = reader.getAttributeValue(XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI, "nil");
+        return "true".equals(nil) || "1".equals(nil);
+    }
+
+    private static WebServiceException readFault(XMLStreamReader reader) throws XMLStreamException {
+        String faultCode = null;
+        String faultString = null;
+        while (nextElement(reader)) {
+            if ("faultcode".equals(reader.getLocalName())) {
+                faultCode = reader.getElementText();
+            } else if ("faultstring".equals(reader.getLocalName())) {
+                faultString = reader.getElementText();
+            } else {
+                skipElement(reader);
+            }
+        }
+        return new WebServiceException("SOAP fault " + faultCode + ": " + faultString);
+    }
+
+    /**
+     * Gets the factory of the readers of the responses, which rejects DTDs
+     * and external entities
+     *
+     * @return shared factory
+     */
+    public static XMLInputFactory inputFactory() {
+        return INPUT_FACTORY;
+    }
+
+    private static XMLInputFactory newInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    private static DatatypeFactory newDatatypeFactory() {
+        try {
+            return DatatypeFactory.newInstance();
+        } catch (DatatypeConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
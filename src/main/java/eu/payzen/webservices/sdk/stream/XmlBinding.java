@@ -0,0 +1,251 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.stream;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlEnumValue;
+import javax.xml.bind.annotation.XmlType;
+import javax.xml.datatype.XMLGregorianCalendar;
+
+/**
+ * Describes how a class generated from the v5 WSDL is mapped to XML: the
+ * element name, the java field and the value kind of each property, in the
+ * order given by {@link XmlType#propOrder()}.<p>
+ *
+ * The bindings are computed once per class from the JAXB annotations and then
+ * shared by the streaming writer and readers, which therefore produce and
+ * accept exactly the same documents as the JAXB runtime.
+ *
+ * @author Javier Garcia Alonso
+ */
+final class XmlBinding {
+
+    enum Kind { STRING, LONG, INTEGER, BOOLEAN, DOUBLE, DECIMAL, DATE_TIME, ENUM, COMPLEX }
+
+    private static final Map<Class<?>, XmlBinding> BINDINGS = new ConcurrentHashMap<>();
+
+    private final Class<?> type;
+    private final Property[] properties;
+    private final Map<String, Property> byName;
+    // Looked up on the first instance, not every binding is instantiated
+    private volatile Constructor<?> constructor;
+
+    private XmlBinding(Class<?> type) {
+        this.type = type;
+
+        List<Property> props = new ArrayList<>();
+        collect(type, props);
+        this.properties = props.toArray(new Property[props.size()]);
+
+        this.byName = new HashMap<>();
+        for (Property property : properties) {
+            byName.put(property.name, property);
+        }
+    }
+
+    /**
+     * Gets the binding of a generated class
+     *
+     * @param type class generated from the WSDL
+     * @return binding of the class
+     */
+    static XmlBinding of(Class<?> type) {
+        XmlBinding binding = BINDINGS.get(type);
+        if (binding == null) {
+            binding = new XmlBinding(type);
+            XmlBinding previous = BINDINGS.putIfAbsent(type, binding);
+            if (previous != null) {
+                binding = previous;
+            }
+        }
+        return binding;
+    }
+
+    Class<?> getType() {
+        return type;
+    }
+
+    Property[] getProperties() {
+        return properties;
+    }
+
+    Property getProperty(String name) {
+        return byName.get(name);
+    }
+
+    Object newInstance() {
+        try {
+            Constructor<?> current = constructor;
+            if (current == null) {
+                current = type.getDeclaredConstructor();
+                constructor = current;
+            }
+            return current.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot instantiate " + type.getName(), e);
+        }
+    }
+
+    // JAXB writes the properties of the super class first
+    private static void collect(Class<?> type, List<Property> props) {
+        if (type.getSuperclass() != null && type.getSuperclass() != Object.class) {
+            collect(type.getSuperclass(), props);
+        }
+
+        XmlType xmlType = type.getAnnotation(XmlType.class);
+        if (xmlType == null) {
+            return;
+        }
+        for (String name : xmlType.propOrder()) {
+            if (name.isEmpty()) {
+                continue;
+            }
+            try {
+                props.add(new Property(type.getDeclaredField(name)));
+            } catch (NoSuchFieldException e) {
+                throw new IllegalStateException("Property " + name + " not found in " + type.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Mapping of a single field to its XML element
+     */
+    static final class Property {
+        final String name;
+        final Field field;
+        final Kind kind;
+        final boolean list;
+        final boolean primitive;
+        final Class<?> valueType;
+
+        // Pre-encoded tags: "<name" and "</name>"
+        final byte[] startTag;
+        final byte[] endTag;
+
+        private final Map<Object, String> enumToValue;
+        private final Map<String, Object> valueToEnum;
+        private volatile XmlBinding nested;
+
+        private Property(Field field) {
+            field.setAccessible(true);
+            this.field = field;
+
+            XmlElement element = field.getAnnotation(XmlElement.class);
+            this.name = (element != null && !"##default".equals(element.name())) ? element.name() : field.getName();
+
+            Class<?> raw = field.getType();
+            this.list = List.class.isAssignableFrom(raw);
+            if (list) {
+                Type generic = field.getGenericType();
+                raw = (Class<?>) ((ParameterizedType) generic).getActualTypeArguments()[0];
+            }
+            this.primitive = raw.isPrimitive();
+            this.valueType = raw;
+            this.kind = kindOf(raw);
+
+            this.startTag = ("<" + name).getBytes(StandardCharsets.UTF_8);
+            this.endTag = ("</" + name + ">").getBytes(StandardCharsets.UTF_8);
+
+            if (kind == Kind.ENUM) {
+                enumToValue = new HashMap<>();
+                valueToEnum = new HashMap<>();
+                for (Object constant : raw.getEnumConstants()) {
+                    String value = ((Enum<?>) constant).name();
+                    try {
+                        XmlEnumValue enumValue = raw.getField(value).getAnnotation(XmlEnumValue.class);
+                        if (enumValue != null) {
+                            value = enumValue.value();
+                        }
+                    } catch (NoSuchFieldException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    enumToValue.put(constant, value);
+                    valueToEnum.put(value, constant);
+                }
+            } else {
+                enumToValue = null;
+                valueToEnum = null;
+            }
+        }
+
+        XmlBinding nested() {
+            XmlBinding binding = nested;
+            if (binding == null) {
+                binding = XmlBinding.of(valueType);
+                nested = binding;
+            }
+            return binding;
+        }
+
+        Object get(Object bean) {
+            try {
+                return field.get(bean);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void set(Object bean, Object value) {
+            try {
+                field.set(bean, value);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        String enumValue(Object constant) {
+            return enumToValue.get(constant);
+        }
+
+        Object enumConstant(String value) {
+            return valueToEnum.get(value);
+        }
+
+        private static Kind kindOf(Class<?> type) {
+            if (type == String.class) {
+                return Kind.STRING;
+            } else if (type == Long.class || type == long.class) {
+                return Kind.LONG;
+            } else if (type == Integer.class || type == int.class) {
+                return Kind.INTEGER;
+            } else if (type == Boolean.class || type == boolean.class) {
+                return Kind.BOOLEAN;
+            } else if (type == Double.class || type == double.class) {
+                return Kind.DOUBLE;
+            } else if (type == BigDecimal.class) {
+                return Kind.DECIMAL;
+            } else if (XMLGregorianCalendar.class.isAssignableFrom(type)) {
+                return Kind.DATE_TIME;
+            } else if (type.isEnum()) {
+                return Kind.ENUM;
+            }
+            return Kind.COMPLEX;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.tracing;
+
+/**
+ * Tracer that does nothing, and is its own span
+ *
+ * @author Javier Garcia Alonso
+ */
+enum NoopTracer implements Tracer, Span {
+    INSTANCE;
+
+    @Override
+    public Span startSpan(String operation, String shopId) {
+        return this;
+    }
+
+    @Override
+    public Span setAttribute(String key, String value) {
+        return this;
+    }
+
+    @Override
+    public Span setAttribute(String key, long value) {
+        return this;
+    }
+
+    @Override
+    public void recordError(Throwable error) {
+    }
+
+    @Override
+    public void end() {
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.tracing;
+
+/**
+ * Span of a single web service call, created by a {@link Tracer}.<p>
+ *
+ * Besides the operation and shop given when it starts, the SDK sets the
+ * attributes below when they are known. The span is ended once, after the
+ * response has been decoded or the call has failed.
+ *
+ * @author Javier Garcia Alonso
+ */
+public interface Span {
+
+    /**
+     * Property of the JAX-WS request context through which the handler chain
+     * gets the span of the call
+     */
+    String CONTEXT_PROPERTY = "eu.payzen.webservices.sdk.span";
+
+    /** Identifier of the request sent in the SOAP header, also found in the gateway logs */
+    String REQUEST_ID = "payzen.request_id";
+    /** Response code of the result (0 when successful) */
+    String RESPONSE_CODE = "payzen.response_code";
+    /** Size of the request envelope, only known by the streaming client */
+    String REQUEST_BYTES = "payzen.request_bytes";
+    /** Size of the response envelope, only known by the JAX-WS client if the server sends a Content-Length */
+    String RESPONSE_BYTES = "payzen.response_bytes";
+
+    Span setAttribute(String key, String value);
+
+    Span setAttribute(String key, long value);
+
+    /**
+     * Records the exception that has made the call fail
+     *
+     * @param error exception thrown to the caller
+     */
+    void recordError(Throwable error);
+
+    void end();
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.tracing;
+
+/**
+ * Creates the spans of the web service calls, to forward them to any tracing
+ * system without the SDK depending on it.<p>
+ *
+ * A tracer is set with {@link Tracing#setTracer(Tracer)} or discovered with
+ * {@link java.util.ServiceLoader} from
+ * <code>META-INF/services/eu.payzen.webservices.sdk.tracing.Tracer</code>.
+ *
+ * @author Javier Garcia Alonso
+ */
+public interface Tracer {
+
+    /**
+     * Starts the span of a call, from the thread that makes it
+     *
+     * @param operation name of the operation (e.g. createPayment)
+     * @param shopId shop that makes the call, may be null
+     * @return started span, that is always ended by the SDK
+     */
+    Span startSpan(String operation, String shopId);
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.tracing;
+
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds the {@link Tracer} used by the clients. By default it is a no-op
+ * tracer that returns the same span for every call, so tracing costs no
+ * allocation until a tracer is set.
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class Tracing {
+    private static final Logger logger = LoggerFactory.getLogger(Tracing.class);
+
+    private static volatile Tracer tracer = loadTracer();
+
+    private Tracing() {
+    }
+
+    public static Tracer getTracer() {
+        return tracer;
+    }
+
+    /**
+     * Sets the tracer of the next calls
+     *
+     * @param tracer tracer to use, null to disable tracing
+     */
+    public static void setTracer(Tracer tracer) {
+        Tracing.tracer = tracer != null ? tracer : NoopTracer.INSTANCE;
+    }
+
+    /**
+     * Checks if a tracer has been set
+     *
+     * @return false if the no-op tracer is used
+     */
+    public static boolean isEnabled() {
+        return tracer != NoopTracer.INSTANCE;
+    }
+
+    private static Tracer loadTracer() {
+        try {
+            Iterator<Tracer> tracers = ServiceLoader.load(Tracer.class).iterator();
+            if (tracers.hasNext()) {
+                return tracers.next();
+            }
+        } catch (ServiceConfigurationError e) {
+            logger.error("Cannot load tracer", e);
+        }
+        return NoopTracer.INSTANCE;
+    }
+}
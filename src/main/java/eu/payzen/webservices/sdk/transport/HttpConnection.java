@@ -0,0 +1,336 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.transport;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import eu.payzen.webservices.sdk.metrics.ConnectionMetrics;
+
+/**
+ * HTTP/1.1 connection of a {@link HttpConnectionPool}, used for one request
+ * at a time. It goes back to the pool when the content of its response has
+ * been read or closed.
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class HttpConnection implements Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_LINE_LENGTH = 8192;
+    private static final int MAX_HEADER_FIELDS = 100;
+    // Header fields written by the connection itself
+    private static final Set<String> RESERVED_FIELDS = new HashSet<>(
+            Arrays.asList("host", "content-length", "connection", "transfer-encoding"));
+
+    private final HttpConnectionPool pool;
+    private final String host;
+    private final int port;
+    private final boolean secure;
+    private final String endpointKey;
+    private int connectTimeout;
+    private boolean reused;
+    private boolean responseStarted;
+    private Socket socket;
+    private InputStream in;
+    private OutputStream out;
+    private volatile long lastUsedNanos;
+
+    HttpConnection(HttpConnectionPool pool, String host, int port, boolean secure, String endpointKey,
+            int connectTimeout) throws IOException {
+        this.pool = pool;
+        this.host = host;
+        this.port = port;
+        this.secure = secure;
+        this.endpointKey = endpointKey;
+        this.connectTimeout = connectTimeout;
+        connect();
+    }
+
+    /**
+     * Sends a POST request and reads the status and the header of the
+     * response
+     *
+     * @param target path and query of the request (e.g. /vads-ws/v5)
+     * @param headers header fields of the request, without Host and Content-Length
+     * @param length size of the content
+     * @param content writes the content, may be called twice if the request is sent again
+     * @param readTimeoutMillis read timeout, 0 for none
+     * @return response, to close after reading its content
+     * @throws IOException if the request fails, the connection is then closed
+     */
+    public HttpResponse post(String target, Map<String, List<String>> headers, long length, RequestContent content,
+            int readTimeoutMillis) throws IOException {
+        boolean retry = reused;
+        while (true) {
+            responseStarted = false;
+            try {
+                return exchange(target, headers, length, content, readTimeoutMillis);
+            } catch (IOException e) {
+                closeSocket();
+                if (!retry || responseStarted || e instanceof SocketTimeoutException) {
+                    throw e;
+                }
+                // The server has closed the idle connection without reading the request
+                retry = false;
+                reused = false;
+                ConnectionMetrics.getInstance().recordRetry();
+                connect();
+                ConnectionMetrics.getInstance().recordConnection(false);
+            }
+        }
+    }
+
+    /**
+     * @return true if the connection had been used by a previous request
+     */
+    public boolean isReused() {
+        return reused;
+    }
+
+    public boolean isSecure() {
+        return secure;
+    }
+
+    /**
+     * Closes the connection instead of returning it to the pool
+     */
+    @Override
+    public void close() {
+        closeSocket();
+    }
+
+    private HttpResponse exchange(String target, Map<String, List<String>> headers, long length,
+            RequestContent content, int readTimeoutMillis) throws IOException {
+        socket.setSoTimeout(readTimeoutMillis);
+        StringBuilder request = new StringBuilder(512);
+        request.append("POST ").append(target).append(" HTTP/1.1\r\nHost: ").append(host);
+        if (port != (secure ? 443 : 80)) {
+            request.append(':').append(port);
+        }
+        request.append("\r\n");
+        if (headers != null) {
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                String name = header.getKey();
+                if (name == null || header.getValue() == null
+                        || RESERVED_FIELDS.contains(name.toLowerCase(Locale.ROOT))) {
+                    continue;
+                }
+                for (String value : header.getValue()) {
+                    request.append(name).append(": ").append(value).append("\r\n");
+                }
+            }
+        }
+        request.append("Content-Length: ").append(length).append("\r\n");
+        if (!pool.isKeepAlive()) {
+            request.append("Connection: close\r\n");
+        }
+        request.append("\r\n");
+        out.write(request.toString().getBytes(StandardCharsets.ISO_8859_1));
+        content.writeTo(out);
+        out.flush();
+
+        // Interim 1xx responses are skipped
+        String statusLine;
+        int status;
+        Map<String, List<String>> responseHeaders;
+        do {
+            statusLine = readLine(in);
+            if (statusLine == null) {
+                throw new IOException("Connection closed by " + host + ":" + port + " without response");
+            }
+            responseStarted = true;
+            status = parseStatus(statusLine);
+            responseHeaders = readHeaders();
+        } while (status >= 100 && status < 200);
+
+        String connectionField = first(responseHeaders, "Connection");
+        boolean keepAlive = pool.isKeepAlive() && (statusLine.startsWith("HTTP/1.1")
+                ? !"close".equalsIgnoreCase(connectionField) : "keep-alive".equalsIgnoreCase(connectionField));
+        String transferEncoding = first(responseHeaders, "Transfer-Encoding");
+        String contentLength = first(responseHeaders, "Content-Length");
+        long bodyLength;
+        if (transferEncoding != null && transferEncoding.toLowerCase(Locale.ROOT).contains("chunked")) {
+            bodyLength = HttpResponse.CHUNKED;
+        } else if (contentLength != null) {
+            try {
+                bodyLength = Long.parseLong(contentLength.trim());
+            } catch (NumberFormatException e) {
+                throw new ProtocolException("Invalid Content-Length: " + contentLength);
+            }
+        } else if (status == 204 || status == 304) {
+            bodyLength = 0;
+        } else {
+            bodyLength = HttpResponse.UNTIL_CLOSE;
+            keepAlive = false;
+        }
+        int space = statusLine.indexOf(' ', statusLine.indexOf(' ') + 1);
+        String message = space > 0 ? statusLine.substring(space + 1) : "";
+        return new HttpResponse(this, status, message, responseHeaders, in, bodyLength, keepAlive);
+    }
+
+    private Map<String, List<String>> readHeaders() throws IOException {
+        Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        String line;
+        int count = 0;
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon <= 0 || ++count > MAX_HEADER_FIELDS) {
+                throw new ProtocolException("Invalid header field: " + line);
+            }
+            headers.computeIfAbsent(line.substring(0, colon).trim(), k -> new ArrayList<>(1))
+                    .add(line.substring(colon + 1).trim());
+        }
+        if (line == null) {
+            throw new ProtocolException("Truncated response header");
+        }
+        return headers;
+    }
+
+    private static int parseStatus(String statusLine) throws ProtocolException {
+        if (!statusLine.startsWith("HTTP/") || statusLine.length() < 12) {
+            throw new ProtocolException("Invalid status line: " + statusLine);
+        }
+        try {
+            return Integer.parseInt(statusLine.substring(9, 12));
+        } catch (NumberFormatException e) {
+            throw new ProtocolException("Invalid status line: " + statusLine);
+        }
+    }
+
+    private static String first(Map<String, List<String>> headers, String name) {
+        List<String> values = headers.get(name);
+        return values != null && !values.isEmpty() ? values.get(0) : null;
+    }
+
+    // Line of the header or of a chunk size, null if the stream ends before
+    static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b == -1) {
+                if (line.size() == 0) {
+                    return null;
+                }
+                throw new ProtocolException("Truncated line");
+            }
+            if (line.size() >= MAX_LINE_LENGTH) {
+                throw new ProtocolException("Line too long");
+            }
+            line.write(b);
+        }
+        int length = line.size();
+        byte[] bytes = line.toByteArray();
+        if (length > 0 && bytes[length - 1] == '\r') {
+            length--;
+        }
+        return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    private void connect() throws IOException {
+        Socket plain = new Socket();
+        try {
+            plain.connect(new InetSocketAddress(host, port), connectTimeout);
+            plain.setTcpNoDelay(true);
+            if (secure) {
+                plain.setSoTimeout(connectTimeout);
+                socket = pool.getTls().startHandshake(plain, host, port);
+            } else {
+                socket = plain;
+            }
+        } catch (IOException | RuntimeException e) {
+            plain.close();
+            throw e;
+        }
+        in = new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE);
+        out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+    }
+
+    void reuse(int connectTimeoutMillis) {
+        this.reused = true;
+        this.connectTimeout = connectTimeoutMillis;
+    }
+
+    // Closed by the server or unexpected data, checked before reusing a connection idle for a while
+    boolean isStale() {
+        try {
+            if (in.available() > 0) {
+                return true;
+            }
+            socket.setSoTimeout(1);
+            in.read();
+            return true;
+        } catch (SocketTimeoutException e) {
+            return false;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    long getLastUsedNanos() {
+        return lastUsedNanos;
+    }
+
+    String getEndpointKey() {
+        return endpointKey;
+    }
+
+    // Called by the response when its content has been read
+    void release() {
+        lastUsedNanos = System.nanoTime();
+        pool.release(this);
+    }
+
+    void closeSocket() {
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+    }
+
+    /**
+     * Content of a request
+     */
+    public interface RequestContent {
+        /**
+         * @param out stream to write the content to, must not be closed
+         * @throws IOException if the content cannot be written
+         */
+        void writeTo(OutputStream out) throws IOException;
+    }
+}
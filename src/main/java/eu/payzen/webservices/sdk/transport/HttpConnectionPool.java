@@ -0,0 +1,272 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import eu.payzen.webservices.sdk.PayzenConfig;
+import eu.payzen.webservices.sdk.metrics.ConnectionMetrics;
+
+/**
+ * Keep-alive connections of the clients, used instead of the JVM-wide cache
+ * of {@link java.net.HttpURLConnection} when <code>maxIdleConnections</code>
+ * is set.<p>
+ *
+ * At most {@link #MAX_IDLE_CONNECTIONS} idle connections are kept per
+ * endpoint, for {@link #CONNECTION_IDLE_TIMEOUT} seconds; the most recently
+ * used one is taken first so the others expire, and a connection idle for
+ * more than two seconds is checked before being reused. A connection goes
+ * back to the pool when its response has been read to the end or closed;
+ * the rest of a response closed early is read and discarded, up to
+ * {@link #MAX_DRAIN_BYTES}, so the connection can still be reused. As
+ * {@link java.net.HttpURLConnection} does, a request is sent again once on a
+ * new connection if the server has closed a reused connection before
+ * answering. With <code>maxIdleConnections=0</code> every call opens its own
+ * connection, which is closed after the response.<p>
+ *
+ * Pools are shared by the configurations with the same pool and TLS settings
+ * and are used by both the JAX-WS ports and the streaming client. Proxies
+ * are not supported: leave <code>maxIdleConnections</code> empty behind a
+ * proxy. The connections are counted in {@link ConnectionMetrics}.<p>
+ *
+ * This is the {@link HttpTransport} chosen when <code>httpTransport</code>
+ * is not set and <code>maxIdleConnections</code> is.
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class HttpConnectionPool implements HttpTransport {
+
+    public static final String MAX_IDLE_CONNECTIONS = "maxIdleConnections";
+    public static final String CONNECTION_IDLE_TIMEOUT = "connectionIdleTimeout";
+
+    public static final int DEFAULT_IDLE_TIMEOUT = 30;
+    public static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+    private static final long VALIDATE_AFTER_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final ConcurrentMap<List<Object>, HttpConnectionPool> POOLS = new ConcurrentHashMap<>();
+
+    private final TlsContext tls;
+    private final int maxIdle;
+    private final long idleTimeoutNanos;
+    private final ConcurrentMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    private HttpConnectionPool(TlsContext tls, int maxIdle, int idleTimeoutSeconds) {
+        this.tls = tls;
+        this.maxIdle = maxIdle;
+        this.idleTimeoutNanos = TimeUnit.SECONDS.toNanos(idleTimeoutSeconds > 0 ? idleTimeoutSeconds
+                : DEFAULT_IDLE_TIMEOUT);
+    }
+
+    /**
+     * Gets the pool of a configuration
+     *
+     * @param config configuration of the client
+     * @return pool shared with the configurations with the same settings, null
+     *         if <code>maxIdleConnections</code> is not set
+     */
+    public static HttpConnectionPool of(PayzenConfig config) {
+        if (config.getMaxIdleConnections() < 0) {
+            return null;
+        }
+        TlsContext tls = TlsContext.of(config);
+        List<Object> key = Arrays.<Object>asList(tls, config.getMaxIdleConnections(),
+                config.getConnectionIdleTimeout());
+        HttpConnectionPool pool = POOLS.get(key);
+        if (pool == null) {
+            pool = POOLS.computeIfAbsent(key, k -> new HttpConnectionPool(tls, config.getMaxIdleConnections(),
+                    config.getConnectionIdleTimeout()));
+        }
+        return pool;
+    }
+
+    @Override
+    public TransportResponse send(TransportRequest request) throws IOException {
+        HttpConnection connection = acquire(request.getUrl(), request.getConnectTimeoutMillis());
+        return connection.post(request.getTarget(), request.getHeaders(), request.getLength(), request.getContent(),
+                request.getRequestTimeoutMillis());
+    }
+
+    /**
+     * Gets a connection to the host of a URL: an idle connection of the pool,
+     * or a new one
+     *
+     * @param url URL of the endpoint (http or https)
+     * @param connectTimeoutMillis connection timeout, 0 for none
+     * @return connection to send a request with
+     * @throws IOException if the connection cannot be opened
+     */
+    public HttpConnection acquire(URL url, int connectTimeoutMillis) throws IOException {
+        Endpoint endpoint = endpoint(url);
+        HttpConnection connection;
+        while ((connection = endpoint.idle.pollFirst()) != null) {
+            endpoint.idleCount.decrementAndGet();
+            long idleNanos = System.nanoTime() - connection.getLastUsedNanos();
+            if (idleNanos > idleTimeoutNanos || (idleNanos > VALIDATE_AFTER_NANOS && connection.isStale())) {
+                connection.closeSocket();
+                ConnectionMetrics.getInstance().recordClosedIdle();
+                continue;
+            }
+            connection.reuse(connectTimeoutMillis);
+            ConnectionMetrics.getInstance().recordConnection(true);
+            return connection;
+        }
+        connection = new HttpConnection(this, endpoint.host, endpoint.port, endpoint.secure, endpoint.key,
+                connectTimeoutMillis);
+        ConnectionMetrics.getInstance().recordConnection(false);
+        return connection;
+    }
+
+    /**
+     * Opens new connections to the host of a URL and keeps them idle, so
+     * that the next calls do not wait for the TCP and TLS handshakes
+     *
+     * @param url URL of the endpoint (http or https)
+     * @param count number of idle connections wanted, at most the size of the pool
+     * @param connectTimeoutMillis connection timeout, 0 for none
+     * @return number of connections opened
+     * @throws IOException if a connection cannot be opened
+     */
+    public int openConnections(URL url, int count, int connectTimeoutMillis) throws IOException {
+        Endpoint endpoint = endpoint(url);
+        int opened = 0;
+        while (opened < count && endpoint.idleCount.get() < Math.min(count, maxIdle)) {
+            new HttpConnection(this, endpoint.host, endpoint.port, endpoint.secure, endpoint.key,
+                    connectTimeoutMillis).release();
+            opened++;
+        }
+        return opened;
+    }
+
+    /**
+     * Gets the number of idle connections kept
+     *
+     * @return idle connections of all the endpoints
+     */
+    public int getIdleCount() {
+        int count = 0;
+        for (Endpoint endpoint : endpoints.values()) {
+            count += endpoint.idleCount.get();
+        }
+        return count;
+    }
+
+    /**
+     * Closes the idle connections, the connections in use are closed when
+     * they are released
+     */
+    public void closeIdleConnections() {
+        for (Endpoint endpoint : endpoints.values()) {
+            HttpConnection connection;
+            while ((connection = endpoint.idle.pollLast()) != null) {
+                endpoint.idleCount.decrementAndGet();
+                connection.closeSocket();
+                ConnectionMetrics.getInstance().recordClosedIdle();
+            }
+        }
+    }
+
+    /**
+     * Reads and discards the rest of a response, so that its connection can
+     * be reused by the keep-alive cache of the JDK or by a pool
+     *
+     * @param in content of a response
+     * @param limit maximum number of bytes read
+     * @return number of bytes read, -1 if the end has not been reached
+     * @throws IOException if the content cannot be read
+     */
+    public static long drain(InputStream in, long limit) throws IOException {
+        byte[] buffer = new byte[4096];
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer, 0, (int) Math.min(buffer.length, limit - total + 1))) != -1) {
+            total += read;
+            if (total > limit) {
+                return -1;
+            }
+        }
+        if (total > 0) {
+            ConnectionMetrics.getInstance().recordDrained(total);
+        }
+        return total;
+    }
+
+    boolean isKeepAlive() {
+        return maxIdle > 0;
+    }
+
+    TlsContext getTls() {
+        return tls;
+    }
+
+    // Called when the response of a connection has been read
+    void release(HttpConnection connection) {
+        Endpoint endpoint = endpoints.get(connection.getEndpointKey());
+        if (maxIdle <= 0 || endpoint == null) {
+            connection.closeSocket();
+            return;
+        }
+        endpoint.idle.offerFirst(connection);
+        // The least recently used connection is closed beyond the size of the pool
+        if (endpoint.idleCount.incrementAndGet() > maxIdle) {
+            HttpConnection oldest = endpoint.idle.pollLast();
+            if (oldest != null) {
+                endpoint.idleCount.decrementAndGet();
+                oldest.closeSocket();
+                ConnectionMetrics.getInstance().recordClosedIdle();
+            }
+        }
+    }
+
+    private Endpoint endpoint(URL url) {
+        boolean secure = "https".equalsIgnoreCase(url.getProtocol());
+        if (!secure && !"http".equalsIgnoreCase(url.getProtocol())) {
+            throw new IllegalArgumentException("Unsupported protocol: " + url);
+        }
+        int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+        String key = (secure ? "https://" : "http://") + url.getHost() + ":" + port;
+        Endpoint endpoint = endpoints.get(key);
+        if (endpoint == null) {
+            endpoint = endpoints.computeIfAbsent(key, k -> new Endpoint(k, url.getHost(), port, secure));
+        }
+        return endpoint;
+    }
+
+    private static final class Endpoint {
+        final String key;
+        final String host;
+        final int port;
+        final boolean secure;
+        final Deque<HttpConnection> idle = new ConcurrentLinkedDeque<>();
+        final AtomicInteger idleCount = new AtomicInteger();
+
+        Endpoint(String key, String host, int port, boolean secure) {
+            this.key = key;
+            this.host = host;
+            this.port = port;
+            this.secure = secure;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.transport;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ProtocolException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Response received on a {@link HttpConnection}. Its content must be read or
+ * closed: the connection then goes back to its pool, after reading the rest
+ * of the content if it has been closed early.
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class HttpResponse implements TransportResponse {
+
+    static final long CHUNKED = -1;
+    static final long UNTIL_CLOSE = -2;
+
+    private final HttpConnection connection;
+    private final int status;
+    private final String message;
+    private final Map<String, List<String>> headers;
+    private final Content content;
+    private final boolean keepAlive;
+    private boolean finished;
+
+    HttpResponse(HttpConnection connection, int status, String message, Map<String, List<String>> headers,
+            InputStream in, long length, boolean keepAlive) {
+        this.connection = connection;
+        this.status = status;
+        this.message = message;
+        this.headers = Collections.unmodifiableMap(headers);
+        this.keepAlive = keepAlive;
+        this.content = new Content(in, length);
+        if (length == 0) {
+            finish(true);
+        }
+    }
+
+    @Override
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return reason phrase of the status line (e.g. OK)
+     */
+    @Override
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Gets the header fields of the response
+     *
+     * @return unmodifiable map of field values by name, names are case insensitive
+     */
+    @Override
+    public Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * @param name name of a header field, case insensitive
+     * @return first value of the field, null if it is not present
+     */
+    public String getHeader(String name) {
+        List<String> values = headers.get(name);
+        return values != null && !values.isEmpty() ? values.get(0) : null;
+    }
+
+    @Override
+    public String getContentType() {
+        return getHeader("Content-Type");
+    }
+
+    /**
+     * @return true if the response has been received over TLS
+     */
+    @Override
+    public boolean isSecure() {
+        return connection.isSecure();
+    }
+
+    /**
+     * Gets the content of the response, read only once
+     *
+     * @return stream that releases the connection when it is read to the end or closed
+     */
+    @Override
+    public InputStream getContent() {
+        return content;
+    }
+
+    /**
+     * Closes the content, reading what is left of it to reuse the connection
+     */
+    @Override
+    public void close() throws IOException {
+        content.close();
+    }
+
+    private void finish(boolean complete) {
+        if (!finished) {
+            finished = true;
+            if (complete && keepAlive) {
+                connection.release();
+            } else {
+                connection.closeSocket();
+            }
+        }
+    }
+
+    /**
+     * Content delimited by its length, by chunks or by the end of the connection
+     */
+    private final class Content extends InputStream {
+        private final InputStream in;
+        private final long length;
+        private long remaining;
+        private boolean firstChunk = true;
+        private boolean eof;
+        private boolean closed;
+
+        Content(InputStream in, long length) {
+            this.in = in;
+            this.length = length;
+            this.remaining = length > 0 ? length : 0;
+            this.eof = length == 0;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int read = read(one, 0, 1);
+            return read == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            if (eof) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            try {
+                if (length == CHUNKED && remaining == 0 && !nextChunk()) {
+                    end();
+                    return -1;
+                }
+                int read = in.read(b, off, length == UNTIL_CLOSE ? len : (int) Math.min(len, remaining));
+                if (read == -1) {
+                    if (length != UNTIL_CLOSE) {
+                        throw new EOFException("Response truncated");
+                    }
+                    end();
+                    return -1;
+                }
+                if (length != UNTIL_CLOSE) {
+                    remaining -= read;
+                    if (remaining == 0 && length > 0) {
+                        end();
+                    }
+                }
+                return read;
+            } catch (IOException e) {
+                eof = true;
+                finish(false);
+                throw e;
+            }
+        }
+
+        @Override
+        public int available() throws IOException {
+            if (eof || closed) {
+                return 0;
+            }
+            return (int) Math.min(in.available(), length == UNTIL_CLOSE ? Integer.MAX_VALUE : remaining);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            if (!eof) {
+                // Reads the rest so that the connection can be reused
+                if (!keepAlive || HttpConnectionPool.drain(this, HttpConnectionPool.MAX_DRAIN_BYTES) == -1) {
+                    eof = true;
+                    finish(false);
+                }
+            }
+            closed = true;
+        }
+
+        // Reads the size of the next chunk, false after the last one
+        private boolean nextChunk() throws IOException {
+            if (!firstChunk) {
+                String end = HttpConnection.readLine(in);
+                if (end == null || !end.isEmpty()) {
+                    throw new ProtocolException("Invalid chunk end");
+                }
+            }
+            firstChunk = false;
+            String line = HttpConnection.readLine(in);
+            if (line == null) {
+                throw new EOFException("Response truncated");
+            }
+            int extension = line.indexOf(';');
+            long size;
+            try {
+                size = Long.parseLong((extension >= 0 ? line.substring(0, extension) : line).trim(), 16);
+            } catch (NumberFormatException e) {
+                throw new ProtocolException("Invalid chunk size: " + line);
+            }
+            if (size == 0) {
+                // Trailer fields are ignored
+                String trailer;
+                while ((trailer = HttpConnection.readLine(in)) != null && !trailer.isEmpty()) {
+                    continue;
+                }
+                return false;
+            }
+            remaining = size;
+            return true;
+        }
+
+        private void end() {
+            eof = true;
+            finish(length != UNTIL_CLOSE);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.transport;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Sends the SOAP requests of the clients to the web service.<p>
+ *
+ * The transport of a configuration is chosen by {@link HttpTransports}; the
+ * JAX-WS ports of PaymentAPI and the streaming client then send all their
+ * calls through it instead of <code>HttpURLConnection</code>. A transport is
+ * shared by the clients and called from several threads at the same time,
+ * so it must be thread-safe.
+ *
+ * @author Javier Garcia Alonso
+ */
+public interface HttpTransport {
+
+    /**
+     * Property of the request context of the JAX-WS ports holding their transport
+     */
+    String REQUEST_CONTEXT_PROPERTY = HttpTransport.class.getName();
+
+    /**
+     * Sends a request and waits for the beginning of its response
+     *
+     * @param request request to send
+     * @return response, whose content must be read or closed
+     * @throws IOException if the request cannot be sent or the response read
+     */
+    TransportResponse send(TransportRequest request) throws IOException;
+
+    /**
+     * Sends a request without waiting for its response. The transports that
+     * are not {@link #isNonBlocking() non-blocking} wait for it in a thread
+     * of the executor.
+     *
+     * @param request request to send, its content is written before the method returns
+     *                or in the executor
+     * @param executor runs the blocking part of the call, if any
+     * @return response with its whole content, or the {@link IOException}
+     */
+    default CompletableFuture<TransportResponse> sendAsync(TransportRequest request, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return send(request);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * @return true if {@link #sendAsync(TransportRequest, Executor)} does not
+     *         hold a thread while waiting for the response
+     */
+    default boolean isNonBlocking() {
+        return false;
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.transport;
+
+import eu.payzen.webservices.sdk.PayzenConfig;
+
+/**
+ * Creates the transports named by the <code>httpTransport</code> property.<p>
+ *
+ * Providers are registered with {@link HttpTransports#addProvider(HttpTransportProvider)}
+ * or discovered with {@link java.util.ServiceLoader} from
+ * <code>META-INF/services/eu.payzen.webservices.sdk.transport.HttpTransportProvider</code>.
+ *
+ * @author Javier Garcia Alonso
+ */
+public interface HttpTransportProvider {
+
+    /**
+     * @return value of <code>httpTransport</code> selecting this provider
+     */
+    String getName();
+
+    /**
+     * Gets the transport of a configuration. It is called each time a
+     * client is created, so the configurations with the same connection
+     * settings should share their transport.
+     *
+     * @param config configuration of the client
+     * @return transport of the client
+     */
+    HttpTransport create(PayzenConfig config);
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.ws.WebServiceException;
+import javax.xml.ws.handler.MessageContext;
+
+import com.sun.xml.ws.api.SOAPVersion;
+import com.sun.xml.ws.api.WSBinding;
+import com.sun.xml.ws.api.message.Packet;
+import com.sun.xml.ws.api.pipe.Codec;
+import com.sun.xml.ws.api.pipe.ContentType;
+import com.sun.xml.ws.api.pipe.NextAction;
+import com.sun.xml.ws.api.pipe.Tube;
+import com.sun.xml.ws.api.pipe.TubeCloner;
+import com.sun.xml.ws.api.pipe.helper.AbstractTubeImpl;
+import com.sun.xml.ws.client.BindingProviderProperties;
+import com.sun.xml.ws.client.ClientTransportException;
+import com.sun.xml.ws.resources.ClientMessages;
+import com.sun.xml.ws.util.ByteArrayBuffer;
+
+/**
+ * Transport of the JAX-WS ports that sends the requests through the
+ * {@link HttpTransport} set in their request context, and through the
+ * default transport of JAX-WS otherwise.<p>
+ *
+ * The response is read before being decoded, so that the connection is
+ * released whatever part of the message JAX-WS reads.
+ *
+ * @author Javier Garcia Alonso
+ */
+final class HttpTransportTube extends AbstractTubeImpl {
+
+    private final Codec codec;
+    private final WSBinding binding;
+    private final Tube fallback;
+
+    HttpTransportTube(Codec codec, WSBinding binding, Tube fallback) {
+        this.codec = codec;
+        this.binding = binding;
+        this.fallback = fallback;
+    }
+
+    private HttpTransportTube(HttpTransportTube that, TubeCloner cloner) {
+        super(that, cloner);
+        this.codec = that.codec.copy();
+        this.binding = that.binding;
+        this.fallback = cloner.copy(that.fallback);
+    }
+
+    @Override
+    public NextAction processRequest(Packet request) {
+        HttpTransport transport = (HttpTransport) request.invocationProperties
+                .get(HttpTransport.REQUEST_CONTEXT_PROPERTY);
+        if (transport == null) {
+            return fallback.processRequest(request);
+        }
+        return doReturnWith(process(request, transport));
+    }
+
+    @Override
+    public NextAction processResponse(Packet response) {
+        throw new IllegalStateException("Transport tube without next tube");
+    }
+
+    @Override
+    public NextAction processException(Throwable t) {
+        throw new IllegalStateException("Transport tube without next tube");
+    }
+
+    @Override
+    public void preDestroy() {
+        fallback.preDestroy();
+    }
+
+    @Override
+    public HttpTransportTube copy(TubeCloner cloner) {
+        return new HttpTransportTube(this, cloner);
+    }
+
+    private Packet process(Packet request, HttpTransport transport) {
+        try {
+            ByteArrayBuffer content = new ByteArrayBuffer();
+            ContentType contentType = codec.encode(request, content);
+
+            Map<String, List<String>> headers = new LinkedHashMap<>();
+            @SuppressWarnings("unchecked")
+            Map<String, List<String>> userHeaders = (Map<String, List<String>>) request.invocationProperties
+                    .get(MessageContext.HTTP_REQUEST_HEADERS);
+            if (userHeaders != null) {
+                headers.putAll(userHeaders);
+            }
+            headers.put("Content-Type", Collections.singletonList(contentType.getContentType()));
+            if (contentType.getAcceptHeader() != null) {
+                headers.put("Accept", Collections.singletonList(contentType.getAcceptHeader()));
+            }
+            if (binding.getSOAPVersion() == SOAPVersion.SOAP_11) {
+                String soapAction = contentType.getSOAPActionHeader();
+                headers.put("SOAPAction", Collections.singletonList(soapAction != null ? soapAction : "\"\""));
+            }
+
+            TransportRequest transportRequest = new TransportRequest(request.endpointAddress.getURL(), headers,
+                    content::writeTo, content.size(), timeout(request, BindingProviderProperties.CONNECT_TIMEOUT),
+                    timeout(request, BindingProviderProperties.REQUEST_TIMEOUT));
+            ByteArrayBuffer response = new ByteArrayBuffer();
+            TransportResponse http = transport.send(transportRequest);
+            try (InputStream in = http.getContent()) {
+                response.write(in);
+            }
+            return createResponse(request, http, response);
+        } catch (IOException e) {
+            throw new WebServiceException(e);
+        }
+    }
+
+    private Packet createResponse(Packet request, TransportResponse http, ByteArrayBuffer content) throws IOException {
+        int status = http.getStatus();
+        boolean soap = content.size() > 0 && http.getContentType() != null
+                && !http.getContentType().contains("text/html");
+        // As the transport of JAX-WS: faults come with 500, other errors are not SOAP messages
+        if (!(status == 200 || status == 202 || (status == 500 && soap))) {
+            throw new ClientTransportException(ClientMessages.localizableHTTP_STATUS_CODE(status, http.getMessage()));
+        }
+        Packet reply = request.createClientResponse(null);
+        reply.wasTransportSecure = http.isSecure();
+        reply.invocationProperties.put(MessageContext.HTTP_RESPONSE_CODE, status);
+        reply.invocationProperties.put(MessageContext.HTTP_RESPONSE_HEADERS, http.getHeaders());
+        if (content.size() > 0) {
+            codec.decode(content.newInputStream(), http.getContentType(), reply);
+        }
+        return reply;
+    }
+
+    private static int timeout(Packet request, String property) {
+        Object value = request.invocationProperties.get(property);
+        return value instanceof Integer ? (Integer) value : 0;
+    }
+}
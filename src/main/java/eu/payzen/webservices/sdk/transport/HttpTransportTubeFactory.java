@@ -0,0 +1,42 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.transport;
+
+import com.lyra.vads.ws.v5.PaymentAPI;
+import com.sun.xml.ws.api.pipe.ClientTubeAssemblerContext;
+import com.sun.xml.ws.api.pipe.TransportTubeFactory;
+import com.sun.xml.ws.api.pipe.Tube;
+
+/**
+ * Installs {@link HttpTransportTube} in the ports of {@link PaymentAPI},
+ * registered in
+ * <code>META-INF/services/com.sun.xml.ws.api.pipe.TransportTubeFactory</code>.
+ * The clients of other services keep the default transport.
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class HttpTransportTubeFactory extends TransportTubeFactory {
+
+    @Override
+    public Tube doCreate(ClientTubeAssemblerContext context) {
+        String scheme = context.getAddress().getURI().getScheme();
+        if (context.getSEI() != PaymentAPI.class
+                || !("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme))) {
+            return null;
+        }
+        return new HttpTransportTube(context.getCodec(), context.getBinding(), createDefault(context));
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.transport;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.payzen.webservices.sdk.PayzenConfig;
+
+/**
+ * Chooses the {@link HttpTransport} of a configuration from its
+ * <code>httpTransport</code> property:
+ * <ul>
+ * <li>not set: the connections of {@link HttpConnectionPool} if
+ * <code>maxIdleConnections</code> is set, <code>HttpURLConnection</code>
+ * otherwise</li>
+ * <li><code>jdk</code>: the <code>java.net.http</code> client of Java 11 and
+ * later ({@link JdkHttpTransport}), with HTTP/2 and non-blocking calls</li>
+ * <li>any other name: the {@link HttpTransportProvider} with that name</li>
+ * </ul>
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class HttpTransports {
+
+    public static final String HTTP_TRANSPORT = "httpTransport";
+    public static final String JDK = "jdk";
+
+    private static final Logger logger = LoggerFactory.getLogger(HttpTransports.class);
+    private static final ConcurrentMap<String, HttpTransportProvider> PROVIDERS = new ConcurrentHashMap<>();
+
+    static {
+        try {
+            for (HttpTransportProvider provider : ServiceLoader.load(HttpTransportProvider.class)) {
+                PROVIDERS.put(provider.getName(), provider);
+            }
+        } catch (ServiceConfigurationError e) {
+            logger.error("Cannot load HTTP transport providers", e);
+        }
+    }
+
+    private HttpTransports() {
+    }
+
+    /**
+     * Gets the transport of a configuration
+     *
+     * @param config configuration of the client
+     * @return transport of the client, null to use <code>HttpURLConnection</code>
+     * @throws IllegalArgumentException if no transport has the configured name
+     * @throws UnsupportedOperationException if the transport is not supported by this JVM
+     */
+    public static HttpTransport of(PayzenConfig config) {
+        String name = config.getHttpTransport();
+        if (name == null) {
+            return HttpConnectionPool.of(config);
+        }
+        if (JDK.equals(name)) {
+            return JdkHttpTransport.of(config);
+        }
+        HttpTransportProvider provider = PROVIDERS.get(name);
+        if (provider == null) {
+            throw new IllegalArgumentException("Unknown " + HTTP_TRANSPORT + ": " + name);
+        }
+        return provider.create(config);
+    }
+
+    /**
+     * Opens connections to the endpoint of a configuration before the first
+     * calls. With {@link HttpConnectionPool} they are kept idle in the pool,
+     * up to <code>maxIdleConnections</code>. With the other transports one
+     * TLS handshake is made and the connection closed: the session is kept
+     * by the SSL context of the client, so the first calls only resume it.
+     *
+     * @param config configuration of the client
+     * @param count number of connections wanted
+     * @return number of connections opened, 0 for plain HTTP without pool
+     * @throws IOException if a connection cannot be opened
+     */
+    public static int openConnections(PayzenConfig config, int count) throws IOException {
+        if (count <= 0) {
+            return 0;
+        }
+        URL url = new URL(config.getEndpointUrl());
+        int connectTimeout = config.getConnectionTimeoutMillis();
+        HttpTransport transport = of(config);
+        if (transport instanceof HttpConnectionPool) {
+            return ((HttpConnectionPool) transport).openConnections(url, count, connectTimeout);
+        }
+        if (!"https".equalsIgnoreCase(url.getProtocol())) {
+            return 0;
+        }
+        int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(url.getHost(), port), connectTimeout);
+            socket.setSoTimeout(connectTimeout);
+            TlsContext.of(config).startHandshake(socket, url.getHost(), port).close();
+        }
+        return 1;
+    }
+
+    /**
+     * Adds a provider, replacing the one with the same name
+     *
+     * @param provider provider to add
+     */
+    public static void addProvider(HttpTransportProvider provider) {
+        PROVIDERS.put(provider.getName(), provider);
+    }
+
+    /**
+     * @param provider provider to remove
+     */
+    public static void removeProvider(HttpTransportProvider provider) {
+        PROVIDERS.remove(provider.getName(), provider);
+    }
+}
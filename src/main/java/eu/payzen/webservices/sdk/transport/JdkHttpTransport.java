@@ -0,0 +1,56 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.transport;
+
+import eu.payzen.webservices.sdk.PayzenConfig;
+
+/**
+ * Transport sending the calls with the <code>java.net.http</code> client.<p>
+ *
+ * This is the Java 8 version, which is never created. On Java 11 and later
+ * the class in <code>META-INF/versions/11</code> of the multi-release jar is
+ * used instead, see <code>src/main/java11</code>.
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class JdkHttpTransport implements HttpTransport {
+
+    private JdkHttpTransport() {
+    }
+
+    /**
+     * @return true if the transport can be used by this JVM
+     */
+    public static boolean isAvailable() {
+        return false;
+    }
+
+    /**
+     * Gets the transport of a configuration
+     *
+     * @param config configuration of the client
+     * @return transport shared with the configurations with the same connection settings
+     * @throws UnsupportedOperationException always, java.net.http needs Java 11
+     */
+    public static JdkHttpTransport of(PayzenConfig config) {
+        throw new UnsupportedOperationException("The " + HttpTransports.JDK + " HTTP transport needs Java 11");
+    }
+
+    @Override
+    public TransportResponse send(TransportRequest request) {
+        throw new UnsupportedOperationException();
+    }
+}
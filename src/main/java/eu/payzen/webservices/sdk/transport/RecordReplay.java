@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.transport;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Records the envelopes exchanged with the gateway into a file, and replays
+ * them without any network access, to measure the client alone or reproduce
+ * production responses offline.<p>
+ *
+ * With <code>recordFile=/path/payments.rec</code> every call made with that
+ * configuration is appended to the file. With
+ * <code>replayFile=/path/payments.rec</code> no connection is opened (not
+ * even to download the WSDL): each call gets the next recorded response of
+ * the same operation, in a round robin. The request sent is not compared
+ * with the recorded one.<p>
+ *
+ * The file is a sequence of length-prefixed entries (operation, HTTP status
+ * and headers, request and response envelopes) after a
+ * {@link #MAGIC} and {@link #VERSION} header. It is memory-mapped for replay,
+ * so the responses are read from the page cache without copies.
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class RecordReplay {
+
+    public static final String RECORD_FILE = "recordFile";
+    public static final String REPLAY_FILE = "replayFile";
+
+    static final int MAGIC = 0x505a5252; // PZRR
+    static final short VERSION = 1;
+
+    private static final ConcurrentMap<String, RecordWriter> WRITERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, ReplayStore> STORES = new ConcurrentHashMap<>();
+
+    private RecordReplay() {
+    }
+
+    /**
+     * Gets the writer of a recording, shared by all the clients that record
+     * into the same file
+     *
+     * @param file path of the recording, created if it does not exist
+     * @return writer that appends to the file
+     */
+    public static RecordWriter writer(String file) {
+        return WRITERS.computeIfAbsent(canonical(file), path -> {
+            try {
+                return new RecordWriter(new File(path));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to open recording " + path, e);
+            }
+        });
+    }
+
+    /**
+     * Gets the responses of a recording, mapped the first time
+     *
+     * @param file path of an existing recording
+     * @return recorded exchanges
+     */
+    public static ReplayStore store(String file) {
+        return STORES.computeIfAbsent(canonical(file), path -> {
+            try {
+                return new ReplayStore(new File(path));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to read recording " + path, e);
+            }
+        });
+    }
+
+    /**
+     * Closes the recordings being written and forgets the mapped ones, so a
+     * recording can be replayed after being written
+     */
+    public static synchronized void reset() {
+        for (RecordWriter writer : WRITERS.values()) {
+            writer.close();
+        }
+        WRITERS.clear();
+        STORES.clear();
+    }
+
+    private static String canonical(String file) {
+        try {
+            return new File(file).getCanonicalPath();
+        } catch (IOException e) {
+            return new File(file).getAbsolutePath();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.transport;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import eu.payzen.webservices.sdk.util.EnvelopeMasker;
+
+/**
+ * Appends exchanges to a recording. The calls are serialized, and every
+ * exchange is flushed so that the file can be replayed while it grows.<p>
+ *
+ * The request envelopes are masked with {@link EnvelopeMasker} before being
+ * written: card numbers, security codes and authentication tokens never
+ * reach the file. The replay only uses the responses.
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class RecordWriter {
+
+    private final File file;
+    private final DataOutputStream out;
+    private boolean closed;
+
+    RecordWriter(File file) throws IOException {
+        this.file = file;
+        boolean empty = !file.exists() || file.length() == 0;
+        if (!empty) {
+            // Fails if the file is not a recording, before appending to it
+            new ReplayStore(file);
+        }
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true), 64 * 1024));
+        if (empty) {
+            out.writeInt(RecordReplay.MAGIC);
+            out.writeShort(RecordReplay.VERSION);
+            out.flush();
+        }
+    }
+
+    /**
+     * Appends an exchange
+     *
+     * @param operation name of the operation (e.g. createPayment)
+     * @param status HTTP status of the response
+     * @param headers HTTP headers of the response, may be null
+     * @param request request envelope, masked before being written
+     * @param response response envelope
+     */
+    public synchronized void record(String operation, int status, Map<String, List<String>> headers,
+            byte[] request, byte[] response) {
+        if (closed) {
+            throw new IllegalStateException("Recording closed: " + file);
+        }
+        try {
+            out.writeUTF(operation);
+            out.writeShort(status);
+            int count = 0;
+            if (headers != null) {
+                for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                    if (header.getKey() != null && header.getValue() != null) {
+                        count += header.getValue().size();
+                    }
+                }
+            }
+            out.writeShort(count);
+            if (count > 0) {
+                for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                    if (header.getKey() != null && header.getValue() != null) {
+                        for (String value : header.getValue()) {
+                            out.writeUTF(header.getKey());
+                            out.writeUTF(value != null ? value : "");
+                        }
+                    }
+                }
+            }
+            byte[] masked = EnvelopeMasker.mask(new String(request, StandardCharsets.UTF_8))
+                    .getBytes(StandardCharsets.UTF_8);
+            out.writeInt(masked.length);
+            out.write(masked);
+            out.writeInt(response.length);
+            out.write(response);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write recording " + file, e);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    synchronized void close() {
+        if (!closed) {
+            closed = true;
+            try {
+                out.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.transport;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Request and response of a call stored in a recording. The envelopes are
+ * read-only views of the mapped file, they are not copied.
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class RecordedExchange {
+
+    private final String operation;
+    private final int status;
+    private final Map<String, List<String>> headers;
+    private final ByteBuffer request;
+    private final ByteBuffer response;
+
+    RecordedExchange(String operation, int status, Map<String, List<String>> headers, ByteBuffer request,
+            ByteBuffer response) {
+        this.operation = operation;
+        this.status = status;
+        this.headers = headers;
+        this.request = request;
+        this.response = response;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return HTTP status of the response
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return HTTP headers of the response (e.g. Set-Cookie)
+     */
+    public Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+
+    public int getResponseLength() {
+        return response.remaining();
+    }
+
+    /**
+     * @return new stream over the recorded response envelope
+     */
+    public InputStream openResponse() {
+        return new ByteBufferInputStream(response.duplicate());
+    }
+
+    public String getRequestEnvelope() {
+        return decode(request);
+    }
+
+    public String getResponseEnvelope() {
+        return decode(response);
+    }
+
+    private static String decode(ByteBuffer buffer) {
+        ByteBuffer copy = buffer.duplicate();
+        byte[] bytes = new byte[copy.remaining()];
+        copy.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int read = Math.min(len, buffer.remaining());
+            buffer.get(b, off, read);
+            return read;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.ws.WebServiceException;
+
+/**
+ * Exchanges of a recording, mapped in memory. The file is indexed once; the
+ * responses are then served in a round robin per operation, from any number
+ * of threads.
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class ReplayStore {
+
+    private final File file;
+    private final Map<String, RecordedExchange[]> exchanges;
+    private final Map<String, AtomicInteger> cursors = new LinkedHashMap<>();
+    private final int size;
+
+    ReplayStore(File file) throws IOException {
+        this.file = file;
+        MappedByteBuffer buffer;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Recording larger than 2 GB: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        Map<String, List<RecordedExchange>> index = new TreeMap<>();
+        int count = 0;
+        try {
+            if (buffer.getInt() != RecordReplay.MAGIC || buffer.getShort() != RecordReplay.VERSION) {
+                throw new IOException("Not a recording, or recorded by another version: " + file);
+            }
+            while (buffer.hasRemaining()) {
+                String operation = readUTF(buffer);
+                int status = buffer.getShort() & 0xffff;
+                int headerCount = buffer.getShort() & 0xffff;
+                Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+                for (int i = 0; i < headerCount; i++) {
+                    headers.computeIfAbsent(readUTF(buffer), k -> new ArrayList<>()).add(readUTF(buffer));
+                }
+                ByteBuffer request = slice(buffer, buffer.getInt());
+                ByteBuffer response = slice(buffer, buffer.getInt());
+                index.computeIfAbsent(operation, k -> new ArrayList<>())
+                        .add(new RecordedExchange(operation, status, Collections.unmodifiableMap(headers),
+                                request, response));
+                count++;
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Truncated recording: " + file, e);
+        }
+
+        Map<String, RecordedExchange[]> exchanges = new LinkedHashMap<>();
+        for (Map.Entry<String, List<RecordedExchange>> entry : index.entrySet()) {
+            exchanges.put(entry.getKey(), entry.getValue().toArray(new RecordedExchange[0]));
+            cursors.put(entry.getKey(), new AtomicInteger());
+        }
+        this.exchanges = Collections.unmodifiableMap(exchanges);
+        this.size = count;
+    }
+
+    /**
+     * Gets the next recorded exchange of an operation
+     *
+     * @param operation name of the operation
+     * @return recorded exchange
+     * @throws WebServiceException if the operation has not been recorded
+     */
+    public RecordedExchange next(String operation) {
+        RecordedExchange[] recorded = exchanges.get(operation);
+        if (recorded == null) {
+            throw new WebServiceException("No " + operation + " call in recording " + file);
+        }
+        int cursor = cursors.get(operation).getAndIncrement();
+        return recorded[(cursor & Integer.MAX_VALUE) % recorded.length];
+    }
+
+    /**
+     * @return recorded exchanges by operation, in recording order
+     */
+    public Map<String, List<RecordedExchange>> getExchanges() {
+        Map<String, List<RecordedExchange>> copy = new LinkedHashMap<>();
+        for (Map.Entry<String, RecordedExchange[]> entry : exchanges.entrySet()) {
+            copy.put(entry.getKey(), Collections.unmodifiableList(Arrays.asList(entry.getValue())));
+        }
+        return copy;
+    }
+
+    /**
+     * @return number of exchanges of the recording
+     */
+    public int size() {
+        return size;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int length) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(buffer.position() + length);
+        buffer.position(buffer.position() + length);
+        return slice.slice().asReadOnlyBuffer();
+    }
+
+    // Strings are written with DataOutputStream.writeUTF
+    private static String readUTF(ByteBuffer buffer) throws IOException {
+        int length = buffer.getShort() & 0xffff;
+        byte[] bytes = new byte[2 + length];
+        bytes[0] = (byte) (length >>> 8);
+        bytes[1] = (byte) length;
+        buffer.get(bytes, 2, length);
+        return new DataInputStream(new ByteArrayInputStream(bytes)).readUTF();
+    }
+}
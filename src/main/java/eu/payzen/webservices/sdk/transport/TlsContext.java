@@ -0,0 +1,279 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.transport;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URLConnection;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import eu.payzen.webservices.sdk.PayzenConfig;
+import eu.payzen.webservices.sdk.metrics.TlsMetrics;
+import eu.payzen.webservices.sdk.util.NullHostnameVerifier;
+import eu.payzen.webservices.sdk.util.PayzenHostnameVerifier;
+
+/**
+ * Socket factory and hostname verifier used by the connections of a
+ * configuration, set on each connection instead of the JVM-wide defaults of
+ * {@link HttpsURLConnection}, so the SDK does not change the HTTPS traffic of
+ * the rest of the application.<p>
+ *
+ * Contexts are shared by all the configurations with the same TLS settings
+ * (endpoint host, <code>disableHostnameVerifier</code>,
+ * {@link #TLS_SESSION_CACHE_SIZE}, {@link #TLS_SESSION_TIMEOUT} and
+ * {@link SSLContext}), so a session negotiated by one client is resumed by
+ * the others and the keep-alive cache of the JDK, which compares the socket
+ * factories and the verifiers, reuses their connections. Without session
+ * options the default {@link SSLContext} of the JVM is used; with them the
+ * SDK creates its own one (default trust store, no client certificate) to
+ * avoid resizing the cache of the rest of the application.<p>
+ *
+ * Every handshake is counted in {@link TlsMetrics}.
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class TlsContext {
+
+    public static final String TLS_SESSION_CACHE_SIZE = "tlsSessionCacheSize";
+    public static final String TLS_SESSION_TIMEOUT = "tlsSessionTimeout";
+
+    private static final ConcurrentMap<Key, TlsContext> CONTEXTS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<List<Integer>, SSLContext> SDK_CONTEXTS = new ConcurrentHashMap<>();
+
+    private final SSLContext sslContext;
+    private final SSLSocketFactory socketFactory;
+    private final HostnameVerifier hostnameVerifier;
+    private final boolean verifyHostname;
+
+    private TlsContext(Key key) {
+        this.sslContext = sslContext(key);
+        this.socketFactory = new CountingSocketFactory(sslContext.getSocketFactory());
+        this.verifyHostname = key.expectedHost != null;
+        this.hostnameVerifier = key.expectedHost != null ? new PayzenHostnameVerifier(key.expectedHost)
+                : new NullHostnameVerifier();
+    }
+
+    /**
+     * Gets the context of a configuration
+     *
+     * @param config configuration of the client
+     * @return context shared with the configurations with the same TLS settings
+     * @throws IllegalStateException if the SSL context cannot be created
+     */
+    public static TlsContext of(PayzenConfig config) {
+        Key key = new Key(config);
+        TlsContext context = CONTEXTS.get(key);
+        if (context == null) {
+            context = CONTEXTS.computeIfAbsent(key, TlsContext::new);
+        }
+        return context;
+    }
+
+    /**
+     * @return context of the connections, for the clients that do not take a socket factory
+     */
+    public SSLContext getSslContext() {
+        return sslContext;
+    }
+
+    /**
+     * @return true unless <code>disableHostnameVerifier</code> is set
+     */
+    public boolean isVerifyHostname() {
+        return verifyHostname;
+    }
+
+    public SSLSocketFactory getSocketFactory() {
+        return socketFactory;
+    }
+
+    public HostnameVerifier getHostnameVerifier() {
+        return hostnameVerifier;
+    }
+
+    /**
+     * Sets the socket factory and the verifier of an HTTPS connection
+     *
+     * @param connection connection not yet connected, other types are left as they are
+     */
+    public void configure(URLConnection connection) {
+        if (connection instanceof HttpsURLConnection) {
+            HttpsURLConnection https = (HttpsURLConnection) connection;
+            https.setSSLSocketFactory(socketFactory);
+            https.setHostnameVerifier(hostnameVerifier);
+        }
+    }
+
+    /**
+     * Starts TLS on a connected socket, checking the certificate of the
+     * server against the host unless <code>disableHostnameVerifier</code> is set
+     *
+     * @param socket socket connected to the server
+     * @param host host name of the server
+     * @param port port of the server
+     * @return socket after the handshake
+     * @throws IOException if the handshake fails
+     */
+    public SSLSocket startHandshake(Socket socket, String host, int port) throws IOException {
+        SSLSocket sslSocket = (SSLSocket) socketFactory.createSocket(socket, host, port, true);
+        if (verifyHostname) {
+            SSLParameters parameters = sslSocket.getSSLParameters();
+            parameters.setEndpointIdentificationAlgorithm("HTTPS");
+            sslSocket.setSSLParameters(parameters);
+        }
+        sslSocket.startHandshake();
+        return sslSocket;
+    }
+
+    private static SSLContext sslContext(Key key) {
+        SSLContext context = key.sslContext;
+        try {
+            if (context == null && key.sessionCacheSize == 0 && key.sessionTimeout == 0) {
+                return SSLContext.getDefault();
+            }
+            if (context == null) {
+                context = SDK_CONTEXTS.computeIfAbsent(Arrays.asList(key.sessionCacheSize, key.sessionTimeout),
+                        k -> newContext());
+            }
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Unable to get the default SSL context", e);
+        }
+        SSLSessionContext sessions = context.getClientSessionContext();
+        if (key.sessionCacheSize > 0) {
+            sessions.setSessionCacheSize(key.sessionCacheSize);
+        }
+        if (key.sessionTimeout > 0) {
+            sessions.setSessionTimeout(key.sessionTimeout);
+        }
+        return context;
+    }
+
+    private static SSLContext newContext() {
+        try {
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(null, null, null);
+            return context;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to create an SSL context", e);
+        }
+    }
+
+    /**
+     * Counts the handshakes of the sockets it creates. A session created
+     * before the socket has been resumed.
+     */
+    private static final class CountingSocketFactory extends SSLSocketFactory {
+        private final SSLSocketFactory delegate;
+
+        CountingSocketFactory(SSLSocketFactory delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String[] getDefaultCipherSuites() {
+            return delegate.getDefaultCipherSuites();
+        }
+
+        @Override
+        public String[] getSupportedCipherSuites() {
+            return delegate.getSupportedCipherSuites();
+        }
+
+        @Override
+        public Socket createSocket() throws IOException {
+            return count(delegate.createSocket());
+        }
+
+        @Override
+        public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException {
+            return count(delegate.createSocket(socket, host, port, autoClose));
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            return count(delegate.createSocket(host, port));
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+            return count(delegate.createSocket(host, port, localHost, localPort));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) throws IOException {
+            return count(delegate.createSocket(host, port));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort)
+                throws IOException {
+            return count(delegate.createSocket(address, port, localAddress, localPort));
+        }
+
+        private static Socket count(Socket socket) {
+            if (socket instanceof SSLSocket) {
+                long created = System.currentTimeMillis();
+                ((SSLSocket) socket).addHandshakeCompletedListener(event -> TlsMetrics.getInstance()
+                        .recordHandshake(event.getSession().getCreationTime() < created));
+            }
+            return socket;
+        }
+    }
+
+    private static final class Key {
+        final String expectedHost;
+        final int sessionCacheSize;
+        final int sessionTimeout;
+        final SSLContext sslContext;
+
+        Key(PayzenConfig config) {
+            this.expectedHost = config.isDisableHostnameVerifier() ? null : config.getEndpointHost();
+            this.sessionCacheSize = config.getTlsSessionCacheSize();
+            this.sessionTimeout = config.getTlsSessionTimeout();
+            this.sslContext = config.getSslContext();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return sessionCacheSize == other.sessionCacheSize && sessionTimeout == other.sessionTimeout
+                    && sslContext == other.sslContext && Objects.equals(expectedHost, other.expectedHost);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(expectedHost, sessionCacheSize, sessionTimeout, System.identityHashCode(sslContext));
+        }
+    }
+}
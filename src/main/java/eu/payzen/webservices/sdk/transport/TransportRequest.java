@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import eu.payzen.webservices.sdk.transport.HttpConnection.RequestContent;
+
+/**
+ * POST request sent by a {@link HttpTransport}: a SOAP envelope and its
+ * header fields. The content is written by the caller, so that the
+ * transports that stream it do not copy it.
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class TransportRequest {
+
+    private final URL url;
+    private final Map<String, List<String>> headers;
+    private final RequestContent content;
+    private final byte[] bytes;
+    private final int length;
+    private final int connectTimeoutMillis;
+    private final int requestTimeoutMillis;
+
+    /**
+     * @param url endpoint of the web service
+     * @param headers header fields, without Host and Content-Length
+     * @param content writes the content, may be called more than once
+     * @param length size of the content
+     * @param connectTimeoutMillis connection timeout, 0 for none
+     * @param requestTimeoutMillis time to wait for the response, 0 for none
+     */
+    public TransportRequest(URL url, Map<String, List<String>> headers, RequestContent content, int length,
+            int connectTimeoutMillis, int requestTimeoutMillis) {
+        this(url, headers, content, null, length, connectTimeoutMillis, requestTimeoutMillis);
+    }
+
+    /**
+     * @param url endpoint of the web service
+     * @param headers header fields, without Host and Content-Length
+     * @param content content of the request, not copied
+     * @param connectTimeoutMillis connection timeout, 0 for none
+     * @param requestTimeoutMillis time to wait for the response, 0 for none
+     */
+    public TransportRequest(URL url, Map<String, List<String>> headers, byte[] content, int connectTimeoutMillis,
+            int requestTimeoutMillis) {
+        this(url, headers, out -> out.write(content), content, content.length, connectTimeoutMillis,
+                requestTimeoutMillis);
+    }
+
+    private TransportRequest(URL url, Map<String, List<String>> headers, RequestContent content, byte[] bytes,
+            int length, int connectTimeoutMillis, int requestTimeoutMillis) {
+        this.url = url;
+        this.headers = Collections.unmodifiableMap(headers);
+        this.content = content;
+        this.bytes = bytes;
+        this.length = length;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.requestTimeoutMillis = requestTimeoutMillis;
+    }
+
+    public URL getUrl() {
+        return url;
+    }
+
+    /**
+     * @return path and query of the request, at least /
+     */
+    public String getTarget() {
+        return url.getFile().isEmpty() ? "/" : url.getFile();
+    }
+
+    public Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public int getRequestTimeoutMillis() {
+        return requestTimeoutMillis;
+    }
+
+    public RequestContent getContent() {
+        return content;
+    }
+
+    public void writeContent(OutputStream out) throws IOException {
+        content.writeTo(out);
+    }
+
+    /**
+     * Gets the content as an array, for the transports that need one
+     *
+     * @return the array given to the constructor, or a copy of the content
+     * @throws IOException if the content cannot be written
+     */
+    public byte[] toByteArray() throws IOException {
+        if (bytes != null) {
+            return bytes;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length);
+        content.writeTo(out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Response returned by a {@link HttpTransport}. Its content must be read or
+ * closed so that the transport can release the connection.
+ *
+ * @author Javier Garcia Alonso
+ */
+public interface TransportResponse extends Closeable {
+
+    int getStatus();
+
+    /**
+     * @return reason phrase of the status line, empty if the protocol has none (HTTP/2)
+     */
+    String getMessage();
+
+    /**
+     * @return header fields, whose names are not case-sensitive
+     */
+    Map<String, List<String>> getHeaders();
+
+    /**
+     * @return Content-Type header field, null if there is none
+     */
+    String getContentType();
+
+    /**
+     * @return true if the response has been received over TLS
+     */
+    boolean isSecure();
+
+    /**
+     * @return content of the response, the same stream on each call
+     */
+    InputStream getContent();
+
+    /**
+     * Closes the content, releasing the connection
+     *
+     * @throws IOException if the connection cannot be released
+     */
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.util;
+
+/**
+ * Masks the sensitive values of a serialized SOAP envelope in a single pass:
+ * the text of authToken and card security code elements is replaced, and card
+ * numbers only keep their first 6 and last 4 digits. A card number is the
+ * 13 to 19 digits of a number or cardNumber element (test cards do not have a
+ * valid Luhn checksum) or any value of 13 to 19 digits with a valid Luhn checksum.
+ * The same rules are applied to the other outputs of the SDK through
+ * {@link #isSecret(String)} and {@link #isCardNumber(String, CharSequence)}.
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class EnvelopeMasker {
+
+    public static final String MASK = "****";
+
+    private static final int PLAIN = 0;
+    private static final int SECRET = 1;
+    private static final int CARD_NUMBER = 2;
+
+    private EnvelopeMasker() {
+    }
+
+    public static String mask(CharSequence xml) {
+        int length = xml.length();
+        StringBuilder masked = new StringBuilder(length);
+        int element = PLAIN;
+        int i = 0;
+        while (i < length) {
+            char c = xml.charAt(i);
+            if (c == '<') {
+                int end = indexOf(xml, '>', i);
+                element = startTag(xml, i, end);
+                masked.append(xml, i, end);
+                i = end;
+            } else {
+                int end = indexOf(xml, '<', i);
+                if (element == SECRET) {
+                    masked.append(MASK);
+                } else if (isDigits(xml, i, end) && (element == CARD_NUMBER || isLuhnValid(xml, i, end))) {
+                    masked.append(xml, i, i + 6);
+                    for (int j = i + 6; j < end - 4; j++) {
+                        masked.append('X');
+                    }
+                    masked.append(xml, end - 4, end);
+                } else {
+                    masked.append(xml, i, end);
+                }
+                i = end;
+            }
+        }
+        return masked.toString();
+    }
+
+    /**
+     * Tells whether the value of a field must not be written at all
+     *
+     * @param name name of the element or property
+     * @return true for authentication tokens and card security codes
+     */
+    public static boolean isSecret(String name) {
+        String lowerName = name.toLowerCase();
+        return lowerName.equals("authtoken") || lowerName.contains("securitycode") || lowerName.equals("cvv")
+                || lowerName.equals("cvv2");
+    }
+
+    /**
+     * Tells whether the value of a field is a card number that must be masked
+     *
+     * @param name name of the element or property
+     * @param value value of the field
+     * @return true for the 13 to 19 digits of a number or cardNumber field, or
+     * any 13 to 19 digits with a valid Luhn checksum
+     */
+    public static boolean isCardNumber(String name, CharSequence value) {
+        return isDigits(value, 0, value.length()) && (isCardNumberName(name) || isLuhnValid(value, 0, value.length()));
+    }
+
+    private static boolean isCardNumberName(String name) {
+        return name.equalsIgnoreCase("number") || name.equalsIgnoreCase("cardNumber");
+    }
+
+    // Position after the next ">" or of the next "<", or the end of the text
+    private static int indexOf(CharSequence xml, char c, int from) {
+        for (int i = from + 1; i < xml.length(); i++) {
+            if (xml.charAt(i) == c) {
+                return c == '>' ? i + 1 : i;
+            }
+        }
+        return xml.length();
+    }
+
+    // Kind of the element opened by a tag, PLAIN for end and empty tags
+    private static int startTag(CharSequence xml, int start, int end) {
+        if (start + 1 >= end || "/?!".indexOf(xml.charAt(start + 1)) >= 0 || xml.charAt(end - 2) == '/') {
+            return PLAIN;
+        }
+        int nameEnd = start + 1;
+        int nameStart = nameEnd;
+        while (nameEnd < end && !Character.isWhitespace(xml.charAt(nameEnd)) && xml.charAt(nameEnd) != '>'
+                && xml.charAt(nameEnd) != '/') {
+            if (xml.charAt(nameEnd) == ':') {
+                nameStart = nameEnd + 1;
+            }
+            nameEnd++;
+        }
+        String name = xml.subSequence(nameStart, nameEnd).toString();
+        if (isSecret(name)) {
+            return SECRET;
+        }
+        return isCardNumberName(name) ? CARD_NUMBER : PLAIN;
+    }
+
+    // 13 to 19 digits
+    private static boolean isDigits(CharSequence value, int start, int end) {
+        int length = end - start;
+        if (length < 13 || length > 19) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLuhnValid(CharSequence value, int start, int end) {
+        int sum = 0;
+        for (int i = 0; i < end - start; i++) {
+            int digit = value.charAt(end - 1 - i) - '0';
+            if (i % 2 == 1) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+        }
+        return sum % 10 == 0;
+    }
+}
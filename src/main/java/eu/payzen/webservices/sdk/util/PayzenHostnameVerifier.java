@@ -15,22 +15,102 @@
  */
 package eu.payzen.webservices.sdk.util;
 
+import java.security.cert.Certificate;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
 import javax.net.ssl.HostnameVerifier;
-import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLPeerUnverifiedException;
 import javax.net.ssl.SSLSession;
 
 /**
  * Verifier that checks that the hostName matchs with the server's auhentication 
- * scheme
+ * scheme.<p>
+ *
+ * As before, the certificate of the server is checked against the
+ * configured endpoint host, whatever the host name used to connect, so the
+ * gateway can be reached through an alias or an IP address. The expected
+ * host is computed once, when the verifier is created, and must be one of
+ * the subject alternative names of the certificate (with a wildcard on the
+ * leftmost label). It is only called by the JDK when its own verification
+ * has failed.
  * 
  * @author Javier Garcia Alonso
  */
 public class PayzenHostnameVerifier implements HostnameVerifier {
 
+    private static final int DNS_NAME = 2;
+    private static final int IP_ADDRESS = 7;
+
+    private final String expectedHost;
+
+    /**
+     * Creates a verifier of the <code>endpointHost</code> of
+     * ws-sdk-config.properties
+     */
+    public PayzenHostnameVerifier() {
+        this(Config.getConfig().getProperty("endpointHost"));
+    }
+
+    /**
+     * @param endpointHost host of the gateway, the port is ignored (e.g. secure.payzen.eu:443)
+     */
+    public PayzenHostnameVerifier(String endpointHost) {
+        this.expectedHost = hostOf(endpointHost);
+    }
+
+    public String getExpectedHost() {
+        return expectedHost;
+    }
+
     public boolean verify(String hostname, SSLSession session) {
-        HostnameVerifier hv =
-            HttpsURLConnection.getDefaultHostnameVerifier();
-        String endpointToVerify = Config.getConfig().getProperty("endpointHost");
-        return hv.verify(endpointToVerify, session);
+        if (expectedHost == null) {
+            return false;
+        }
+        try {
+            Certificate[] certificates = session.getPeerCertificates();
+            if (certificates.length == 0 || !(certificates[0] instanceof X509Certificate)) {
+                return false;
+            }
+            Collection<List<?>> names = ((X509Certificate) certificates[0]).getSubjectAlternativeNames();
+            if (names != null) {
+                for (List<?> name : names) {
+                    int type = (Integer) name.get(0);
+                    if ((type == DNS_NAME || type == IP_ADDRESS) && matches(String.valueOf(name.get(1)))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        } catch (SSLPeerUnverifiedException | CertificateParsingException e) {
+            return false;
+        }
+    }
+
+    private boolean matches(String name) {
+        String pattern = name.toLowerCase(Locale.ROOT);
+        if (pattern.startsWith("*.")) {
+            int dot = expectedHost.indexOf('.');
+            return dot > 0 && expectedHost.substring(dot).equals(pattern.substring(1));
+        }
+        return expectedHost.equals(pattern);
+    }
+
+    private static String hostOf(String endpointHost) {
+        if (endpointHost == null) {
+            return null;
+        }
+        String host = endpointHost.trim();
+        if (host.startsWith("[")) {
+            // IPv6 literal
+            int end = host.indexOf(']');
+            host = end > 0 ? host.substring(1, end) : host;
+        } else if (host.indexOf(':') == host.lastIndexOf(':') && host.indexOf(':') >= 0) {
+            host = host.substring(0, host.indexOf(':'));
+        }
+        return host.toLowerCase(Locale.ROOT);
     }
 }
@@ -15,6 +15,9 @@
  */
 package eu.payzen.webservices.sdk.util;
 
+import javax.xml.ws.BindingProvider;
+
+import eu.payzen.webservices.sdk.handler.soap.HeaderHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -60,6 +63,17 @@ public class RequestUtils {
         return jsessionId;
     }
     
+    /**
+     * Retrieves the requestId sent in the header of the last call made
+     * through a port, that identifies the call in the gateway logs
+     * 
+     * @param port web service port
+     * @return the requestId, null if no call has been made
+     */
+    public static String getRequestId(BindingProvider port) {
+        return (String) port.getResponseContext().get(HeaderHandler.REQUEST_ID_PROPERTY);
+    }
+    
     private static String[] getMDTokens(String MD) {
          if (MD == null) {
             logger.error("No MD data found. Payment will fail!");
@@ -43,7 +43,25 @@ public class SessionUtils {
         @SuppressWarnings("unchecked")
 		Map<String, List<String>> headers = (Map<String, List<String>>) port.getResponseContext().get(MessageContext.HTTP_RESPONSE_HEADERS);
         
+        return getHttpSessionId(headers);
+    }
+    
+    /**
+     * Get the JSESSIONID from the cookie sent by Web Service
+     * 
+     * @param headers HTTP response headers
+     * @return value of session in cookie
+     */
+    public static String getHttpSessionId(Map<String, List<String>> headers) {
         List<String> cookie = headers.get(SET_COOKIE_HEADER);
+        if (cookie == null) {
+            // Header names are case insensitive (e.g. Set-cookie)
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                if (SET_COOKIE_HEADER.equalsIgnoreCase(header.getKey())) {
+                    cookie = header.getValue();
+                }
+            }
+        }
         String cookieValue = cookie.get(0);        
         
         Pattern p = Pattern.compile(SEARCH_SESSIONID_REGEX, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
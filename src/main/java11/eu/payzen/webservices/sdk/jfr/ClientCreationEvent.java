@@ -0,0 +1,40 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Creation of a JAX-WS client and its port, including the WSDL load
+ *
+ * @author Javier Garcia Alonso
+ */
+@Name("eu.payzen.webservices.sdk.ClientCreation")
+@Label("Client Creation")
+@Category({"PayZen", "Web Services"})
+@Description("Creation of a JAX-WS client and its port, including the WSDL load")
+class ClientCreationEvent extends Event {
+
+    @Label("Shop Id")
+    String shopId;
+
+    @Label("Endpoint Host")
+    String endpointHost;
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.jfr;
+
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+
+/**
+ * Emits JDK Flight Recorder events for the calls, the creation of the
+ * clients, the WSDL loads and the header signatures.<p>
+ *
+ * Java 11 version of the class: an event is only created and timed if its
+ * type is enabled in the running recordings, so nothing is allocated and the
+ * cost is a check when nothing is recorded.
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class JfrEvents {
+
+    private static final EventType CALL = EventType.getEventType(PaymentCallEvent.class);
+    private static final EventType CLIENT_CREATION = EventType.getEventType(ClientCreationEvent.class);
+    private static final EventType WSDL_LOAD = EventType.getEventType(WsdlLoadEvent.class);
+    private static final EventType SIGNING = EventType.getEventType(SigningEvent.class);
+
+    private JfrEvents() {
+    }
+
+    public static boolean isAvailable() {
+        return true;
+    }
+
+    public static Object beginCall() {
+        return CALL.isEnabled() ? begin(new PaymentCallEvent()) : null;
+    }
+
+    public static void commitCall(Object event, String operation, String shopId, String client,
+            Integer responseCode, long bytesSent, long bytesReceived) {
+        if (event != null) {
+            PaymentCallEvent call = (PaymentCallEvent) event;
+            call.end();
+            if (call.shouldCommit()) {
+                call.operation = operation;
+                call.shopId = shopId;
+                call.client = client;
+                call.responseCode = responseCode != null ? responseCode : -1;
+                call.bytesSent = bytesSent;
+                call.bytesReceived = bytesReceived;
+                call.commit();
+            }
+        }
+    }
+
+    public static Object beginClientCreation() {
+        return CLIENT_CREATION.isEnabled() ? begin(new ClientCreationEvent()) : null;
+    }
+
+    public static void commitClientCreation(Object event, String shopId, String endpointHost) {
+        if (event != null) {
+            ClientCreationEvent creation = (ClientCreationEvent) event;
+            creation.end();
+            if (creation.shouldCommit()) {
+                creation.shopId = shopId;
+                creation.endpointHost = endpointHost;
+                creation.commit();
+            }
+        }
+    }
+
+    public static Object beginWsdlLoad() {
+        return WSDL_LOAD.isEnabled() ? begin(new WsdlLoadEvent()) : null;
+    }
+
+    public static void commitWsdlLoad(Object event, String url) {
+        if (event != null) {
+            WsdlLoadEvent load = (WsdlLoadEvent) event;
+            load.end();
+            if (load.shouldCommit()) {
+                load.url = url;
+                load.commit();
+            }
+        }
+    }
+
+    public static Object beginSigning() {
+        return SIGNING.isEnabled() ? begin(new SigningEvent()) : null;
+    }
+
+    public static void commitSigning(Object event, String shopId) {
+        if (event != null) {
+            SigningEvent signing = (SigningEvent) event;
+            signing.end();
+            if (signing.shouldCommit()) {
+                signing.shopId = shopId;
+                signing.commit();
+            }
+        }
+    }
+
+    private static Object begin(Event event) {
+        event.begin();
+        return event;
+    }
+}
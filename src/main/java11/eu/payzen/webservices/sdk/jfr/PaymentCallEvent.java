@@ -0,0 +1,59 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Call to an operation of the payment API
+ *
+ * @author Javier Garcia Alonso
+ */
+@Name("eu.payzen.webservices.sdk.PaymentCall")
+@Label("Payment Call")
+@Category({"PayZen", "Web Services"})
+@Description("Call to an operation of the PayZen payment API")
+class PaymentCallEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Shop Id")
+    String shopId;
+
+    @Label("Client")
+    @Description("JAX-WS or streaming")
+    String client;
+
+    @Label("Response Code")
+    @Description("Response code of the result, -1 if the call has failed")
+    int responseCode;
+
+    @Label("Bytes Sent")
+    @Description("Size of the request, -1 if unknown")
+    @DataAmount
+    long bytesSent;
+
+    @Label("Bytes Received")
+    @Description("Size of the response, -1 if unknown")
+    @DataAmount
+    long bytesReceived;
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import eu.payzen.webservices.sdk.PayzenConfig;
+
+/**
+ * Transport sending the calls with the <code>java.net.http</code> client.<p>
+ *
+ * Java 11 version of the class. The configurations with the same TLS
+ * settings and connection timeout share an {@link HttpClient}, and so its
+ * connections. HTTPS connections negotiate HTTP/2 with ALPN when the server
+ * supports it, the calls then share one connection; plain HTTP connections
+ * use HTTP/1.1 without trying to upgrade. {@link #sendAsync(TransportRequest, Executor)}
+ * does not hold any thread while waiting for the response: the HTTP clients
+ * share a fixed pool of one daemon thread per processor, which also runs
+ * the parsing of the asynchronous responses.<p>
+ *
+ * The host name is always checked against the certificate by the client,
+ * so <code>disableHostnameVerifier</code> is not supported. Its connections
+ * are not counted in {@link eu.payzen.webservices.sdk.metrics.ConnectionMetrics}
+ * and {@link eu.payzen.webservices.sdk.metrics.TlsMetrics}.
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class JdkHttpTransport implements HttpTransport {
+
+    // Set by the client itself
+    private static final Set<String> RESTRICTED_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    private static final ConcurrentMap<List<Object>, JdkHttpTransport> TRANSPORTS = new ConcurrentHashMap<>();
+    // Instead of the default cached pool of each client, which grows with the calls in flight
+    private static final ExecutorService EXECUTOR = newExecutor();
+
+    static {
+        RESTRICTED_HEADERS.addAll(Arrays.asList("Connection", "Content-Length", "Expect", "Host", "Upgrade"));
+    }
+
+    private final HttpClient client;
+
+    private JdkHttpTransport(TlsContext tls, int connectTimeoutMillis) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .sslContext(tls.getSslContext())
+                .executor(EXECUTOR);
+        if (connectTimeoutMillis > 0) {
+            builder.connectTimeout(Duration.ofMillis(connectTimeoutMillis));
+        }
+        this.client = builder.build();
+    }
+
+    public static boolean isAvailable() {
+        return true;
+    }
+
+    /**
+     * Gets the transport of a configuration
+     *
+     * @param config configuration of the client
+     * @return transport shared with the configurations with the same connection settings
+     * @throws UnsupportedOperationException if <code>disableHostnameVerifier</code> is set
+     */
+    public static JdkHttpTransport of(PayzenConfig config) {
+        TlsContext tls = TlsContext.of(config);
+        if (!tls.isVerifyHostname()) {
+            throw new UnsupportedOperationException("disableHostnameVerifier is not supported by the "
+                    + HttpTransports.JDK + " HTTP transport");
+        }
+        int connectTimeout = config.getConnectionTimeoutMillis();
+        List<Object> key = Arrays.<Object>asList(tls, connectTimeout);
+        JdkHttpTransport transport = TRANSPORTS.get(key);
+        if (transport == null) {
+            transport = TRANSPORTS.computeIfAbsent(key, k -> new JdkHttpTransport(tls, connectTimeout));
+        }
+        return transport;
+    }
+
+    @Override
+    public TransportResponse send(TransportRequest request) throws IOException {
+        try {
+            HttpResponse<InputStream> response = client.send(newRequest(request),
+                    HttpResponse.BodyHandlers.ofInputStream());
+            return new Response(response, response.body());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        }
+    }
+
+    @Override
+    public CompletableFuture<TransportResponse> sendAsync(TransportRequest request, Executor executor) {
+        HttpRequest httpRequest;
+        try {
+            httpRequest = newRequest(request);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        // The whole content is received before completing, so reading it never blocks
+        return client.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(response -> new Response(response, new ByteArrayInputStream(response.body())));
+    }
+
+    @Override
+    public boolean isNonBlocking() {
+        return true;
+    }
+
+    private static ExecutorService newExecutor() {
+        AtomicInteger threads = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), task -> {
+            Thread thread = new Thread(task, "payzen-http-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static HttpRequest newRequest(TransportRequest request) throws IOException {
+        HttpRequest.Builder builder;
+        try {
+            builder = HttpRequest.newBuilder(request.getUrl().toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid endpoint: " + request.getUrl(), e);
+        }
+        if ("http".equalsIgnoreCase(request.getUrl().getProtocol())) {
+            builder.version(HttpClient.Version.HTTP_1_1);
+        }
+        if (request.getRequestTimeoutMillis() > 0) {
+            builder.timeout(Duration.ofMillis(request.getRequestTimeoutMillis()));
+        }
+        for (Map.Entry<String, List<String>> header : request.getHeaders().entrySet()) {
+            if (header.getKey() != null && !RESTRICTED_HEADERS.contains(header.getKey())) {
+                for (String value : header.getValue()) {
+                    builder.header(header.getKey(), value);
+                }
+            }
+        }
+        return builder.POST(HttpRequest.BodyPublishers.ofByteArray(request.toByteArray())).build();
+    }
+
+    /**
+     * Response of the client, with header names that are not case-sensitive
+     * as in the other transports (HTTP/2 sends them in lower case)
+     */
+    private static final class Response implements TransportResponse {
+        private final int status;
+        private final Map<String, List<String>> headers;
+        private final boolean secure;
+        private final InputStream content;
+
+        Response(HttpResponse<?> response, InputStream content) {
+            Map<String, List<String>> map = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            map.putAll(response.headers().map());
+            this.status = response.statusCode();
+            this.headers = Collections.unmodifiableMap(map);
+            this.secure = response.sslSession().isPresent();
+            this.content = content;
+        }
+
+        @Override
+        public int getStatus() {
+            return status;
+        }
+
+        @Override
+        public String getMessage() {
+            return "";
+        }
+
+        @Override
+        public Map<String, List<String>> getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public String getContentType() {
+            List<String> values = headers.get("Content-Type");
+            return values != null && !values.isEmpty() ? values.get(0) : null;
+        }
+
+        @Override
+        public boolean isSecure() {
+            return secure;
+        }
+
+        @Override
+        public InputStream getContent() {
+            return content;
+        }
+
+        @Override
+        public void close() throws IOException {
+            content.close();
+        }
+    }
+}
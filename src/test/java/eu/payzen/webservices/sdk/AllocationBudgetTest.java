@@ -0,0 +1,191 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.lyra.vads.ws.v5.*;
+import eu.payzen.webservices.sdk.builder.PaymentBuilder;
+import eu.payzen.webservices.sdk.builder.request.CardRequestBuilder;
+import eu.payzen.webservices.sdk.builder.request.OrderRequestBuilder;
+import eu.payzen.webservices.sdk.builder.request.PaymentRequestBuilder;
+import eu.payzen.webservices.sdk.handler.soap.HeaderHandler;
+import eu.payzen.webservices.sdk.stream.SoapEnvelopeWriter;
+import eu.payzen.webservices.sdk.stub.PaymentStub;
+
+/**
+ * Checks the bytes allocated per call on the hot paths of the SDK against
+ * the budgets committed in <code>allocation-budgets.properties</code>.<p>
+ *
+ * Allocation is measured on the calling thread only, so the work done by the
+ * embedded stub on its own threads is not counted. Each path is warmed up
+ * and the lowest of several rounds is kept, which hides the noise of the JIT.
+ * The budgets leave about 25% above the measured values. Object sizes depend
+ * on the JVM, so the file also records the Java version and the object layout
+ * flags they were measured with, and the test is skipped on a JVM that differs
+ * rather than failing on sizes it was not written for. When a change
+ * legitimately needs more memory, the budget is raised in the same commit so
+ * the increase is reviewed, and a change that saves memory lowers it.
+ *
+ * @author Javier Garcia Alonso
+ */
+public class AllocationBudgetTest {
+
+    private static final String BUDGETS = "allocation-budgets.properties";
+    private static final String JAVA_VERSION = "java.specification.version";
+    private static final String VM_OPTION = "vm.";
+    private static final int ROUNDS = 5;
+    private static final String CARD = "4970100000000003";
+
+    private static com.sun.management.ThreadMXBean threads;
+    private static Properties budgets;
+    private static PaymentStub stub;
+    private static String uuid;
+
+    @BeforeClass
+    public static void setUpClass() throws IOException {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue("Allocation of threads not measurable on this JVM",
+                bean instanceof com.sun.management.ThreadMXBean
+                        && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported());
+        threads = (com.sun.management.ThreadMXBean) bean;
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        budgets = new Properties();
+        try (InputStream in = AllocationBudgetTest.class.getResourceAsStream(BUDGETS)) {
+            budgets.load(in);
+        }
+        String jvm = differentJvm();
+        Assume.assumeTrue("Budgets measured on another JVM: " + jvm, jvm == null);
+
+        stub = PaymentStub.getBuilder().seed(42).build();
+        uuid = Payment.create("AllocationBudget", 100, 978, CARD, 12, 2030, "123", stub.config())
+                .getPaymentResponse().getTransactionUuid();
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        if (stub != null) {
+            stub.close();
+        }
+    }
+
+    @Test
+    public void testHeaderSigning() {
+        final HeaderHandler handler = new HeaderHandler(PaymentStub.DEFAULT_SHOP_ID, PaymentStub.DEFAULT_SHOP_KEY,
+                "TEST", null, null, null, null, null);
+        assertBudget("headerSigning", 2000, i -> handler.buildHeaderFields());
+    }
+
+    @Test
+    public void testRequestBuilding() {
+        final Map<String, String> header = new HeaderHandler(PaymentStub.DEFAULT_SHOP_ID,
+                PaymentStub.DEFAULT_SHOP_KEY, "TEST", null, null, null, null, null).buildHeaderFields();
+        final SoapEnvelopeWriter writer = new SoapEnvelopeWriter();
+        assertBudget("requestBuilding", 2000, i -> {
+            CreatePayment request = PaymentBuilder.getBuilder()
+                    .order(OrderRequestBuilder.create().orderId("AllocationBudget").build())
+                    .payment(PaymentRequestBuilder.create().amount(100).currency(978).build())
+                    .card(CardRequestBuilder.create().number(CARD).scheme("VISA")
+                            .expiryMonth(12).expiryYear(2030).cardSecurityCode("123").build())
+                    .buildCreate();
+            writer.reset().writeRequest(header, "createPayment", request);
+        });
+    }
+
+    @Test
+    public void testServiceResult() {
+        final GetPaymentDetailsResponse.GetPaymentDetailsResult details = new GetPaymentDetailsResponse.GetPaymentDetailsResult();
+        details.setCommonResponse(new CommonResponse());
+        details.setPaymentResponse(new PaymentResponse());
+        details.setOrderResponse(new OrderResponse());
+        details.setCardResponse(new CardResponse());
+        assertBudget("serviceResult", 2000, i -> new ServiceResult(details));
+    }
+
+    @Test
+    public void testCall() {
+        final PayzenConfig config = PayzenConfig.from(stub.config());
+        assertBudget("call", 10, i -> Payment.details(uuid, config));
+    }
+
+    @Test
+    public void testStreamingCall() {
+        final PayzenConfig config = PayzenConfig.from(stub.config()).toBuilder()
+                .streamingSerializer(true).streamingParser(true).build();
+        assertBudget("streamingCall", 200, i -> Payment.details(uuid, config));
+    }
+
+    // First setting that differs from the JVM of the budgets, null if none
+    private static String differentJvm() {
+        String version = System.getProperty(JAVA_VERSION);
+        if (!budgets.getProperty(JAVA_VERSION).equals(version)) {
+            return JAVA_VERSION + "=" + version;
+        }
+        com.sun.management.HotSpotDiagnosticMXBean vm = ManagementFactory
+                .getPlatformMXBean(com.sun.management.HotSpotDiagnosticMXBean.class);
+        for (String key : budgets.stringPropertyNames()) {
+            if (key.startsWith(VM_OPTION)) {
+                String option = key.substring(VM_OPTION.length());
+                String value;
+                try {
+                    value = vm != null ? vm.getVMOption(option).getValue() : null;
+                } catch (IllegalArgumentException e) {
+                    value = null;
+                }
+                if (!budgets.getProperty(key).equals(value)) {
+                    return option + "=" + value;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void assertBudget(String name, int iterations, Operation operation) {
+        long budget = Long.parseLong(budgets.getProperty(name).trim());
+        long thread = Thread.currentThread().getId();
+
+        for (int i = 0; i < iterations; i++) {
+            operation.run(i);
+        }
+
+        long lowest = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long before = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < iterations; i++) {
+                operation.run(i);
+            }
+            lowest = Math.min(lowest, (threads.getThreadAllocatedBytes(thread) - before) / iterations);
+        }
+
+        Assert.assertTrue(name + " allocated " + lowest + " bytes per call, over its budget of " + budget
+                + " bytes in " + BUDGETS, lowest <= budget);
+    }
+
+    private interface Operation {
+        void run(int i);
+    }
+}
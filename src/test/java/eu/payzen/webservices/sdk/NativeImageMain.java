@@ -0,0 +1,41 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Program built as a native executable by {@link NativeImageTest}: makes a
+ * payment with the configuration given as <code>key=value</code> arguments
+ * and prints its response code and the time taken by the call
+ *
+ * @author Javier Garcia Alonso
+ */
+public class NativeImageMain {
+
+    public static void main(String[] args) {
+        Map<String, String> config = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            config.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        long start = System.nanoTime();
+        ServiceResult result = Payment.create("Native", 100, 978, "4970100000000003", 12, 2030, "123", config);
+        System.out.println("responseCode=" + result.getCommonResponse().getResponseCode());
+        System.out.println("callMillis=" + (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import eu.payzen.webservices.sdk.stub.PaymentStub;
+
+/**
+ * Checks the GraalVM reachability metadata of the SDK and, when GraalVM is
+ * installed, builds {@link NativeImageMain} as a native executable and runs
+ * it against {@link PaymentStub}. With GraalVM, the reflection traced by its
+ * agent during a payment on the JVM must also be covered by the metadata,
+ * which was written by hand.<p>
+ *
+ * <code>native-image</code> is looked for in <code>GRAALVM_HOME</code>, then
+ * in <code>JAVA_HOME</code> and the running JDK; the native test is skipped
+ * when it is not found. The build takes a few minutes.
+ *
+ * @author Javier Garcia Alonso
+ */
+public class NativeImageTest {
+
+    private static final String METADATA = "META-INF/native-image/eu.payzen.sdk/payzen-ws-sdk/";
+    private static final Pattern NAME = Pattern.compile("\"(?:name|pattern)\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern INTERFACES = Pattern.compile("\"interfaces\"\\s*:\\s*\\[([^\\]]*)\\]");
+    // Types in reachability-metadata.json, written by the agent instead of reflect-config.json since GraalVM 23
+    private static final Pattern TYPE = Pattern.compile("\"type\"\\s*:\\s*\"([^\"]+)\"");
+    // Types of the JDK, of GraalVM and of the tests, not the business of the metadata of the SDK
+    private static final String[] UNCHECKED = { "[", "java.", "javax.crypto.", "javax.management.", "javax.net.",
+            "javax.security.", "jdk.", "sun.", "com.sun.crypto.", "com.sun.management.", "com.sun.org.apache.",
+            "org.graalvm.", "eu.payzen.webservices.sdk.stub.", NativeImageMain.class.getName() };
+
+    @Test
+    public void testReflectionMetadata() throws Exception {
+        List<String> names = names("reflect-config.json", NAME);
+        Assert.assertTrue(names.contains("com.lyra.vads.ws.v5.CreatePayment"));
+        for (String name : names) {
+            Class.forName(name, false, getClass().getClassLoader());
+        }
+    }
+
+    @Test
+    public void testProxyMetadata() throws Exception {
+        List<String> proxies = names("proxy-config.json", INTERFACES);
+        Assert.assertFalse(proxies.isEmpty());
+        for (String proxy : proxies) {
+            for (String name : proxy.replace("\"", "").split(",")) {
+                Assert.assertTrue(name, Class.forName(name.trim(), false, getClass().getClassLoader()).isInterface());
+            }
+        }
+    }
+
+    @Test
+    public void testResourceMetadata() throws Exception {
+        String resources = read("resource-config.json");
+        Matcher bundles = NAME.matcher(resources.substring(resources.indexOf("\"bundles\"")));
+        while (bundles.find()) {
+            Assert.assertNotNull(ResourceBundle.getBundle(bundles.group(1)));
+        }
+        Matcher patterns = NAME.matcher(resources.substring(0, resources.indexOf("\"bundles\"")));
+        while (patterns.find()) {
+            String pattern = patterns.group(1).replace("\\\\Q", "").replace("\\\\E", "");
+            if (!pattern.endsWith(".*")) {
+                Assert.assertNotNull(pattern, getClass().getClassLoader().getResource(pattern));
+            }
+        }
+    }
+
+    @Test
+    public void testNativeExecutable() throws Exception {
+        File nativeImage = findNativeImage();
+        Assume.assumeTrue("native-image not found, set GRAALVM_HOME", nativeImage != null);
+
+        File directory = new File("target/native");
+        Assert.assertTrue(directory.isDirectory() || directory.mkdirs());
+        File executable = new File(directory, "payzen-native");
+        String classPath = System.getProperty("surefire.test.class.path", System.getProperty("java.class.path"));
+        long buildStart = System.nanoTime();
+        Assert.assertEquals(0, run(20, TimeUnit.MINUTES, new ArrayList<String>(), nativeImage.getPath(), "--no-fallback",
+                "-cp", classPath, "-o", executable.getPath(), NativeImageMain.class.getName()));
+        System.out.println("Native image built in " + TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - buildStart)
+                + " s");
+
+        try (PaymentStub stub = PaymentStub.getBuilder().build()) {
+            List<String> command = new ArrayList<>();
+            command.add(executable.getPath());
+            for (Map.Entry<String, String> entry : stub.config().entrySet()) {
+                command.add(entry.getKey() + "=" + entry.getValue());
+            }
+            List<String> output = new ArrayList<>();
+            long start = System.nanoTime();
+            Assert.assertEquals(output.toString(), 0, run(1, TimeUnit.MINUTES, output, command.toArray(new String[0])));
+            long wallMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            Assert.assertTrue(output.toString(), output.contains("responseCode=0"));
+            Assert.assertEquals(1, stub.getRequestCount());
+            System.out.println("Native executable: " + output + ", wall time " + wallMillis + " ms");
+        }
+    }
+
+    @Test
+    public void testMetadataCoversAgentTrace() throws Exception {
+        File nativeImage = findNativeImage();
+        Assume.assumeTrue("native-image not found, set GRAALVM_HOME", nativeImage != null);
+
+        File directory = new File("target/native-agent");
+        Assert.assertTrue(directory.isDirectory() || directory.mkdirs());
+        String java = new File(nativeImage.getParentFile(),
+                nativeImage.getName().endsWith(".cmd") ? "java.exe" : "java").getPath();
+        String classPath = System.getProperty("surefire.test.class.path", System.getProperty("java.class.path"));
+        try (PaymentStub stub = PaymentStub.getBuilder().build()) {
+            List<String> command = new ArrayList<>();
+            command.add(java);
+            command.add("-agentlib:native-image-agent=config-output-dir=" + directory.getPath());
+            command.add("-cp");
+            command.add(classPath);
+            command.add(NativeImageMain.class.getName());
+            for (Map.Entry<String, String> entry : stub.config().entrySet()) {
+                command.add(entry.getKey() + "=" + entry.getValue());
+            }
+            List<String> output = new ArrayList<>();
+            Assert.assertEquals(output.toString(), 0, run(5, TimeUnit.MINUTES, output, command.toArray(new String[0])));
+        }
+
+        Set<String> shipped = new HashSet<>(names("reflect-config.json", NAME));
+        Set<String> missing = new TreeSet<>();
+        File reflect = new File(directory, "reflect-config.json");
+        File reachability = new File(directory, "reachability-metadata.json");
+        File traced = reachability.isFile() ? reachability : reflect;
+        Matcher matcher = (traced == reachability ? TYPE : NAME)
+                .matcher(new String(Files.readAllBytes(traced.toPath()), StandardCharsets.UTF_8));
+        while (matcher.find()) {
+            if (!shipped.contains(matcher.group(1)) && !unchecked(matcher.group(1))) {
+                missing.add(matcher.group(1));
+            }
+        }
+        Assert.assertTrue("Reflected during a payment but missing from reflect-config.json: " + missing,
+                missing.isEmpty());
+    }
+
+    // Methods and fields are listed by their simple name
+    private static boolean unchecked(String name) {
+        if (name.indexOf('.') < 0) {
+            return true;
+        }
+        for (String prefix : UNCHECKED) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static File findNativeImage() {
+        String executable = System.getProperty("os.name").startsWith("Windows") ? "native-image.cmd" : "native-image";
+        for (String home : new String[] { System.getenv("GRAALVM_HOME"), System.getenv("JAVA_HOME"),
+                System.getProperty("java.home") }) {
+            if (home != null) {
+                File file = new File(home, "bin" + File.separator + executable);
+                if (file.canExecute()) {
+                    return file;
+                }
+            }
+        }
+        return null;
+    }
+
+    // The output goes to a file, so a process that hangs cannot block the test past the timeout
+    private static int run(long timeout, TimeUnit unit, List<String> output, String... command)
+            throws IOException, InterruptedException {
+        File log = File.createTempFile("payzen-native", ".log");
+        try {
+            Process process = new ProcessBuilder(command).redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.to(log)).start();
+            if (!process.waitFor(timeout, unit)) {
+                process.destroyForcibly().waitFor();
+                Assert.fail("Timeout running " + command[0]);
+            }
+            output.addAll(Files.readAllLines(log.toPath(), StandardCharsets.UTF_8));
+            return process.exitValue();
+        } finally {
+            Files.deleteIfExists(log.toPath());
+        }
+    }
+
+    private static List<String> names(String file, Pattern pattern) throws IOException {
+        List<String> names = new ArrayList<>();
+        Matcher matcher = pattern.matcher(read(file));
+        while (matcher.find()) {
+            names.add(matcher.group(1));
+        }
+        return names;
+    }
+
+    private static String read(String file) throws IOException {
+        try (InputStream in = NativeImageTest.class.getClassLoader().getResourceAsStream(METADATA + file)) {
+            Assert.assertNotNull(file, in);
+            ByteArrayOutputStream json = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                json.write(buffer, 0, read);
+            }
+            return new String(json.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.lyra.vads.ws.v5.TransactionItem;
+
+import eu.payzen.webservices.sdk.metrics.Metrics;
+import eu.payzen.webservices.sdk.stub.PaymentStub;
+
+/**
+ * Tests of PaymentClient against {@link PaymentStub}
+ *
+ * @author Javier Garcia Alonso
+ */
+public class PaymentClientTest {
+
+    private static final String CARD = "4970100000000003";
+
+    private static PaymentStub stub;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        stub = PaymentStub.getBuilder().seed(42).build();
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        stub.close();
+    }
+
+    @Test
+    public void testPortsAreReused() {
+        try (PaymentClient client = PaymentClient.create(PayzenConfig.from(stub.config()))) {
+            String uuid = client.create("ClientOrder", 100, 978, CARD, 12, 2030, "123")
+                    .getPaymentResponse().getTransactionUuid();
+            Assert.assertEquals(0, code(client.details(uuid)));
+            Assert.assertEquals(0, code(client.update(uuid, 80, 978)));
+            Assert.assertEquals(0, code(client.detailsByOrderId("ClientOrder")));
+            Assert.assertEquals(0, code(client.cancel(uuid)));
+
+            Assert.assertEquals(1, stub.getWsdlDownloadCount());
+            Assert.assertEquals(1, client.getIdleCount());
+            Assert.assertEquals(1, client.getMetrics().getLatency("createPayment").getCount());
+            Assert.assertEquals(Long.valueOf(1), client.getMetrics().getResponseCodeCounts("getPaymentDetails").get(0));
+            Assert.assertEquals("CANCELLED", stub.getTransactionStatus(uuid));
+        }
+    }
+
+    @Test
+    public void testConcurrentCalls() throws Exception {
+        PayzenConfig config = PayzenConfig.from(stub.config()).toBuilder()
+                .streamingSerializer(true).streamingParser(true).build();
+        try (PaymentClient client = PaymentClient.getBuilder().config(config).poolSize(2).build()) {
+            List<CompletableFuture<ServiceResult>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                final String orderId = "ClientAsync" + i;
+                results.add(client.async(c -> c.details(c.create(orderId, 100, 978, CARD, 12, 2030, "123")
+                        .getPaymentResponse().getTransactionUuid())));
+            }
+            for (CompletableFuture<ServiceResult> result : results) {
+                Assert.assertEquals(0, code(result.get()));
+            }
+            Assert.assertTrue(client.getIdleCount() <= 2);
+            Assert.assertEquals(8, client.getMetrics().getLatency("getPaymentDetails").getCount());
+        }
+    }
+
+    @Test
+    public void testClose() {
+        PaymentClient client = PaymentClient.create(PayzenConfig.from(stub.config()));
+        client.details("0123456789abcdef0123456789abcdef");
+        client.close();
+        Assert.assertTrue(client.isClosed());
+        Assert.assertEquals(0, client.getIdleCount());
+        try {
+            client.details("0123456789abcdef0123456789abcdef");
+            Assert.fail("Call made with a closed client");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("PaymentClient closed", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testResponseHandlers() {
+        try (PaymentClient client = PaymentClient.create(PayzenConfig.from(stub.config()))) {
+            String uuid = client.create("ClientHandler", 100, 978, CARD, 12, 2030, "123")
+                    .getPaymentResponse().getTransactionUuid();
+            List<ServiceResult> handled = new ArrayList<>();
+            ServiceResult updated = client.update(uuid, 80, 978, handled::add);
+            client.update(uuid, new Date(System.currentTimeMillis() + 86400000L), handled::add);
+            client.validate(uuid, "Validated", handled::add);
+            Assert.assertEquals(3, handled.size());
+            Assert.assertSame(updated, handled.get(0));
+
+            Payment.update(uuid, 70, 978, handled::add, PayzenConfig.from(stub.config()));
+            Payment.validate(uuid, "Validated", handled::add, stub.config());
+            Assert.assertEquals(5, handled.size());
+        }
+    }
+
+    @Test
+    public void testFindPaymentsStreamError() {
+        try (PaymentClient client = PaymentClient.create(PayzenConfig.from(stub.config()))) {
+            client.create("ClientStream", 100, 978, CARD, 12, 2030, "123");
+            long successes = findPaymentsCount(0);
+            long errors = findPaymentsCount(10);
+            try (Stream<TransactionItem> transactions = client.findPaymentsStream("ClientStream")) {
+                Assert.assertEquals(1, transactions.count());
+            }
+            Assert.assertEquals(successes + 1, findPaymentsCount(0));
+            try {
+                client.findPaymentsStream("ClientStreamUnknown");
+                Assert.fail("Error returned as an empty stream");
+            } catch (ResponseCodeException e) {
+                Assert.assertEquals(10, e.getResponseCode());
+            }
+            Assert.assertEquals(errors + 1, findPaymentsCount(10));
+            Assert.assertEquals(1, client.getIdleCount());
+        }
+    }
+
+    @Test
+    public void testFindPaymentsStreamOutlivesItsCall() {
+        try (PaymentClient client = PaymentClient.getBuilder().config(PayzenConfig.from(stub.config()))
+                .poolSize(1).build()) {
+            client.create("ClientStreamA", 100, 978, CARD, 12, 2030, "123");
+            client.create("ClientStreamB", 100, 978, CARD, 12, 2030, "123");
+            client.create("ClientStreamB", 200, 978, CARD, 12, 2030, "123");
+
+            // Both streams are opened with the client of the only lease, which is back in the pool
+            try (Stream<TransactionItem> first = client.findPaymentsStream("ClientStreamA");
+                    Stream<TransactionItem> second = client.findPaymentsStream("ClientStreamB")) {
+                Assert.assertEquals(1, client.getIdleCount());
+                Assert.assertEquals(0, code(client.detailsByOrderId("ClientStreamA")));
+                Assert.assertEquals(300, second.mapToLong(TransactionItem::getAmount).sum());
+                Assert.assertEquals(100, first.mapToLong(TransactionItem::getAmount).sum());
+            }
+            Assert.assertEquals(1, client.getIdleCount());
+        }
+    }
+
+    private static int code(ServiceResult result) {
+        return result.getCommonResponse().getResponseCode();
+    }
+
+    private static long findPaymentsCount(int responseCode) {
+        Long count = Metrics.getDefaultRegistry().getResponseCodeCounts("findPayments").get(responseCode);
+        return count != null ? count : 0;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests of PayzenConfig
+ *
+ * @author Javier Garcia Alonso
+ */
+public class PayzenConfigTest {
+
+    @Test
+    public void testFromMap() {
+        Map<String, String> map = map();
+        map.put("connectionTimeout", "5");
+        map.put("streamingParser", "TRUE");
+        map.put("secureConnection", "false");
+        map.put("extraField", "extra");
+        Map<String, String> copy = new HashMap<>(map);
+
+        PayzenConfig config = PayzenConfig.from(map);
+        Assert.assertEquals(copy, map);
+        Assert.assertEquals("12345678", config.getShopId());
+        Assert.assertEquals(5000, config.getConnectionTimeoutMillis());
+        Assert.assertEquals(0, config.getRequestTimeoutMillis());
+        Assert.assertTrue(config.isStreamingParser());
+        Assert.assertFalse(config.isStreamingSerializer());
+        Assert.assertEquals("http://localhost:8080/vads-ws/v5", config.getEndpointUrl());
+        Assert.assertEquals("http://localhost:8080/vads-ws/v5?wsdl", config.getWsdlUrl());
+        Assert.assertEquals(Collections.singletonMap("extraField", "extra"), config.getHeaders());
+        Assert.assertNull(config.getRecordFile());
+    }
+
+    @Test
+    public void testEquality() {
+        PayzenConfig config = PayzenConfig.from(map());
+        Assert.assertEquals(config, PayzenConfig.from(map()));
+        Assert.assertEquals(config.hashCode(), PayzenConfig.from(map()).hashCode());
+        Assert.assertEquals(config, config.toBuilder().build());
+
+        PayzenConfig other = config.toBuilder().shopKey("2222222222222222").build();
+        Assert.assertNotEquals(config, other);
+        Assert.assertNotEquals(config, config.toBuilder().header("extraField", "extra").build());
+        Assert.assertFalse(other.toString().contains("2222222222222222"));
+    }
+
+    @Test
+    public void testInvalidValues() {
+        assertInvalid("connectionTimeout", "ten");
+        assertInvalid("requestTimeout", "-1");
+        assertInvalid("soapCaptureSize", "0");
+        assertInvalid("endpointHost", " ");
+        assertInvalid("endpointHost", "[NOT SET]");
+    }
+
+    private static void assertInvalid(String key, String value) {
+        Map<String, String> map = map();
+        map.put(key, value);
+        try {
+            PayzenConfig.from(map);
+            Assert.fail(key + "=" + value + " accepted");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains(key) || e.getMessage().contains("host"));
+        }
+    }
+
+    private static Map<String, String> map() {
+        Map<String, String> map = new HashMap<>();
+        map.put("shopId", "12345678");
+        map.put("shopKey", "1111111111111111");
+        map.put("mode", "TEST");
+        map.put("endpointHost", "localhost:8080");
+        map.put("secureConnection", "false");
+        return map;
+    }
+}
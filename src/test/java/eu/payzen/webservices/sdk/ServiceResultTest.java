@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.lyra.vads.ws.v5.*;
+
+/**
+ * Tests of ServiceResult
+ *
+ * @author Javier Garcia Alonso
+ */
+public class ServiceResultTest {
+
+    @Test
+    public void testDetailsWithSections() {
+        GetPaymentDetailsResponse.GetPaymentDetailsResult details = new GetPaymentDetailsResponse.GetPaymentDetailsResult();
+        details.setCommonResponse(new CommonResponse());
+        details.setPaymentResponse(new PaymentResponse());
+        details.setOrderResponse(new OrderResponse());
+        details.setCardResponse(new CardResponse());
+        details.setTokenResponse(new TokenResponse());
+
+        ServiceResult result = new ServiceResult(details, EnumSet.of(ResponseSection.PAYMENT, ResponseSection.ORDER));
+        Assert.assertNotNull(result.getPaymentResponse());
+        Assert.assertNotNull(result.getOrderResponse());
+        Assert.assertNull(result.getCardResponse());
+        Assert.assertNull(result.getTokenResponse());
+
+        result = new ServiceResult(details);
+        Assert.assertNotNull(result.getCommonResponse());
+        Assert.assertNotNull(result.getCardResponse());
+    }
+
+    @Test
+    public void testDetailsKeepTokenResponse() {
+        // Dropped before sections could be selected, kept now like every other section
+        GetPaymentDetailsResponse.GetPaymentDetailsResult details = new GetPaymentDetailsResponse.GetPaymentDetailsResult();
+        TokenResponse token = new TokenResponse();
+        details.setCommonResponse(new CommonResponse());
+        details.setTokenResponse(token);
+
+        Assert.assertSame(token, new ServiceResult(details).getTokenResponse());
+        Assert.assertSame(token, new ServiceResult(details, null).getTokenResponse());
+        Assert.assertSame(token, new ServiceResult(details, EnumSet.of(ResponseSection.TOKEN)).getTokenResponse());
+    }
+
+    @Test
+    public void testSectionsWithoutCommon() {
+        GetPaymentDetailsResponse.GetPaymentDetailsResult details = new GetPaymentDetailsResponse.GetPaymentDetailsResult();
+        CommonResponse common = new CommonResponse();
+        common.setResponseCode(0);
+        details.setCommonResponse(common);
+        details.setPaymentResponse(new PaymentResponse());
+
+        ServiceResult result = new ServiceResult(details, EnumSet.of(ResponseSection.PAYMENT));
+        Assert.assertSame(common, result.getCommonResponse());
+        Assert.assertNotNull(result.getPaymentResponse());
+
+        // The streaming parser decodes it too
+        Assert.assertEquals(new HashSet<>(Arrays.asList("commonResponse", "paymentResponse", "orderResponse")),
+                ResponseSection.elementNames(EnumSet.of(ResponseSection.PAYMENT, ResponseSection.ORDER)));
+    }
+}
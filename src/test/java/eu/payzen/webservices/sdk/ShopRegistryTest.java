@@ -0,0 +1,254 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.ws.WebServiceException;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import eu.payzen.webservices.sdk.metrics.Metrics;
+import eu.payzen.webservices.sdk.stub.PaymentStub;
+
+/**
+ * Tests of ShopRegistry against {@link PaymentStub}
+ *
+ * @author Javier Garcia Alonso
+ */
+public class ShopRegistryTest {
+
+    private static final String UNKNOWN_UUID = "0123456789abcdef0123456789abcdef";
+
+    private static PaymentStub stub;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        stub = PaymentStub.getBuilder()
+                .shop("10000001", "1000000000000001")
+                .shop("10000002", "1000000000000002")
+                .shop("10000003", "1000000000000003")
+                .build();
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        stub.close();
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        try (ShopRegistry registry = registry(2, 10)) {
+            details(registry, "10000001");
+            details(registry, "10000002");
+            details(registry, "10000001");
+            details(registry, "10000003");
+
+            Assert.assertEquals(2, registry.getActiveShopCount());
+            ShopStats evicted = registry.getStats("10000002");
+            Assert.assertFalse(evicted.isActive());
+            Assert.assertEquals(1, evicted.getEvictions());
+            Assert.assertFalse(Metrics.getDefaultRegistry().getShopIds("getPaymentDetails").contains("10000002"));
+            Assert.assertTrue(Metrics.getDefaultRegistry().getShopIds("getPaymentDetails").contains("10000001"));
+            Assert.assertTrue(registry.getStats("10000001").isActive());
+            Assert.assertEquals(2, registry.getStats("10000001").getCalls());
+
+            details(registry, "10000002");
+            Assert.assertEquals(2, registry.getStats("10000002").getClientsCreated());
+            Assert.assertEquals(2, registry.getStats("10000002").getCalls());
+            Assert.assertEquals(2, registry.getActiveShopCount());
+        }
+    }
+
+    @Test
+    public void testIdleEviction() throws Exception {
+        try (ShopRegistry registry = ShopRegistry.getBuilder().config(PayzenConfig.from(stub.config()))
+                .idleTimeout(50, TimeUnit.MILLISECONDS).build()) {
+            registry.register("10000001", "1000000000000001");
+            details(registry, "10000001");
+            Assert.assertEquals(1, registry.getStats("10000001").getIdlePorts());
+
+            Thread.sleep(100);
+            registry.evictIdle();
+            Assert.assertEquals(0, registry.getActiveShopCount());
+            Assert.assertFalse(registry.getStats("10000001").isActive());
+            Assert.assertEquals(1, registry.getStats("10000001").getEvictions());
+        }
+    }
+
+    @Test
+    public void testClientInUseIsNotEvicted() {
+        try (ShopRegistry registry = registry(1, 10)) {
+            ServiceResult result = registry.call("10000001", client -> {
+                details(registry, "10000002");
+                return client.details(UNKNOWN_UUID);
+            });
+            Assert.assertNotNull(result.getCommonResponse());
+            Assert.assertEquals(0, registry.getStats("10000001").getEvictions());
+
+            details(registry, "10000003");
+            Assert.assertEquals(1, registry.getActiveShopCount());
+            Assert.assertTrue(registry.getStats("10000003").isActive());
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testRegistrationChangedFromItsCall() {
+        try (ShopRegistry registry = registry(2, 10)) {
+            registry.call("10000001", client -> {
+                try {
+                    registry.unregister("10000001");
+                    Assert.fail("Shop unregistered from its call");
+                } catch (IllegalStateException e) {
+                    Assert.assertEquals("Registration of shop 10000001 changed from one of its calls", e.getMessage());
+                }
+                try {
+                    registry.register("10000001", "1000000000000001");
+                    Assert.fail("Shop replaced from its call");
+                } catch (IllegalStateException e) {
+                    // Expected
+                }
+                try {
+                    registry.close();
+                    Assert.fail("Registry closed from a call");
+                } catch (IllegalStateException e) {
+                    // Expected
+                }
+                // Other shops can still be changed
+                registry.unregister("10000002");
+                return null;
+            });
+            Assert.assertFalse(registry.getShopIds().contains("10000002"));
+            Assert.assertNotNull(details(registry, "10000001").getCommonResponse());
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testPendingStageKeepsItsClient() throws Exception {
+        try (ShopRegistry registry = registry(1, 10)) {
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            List<PaymentClient> clients = new ArrayList<>();
+            CompletableFuture<ServiceResult> pending = registry.call("10000001", client -> {
+                clients.add(client);
+                return client.async(c -> {
+                    started.countDown();
+                    await(release);
+                    return c.details(UNKNOWN_UUID);
+                });
+            });
+            started.await();
+
+            // Neither evicted to make room for another shop nor closed by its unregistration
+            details(registry, "10000002");
+            Assert.assertTrue(registry.getStats("10000001").isActive());
+            Assert.assertEquals(0, registry.getStats("10000001").getEvictions());
+            registry.unregister("10000001");
+            Assert.assertFalse(clients.get(0).isClosed());
+
+            release.countDown();
+            Assert.assertNotNull(pending.get(1, TimeUnit.MINUTES).getCommonResponse());
+            // Closed once the stage has completed
+            while (!clients.get(0).isClosed()) {
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    @Test
+    public void testUnknownShopAndErrors() {
+        try (ShopRegistry registry = registry(2, 10)) {
+            registry.register("10000004", "1000000000000004");
+            try {
+                details(registry, "99999999");
+                Assert.fail("Unknown shop accepted");
+            } catch (IllegalArgumentException e) {
+                Assert.assertEquals("Unknown shop: 99999999", e.getMessage());
+            }
+            try {
+                details(registry, "10000004");
+                Assert.fail("Shop unknown by the gateway accepted");
+            } catch (WebServiceException e) {
+                Assert.assertEquals(1, registry.getStats("10000004").getErrors());
+            }
+            registry.unregister("10000004");
+            Assert.assertNull(registry.getStats("10000004"));
+            Assert.assertEquals(3, registry.getShopIds().size());
+        }
+    }
+
+    @Test
+    public void testCallsRacingRegistration() throws Exception {
+        ShopRegistry registry = registry(10, 10);
+        ExecutorService threads = Executors.newFixedThreadPool(5);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                tasks.add(threads.submit(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        Assert.assertFalse(registry.call("10000001", PaymentClient::isClosed));
+                    }
+                }));
+            }
+            tasks.add(threads.submit(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    registry.register("10000001", "1000000000000001");
+                }
+            }));
+            for (Future<?> task : tasks) {
+                task.get(1, TimeUnit.MINUTES);
+            }
+
+            // No client was left on a replaced shop
+            Assert.assertEquals(registry.getStats("10000001").isActive() ? 1 : 0, registry.getActiveShopCount());
+        } finally {
+            threads.shutdownNow();
+            registry.close();
+        }
+        Assert.assertEquals(0, registry.getActiveShopCount());
+    }
+
+    private static ShopRegistry registry(int maxShops, int idleMinutes) {
+        ShopRegistry registry = ShopRegistry.getBuilder().config(PayzenConfig.from(stub.config()))
+                .maxShops(maxShops).idleTimeout(idleMinutes, TimeUnit.MINUTES).build();
+        registry.register("10000001", "1000000000000001");
+        registry.register("10000002", "1000000000000002");
+        registry.register("10000003", "1000000000000003");
+        return registry;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ServiceResult details(ShopRegistry registry, String shopId) {
+        return registry.call(shopId, client -> client.details(UNKNOWN_UUID));
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import eu.payzen.webservices.sdk.metrics.ConnectionMetrics;
+import eu.payzen.webservices.sdk.stub.PaymentStub;
+import eu.payzen.webservices.sdk.transport.HttpConnectionPool;
+
+/**
+ * Warms up the SDK against {@link PaymentStub} and checks that the first
+ * calls use what has been prepared
+ *
+ * @author Javier Garcia Alonso
+ */
+public class WarmUpTest {
+
+    private static final String CARD = "4970100000000003";
+
+    @Test
+    public void testClientWarmUp() throws Exception {
+        try (PaymentStub stub = PaymentStub.getBuilder().build()) {
+            PayzenConfig config = PayzenConfig.from(stub.config()).toBuilder().maxIdleConnections(2).build();
+            try (PaymentClient client = PaymentClient.getBuilder().config(config).poolSize(3).build()) {
+                WarmUpReport report = client.warmUpAsync(2).get(30, TimeUnit.SECONDS);
+                for (WarmUpStep step : WarmUpStep.values()) {
+                    Assert.assertTrue(report.toString(), report.get(step) > 0);
+                }
+                Assert.assertEquals(2, report.getConnections());
+                Assert.assertEquals(3, client.getIdleCount());
+                Assert.assertEquals(2, HttpConnectionPool.of(config).getIdleCount());
+
+                long requests = stub.getRequestCount();
+                long reused = ConnectionMetrics.getInstance().getReusedConnections();
+                Assert.assertEquals(0, (int) client.create("WarmUp", 100, 978, CARD, 12, 2030, "123")
+                        .getCommonResponse().getResponseCode());
+                Assert.assertEquals(requests + 1, stub.getRequestCount());
+                Assert.assertEquals(reused + 1, ConnectionMetrics.getInstance().getReusedConnections());
+                Assert.assertEquals(1, stub.getWsdlDownloadCount());
+                Assert.assertEquals(3, client.getIdleCount());
+            }
+        }
+    }
+
+    @Test
+    public void testStaticWarmUp() throws Exception {
+        try (PaymentStub stub = PaymentStub.getBuilder().tls().build()) {
+            PayzenConfig config = PayzenConfig.from(stub.config()).toBuilder()
+                    .sslContext(PaymentStub.clientSslContext()).build();
+            WarmUpReport report = Payment.warmUpAsync(config, 1).get(30, TimeUnit.SECONDS);
+            Assert.assertEquals(0, report.get(WarmUpStep.PORTS));
+            Assert.assertTrue(report.toString(), report.get(WarmUpStep.RUNTIME) > 0);
+            // One handshake without pool, the session is then resumed
+            Assert.assertEquals(1, report.getConnections());
+            Assert.assertEquals(report.getTotal(), report.get(WarmUpStep.RUNTIME) + report.get(WarmUpStep.SIGNING)
+                    + report.get(WarmUpStep.CONNECTIONS));
+
+            Assert.assertEquals(0, (int) Payment.create("WarmUp", 100, 978, CARD, 12, 2030, "123", config)
+                    .getCommonResponse().getResponseCode());
+            Assert.assertEquals(1, stub.getWsdlDownloadCount());
+        }
+    }
+
+    @Test
+    public void testWarmUpWithoutConnections() throws Exception {
+        try (PaymentStub stub = PaymentStub.getBuilder().build()) {
+            WarmUpReport report = Payment.warmUp(stub.config());
+            Assert.assertFalse(report.asMap().containsKey(WarmUpStep.CONNECTIONS));
+            Assert.assertEquals(0, report.getConnections());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosedClient() {
+        PaymentClient client = PaymentClient.create(PayzenConfig.getBuilder().endpointHost("localhost").build());
+        client.close();
+        client.warmUp();
+    }
+}
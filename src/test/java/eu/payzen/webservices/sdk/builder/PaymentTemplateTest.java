@@ -0,0 +1,87 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.builder;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.lyra.vads.ws.v5.CreatePayment;
+
+import eu.payzen.webservices.sdk.builder.request.CustomerRequestBuilder;
+import eu.payzen.webservices.sdk.builder.request.TechRequestBuilder;
+
+/**
+ * Tests of {@link PaymentTemplate}
+ *
+ * @author Javier Garcia Alonso
+ */
+public class PaymentTemplateTest {
+
+    @Test
+    public void testSharedPartsAreReused() {
+        PaymentTemplate template = PaymentTemplate.getBuilder()
+                .paymentSource("EC")
+                .contractNumber("123456")
+                .tech(TechRequestBuilder.create().integrationType("SDK").build())
+                .customer(CustomerRequestBuilder.create()
+                        .billingDetailsRequest(CustomerRequestBuilder.BillingDetailsRequestBuilder.create()
+                                .email("test@example.com").build())
+                        .build())
+                .build();
+
+        CreatePayment first = template.create("Order-1", 100, 978, "4970100000000003", 12, 2030, "123");
+        CreatePayment second = template.createWithToken("Order-2", 250, 978, "TOKEN");
+
+        Assert.assertNotSame(first.getCommonRequest(), second.getCommonRequest());
+        Assert.assertSame(first.getTechRequest(), second.getTechRequest());
+        Assert.assertSame(first.getCustomerRequest(), second.getCustomerRequest());
+        Assert.assertEquals("EC", first.getCommonRequest().getPaymentSource());
+        Assert.assertEquals("123456", first.getCommonRequest().getContractNumber());
+
+        Assert.assertEquals("Order-1", first.getOrderRequest().getOrderId());
+        Assert.assertEquals(Long.valueOf(100), first.getPaymentRequest().getAmount());
+        Assert.assertEquals("4970100000000003", first.getCardRequest().getNumber());
+
+        Assert.assertEquals("Order-2", second.getOrderRequest().getOrderId());
+        Assert.assertEquals(Long.valueOf(250), second.getPaymentRequest().getAmount());
+        Assert.assertEquals("TOKEN", second.getCardRequest().getPaymentToken());
+        Assert.assertNull(second.getCardRequest().getNumber());
+    }
+
+    @Test
+    public void testCommonRequestIsNotShared() {
+        PaymentTemplate template = PaymentTemplate.getBuilder().paymentSource("EC").comment("Template").build();
+
+        CreatePayment first = template.create("Order-1", 100, 978, "4970100000000003", 12, 2030, "123");
+        first.getCommonRequest().setComment("Changed for one payment");
+        first.getCommonRequest().setPaymentSource("MOTO");
+
+        CreatePayment second = template.create("Order-2", 100, 978, "4970100000000003", 12, 2030, "123");
+        Assert.assertEquals("Template", second.getCommonRequest().getComment());
+        Assert.assertEquals("EC", second.getCommonRequest().getPaymentSource());
+        Assert.assertEquals("Template", template.getComment());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testInvalidPaymentSource() {
+        PaymentTemplate.getBuilder().paymentSource("WEB").build();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBlankContractNumber() {
+        PaymentTemplate.getBuilder().contractNumber(" ").build();
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.client;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.ws.BindingProvider;
+import javax.xml.ws.WebServiceException;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lyra.vads.ws.v5.CommonResponse;
+import com.lyra.vads.ws.v5.GetPaymentDetailsResponse;
+import com.lyra.vads.ws.v5.PaymentAPI;
+
+import eu.payzen.webservices.sdk.metrics.CallPhase;
+import eu.payzen.webservices.sdk.metrics.DefaultMetricsRegistry;
+import eu.payzen.webservices.sdk.metrics.Metrics;
+import eu.payzen.webservices.sdk.metrics.PhaseTimings;
+import eu.payzen.webservices.sdk.tracing.Span;
+import eu.payzen.webservices.sdk.tracing.Tracing;
+
+/**
+ * Checks that the calls to a port wrapped by {@link MeteredPaymentAPI} are
+ * recorded in {@link Metrics}, with their phases and spans if enabled
+ *
+ * @author Javier Garcia Alonso
+ */
+public class MeteredPaymentAPITest {
+
+    private final DefaultMetricsRegistry registry = Metrics.getDefaultRegistry();
+    private final Map<String, Object> requestContext = new HashMap<>();
+
+    @Before
+    public void setUp() {
+        registry.reset();
+    }
+
+    @Test
+    public void testRecordsResultsAndExceptions() {
+        PaymentAPI port = MeteredPaymentAPI.wrap(fakePort(), "12345", false, 0);
+
+        GetPaymentDetailsResponse.GetPaymentDetailsResult result = port.getPaymentDetails(null, null);
+        Assert.assertEquals(Integer.valueOf(0), result.getCommonResponse().getResponseCode());
+        try {
+            port.findPayments(null);
+            Assert.fail();
+        } catch (WebServiceException e) {
+            Assert.assertEquals("unavailable", e.getMessage());
+        }
+
+        Assert.assertEquals(1, registry.getLatency("getPaymentDetails", "12345").getCount());
+        Assert.assertEquals(Long.valueOf(1), registry.getResponseCodeCounts("getPaymentDetails").get(0));
+        Assert.assertEquals(Long.valueOf(1),
+                registry.getExceptionCounts("findPayments").get(WebServiceException.class.getName()));
+
+        // Still usable as a binding provider
+        ((BindingProvider) port).getRequestContext().put("key", "value");
+        Assert.assertEquals("value", requestContext.get("key"));
+        Assert.assertNull(ClientV5.getPhaseTimings(port));
+    }
+
+    @Test
+    public void testPhaseTimings() {
+        PaymentAPI port = MeteredPaymentAPI.wrap(fakePort(), "12345", true, 1000);
+
+        port.getPaymentDetails(null, null);
+        PhaseTimings first = ClientV5.getPhaseTimings(port);
+        Assert.assertEquals(1000, first.get(CallPhase.CLIENT_INIT));
+        for (CallPhase phase : new CallPhase[] { CallPhase.MARSHAL, CallPhase.SIGN, CallPhase.SERVER,
+                CallPhase.UNMARSHAL }) {
+            Assert.assertTrue(phase.name(), first.isMeasured(phase));
+        }
+        Assert.assertTrue(first.get(CallPhase.SERVER) >= 2000000);
+
+        // The client is only created once
+        port.getPaymentDetails(null, null);
+        Assert.assertFalse(ClientV5.getPhaseTimings(port).isMeasured(CallPhase.CLIENT_INIT));
+        Assert.assertEquals(2, registry.getPhaseLatency("getPaymentDetails", CallPhase.SERVER).getCount());
+
+        // Failed before any response: the rest of the call is not unmarshalling
+        try {
+            port.findPayments(null);
+            Assert.fail();
+        } catch (WebServiceException e) {
+            Assert.assertFalse(ClientV5.getPhaseTimings(port).isMeasured(CallPhase.UNMARSHAL));
+        }
+    }
+
+    @Test
+    public void testTracing() {
+        final Map<String, Object> attributes = new HashMap<>();
+        Tracing.setTracer((operation, shopId) -> new Span() {
+            @Override
+            public Span setAttribute(String key, String value) {
+                attributes.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Span setAttribute(String key, long value) {
+                attributes.put(key, value);
+                return this;
+            }
+
+            @Override
+            public void recordError(Throwable error) {
+                attributes.put("error", error.getMessage());
+            }
+
+            @Override
+            public void end() {
+                attributes.put("operation", operation + "/" + shopId);
+            }
+        });
+        try {
+            PaymentAPI port = MeteredPaymentAPI.wrap(fakePort(), "12345", false, 0);
+
+            port.getPaymentDetails(null, null);
+            Assert.assertEquals("getPaymentDetails/12345", attributes.get("operation"));
+            Assert.assertEquals("request-1", attributes.get(Span.REQUEST_ID));
+            Assert.assertEquals(0L, attributes.get(Span.RESPONSE_CODE));
+            Assert.assertFalse(requestContext.containsKey(Span.CONTEXT_PROPERTY));
+
+            try {
+                port.findPayments(null);
+                Assert.fail();
+            } catch (WebServiceException e) {
+                Assert.assertEquals("findPayments/12345", attributes.get("operation"));
+                Assert.assertEquals("unavailable", attributes.get("error"));
+            }
+        } finally {
+            Tracing.setTracer(null);
+        }
+    }
+
+    private PaymentAPI fakePort() {
+        return (PaymentAPI) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { PaymentAPI.class, BindingProvider.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "getPaymentDetails":
+                        Span span = (Span) requestContext.get(Span.CONTEXT_PROPERTY);
+                        if (span != null) {
+                            span.setAttribute(Span.REQUEST_ID, "request-1");
+                        }
+                        // Marks set by the handler chain
+                        PhaseTimings timings = (PhaseTimings) requestContext.get(PhaseTimings.CONTEXT_PROPERTY);
+                        if (timings != null) {
+                            timings.mark(CallPhase.MARSHAL);
+                            timings.mark(CallPhase.SIGN);
+                            Thread.sleep(2);
+                            timings.mark(CallPhase.SERVER);
+                        }
+                        GetPaymentDetailsResponse.GetPaymentDetailsResult result =
+                                new GetPaymentDetailsResponse.GetPaymentDetailsResult();
+                        result.setCommonResponse(new CommonResponse());
+                        result.getCommonResponse().setResponseCode(0);
+                        return result;
+                    case "getRequestContext":
+                        return requestContext;
+                    case "getResponseContext":
+                        return new HashMap<String, Object>();
+                    default:
+                        throw new WebServiceException("unavailable");
+                    }
+                });
+    }
+}
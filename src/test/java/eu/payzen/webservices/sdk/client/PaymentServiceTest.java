@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.lyra.vads.ws.v5.PaymentAPI;
+
+import eu.payzen.webservices.sdk.Payment;
+import eu.payzen.webservices.sdk.PayzenConfig;
+import eu.payzen.webservices.sdk.ServiceResult;
+import eu.payzen.webservices.sdk.stub.PaymentStub;
+
+/**
+ * Checks that the clients of a WSDL share its {@link PaymentService} while
+ * keeping their own handlers
+ *
+ * @author Javier Garcia Alonso
+ */
+public class PaymentServiceTest {
+
+    private static final String CARD = "4970100000000003";
+    private static final String OTHER_SHOP_ID = "87654321";
+
+    @Test
+    public void testServiceIsShared() throws Exception {
+        try (PaymentStub stub = PaymentStub.getBuilder().shop(PaymentStub.DEFAULT_SHOP_ID, PaymentStub.DEFAULT_SHOP_KEY)
+                .shop(OTHER_SHOP_ID, "2222222222222222").build()) {
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                List<Future<ServiceResult>> results = new ArrayList<>();
+                for (int i = 0; i < 8; i++) {
+                    String shopId = i % 2 == 0 ? PaymentStub.DEFAULT_SHOP_ID : OTHER_SHOP_ID;
+                    String orderId = "Shared-" + i;
+                    results.add(executor.submit((Callable<ServiceResult>) () -> Payment.create(orderId, 100, 978,
+                            CARD, 12, 2030, "123", stub.config(shopId))));
+                }
+                for (Future<ServiceResult> result : results) {
+                    // The header of each client is signed with the key of its shop
+                    Assert.assertEquals(0, (int) result.get().getCommonResponse().getResponseCode());
+                }
+            } finally {
+                executor.shutdown();
+            }
+            Assert.assertEquals(1, stub.getWsdlDownloadCount());
+            Assert.assertSame(PaymentService.of(PayzenConfig.from(stub.config()), null),
+                    PaymentService.of(PayzenConfig.from(stub.config(OTHER_SHOP_ID)), null));
+        }
+    }
+
+    @Test
+    public void testPortsAreDistinct() throws Exception {
+        try (PaymentStub stub = PaymentStub.getBuilder().build()) {
+            PaymentAPI first = new ClientV5(stub.config()).getPaymentAPIImplPort();
+            PaymentAPI second = new ClientV5(stub.config()).getPaymentAPIImplPort();
+            Assert.assertNotSame(first, second);
+            Assert.assertEquals(1, stub.getWsdlDownloadCount());
+        }
+    }
+}
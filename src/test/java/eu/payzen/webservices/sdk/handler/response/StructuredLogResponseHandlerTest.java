@@ -0,0 +1,143 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.handler.response;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.lyra.vads.ws.v5.CardResponse;
+import com.lyra.vads.ws.v5.CommonResponse;
+import com.lyra.vads.ws.v5.CreatePaymentResponse;
+import com.lyra.vads.ws.v5.OrderResponse;
+import com.lyra.vads.ws.v5.PaymentResponse;
+
+import eu.payzen.webservices.sdk.ServiceResult;
+import eu.payzen.webservices.sdk.util.EnvelopeMasker;
+
+/**
+ * Checks the content, the sampling and the overflow of
+ * {@link StructuredLogResponseHandler}
+ *
+ * @author Javier Garcia Alonso
+ */
+public class StructuredLogResponseHandlerTest {
+
+    @Test
+    public void testFormatsAllowedFieldsAndMasksCards() {
+        try (StructuredLogResponseHandler handler = StructuredLogResponseHandler.getBuilder()
+                .fields("commonResponse.responseCode", "orderResponse.orderId", "cardResponse.*").build()) {
+            String event = handler.format(result(0, "Order \"1\""));
+
+            Assert.assertEquals("{\"commonResponse.responseCode\":0,\"orderResponse.orderId\":\"Order \\\"1\\\"\","
+                    + "\"cardResponse.brand\":\"CB\",\"cardResponse.expiryMonth\":12,"
+                    + "\"cardResponse.number\":\"497010XXXXXX0055\"}", event);
+        }
+    }
+
+    @Test
+    public void testMasking() {
+        Assert.assertEquals("497010XXXXXX0055", SensitiveData.mask("comment", "4970100000000055"));
+        Assert.assertEquals("4970100000000056", SensitiveData.mask("comment", "4970100000000056"));
+        Assert.assertNull(SensitiveData.mask("cardSecurityCode", "123"));
+        Assert.assertEquals(Long.valueOf(4970100000000055L), SensitiveData.mask("amount", 4970100000000055L));
+    }
+
+    @Test
+    public void testMaskingMatchesEnvelopes() {
+        // Test cards do not have a valid Luhn checksum
+        Assert.assertEquals("497010XXXXXX0003", SensitiveData.mask("number", "4970100000000003"));
+        Assert.assertEquals("497010XXXXXX0003", SensitiveData.mask("cardNumber", "4970100000000003"));
+        Assert.assertNull(SensitiveData.mask("authToken", "token"));
+
+        String envelope = "<card><number>4970100000000003</number><cardNumber>4970100000000003</cardNumber>"
+                + "<comment>4970100000000003</comment></card>";
+        Assert.assertEquals("<card><number>497010XXXXXX0003</number><cardNumber>497010XXXXXX0003</cardNumber>"
+                + "<comment>4970100000000003</comment></card>", EnvelopeMasker.mask(envelope));
+        Assert.assertEquals("4970100000000003", SensitiveData.mask("comment", "4970100000000003"));
+    }
+
+    @Test
+    public void testSampling() throws InterruptedException {
+        List<String> events = new CopyOnWriteArrayList<>();
+        StructuredLogResponseHandler handler = StructuredLogResponseHandler.getBuilder().sampleRatio(0)
+                .sink(events::add).build();
+        for (int i = 0; i < 100; i++) {
+            handler.handle(result(0, "Order-" + i));
+        }
+        handler.handle(result(13, "Failed"));
+        handler.close();
+
+        Assert.assertEquals(100, handler.getSampledOutEvents());
+        Assert.assertEquals(1, handler.getLoggedEvents());
+        Assert.assertTrue(events.get(0).contains("\"orderResponse.orderId\":\"Failed\""));
+
+        StructuredLogResponseHandler limited = StructuredLogResponseHandler.getBuilder().maxEventsPerSecond(10)
+                .sink(events::add).build();
+        for (int i = 0; i < 100; i++) {
+            limited.handle(result(0, "Order-" + i));
+        }
+        limited.close();
+        // At most two one-second windows have been crossed
+        Assert.assertTrue(limited.getLoggedEvents() >= 10 && limited.getLoggedEvents() <= 20);
+        Assert.assertEquals(100, limited.getLoggedEvents() + limited.getSampledOutEvents());
+    }
+
+    @Test
+    public void testDropsWhenQueueIsFull() throws InterruptedException {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        StructuredLogResponseHandler handler = StructuredLogResponseHandler.getBuilder().queueCapacity(2)
+                .sink(event -> {
+                    writing.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }).build();
+
+        // The first event blocks the writer, two more fill the queue
+        handler.handle(result(0, "Order-0"));
+        writing.await();
+        for (int i = 1; i <= 5; i++) {
+            handler.handle(result(0, "Order-" + i));
+        }
+        release.countDown();
+        handler.close();
+
+        Assert.assertEquals(3, handler.getDroppedEvents());
+        Assert.assertEquals(3, handler.getLoggedEvents());
+    }
+
+    private static ServiceResult result(int responseCode, String orderId) {
+        CreatePaymentResponse.CreatePaymentResult result = new CreatePaymentResponse.CreatePaymentResult();
+        result.setCommonResponse(new CommonResponse());
+        result.getCommonResponse().setResponseCode(responseCode);
+        result.setOrderResponse(new OrderResponse());
+        result.getOrderResponse().setOrderId(orderId);
+        result.setPaymentResponse(new PaymentResponse());
+        result.getPaymentResponse().setAmount(1000L);
+        result.setCardResponse(new CardResponse());
+        result.getCardResponse().setNumber("4970100000000055");
+        result.getCardResponse().setBrand("CB");
+        result.getCardResponse().setExpiryMonth(12);
+        return new ServiceResult(result, null);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.handler.soap;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import eu.payzen.webservices.sdk.util.EnvelopeMasker;
+
+/**
+ * Checks the masking of the captured envelopes and the ring buffer of each shop
+ *
+ * @author Javier Garcia Alonso
+ */
+public class SoapCaptureTest {
+
+    @After
+    public void clear() {
+        SoapCapture.clear();
+    }
+
+    @Test
+    public void testMask() {
+        String envelope = "<S:Envelope xmlns:S=\"http://schemas.xmlsoap.org/soap/envelope/\"><S:Header>"
+                + "<requestId xmlns=\"http://v5.ws.vads.lyra.com/Header/\">1234</requestId>"
+                + "<authToken xmlns=\"http://v5.ws.vads.lyra.com/Header/\">LKLHAes+YYhMx+Udbd=</authToken></S:Header>"
+                + "<S:Body><ns2:createPayment xmlns:ns2=\"http://v5.ws.vads.lyra.com/\"><paymentRequest>"
+                + "<amount>4970100000000003</amount><transactionId>4111111111111111</transactionId>"
+                + "</paymentRequest><cardRequest><number>4970100000000003</number><scheme>VISA</scheme>"
+                + "<cardSecurityCode>123</cardSecurityCode><cardHolderName/></cardRequest>"
+                + "</ns2:createPayment></S:Body></S:Envelope>";
+
+        String masked = EnvelopeMasker.mask(envelope);
+
+        Assert.assertTrue(masked.contains("<requestId xmlns=\"http://v5.ws.vads.lyra.com/Header/\">1234</requestId>"));
+        Assert.assertTrue(masked.contains(">****</authToken>"));
+        // Numbers that are not card numbers are kept
+        Assert.assertTrue(masked.contains("<amount>4970100000000003</amount>"));
+        Assert.assertTrue(masked.contains("<transactionId>411111XXXXXX1111</transactionId>"));
+        Assert.assertTrue(masked.contains("<number>497010XXXXXX0003</number><scheme>VISA</scheme>"));
+        Assert.assertTrue(masked.contains("<cardSecurityCode>****</cardSecurityCode><cardHolderName/>"));
+    }
+
+    @Test
+    public void testKeepsLastExchangesOfEachShop() {
+        for (int i = 0; i < 5; i++) {
+            SoapCapture.add(exchange("12345", "request-" + i), 3);
+        }
+        SoapCapture.add(exchange("67890", "request-5"), 3);
+
+        List<SoapExchange> exchanges = SoapCapture.getExchanges("12345");
+        Assert.assertEquals(3, exchanges.size());
+        Assert.assertEquals("request-2", exchanges.get(0).getRequestId());
+        Assert.assertEquals("request-4", exchanges.get(2).getRequestId());
+        Assert.assertEquals(1, SoapCapture.getExchanges("67890").size());
+        Assert.assertTrue(SoapCapture.getExchanges("00000").isEmpty());
+
+        Assert.assertArrayEquals(new String[] {"12345", "67890"}, SoapCapture.getShopIds().toArray());
+        String dump = SoapCapture.dump();
+        Assert.assertTrue(dump.indexOf("requestId=request-2") < dump.indexOf("requestId=request-4"));
+        Assert.assertTrue(dump.indexOf("requestId=request-4") < dump.indexOf("requestId=request-5"));
+        Assert.assertTrue(dump.contains("--- response\n(none)"));
+    }
+
+    private static SoapExchange exchange(String shopId, String requestId) {
+        return new SoapExchange(shopId, "createPayment", requestId, System.currentTimeMillis(), 10,
+                "<request/>", null, false, false);
+    }
+}
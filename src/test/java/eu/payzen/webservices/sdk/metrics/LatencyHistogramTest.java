@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the precision of {@link LatencyHistogram} and that no value is lost
+ * when it is updated concurrently
+ *
+ * @author Javier Garcia Alonso
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i, TimeUnit.MICROSECONDS);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(10000, snapshot.getCount());
+        Assert.assertEquals(1000, snapshot.getMin());
+        Assert.assertEquals(10000000, snapshot.getMax());
+        Assert.assertEquals(5000500, snapshot.getMean(), 0.001);
+        assertClose(5000000, snapshot.getPercentile(50));
+        assertClose(9000000, snapshot.getPercentile(90));
+        assertClose(9990000, snapshot.getPercentile(99.9));
+        Assert.assertEquals(10000000, snapshot.getPercentile(100));
+    }
+
+    @Test
+    public void testBuckets() {
+        long previous = -1;
+        for (long value : new long[] { 0, 1, 31, 32, 33, 63, 64, 1000, 123456789, 1L << 39, (1L << 40) - 1 }) {
+            int bucket = LatencyHistogram.bucket(value);
+            Assert.assertTrue(value <= LatencyHistogram.highestValue(bucket));
+            Assert.assertTrue(bucket == 0 || value > LatencyHistogram.highestValue(bucket - 1));
+            Assert.assertTrue(value > previous);
+            previous = value;
+        }
+        // Longer durations go to the last bucket
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(-1);
+        Assert.assertEquals(Long.MAX_VALUE, histogram.snapshot().getPercentile(100));
+        Assert.assertEquals(0, histogram.snapshot().getPercentile(50));
+    }
+
+    @Test
+    public void testConcurrentRecording() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 100000; i++) {
+                    histogram.record(i % 1000);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(800000, histogram.getCount());
+        Assert.assertEquals(800000, histogram.snapshot().getCount());
+        Assert.assertEquals(999, histogram.snapshot().getMax());
+    }
+
+    private static void assertClose(long expected, long actual) {
+        Assert.assertEquals(expected, actual, expected * 0.032);
+    }
+}
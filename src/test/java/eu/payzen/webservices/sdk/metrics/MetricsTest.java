@@ -0,0 +1,161 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lyra.vads.ws.v5.CommonResponse;
+import com.lyra.vads.ws.v5.CreatePaymentResponse;
+
+/**
+ * Checks the values recorded by {@link Metrics} and their export through JMX
+ *
+ * @author Javier Garcia Alonso
+ */
+public class MetricsTest {
+
+    private final DefaultMetricsRegistry registry = Metrics.getDefaultRegistry();
+
+    @Before
+    public void setUp() {
+        registry.reset();
+    }
+
+    @After
+    public void tearDown() {
+        registry.reset();
+    }
+
+    @Test
+    public void testRecordsLatenciesAndCounters() {
+        registry.recordCall("testOperation", "12345", TimeUnit.MILLISECONDS.toNanos(10), 0, null);
+        registry.recordCall("testOperation", "12345", TimeUnit.MILLISECONDS.toNanos(20), 0, null);
+        registry.recordCall("testOperation", "67890", TimeUnit.MILLISECONDS.toNanos(30), 13, null);
+        registry.recordCall("testOperation", null, TimeUnit.MILLISECONDS.toNanos(40), null,
+                new IllegalStateException());
+
+        Assert.assertEquals(4, registry.getLatency("testOperation").getCount());
+        Assert.assertEquals(2, registry.getLatency("testOperation", "12345").getCount());
+        Assert.assertEquals(1, registry.getLatency("testOperation", null).getCount());
+        Assert.assertEquals(0, registry.getLatency("otherOperation", "12345").getCount());
+        Assert.assertTrue(registry.getShopIds("testOperation").contains("67890"));
+        Assert.assertEquals(Long.valueOf(2), registry.getResponseCodeCounts("testOperation").get(0));
+        Assert.assertEquals(Long.valueOf(1), registry.getResponseCodeCounts("testOperation").get(13));
+        Assert.assertEquals(Long.valueOf(1),
+                registry.getExceptionCounts("testOperation").get(IllegalStateException.class.getName()));
+    }
+
+    @Test
+    public void testShopsAreBoundedAndRemoved() {
+        DefaultMetricsRegistry bounded = new DefaultMetricsRegistry(2);
+        bounded.recordCall("testOperation", "1", 10, 0, null);
+        bounded.recordCall("testOperation", "2", 10, 0, null);
+        bounded.recordCall("testOperation", "3", 10, 0, null);
+
+        Assert.assertEquals(3, bounded.getLatency("testOperation").getCount());
+        Assert.assertEquals(2, bounded.getShopIds("testOperation").size());
+        Assert.assertEquals(0, bounded.getLatency("testOperation", "3").getCount());
+
+        bounded.removeShop("1");
+        bounded.recordCall("testOperation", "3", 10, 0, null);
+        Assert.assertFalse(bounded.getShopIds("testOperation").contains("1"));
+        Assert.assertEquals(1, bounded.getLatency("testOperation", "3").getCount());
+        Assert.assertEquals(4, bounded.getLatency("testOperation").getCount());
+    }
+
+    @Test
+    public void testResponseCode() {
+        CreatePaymentResponse.CreatePaymentResult result = new CreatePaymentResponse.CreatePaymentResult();
+        Assert.assertNull(Metrics.responseCode(result));
+
+        result.setCommonResponse(new CommonResponse());
+        result.getCommonResponse().setResponseCode(2);
+        Assert.assertEquals(Integer.valueOf(2), Metrics.responseCode(result));
+
+        CreatePaymentResponse response = new CreatePaymentResponse();
+        response.setCreatePaymentResult(result);
+        Assert.assertEquals(Integer.valueOf(2), Metrics.responseCode(response));
+        Assert.assertNull(Metrics.responseCode("not a result"));
+    }
+
+    @Test
+    public void testAddedRegistriesReceiveCalls() {
+        final List<String> calls = new ArrayList<>();
+        MetricsRegistry custom = (operation, shopId, durationNanos, responseCode, error) -> calls
+                .add(operation + "/" + shopId + "/" + responseCode);
+        Metrics.addRegistry(custom);
+        try {
+            CreatePaymentResponse.CreatePaymentResult result = new CreatePaymentResponse.CreatePaymentResult();
+            result.setCommonResponse(new CommonResponse());
+            result.getCommonResponse().setResponseCode(0);
+            Metrics.recordCall("createPayment", "12345", System.nanoTime(), result, null);
+        } finally {
+            Metrics.removeRegistry(custom);
+        }
+
+        Assert.assertEquals(1, calls.size());
+        Assert.assertEquals("createPayment/12345/0", calls.get(0));
+        Assert.assertEquals(1, registry.getLatency("createPayment", "12345").getCount());
+    }
+
+    @Test
+    public void testRecordsPhases() {
+        PhaseTimings timings = new PhaseTimings();
+        timings.add(CallPhase.SIGN, TimeUnit.MICROSECONDS.toNanos(100));
+        timings.add(CallPhase.SERVER, TimeUnit.MILLISECONDS.toNanos(80));
+        Metrics.recordPhases("testOperation", "12345", timings);
+
+        Assert.assertEquals(1, registry.getPhaseLatency("testOperation", CallPhase.SERVER).getCount());
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(80),
+                registry.getPhaseLatency("testOperation", CallPhase.SERVER).getMax());
+        Assert.assertEquals(0, registry.getPhaseLatency("testOperation", CallPhase.CONNECT).getCount());
+    }
+
+    @Test
+    public void testJmxExport() throws Exception {
+        Metrics.registerJmx();
+        registry.recordCall("jmxOperation", "12345", TimeUnit.MILLISECONDS.toNanos(5), 0, null);
+        PhaseTimings timings = new PhaseTimings();
+        timings.add(CallPhase.SERVER, TimeUnit.MILLISECONDS.toNanos(4));
+        registry.recordPhases("jmxOperation", "12345", timings);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName latency = new ObjectName(JmxExporter.DOMAIN + ":type=Latency,operation=jmxOperation,shopId=12345");
+        Assert.assertEquals(1L, server.getAttribute(latency, "Count"));
+        Assert.assertEquals(5.0, (Double) server.getAttribute(latency, "99thPercentile"), 0.2);
+        ObjectName phase = new ObjectName(JmxExporter.DOMAIN + ":type=Latency,operation=jmxOperation,phase=SERVER");
+        Assert.assertEquals(4.0, (Double) server.getAttribute(phase, "Max"), 0.001);
+
+        TabularData responseCodes = (TabularData) server.getAttribute(new ObjectName(JmxExporter.DOMAIN
+                + ":type=Calls"), "ResponseCodes");
+        Assert.assertEquals(1L, responseCodes.get(new Object[] { "jmxOperation:0" }).get("value"));
+
+        Metrics.removeShop("12345");
+        Assert.assertFalse(server.isRegistered(latency));
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.metrics;
+
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks how {@link PhaseTimings} assigns time to the phases
+ *
+ * @author Javier Garcia Alonso
+ */
+public class PhaseTimingsTest {
+
+    @Test
+    public void testMarks() throws InterruptedException {
+        long start = System.nanoTime();
+        PhaseTimings timings = new PhaseTimings();
+        timings.add(CallPhase.CLIENT_INIT, 1000);
+        Thread.sleep(5);
+        timings.mark(CallPhase.MARSHAL);
+        timings.mark(CallPhase.SERVER);
+        timings.mark(CallPhase.SERVER);
+        long elapsed = System.nanoTime() - start;
+
+        Assert.assertTrue(timings.isMeasured(CallPhase.MARSHAL));
+        Assert.assertFalse(timings.isMeasured(CallPhase.CONNECT));
+        Assert.assertEquals(0, timings.get(CallPhase.CONNECT));
+        Assert.assertTrue(timings.get(CallPhase.MARSHAL) >= 5000000);
+        Assert.assertTrue(timings.getTotal() - 1000 <= elapsed);
+
+        Map<CallPhase, Long> phases = timings.asMap();
+        Assert.assertArrayEquals(new Object[] { CallPhase.CLIENT_INIT, CallPhase.MARSHAL, CallPhase.SERVER },
+                phases.keySet().toArray());
+        Assert.assertTrue(timings.toString().startsWith("CLIENT_INIT=0.001ms, MARSHAL="));
+    }
+}
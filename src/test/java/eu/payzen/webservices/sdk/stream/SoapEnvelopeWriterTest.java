@@ -0,0 +1,172 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.stream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+import javax.xml.soap.MessageFactory;
+import javax.xml.soap.SOAPMessage;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.lyra.vads.ws.v5.*;
+
+import eu.payzen.webservices.sdk.builder.PaymentBuilder;
+import eu.payzen.webservices.sdk.builder.request.CardRequestBuilder;
+import eu.payzen.webservices.sdk.builder.request.CustomerRequestBuilder;
+import eu.payzen.webservices.sdk.builder.request.OrderRequestBuilder;
+import eu.payzen.webservices.sdk.builder.request.PaymentRequestBuilder;
+import eu.payzen.webservices.sdk.builder.request.TechRequestBuilder;
+import eu.payzen.webservices.sdk.builder.request.ThreeDSRequestBuilder;
+
+/**
+ * Checks that {@link SoapEnvelopeWriter} produces the same bytes as JAXB
+ *
+ * @author Javier Garcia Alonso
+ */
+public class SoapEnvelopeWriterTest {
+
+    @Test
+    public void testFullRequestMatchesJaxb() throws Exception {
+        ExtInfo extInfo = new ExtInfo();
+        extInfo.setKey("key");
+        extInfo.setValue("<value & more>");
+        OrderRequest order = OrderRequestBuilder.create().orderId("Order-é-€-😀").build();
+        order.getExtInfo().add(extInfo);
+        order.getExtInfo().add(new ExtInfo());
+
+        CartItemInfo item = new CartItemInfo();
+        item.setProductLabel("Label \"quoted\" 'single'\r\n\ttab");
+        item.setProductType(ProductType.FOOD_AND_GROCERY);
+        item.setProductQty(2);
+        ShoppingCartRequest shoppingCart = new ShoppingCartRequest();
+        shoppingCart.setTaxAmount(10);
+        shoppingCart.getCartItemInfo().add(item);
+
+        CreatePayment request = PaymentBuilder.getBuilder()
+                .paymentSource("EC")
+                .contractNumber("")
+                .comment("Comment with ]]> and <![CDATA[")
+                .submissionDate(new Date(1500000000000L))
+                .order(order)
+                .payment(PaymentRequestBuilder.create().amount(-12345678901L).currency(978).build())
+                .card(CardRequestBuilder.create().number("4970100000000003").scheme("CB")
+                        .expiryMonth(12).expiryYear(2030).cardSecurityCode("123")
+                        .cardHolderBirthDay(new Date(0)).build())
+                .threeDS(ThreeDSRequestBuilder.create().mode(ThreeDSMode.ENABLED_CREATE).build())
+                .customer(CustomerRequestBuilder.create()
+                        .billingDetailsRequest(CustomerRequestBuilder.BillingDetailsRequestBuilder.create()
+                                .type(CustStatus.COMPANY).email("test@example.com").build())
+                        .build())
+                .tech(TechRequestBuilder.create().browserUserAgent("Mozilla/5.0").build())
+                .shoppingCart(shoppingCart)
+                .buildCreate();
+
+        assertSameAsJaxb(request);
+    }
+
+    @Test
+    public void testEmptyRequestsMatchJaxb() throws Exception {
+        assertSameAsJaxb(new CreatePayment());
+
+        CreatePayment request = new CreatePayment();
+        request.setCommonRequest(new CommonRequest());
+        request.setCardRequest(new CardRequest());
+        assertSameAsJaxb(request);
+    }
+
+    @Test
+    public void testEnvelopeIsValidSoap() throws Exception {
+        Map<String, String> header = new LinkedHashMap<>();
+        header.put("shopId", "12345678");
+        header.put("requestId", "a&b");
+
+        CreatePayment request = new CreatePayment();
+        request.setCommonRequest(new CommonRequest());
+
+        SoapEnvelopeWriter writer = new SoapEnvelopeWriter(16);
+        writer.writeRequest(header, "createPayment", request);
+
+        SOAPMessage message = MessageFactory.newInstance()
+                .createMessage(null, new ByteArrayInputStream(writer.toByteArray()));
+        Assert.assertEquals("a&b", message.getSOAPHeader()
+                .getElementsByTagNameNS(SoapEnvelopeWriter.HEADER_NAMESPACE, "requestId").item(0).getTextContent());
+        Assert.assertEquals("createPayment", message.getSOAPBody().getFirstChild().getLocalName());
+
+        // Reused writer only contains the last request
+        writer.reset().writeOperation("createPayment", request);
+        Assert.assertEquals(jaxb(request), new String(writer.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testUnpairedSurrogatesAreReplaced() throws Exception {
+        Map<String, String> header = new LinkedHashMap<>();
+        header.put("requestId", "a\uD83Db\uDE00c\uD83D");
+
+        SoapEnvelopeWriter writer = new SoapEnvelopeWriter();
+        writer.writeRequest(header, "createPayment", new CreatePayment());
+
+        SOAPMessage message = MessageFactory.newInstance()
+                .createMessage(null, new ByteArrayInputStream(writer.toByteArray()));
+        Assert.assertEquals("a\uFFFDb\uFFFDc\uFFFD", message.getSOAPHeader()
+                .getElementsByTagNameNS(SoapEnvelopeWriter.HEADER_NAMESPACE, "requestId").item(0).getTextContent());
+    }
+
+    @Test
+    public void testNullHeaderValuesAreSkipped() throws Exception {
+        Map<String, String> header = new LinkedHashMap<>();
+        header.put("shopId", "12345678");
+        header.put("mode", null);
+
+        SoapEnvelopeWriter writer = new SoapEnvelopeWriter();
+        writer.writeRequest(header, "createPayment", new CreatePayment());
+
+        SOAPMessage message = MessageFactory.newInstance()
+                .createMessage(null, new ByteArrayInputStream(writer.toByteArray()));
+        Assert.assertEquals(1, message.getSOAPHeader()
+                .getElementsByTagNameNS(SoapEnvelopeWriter.HEADER_NAMESPACE, "shopId").getLength());
+        Assert.assertEquals(0, message.getSOAPHeader()
+                .getElementsByTagNameNS(SoapEnvelopeWriter.HEADER_NAMESPACE, "mode").getLength());
+    }
+
+    private static void assertSameAsJaxb(CreatePayment request) throws Exception {
+        SoapEnvelopeWriter writer = new SoapEnvelopeWriter();
+        writer.writeOperation("createPayment", request);
+
+        Assert.assertArrayEquals(jaxb(request).getBytes(StandardCharsets.UTF_8), writer.toByteArray());
+    }
+
+    private static String jaxb(CreatePayment request) throws Exception {
+        Marshaller marshaller = JAXBContext.newInstance(CreatePayment.class).createMarshaller();
+        marshaller.setProperty(Marshaller.JAXB_FRAGMENT, true);
+        marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        marshaller.marshal(new JAXBElement<>(new QName(SoapEnvelopeWriter.API_NAMESPACE, "createPayment"),
+                CreatePayment.class, request), out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.stream;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.lyra.vads.ws.v5.FindPaymentsResponse;
+import com.lyra.vads.ws.v5.TransactionItem;
+
+/**
+ * Checks that {@link SoapResponseIterator} reads the items one by one
+ *
+ * @author Javier Garcia Alonso
+ */
+public class SoapResponseIteratorTest {
+
+    private static final String START = "<S:Envelope xmlns:S=\"http://schemas.xmlsoap.org/soap/envelope/\"><S:Body>"
+            + "<ns2:findPaymentsResponse xmlns:ns2=\"http://v5.ws.vads.lyra.com/\"><findPaymentsResult>"
+            + "<commonResponse><responseCode>0</responseCode></commonResponse>"
+            + "<orderResponse><orderId>Order-1</orderId></orderResponse>";
+    private static final String END = "</findPaymentsResult></ns2:findPaymentsResponse></S:Body></S:Envelope>";
+
+    @Test
+    public void testReadsLargeResponsesIncrementally() {
+        int items = 200000;
+        GeneratedResponse in = new GeneratedResponse(items);
+        SoapResponseIterator<TransactionItem> iterator = new SoapResponseIterator<>(in, FindPaymentsResponse.class,
+                "transactionItem", TransactionItem.class);
+
+        long count = 0;
+        long total = 0;
+        while (iterator.hasNext()) {
+            TransactionItem item = iterator.next();
+            Assert.assertEquals("uuid-" + count, item.getTransactionUuid());
+            total += item.getAmount();
+            count++;
+
+            // The response is read as the items are consumed, not before
+            Assert.assertTrue(in.generated < count + 1000);
+        }
+
+        Assert.assertEquals(items, count);
+        Assert.assertEquals((long) items * (items - 1) / 2, total);
+        Assert.assertTrue(in.closed);
+
+        FindPaymentsResponse.FindPaymentsResult result = iterator.getResult(FindPaymentsResponse.FindPaymentsResult.class);
+        Assert.assertEquals(Integer.valueOf(0), result.getCommonResponse().getResponseCode());
+        Assert.assertEquals("Order-1", result.getOrderResponse().getOrderId());
+        Assert.assertTrue(result.getTransactionItem().isEmpty());
+    }
+
+    @Test
+    public void testCloseBeforeTheEnd() {
+        GeneratedResponse in = new GeneratedResponse(10000);
+        SoapResponseIterator<TransactionItem> iterator = new SoapResponseIterator<>(in, FindPaymentsResponse.class,
+                "transactionItem", TransactionItem.class);
+
+        Assert.assertEquals("uuid-0", iterator.next().getTransactionUuid());
+        iterator.close();
+
+        Assert.assertTrue(in.closed);
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testEmptyResult() {
+        InputStream in = new ByteArrayInputStream((START + END).getBytes(StandardCharsets.UTF_8));
+        SoapResponseIterator<TransactionItem> iterator = new SoapResponseIterator<>(in, FindPaymentsResponse.class,
+                "transactionItem", TransactionItem.class);
+
+        Assert.assertFalse(iterator.hasNext());
+        Assert.assertEquals("Order-1", iterator.getResult(FindPaymentsResponse.FindPaymentsResult.class)
+                .getOrderResponse().getOrderId());
+    }
+
+    /**
+     * findPayments response whose items are generated while it is read
+     */
+    private static final class GeneratedResponse extends InputStream {
+        private final int items;
+        private InputStream current = new ByteArrayInputStream(START.getBytes(StandardCharsets.UTF_8));
+        int generated;
+        boolean closed;
+
+        GeneratedResponse(int items) {
+            this.items = items;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = current.read(b, off, len);
+            while (read == -1 && generated <= items) {
+                String xml = generated == items ? END
+                        : "<transactionItem><transactionUuid>uuid-" + generated + "</transactionUuid>"
+                                + "<transactionStatusLabel>CAPTURED</transactionStatusLabel>"
+                                + "<amount>" + generated + "</amount><currency>978</currency></transactionItem>";
+                generated++;
+                current = new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+                read = current.read(b, off, len);
+            }
+            return read;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
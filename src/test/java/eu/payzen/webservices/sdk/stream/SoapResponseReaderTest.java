@@ -0,0 +1,234 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.stream;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.ws.WebServiceException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.lyra.vads.ws.v5.FindPaymentsResponse;
+import com.lyra.vads.ws.v5.GetPaymentDetailsResponse;
+import com.lyra.vads.ws.v5.ObjectFactory;
+
+/**
+ * Checks that {@link SoapResponseReader} decodes the same objects as JAXB
+ *
+ * @author Javier Garcia Alonso
+ */
+public class SoapResponseReaderTest {
+
+    @Test
+    public void testPaymentDetailsMatchesJaxb() throws Exception {
+        GetPaymentDetailsResponse response = populate(GetPaymentDetailsResponse.class, 0);
+        byte[] envelope = envelope("getPaymentDetailsResponse", response);
+
+        GetPaymentDetailsResponse decoded = SoapResponseReader.read(new ByteArrayInputStream(envelope),
+                GetPaymentDetailsResponse.class);
+
+        Assert.assertEquals(body("getPaymentDetailsResponse", jaxb(envelope, GetPaymentDetailsResponse.class)),
+                body("getPaymentDetailsResponse", decoded));
+        Assert.assertEquals(body("getPaymentDetailsResponse", response), body("getPaymentDetailsResponse", decoded));
+    }
+
+    @Test
+    public void testFindPaymentsMatchesJaxb() throws Exception {
+        FindPaymentsResponse response = populate(FindPaymentsResponse.class, 0);
+        byte[] envelope = envelope("findPaymentsResponse", response);
+
+        FindPaymentsResponse decoded = SoapResponseReader.read(new ByteArrayInputStream(envelope),
+                FindPaymentsResponse.class);
+
+        Assert.assertEquals(2, decoded.getFindPaymentsResult().getTransactionItem().size());
+        Assert.assertEquals(body("findPaymentsResponse", jaxb(envelope, FindPaymentsResponse.class)),
+                body("findPaymentsResponse", decoded));
+    }
+
+    @Test
+    public void testSkipsUnrequestedSections() {
+        GetPaymentDetailsResponse response = populate(GetPaymentDetailsResponse.class, 0);
+        byte[] envelope = envelope("getPaymentDetailsResponse", response);
+
+        GetPaymentDetailsResponse.GetPaymentDetailsResult result = SoapResponseReader.read(
+                new ByteArrayInputStream(envelope), GetPaymentDetailsResponse.class,
+                new HashSet<>(Arrays.asList("commonResponse", "paymentResponse"))).getGetPaymentDetailsResult();
+
+        Assert.assertNotNull(result.getCommonResponse());
+        Assert.assertNotNull(result.getPaymentResponse().getAmount());
+        Assert.assertNull(result.getOrderResponse());
+        Assert.assertNull(result.getCardResponse());
+        Assert.assertNull(result.getCustomerResponse());
+        Assert.assertNotNull(result.getRequestId());
+    }
+
+    @Test
+    public void testCountsSkippedSections() {
+        GetPaymentDetailsResponse response = populate(GetPaymentDetailsResponse.class, 0);
+        byte[] envelope = envelope("getPaymentDetailsResponse", response);
+        String full = body("getPaymentDetailsResponse", response);
+
+        // Keep only commonResponse: skipped size is the size of the other sections
+        GetPaymentDetailsResponse.GetPaymentDetailsResult result = response.getGetPaymentDetailsResult();
+        result.setPaymentResponse(null);
+        result.setOrderResponse(null);
+        result.setCardResponse(null);
+        result.setAuthorizationResponse(null);
+        result.setCaptureResponse(null);
+        result.setCustomerResponse(null);
+        result.setMarkResponse(null);
+        result.setSubscriptionResponse(null);
+        result.setExtraResponse(null);
+        result.setFraudManagementResponse(null);
+        result.setThreeDSResponse(null);
+        result.setTokenResponse(null);
+        String kept = body("getPaymentDetailsResponse", response);
+
+        ReadStats stats = new ReadStats();
+        SoapResponseReader.read(new ByteArrayInputStream(envelope), GetPaymentDetailsResponse.class,
+                Collections.singleton("commonResponse"), stats);
+
+        // Offsets are in characters, the populated values contain a few non ASCII ones
+        long expected = full.getBytes(StandardCharsets.UTF_8).length - kept.getBytes(StandardCharsets.UTF_8).length;
+        Assert.assertTrue(stats.getSkippedBytes() > expected * 0.9);
+        Assert.assertTrue(stats.getSkippedBytes() <= expected);
+    }
+
+    @Test
+    public void testSkipsUnknownAndNilElements() {
+        String envelope = "<?xml version='1.0' encoding='UTF-8'?>"
+                + "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\""
+                + " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">"
+                + "<soap:Header><shopId xmlns=\"http://v5.ws.vads.lyra.com/Header/\">12345678</shopId></soap:Header>"
+                + "<soap:Body><ns:findPaymentsResponse xmlns:ns=\"http://v5.ws.vads.lyra.com/\">\n"
+                + "  <findPaymentsResult>\n"
+                + "    <!-- comment -->\n"
+                + "    <newSection><a><b>ignored</b></a></newSection>\n"
+                + "    <commonResponse><responseCode>0</responseCode><responseCodeDetail xsi:nil=\"true\"/>"
+                + "<transactionStatusLabel>AUTHORISED</transactionStatusLabel></commonResponse>\n"
+                + "    <transactionItem><transactionUuid>a</transactionUuid><amount>100</amount></transactionItem>\n"
+                + "    <transactionItem><transactionUuid>b</transactionUuid><newField>x</newField></transactionItem>\n"
+                + "  </findPaymentsResult>\n"
+                + "</ns:findPaymentsResponse></soap:Body></soap:Envelope>";
+
+        FindPaymentsResponse.FindPaymentsResult result = SoapResponseReader.read(
+                new ByteArrayInputStream(envelope.getBytes(StandardCharsets.UTF_8)), FindPaymentsResponse.class)
+                .getFindPaymentsResult();
+
+        Assert.assertEquals(Integer.valueOf(0), result.getCommonResponse().getResponseCode());
+        Assert.assertNull(result.getCommonResponse().getResponseCodeDetail());
+        Assert.assertEquals("AUTHORISED", result.getCommonResponse().getTransactionStatusLabel());
+        Assert.assertEquals(2, result.getTransactionItem().size());
+        Assert.assertEquals(Long.valueOf(100), result.getTransactionItem().get(0).getAmount());
+        Assert.assertEquals("b", result.getTransactionItem().get(1).getTransactionUuid());
+    }
+
+    @Test
+    public void testFaultIsThrown() {
+        String envelope = "<S:Envelope xmlns:S=\"http://schemas.xmlsoap.org/soap/envelope/\"><S:Body>"
+                + "<S:Fault><faultcode>S:Server</faultcode><faultstring>Invalid authToken</faultstring>"
+                + "<detail><code>1</code></detail></S:Fault></S:Body></S:Envelope>";
+        try {
+            SoapResponseReader.read(new ByteArrayInputStream(envelope.getBytes(StandardCharsets.UTF_8)),
+                    GetPaymentDetailsResponse.class);
+            Assert.fail("Fault expected");
+        } catch (WebServiceException e) {
+            Assert.assertEquals("SOAP fault S:Server: Invalid authToken", e.getMessage());
+        }
+    }
+
+    private static byte[] envelope(String operation, Object response) {
+        SoapEnvelopeWriter writer = new SoapEnvelopeWriter();
+        writer.writeRequest(Collections.singletonMap("shopId", "12345678"), operation, response);
+        return writer.toByteArray();
+    }
+
+    private static String body(String operation, Object response) {
+        SoapEnvelopeWriter writer = new SoapEnvelopeWriter();
+        writer.writeOperation(operation, response);
+        return new String(writer.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static <T> T jaxb(byte[] envelope, Class<T> type) throws Exception {
+        XMLStreamReader reader = XMLInputFactory.newInstance()
+                .createXMLStreamReader(new ByteArrayInputStream(envelope));
+        SoapResponseReader.moveToBodyContent(reader);
+        return JAXBContext.newInstance(ObjectFactory.class).createUnmarshaller().unmarshal(reader, type).getValue();
+    }
+
+    // Fills every property so that all the value kinds are decoded
+    @SuppressWarnings("unchecked")
+    static <T> T populate(Class<T> type, int depth) {
+        XmlBinding binding = XmlBinding.of(type);
+        Object bean = binding.newInstance();
+        for (XmlBinding.Property property : binding.getProperties()) {
+            if (property.kind == XmlBinding.Kind.COMPLEX && depth > 4) {
+                continue;
+            }
+            if (property.list) {
+                List<Object> list = (List<Object>) property.get(bean);
+                if (list == null) {
+                    list = new ArrayList<>();
+                    property.set(bean, list);
+                }
+                list.add(value(property, depth));
+                list.add(value(property, depth));
+            } else {
+                property.set(bean, value(property, depth));
+            }
+        }
+        return (T) bean;
+    }
+
+    private static Object value(XmlBinding.Property property, int depth) {
+        switch (property.kind) {
+            case STRING:
+                return property.name + " <é&€>";
+            case LONG:
+                return 4990L;
+            case INTEGER:
+                return 978;
+            case BOOLEAN:
+                return Boolean.TRUE;
+            case DOUBLE:
+                return 1.5d;
+            case DECIMAL:
+                return new BigDecimal("12.50");
+            case DATE_TIME:
+                try {
+                    return DatatypeFactory.newInstance().newXMLGregorianCalendar("2018-06-01T10:15:30.000+02:00");
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            case ENUM:
+                return property.valueType.getEnumConstants()[0];
+            default:
+                return populate(property.valueType, depth + 1);
+        }
+    }
+}
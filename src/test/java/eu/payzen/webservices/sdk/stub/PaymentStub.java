@@ -0,0 +1,694 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.stub;
+
+import com.lyra.vads.ws.v5.CancelPayment;
+import com.lyra.vads.ws.v5.CreatePayment;
+import com.lyra.vads.ws.v5.CreateTokenFromTransaction;
+import com.lyra.vads.ws.v5.FindPayments;
+import com.lyra.vads.ws.v5.GetPaymentDetails;
+import com.lyra.vads.ws.v5.ObjectFactory;
+import com.lyra.vads.ws.v5.RefundPayment;
+import com.lyra.vads.ws.v5.UpdatePayment;
+import com.lyra.vads.ws.v5.ValidatePayment;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import eu.payzen.webservices.sdk.stream.SoapEnvelopeWriter;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Embedded stub of the v5 payment web services, to test the SDK without
+ * network access or gateway credentials.<p>
+ *
+ * It is served by the JDK HTTP server on a loopback port: the WSDL of the v5
+ * API, and the createPayment, getPaymentDetails, findPayments, cancelPayment,
+ * updatePayment, validatePayment, refundPayment and createTokenFromTransaction
+ * operations on transactions kept in memory. The authentication token of the
+ * SOAP header is checked with the key of the shop, every response sets a
+ * JSESSIONID cookie, and the builder allows to add latency, SOAP faults and
+ * unavailability to a share of the calls. With {@link Builder#tls()} it is
+ * served over HTTPS with a self-signed certificate of localhost, trusted by
+ * {@link #clientSslContext()}:
+ *
+ * <pre>
+ * try (PaymentStub stub = PaymentStub.getBuilder().latency(5, 20).faultRatio(0.01).build()) {
+ *     ServiceResult result = Payment.create(payment, stub.config());
+ * }
+ * </pre>
+ *
+ * @author Javier Garcia Alonso
+ */
+public final class PaymentStub implements Closeable {
+
+    public static final String DEFAULT_SHOP_ID = "12345678";
+    public static final String DEFAULT_SHOP_KEY = "1111111111111111";
+
+    static final String PATH = "/vads-ws/v5";
+
+    private static final String SOAP_NAMESPACE = "http://schemas.xmlsoap.org/soap/envelope/";
+    private static final String WSDL_RESOURCE = "/eu/payzen/webservices/sdk/client/v5";
+    private static final String GATEWAY_ADDRESS = "https://secure.payzen.eu/vads-ws/v5";
+    private static final String SESSION_COOKIE = "JSESSIONID";
+    private static final String KEY_STORE = "/eu/payzen/webservices/sdk/stub/stub.p12";
+    private static final char[] KEY_STORE_PASSWORD = "changeit".toCharArray();
+
+    private final Map<String, String> shops;
+    private final long minLatencyMillis;
+    private final long maxLatencyMillis;
+    private final double faultRatio;
+    private final double unavailableRatio;
+    private final Random random;
+    private final StubGateway gateway;
+    private final JAXBContext jaxbContext;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String endpointHost;
+    private final boolean tls;
+    private final boolean keepAlive;
+    private final byte[] wsdl;
+    private final byte[] xsd;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder faults = new LongAdder();
+    private final LongAdder wsdlDownloads = new LongAdder();
+    private volatile String lastRequestId;
+
+    private PaymentStub(Builder builder) throws IOException {
+        shops = new LinkedHashMap<>(builder.shops);
+        if (shops.isEmpty()) {
+            shops.put(DEFAULT_SHOP_ID, DEFAULT_SHOP_KEY);
+        }
+        minLatencyMillis = builder.minLatencyMillis;
+        maxLatencyMillis = builder.maxLatencyMillis;
+        faultRatio = builder.faultRatio;
+        unavailableRatio = builder.unavailableRatio;
+        random = builder.seed != null ? new Random(builder.seed) : new Random();
+        gateway = new StubGateway(new HashSet<>(builder.refusedCards), random);
+        try {
+            jaxbContext = JAXBContext.newInstance(ObjectFactory.class);
+        } catch (JAXBException e) {
+            throw new IllegalStateException(e);
+        }
+
+        tls = builder.tls;
+        keepAlive = builder.keepAlive;
+        InetSocketAddress loopback = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        if (tls) {
+            HttpsServer httpsServer = HttpsServer.create(loopback, 0);
+            httpsServer.setHttpsConfigurator(new HttpsConfigurator(serverSslContext()));
+            server = httpsServer;
+        } else {
+            server = HttpServer.create(loopback, 0);
+        }
+        executor = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "payment-stub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        endpointHost = "localhost:" + server.getAddress().getPort();
+        String address = (tls ? "https://" : "http://") + endpointHost + PATH;
+        // The WSDL bundled with the library, with the addresses of the stub
+        wsdl = new String(read(WSDL_RESOURCE + ".wsdl"), StandardCharsets.UTF_8)
+                .replace("schemaLocation=\"v5.xsd\"", "schemaLocation=\"" + address + "?xsd=1\"")
+                .replace(GATEWAY_ADDRESS, address).getBytes(StandardCharsets.UTF_8);
+        xsd = read(WSDL_RESOURCE + ".xsd");
+        server.createContext(PATH, this::handle);
+        server.start();
+    }
+
+    public static Builder getBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Gets the host and port to set as <code>endpointHost</code>
+     *
+     * @return e.g. localhost:49152
+     */
+    public String getEndpointHost() {
+        return endpointHost;
+    }
+
+    /**
+     * Gets the configuration to call the stub with the first shop
+     *
+     * @return new mutable map, to pass to the SDK operations
+     */
+    public Map<String, String> config() {
+        Map.Entry<String, String> shop = shops.entrySet().iterator().next();
+        return config(shop.getKey());
+    }
+
+    /**
+     * Gets the configuration to call the stub with a shop
+     *
+     * @param shopId identifier of a shop of the stub
+     * @return new mutable map, to pass to the SDK operations
+     */
+    public Map<String, String> config(String shopId) {
+        Map<String, String> config = new HashMap<>();
+        config.put("shopId", shopId);
+        config.put("shopKey", shops.get(shopId));
+        config.put("mode", "TEST");
+        config.put("endpointHost", endpointHost);
+        config.put("secureConnection", String.valueOf(tls));
+        return config;
+    }
+
+    /**
+     * Gets a client context that trusts the certificate of the stub, to set
+     * with {@link eu.payzen.webservices.sdk.PayzenConfig.Builder#sslContext(SSLContext)}
+     *
+     * @return new context
+     */
+    public static SSLContext clientSslContext() {
+        try {
+            TrustManagerFactory trust = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            trust.init(keyStore());
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(null, trust.getTrustManagers(), null);
+            return context;
+        } catch (GeneralSecurityException | IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Captures the authorised transactions, as the daily remittance of the
+     * gateway does, so they can be refunded
+     *
+     * @return number of transactions captured
+     */
+    public int capture() {
+        return gateway.capture();
+    }
+
+    /**
+     * Gets the status of a transaction without calling the stub
+     *
+     * @param uuid transaction identifier
+     * @return status label, null if the transaction does not exist
+     */
+    public String getTransactionStatus(String uuid) {
+        return gateway.getStatus(uuid);
+    }
+
+    public int getTransactionCount() {
+        return gateway.size();
+    }
+
+    /**
+     * @return number of SOAP requests received, including the rejected ones
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * @return number of times the WSDL has been downloaded, once as the JAX-WS clients share the service of a WSDL
+     */
+    public long getWsdlDownloadCount() {
+        return wsdlDownloads.sum();
+    }
+
+    /**
+     * @return requestId found in the header of the last SOAP request, null if none has been received
+     */
+    public String getLastRequestId() {
+        return lastRequestId;
+    }
+
+    /**
+     * @return number of requests rejected because of an unknown shop or a wrong authentication token
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return number of faults and unavailable responses injected
+     */
+    public long getInjectedFaultCount() {
+        return faults.sum();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static SSLContext serverSslContext() throws IOException {
+        try {
+            KeyManagerFactory keys = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            keys.init(keyStore(), KEY_STORE_PASSWORD);
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(keys.getKeyManagers(), null, null);
+            return context;
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Gets the certificate served by the stub, issued for localhost and 127.0.0.1
+     *
+     * @return certificate of the stub
+     */
+    public static X509Certificate certificate() {
+        try {
+            return (X509Certificate) keyStore().getCertificate("stub");
+        } catch (GeneralSecurityException | IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static KeyStore keyStore() throws GeneralSecurityException, IOException {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = PaymentStub.class.getResourceAsStream(KEY_STORE)) {
+            keyStore.load(in, KEY_STORE_PASSWORD);
+        }
+        return keyStore;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        if (!keepAlive) {
+            exchange.getResponseHeaders().set("Connection", "close");
+        }
+        try {
+            String query = exchange.getRequestURI().getQuery();
+            if ("GET".equals(exchange.getRequestMethod())) {
+                if ("wsdl".equalsIgnoreCase(query)) {
+                    wsdlDownloads.increment();
+                    send(exchange, 200, wsdl);
+                } else if ("xsd=1".equals(query)) {
+                    send(exchange, 200, xsd);
+                } else {
+                    exchange.sendResponseHeaders(404, -1);
+                }
+                return;
+            }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            byte[] request = readAll(exchange.getRequestBody());
+            requests.increment();
+            sleep();
+            double draw;
+            synchronized (random) {
+                draw = random.nextDouble();
+            }
+            if (draw < unavailableRatio) {
+                faults.increment();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            if (draw < unavailableRatio + faultRatio) {
+                faults.increment();
+                sendFault(exchange, "soap:Server", "Internal error injected by the stub");
+                return;
+            }
+            process(exchange, request);
+        } catch (Exception e) {
+            sendFault(exchange, "soap:Server", String.valueOf(e));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void process(HttpExchange exchange, byte[] request) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        Document document = factory.newDocumentBuilder().parse(new ByteArrayInputStream(request));
+        Element envelope = document.getDocumentElement();
+        Element header = child(envelope, SOAP_NAMESPACE, "Header");
+        Element body = child(envelope, SOAP_NAMESPACE, "Body");
+        Element operation = body != null ? firstElement(body) : null;
+        if (operation == null) {
+            sendFault(exchange, "soap:Client", "Empty SOAP body");
+            return;
+        }
+
+        Map<String, String> fields = new HashMap<>();
+        if (header != null) {
+            for (Node node = header.getFirstChild(); node != null; node = node.getNextSibling()) {
+                if (node instanceof Element && SoapEnvelopeWriter.HEADER_NAMESPACE.equals(node.getNamespaceURI())) {
+                    fields.put(node.getLocalName(), node.getTextContent().trim());
+                }
+            }
+        }
+        lastRequestId = fields.get("requestId");
+        String shopId = fields.get("shopId");
+        if (!authenticated(shopId, fields.get("requestId"), fields.get("timestamp"), fields.get("authToken"))) {
+            rejected.increment();
+            sendFault(exchange, "soap:Client", "Invalid authentication token or unknown shop");
+            return;
+        }
+
+        String name = operation.getLocalName();
+        Object result;
+        switch (name) {
+            case "createPayment":
+                result = gateway.createPayment(shopId, unmarshal(operation, CreatePayment.class));
+                break;
+            case "getPaymentDetails":
+                result = gateway.getPaymentDetails(shopId, unmarshal(operation, GetPaymentDetails.class));
+                break;
+            case "findPayments":
+                result = gateway.findPayments(shopId, unmarshal(operation, FindPayments.class));
+                break;
+            case "cancelPayment":
+                result = gateway.cancelPayment(shopId, unmarshal(operation, CancelPayment.class));
+                break;
+            case "updatePayment":
+                result = gateway.updatePayment(shopId, unmarshal(operation, UpdatePayment.class));
+                break;
+            case "validatePayment":
+                result = gateway.validatePayment(shopId, unmarshal(operation, ValidatePayment.class));
+                break;
+            case "refundPayment":
+                result = gateway.refundPayment(shopId, unmarshal(operation, RefundPayment.class));
+                break;
+            case "createTokenFromTransaction":
+                result = gateway.createTokenFromTransaction(shopId,
+                        unmarshal(operation, CreateTokenFromTransaction.class));
+                break;
+            default:
+                sendFault(exchange, "soap:Client", "Operation not implemented by the stub: " + name);
+                return;
+        }
+        sendResult(exchange, name, result);
+    }
+
+    private boolean authenticated(String shopId, String requestId, String timestamp, String authToken)
+            throws GeneralSecurityException {
+        String shopKey = shopId != null ? shops.get(shopId) : null;
+        if (shopKey == null || requestId == null || timestamp == null || authToken == null) {
+            return false;
+        }
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(shopKey.getBytes(StandardCharsets.UTF_8), "RAW"));
+        byte[] expected = mac.doFinal((requestId + timestamp).getBytes(StandardCharsets.UTF_8));
+        byte[] received;
+        try {
+            received = Base64.getDecoder().decode(authToken);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return MessageDigest.isEqual(expected, received);
+    }
+
+    private <T> T unmarshal(Element element, Class<T> type) throws JAXBException {
+        return jaxbContext.createUnmarshaller().unmarshal(element, type).getValue();
+    }
+
+    // The result is the <operation>Result child of the <operation>Response element, like in the WSDL
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void sendResult(HttpExchange exchange, String operation, Object result) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        out.write(("<soap:Envelope xmlns:soap=\"" + SOAP_NAMESPACE + "\"><soap:Body><ns2:" + operation
+                + "Response xmlns:ns2=\"" + SoapEnvelopeWriter.API_NAMESPACE + "\">").getBytes(StandardCharsets.UTF_8));
+        Marshaller marshaller = jaxbContext.createMarshaller();
+        marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+        marshaller.marshal(new JAXBElement(new QName("", operation + "Result"), result.getClass(), result), out);
+        out.write(("</ns2:" + operation + "Response></soap:Body></soap:Envelope>").getBytes(StandardCharsets.UTF_8));
+        setSession(exchange);
+        send(exchange, 200, out.toByteArray());
+    }
+
+    private void sendFault(HttpExchange exchange, String code, String message) throws IOException {
+        String fault = "<soap:Envelope xmlns:soap=\"" + SOAP_NAMESPACE + "\"><soap:Body><soap:Fault>"
+                + "<faultcode>" + code + "</faultcode><faultstring>" + escape(message) + "</faultstring>"
+                + "</soap:Fault></soap:Body></soap:Envelope>";
+        setSession(exchange);
+        send(exchange, 500, fault.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // The session of the request is kept, a new one is opened otherwise
+    private static void setSession(HttpExchange exchange) {
+        String session = null;
+        List<String> cookies = exchange.getRequestHeaders().get("Cookie");
+        if (cookies != null) {
+            for (String header : cookies) {
+                for (String cookie : header.split(";")) {
+                    String trimmed = cookie.trim();
+                    if (trimmed.startsWith(SESSION_COOKIE + "=")) {
+                        session = trimmed.substring(SESSION_COOKIE.length() + 1);
+                    }
+                }
+            }
+        }
+        if (session == null) {
+            session = UUID.randomUUID().toString().replace("-", "").toUpperCase() + ".stub";
+        }
+        exchange.getResponseHeaders().set("Set-Cookie", SESSION_COOKIE + "=" + session + "; Path=/vads-ws; HttpOnly");
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private void sleep() throws InterruptedException {
+        long millis = minLatencyMillis;
+        if (maxLatencyMillis > minLatencyMillis) {
+            synchronized (random) {
+                millis += (long) (random.nextDouble() * (maxLatencyMillis - minLatencyMillis + 1));
+            }
+        }
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+
+    private static Element child(Element parent, String namespace, String localName) {
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element && namespace.equals(node.getNamespaceURI())
+                    && localName.equals(node.getLocalName())) {
+                return (Element) node;
+            }
+        }
+        return null;
+    }
+
+    private static Element firstElement(Element parent) {
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element) {
+                return (Element) node;
+            }
+        }
+        return null;
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] read(String resource) throws IOException {
+        try (InputStream in = PaymentStub.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("Missing resource " + resource);
+            }
+            return readAll(in);
+        }
+    }
+
+    /**
+     * Builder of {@link PaymentStub}
+     */
+    public static final class Builder {
+        private final Map<String, String> shops = new LinkedHashMap<>();
+        private final Set<String> refusedCards = new HashSet<>();
+        private long minLatencyMillis;
+        private long maxLatencyMillis;
+        private double faultRatio;
+        private double unavailableRatio;
+        private Long seed;
+        private boolean tls;
+        private boolean keepAlive = true;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a shop accepted by the stub. Without shops, {@link #DEFAULT_SHOP_ID} is accepted.
+         *
+         * @param shopId shop identifier
+         * @param shopKey key used to check the authentication token
+         * @return this builder
+         */
+        public Builder shop(String shopId, String shopKey) {
+            shops.put(shopId, shopKey);
+            return this;
+        }
+
+        /**
+         * @param millis delay added to every SOAP response
+         * @return this builder
+         */
+        public Builder latency(long millis) {
+            return latency(millis, millis);
+        }
+
+        /**
+         * @param minMillis lowest delay added to the SOAP responses
+         * @param maxMillis highest delay, delays are uniformly distributed
+         * @return this builder
+         */
+        public Builder latency(long minMillis, long maxMillis) {
+            if (minMillis < 0 || maxMillis < minMillis) {
+                throw new IllegalArgumentException("Invalid latency range: " + minMillis + "-" + maxMillis);
+            }
+            this.minLatencyMillis = minMillis;
+            this.maxLatencyMillis = maxMillis;
+            return this;
+        }
+
+        /**
+         * @param ratio share of the calls answered with a SOAP fault (HTTP 500), between 0 and 1
+         * @return this builder
+         */
+        public Builder faultRatio(double ratio) {
+            this.faultRatio = ratio(ratio);
+            return this;
+        }
+
+        /**
+         * @param ratio share of the calls answered with HTTP 503 and no body, between 0 and 1
+         * @return this builder
+         */
+        public Builder unavailableRatio(double ratio) {
+            this.unavailableRatio = ratio(ratio);
+            return this;
+        }
+
+        /**
+         * @param seed seed of the latencies, injected faults and generated numbers, to repeat a run
+         * @return this builder
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Serves the stub over HTTPS, with a certificate trusted by
+         * {@link PaymentStub#clientSslContext()}
+         *
+         * @return this builder
+         */
+        public Builder tls() {
+            this.tls = true;
+            return this;
+        }
+
+        /**
+         * @param keepAlive false to close the connection after each response
+         * @return this builder
+         */
+        public Builder keepAlive(boolean keepAlive) {
+            this.keepAlive = keepAlive;
+            return this;
+        }
+
+        /**
+         * @param cardNumber card number whose payments are refused
+         * @return this builder
+         */
+        public Builder refusedCard(String cardNumber) {
+            refusedCards.add(cardNumber);
+            return this;
+        }
+
+        /**
+         * Starts the stub
+         *
+         * @return started stub, to close after use
+         * @throws IOException if the server cannot be started
+         */
+        public PaymentStub build() throws IOException {
+            if (faultRatio + unavailableRatio > 1) {
+                throw new IllegalArgumentException("faultRatio + unavailableRatio must not exceed 1");
+            }
+            return new PaymentStub(this);
+        }
+
+        private static double ratio(double ratio) {
+            if (ratio < 0 || ratio > 1) {
+                throw new IllegalArgumentException("Ratio must be between 0 and 1: " + ratio);
+            }
+            return ratio;
+        }
+    }
+}
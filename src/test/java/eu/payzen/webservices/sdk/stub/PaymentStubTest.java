@@ -0,0 +1,203 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.stub;
+
+import com.lyra.vads.ws.v5.TransactionItem;
+import eu.payzen.webservices.sdk.Payment;
+import eu.payzen.webservices.sdk.PayzenConfig;
+import eu.payzen.webservices.sdk.ServiceResult;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.xml.ws.WebServiceException;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs the payment operations of the SDK against {@link PaymentStub}
+ *
+ * @author Javier Garcia Alonso
+ */
+public class PaymentStubTest {
+
+    private static final String CARD = "4970100000000003";
+    private static final String REFUSED_CARD = "4970100000000097";
+
+    private static PaymentStub stub;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        stub = PaymentStub.getBuilder()
+                .shop(PaymentStub.DEFAULT_SHOP_ID, PaymentStub.DEFAULT_SHOP_KEY)
+                .refusedCard(REFUSED_CARD)
+                .seed(42)
+                .build();
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        stub.close();
+    }
+
+    @Test
+    public void testPaymentLifecycle() {
+        lifecycle(false);
+    }
+
+    @Test
+    public void testPaymentLifecycleStreaming() {
+        lifecycle(true);
+    }
+
+    @Test
+    public void testCancelAndValidate() {
+        String uuid = create("StubCancel", CARD, stub.config()).getPaymentResponse().getTransactionUuid();
+
+        assertEquals(0, code(Payment.cancel(uuid, stub.config())));
+        assertEquals("CANCELLED", stub.getTransactionStatus(uuid));
+        assertEquals(StubGateway.NOT_ALLOWED, code(Payment.cancel(uuid, stub.config())));
+        assertEquals(StubGateway.NOT_ALLOWED, code(Payment.validate(uuid, "Too late", stub.config())));
+    }
+
+    @Test
+    public void testSharedConfig() {
+        Map<String, String> map = config(true);
+        String uuid = create("StubShared", CARD, map).getPaymentResponse().getTransactionUuid();
+        assertEquals(0, code(Payment.details(uuid, map)));
+
+        PayzenConfig config = PayzenConfig.from(map);
+        assertEquals(0, code(Payment.details(uuid, config)));
+        assertEquals(0, code(Payment.cancel(uuid, config)));
+        assertEquals("CANCELLED", stub.getTransactionStatus(uuid));
+    }
+
+    @Test
+    public void testRefusedCard() {
+        ServiceResult result = create("StubRefused", REFUSED_CARD, stub.config());
+
+        assertEquals(0, code(result));
+        assertEquals("REFUSED", result.getCommonResponse().getTransactionStatusLabel());
+        assertEquals(Integer.valueOf(5), result.getAuthorizationResponse().getResult());
+    }
+
+    @Test
+    public void testUnknownTransaction() {
+        assertEquals(StubGateway.NOT_FOUND, code(Payment.details("0123456789abcdef0123456789abcdef", stub.config())));
+    }
+
+    @Test
+    public void testRequestId() {
+        for (boolean streaming : new boolean[] { false, true }) {
+            ServiceResult result = create("StubRequestId", CARD, config(streaming));
+            assertNotNull(result.getRequestId());
+            assertEquals(stub.getLastRequestId(), result.getRequestId());
+
+            result = Payment.details(result.getPaymentResponse().getTransactionUuid(), config(streaming));
+            assertEquals(stub.getLastRequestId(), result.getRequestId());
+        }
+    }
+
+    @Test
+    public void testWrongShopKey() {
+        Map<String, String> config = stub.config();
+        config.put("shopKey", "2222222222222222");
+        long rejected = stub.getRejectedCount();
+        try {
+            create("StubWrongKey", CARD, config);
+            fail("Request signed with a wrong key accepted");
+        } catch (WebServiceException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Invalid authentication token"));
+        }
+        assertEquals(rejected + 1, stub.getRejectedCount());
+    }
+
+    @Test
+    public void testLatencyAndFaults() throws Exception {
+        try (PaymentStub slow = PaymentStub.getBuilder().latency(50).build()) {
+            long start = System.nanoTime();
+            create("StubSlow", CARD, slow.config());
+            assertTrue((System.nanoTime() - start) / 1000000 >= 50);
+        }
+        try (PaymentStub failing = PaymentStub.getBuilder().faultRatio(1).build()) {
+            try {
+                create("StubFault", CARD, failing.config());
+                fail("Injected fault not thrown");
+            } catch (WebServiceException e) {
+                assertEquals(1, failing.getInjectedFaultCount());
+                assertEquals(0, failing.getTransactionCount());
+            }
+        }
+    }
+
+    private static void lifecycle(boolean streaming) {
+        ServiceResult created = create("StubOrder", CARD, config(streaming));
+        assertEquals(0, code(created));
+        assertEquals("AUTHORISED", created.getCommonResponse().getTransactionStatusLabel());
+        assertEquals("497010XXXXXX0003", created.getCardResponse().getNumber());
+        assertNotNull(created.getWebServiceSession());
+        assertTrue(created.getWebServiceSession().contains(".stub"));
+        String uuid = created.getPaymentResponse().getTransactionUuid();
+
+        ServiceResult details = Payment.details(uuid, config(streaming));
+        assertEquals(0, code(details));
+        assertEquals(Long.valueOf(100), details.getPaymentResponse().getAmount());
+        assertEquals("StubOrder", details.getOrderResponse().getOrderId());
+
+        assertEquals(0, code(Payment.update(uuid, 80, 978, stub.config())));
+        assertEquals(StubGateway.INVALID_REQUEST, code(Payment.update(uuid, 150, 978, stub.config())));
+        assertEquals(Long.valueOf(80), Payment.details(uuid, config(streaming)).getPaymentResponse().getAmount());
+
+        boolean found = false;
+        for (TransactionItem item : Payment.detailsByOrderId("StubOrder", config(streaming)).getTransactionItems()) {
+            found |= uuid.equals(item.getTransactionUuid());
+        }
+        assertTrue("Transaction not found by order", found);
+
+        ServiceResult token = Payment.createToken(uuid, "Token", stub.config());
+        assertEquals(0, code(token));
+        assertNotNull(token.getCommonResponse().getPaymentToken());
+
+        assertEquals(StubGateway.NOT_ALLOWED, code(Payment.refund(uuid, 80, 978, "Not captured", stub.config())));
+        stub.capture();
+        assertEquals("CAPTURED", stub.getTransactionStatus(uuid));
+        ServiceResult refund = Payment.refund(uuid, 30, 978, "Refund", stub.config());
+        assertEquals(0, code(refund));
+        assertEquals(Integer.valueOf(1), refund.getPaymentResponse().getOperationType());
+        assertEquals(StubGateway.NOT_ALLOWED, code(Payment.refund(uuid, 60, 978, "Too much", stub.config())));
+    }
+
+    private static Map<String, String> config(boolean streaming) {
+        Map<String, String> config = stub.config();
+        if (streaming) {
+            config.put("streamingSerializer", "true");
+            config.put("streamingParser", "true");
+        }
+        return config;
+    }
+
+    private static ServiceResult create(String orderId, String card, Map<String, String> config) {
+        return Payment.create(orderId, 100, 978, card, 12, 2030, "123", config);
+    }
+
+    private static int code(ServiceResult result) {
+        return result.getCommonResponse().getResponseCode();
+    }
+}
@@ -0,0 +1,438 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.stub;
+
+import com.lyra.vads.ws.v5.*;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+import java.util.ArrayList;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-memory implementation of the payment operations served by
+ * {@link PaymentStub}.<p>
+ *
+ * The response codes approximate the ones of the gateway: {@link #SUCCESS},
+ * {@link #NOT_ALLOWED} when the status of the transaction does not allow the
+ * operation, {@link #INVALID_REQUEST} when a mandatory field is missing and
+ * {@link #NOT_FOUND} when the transaction does not exist for the shop.
+ *
+ * @author Javier Garcia Alonso
+ */
+final class StubGateway {
+
+    static final int SUCCESS = 0;
+    static final int NOT_ALLOWED = 1;
+    static final int INVALID_REQUEST = 2;
+    static final int NOT_FOUND = 10;
+
+    private static final int AUTHORIZATION_ACCEPTED = 0;
+    private static final int AUTHORIZATION_REFUSED = 5;
+
+    private final Map<String, StubTransaction> transactions = new ConcurrentHashMap<>();
+    private final Map<String, List<StubTransaction>> orders = new ConcurrentHashMap<>();
+    private final Map<String, StubTransaction> tokens = new ConcurrentHashMap<>();
+    private final Set<String> refusedCards;
+    private final Random random;
+    private final DatatypeFactory datatypeFactory;
+
+    StubGateway(Set<String> refusedCards, Random random) {
+        this.refusedCards = refusedCards;
+        this.random = random;
+        try {
+            datatypeFactory = DatatypeFactory.newInstance();
+        } catch (DatatypeConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    CreatePaymentResponse.CreatePaymentResult createPayment(String shopId, CreatePayment request) {
+        CreatePaymentResponse.CreatePaymentResult result = new CreatePaymentResponse.CreatePaymentResult();
+        PaymentRequest payment = request.getPaymentRequest();
+        CardRequest card = request.getCardRequest();
+        if (payment == null || payment.getAmount() == null || payment.getCurrency() == null || card == null) {
+            result.setCommonResponse(commonResponse(shopId, INVALID_REQUEST, null));
+            return result;
+        }
+
+        StubTransaction source = card.getPaymentToken() != null ? tokens.get(card.getPaymentToken()) : null;
+        if (card.getPaymentToken() != null && (source == null || !source.shopId.equals(shopId))) {
+            result.setCommonResponse(commonResponse(shopId, NOT_FOUND, null));
+            return result;
+        }
+        String number = source != null ? source.cardNumber : card.getNumber();
+        if (number == null) {
+            result.setCommonResponse(commonResponse(shopId, INVALID_REQUEST, null));
+            return result;
+        }
+
+        boolean refused = refusedCards.contains(number);
+        String status = refused ? StubTransaction.REFUSED
+                : Integer.valueOf(1).equals(payment.getManualValidation()) ? StubTransaction.AUTHORISED_TO_VALIDATE
+                : StubTransaction.AUTHORISED;
+        String orderId = request.getOrderRequest() != null ? request.getOrderRequest().getOrderId() : null;
+        StubTransaction transaction = new StubTransaction(newUuid(), shopId, orderId, digits(6),
+                StubTransaction.DEBIT, payment.getAmount(), payment.getCurrency(), now(), mask(number),
+                source != null ? source.cardScheme : card.getScheme(),
+                source != null ? source.expiryMonth : card.getExpiryMonth(),
+                source != null ? source.expiryYear : card.getExpiryYear(),
+                refused ? null : digits(6), status);
+        if (payment.getExpectedCaptureDate() != null) {
+            transaction.expectedCaptureDate = payment.getExpectedCaptureDate();
+        }
+        if (source != null) {
+            tokens.put(card.getPaymentToken(), source);
+        }
+        add(transaction);
+
+        synchronized (transaction) {
+            result.setCommonResponse(commonResponse(shopId, SUCCESS, transaction));
+            result.setPaymentResponse(paymentResponse(transaction));
+            result.setOrderResponse(orderResponse(transaction.orderId));
+            result.setCardResponse(cardResponse(transaction));
+            result.setAuthorizationResponse(authorizationResponse(transaction));
+        }
+        return result;
+    }
+
+    GetPaymentDetailsResponse.GetPaymentDetailsResult getPaymentDetails(String shopId, GetPaymentDetails request) {
+        GetPaymentDetailsResponse.GetPaymentDetailsResult result = new GetPaymentDetailsResponse.GetPaymentDetailsResult();
+        StubTransaction transaction = find(shopId, request.getQueryRequest());
+        if (transaction == null) {
+            result.setCommonResponse(commonResponse(shopId, NOT_FOUND, null));
+            return result;
+        }
+        synchronized (transaction) {
+            result.setCommonResponse(commonResponse(shopId, SUCCESS, transaction));
+            result.setPaymentResponse(paymentResponse(transaction));
+            result.setOrderResponse(orderResponse(transaction.orderId));
+            result.setCardResponse(cardResponse(transaction));
+            result.setAuthorizationResponse(authorizationResponse(transaction));
+        }
+        return result;
+    }
+
+    FindPaymentsResponse.FindPaymentsResult findPayments(String shopId, FindPayments request) {
+        FindPaymentsResponse.FindPaymentsResult result = new FindPaymentsResponse.FindPaymentsResult();
+        String orderId = request.getQueryRequest() != null ? request.getQueryRequest().getOrderId() : null;
+        List<StubTransaction> found = new ArrayList<>();
+        if (orderId != null) {
+            for (StubTransaction transaction : orders.getOrDefault(orderId, new ArrayList<>())) {
+                if (transaction.shopId.equals(shopId)) {
+                    found.add(transaction);
+                }
+            }
+        }
+        result.setCommonResponse(commonResponse(shopId, found.isEmpty() ? NOT_FOUND : SUCCESS, null));
+        result.setOrderResponse(orderResponse(orderId));
+        for (StubTransaction transaction : found) {
+            TransactionItem item = new TransactionItem();
+            synchronized (transaction) {
+                item.setTransactionUuid(transaction.uuid);
+                item.setTransactionStatusLabel(transaction.status);
+                item.setAmount(transaction.amount);
+                item.setCurrency(transaction.currency);
+                item.setExpectedCaptureDate(transaction.expectedCaptureDate);
+            }
+            result.getTransactionItem().add(item);
+        }
+        return result;
+    }
+
+    CancelPaymentResponse.CancelPaymentResult cancelPayment(String shopId, CancelPayment request) {
+        CancelPaymentResponse.CancelPaymentResult result = new CancelPaymentResponse.CancelPaymentResult();
+        StubTransaction transaction = find(shopId, request.getQueryRequest());
+        if (transaction == null) {
+            result.setCommonResponse(commonResponse(shopId, NOT_FOUND, null));
+            return result;
+        }
+        synchronized (transaction) {
+            if (transaction.isModifiable()) {
+                transaction.status = StubTransaction.CANCELLED;
+                result.setCommonResponse(commonResponse(shopId, SUCCESS, transaction));
+            } else {
+                result.setCommonResponse(commonResponse(shopId, NOT_ALLOWED, transaction));
+            }
+        }
+        return result;
+    }
+
+    UpdatePaymentResponse.UpdatePaymentResult updatePayment(String shopId, UpdatePayment request) {
+        UpdatePaymentResponse.UpdatePaymentResult result = new UpdatePaymentResponse.UpdatePaymentResult();
+        StubTransaction transaction = find(shopId, request.getQueryRequest());
+        if (transaction == null) {
+            result.setCommonResponse(commonResponse(shopId, NOT_FOUND, null));
+            return result;
+        }
+        PaymentRequest payment = request.getPaymentRequest();
+        synchronized (transaction) {
+            // The amount of an authorisation can only be lowered
+            boolean invalidAmount = payment != null && payment.getAmount() != null
+                    && (payment.getAmount() <= 0 || payment.getAmount() > transaction.amount
+                    || (payment.getCurrency() != null && payment.getCurrency() != transaction.currency));
+            if (payment == null || invalidAmount) {
+                result.setCommonResponse(commonResponse(shopId, INVALID_REQUEST, transaction));
+                return result;
+            }
+            if (!transaction.isModifiable()) {
+                result.setCommonResponse(commonResponse(shopId, NOT_ALLOWED, transaction));
+                return result;
+            }
+            if (payment.getAmount() != null) {
+                transaction.amount = payment.getAmount();
+            }
+            if (payment.getExpectedCaptureDate() != null) {
+                transaction.expectedCaptureDate = payment.getExpectedCaptureDate();
+            }
+            result.setCommonResponse(commonResponse(shopId, SUCCESS, transaction));
+            result.setPaymentResponse(paymentResponse(transaction));
+            result.setOrderResponse(orderResponse(transaction.orderId));
+            result.setCardResponse(cardResponse(transaction));
+            result.setAuthorizationResponse(authorizationResponse(transaction));
+        }
+        return result;
+    }
+
+    ValidatePaymentResponse.ValidatePaymentResult validatePayment(String shopId, ValidatePayment request) {
+        ValidatePaymentResponse.ValidatePaymentResult result = new ValidatePaymentResponse.ValidatePaymentResult();
+        StubTransaction transaction = find(shopId, request.getQueryRequest());
+        if (transaction == null) {
+            result.setCommonResponse(commonResponse(shopId, NOT_FOUND, null));
+            return result;
+        }
+        synchronized (transaction) {
+            if (StubTransaction.AUTHORISED_TO_VALIDATE.equals(transaction.status)) {
+                transaction.status = StubTransaction.AUTHORISED;
+                result.setCommonResponse(commonResponse(shopId, SUCCESS, transaction));
+            } else {
+                result.setCommonResponse(commonResponse(shopId, NOT_ALLOWED, transaction));
+            }
+        }
+        return result;
+    }
+
+    RefundPaymentResponse.RefundPaymentResult refundPayment(String shopId, RefundPayment request) {
+        RefundPaymentResponse.RefundPaymentResult result = new RefundPaymentResponse.RefundPaymentResult();
+        StubTransaction original = find(shopId, request.getQueryRequest());
+        if (original == null) {
+            result.setCommonResponse(commonResponse(shopId, NOT_FOUND, null));
+            return result;
+        }
+        PaymentRequest payment = request.getPaymentRequest();
+        StubTransaction refund;
+        synchronized (original) {
+            if (payment == null || payment.getAmount() == null || payment.getAmount() <= 0) {
+                result.setCommonResponse(commonResponse(shopId, INVALID_REQUEST, original));
+                return result;
+            }
+            // Only captured debits can be refunded, up to the amount not refunded yet
+            if (!StubTransaction.CAPTURED.equals(original.status) || original.operationType != StubTransaction.DEBIT
+                    || payment.getAmount() > original.amount - original.refundedAmount) {
+                result.setCommonResponse(commonResponse(shopId, NOT_ALLOWED, original));
+                return result;
+            }
+            original.refundedAmount += payment.getAmount();
+            refund = new StubTransaction(newUuid(), shopId, original.orderId, digits(6), StubTransaction.CREDIT,
+                    payment.getAmount(), original.currency, now(), original.cardNumber, original.cardScheme,
+                    original.expiryMonth, original.expiryYear, digits(6), StubTransaction.AUTHORISED);
+        }
+        add(refund);
+        synchronized (refund) {
+            result.setCommonResponse(commonResponse(shopId, SUCCESS, refund));
+            result.setPaymentResponse(paymentResponse(refund));
+            result.setOrderResponse(orderResponse(refund.orderId));
+            result.setCardResponse(cardResponse(refund));
+            result.setAuthorizationResponse(authorizationResponse(refund));
+        }
+        return result;
+    }
+
+    CreateTokenFromTransactionResponse.CreateTokenFromTransactionResult createTokenFromTransaction(String shopId,
+            CreateTokenFromTransaction request) {
+        CreateTokenFromTransactionResponse.CreateTokenFromTransactionResult result
+                = new CreateTokenFromTransactionResponse.CreateTokenFromTransactionResult();
+        StubTransaction transaction = find(shopId, request.getQueryRequest());
+        if (transaction == null) {
+            result.setCommonResponse(commonResponse(shopId, NOT_FOUND, null));
+            return result;
+        }
+        synchronized (transaction) {
+            if (StubTransaction.REFUSED.equals(transaction.status)) {
+                result.setCommonResponse(commonResponse(shopId, NOT_ALLOWED, transaction));
+                return result;
+            }
+            String token = UUID.randomUUID().toString().replace("-", "");
+            tokens.put(token, transaction);
+            CommonResponse commonResponse = commonResponse(shopId, SUCCESS, transaction);
+            commonResponse.setPaymentToken(token);
+            result.setCommonResponse(commonResponse);
+            result.setPaymentResponse(paymentResponse(transaction));
+            result.setOrderResponse(orderResponse(transaction.orderId));
+            result.setCardResponse(cardResponse(transaction));
+        }
+        return result;
+    }
+
+    /**
+     * Captures the authorised transactions, as the daily remittance of the gateway does
+     *
+     * @return number of transactions captured
+     */
+    int capture() {
+        int captured = 0;
+        for (StubTransaction transaction : transactions.values()) {
+            synchronized (transaction) {
+                if (StubTransaction.AUTHORISED.equals(transaction.status)) {
+                    transaction.status = StubTransaction.CAPTURED;
+                    captured++;
+                }
+            }
+        }
+        return captured;
+    }
+
+    String getStatus(String uuid) {
+        StubTransaction transaction = transactions.get(uuid);
+        if (transaction == null) {
+            return null;
+        }
+        synchronized (transaction) {
+            return transaction.status;
+        }
+    }
+
+    int size() {
+        return transactions.size();
+    }
+
+    private void add(StubTransaction transaction) {
+        transactions.put(transaction.uuid, transaction);
+        if (transaction.orderId != null) {
+            orders.computeIfAbsent(transaction.orderId, k -> new CopyOnWriteArrayList<>()).add(transaction);
+        }
+    }
+
+    private StubTransaction find(String shopId, QueryRequest query) {
+        if (query == null) {
+            return null;
+        }
+        StubTransaction transaction = null;
+        if (query.getUuid() != null) {
+            transaction = transactions.get(query.getUuid());
+        } else if (query.getOrderId() != null) {
+            List<StubTransaction> order = orders.get(query.getOrderId());
+            transaction = order != null && !order.isEmpty() ? order.get(order.size() - 1) : null;
+        }
+        return transaction != null && transaction.shopId.equals(shopId) ? transaction : null;
+    }
+
+    // Called with the lock of the transaction held
+    private CommonResponse commonResponse(String shopId, int responseCode, StubTransaction transaction) {
+        CommonResponse response = new CommonResponse();
+        response.setResponseCode(responseCode);
+        response.setResponseCodeDetail(responseCode == SUCCESS ? "Action successfully completed"
+                : responseCode == NOT_FOUND ? "Transaction not found"
+                : responseCode == NOT_ALLOWED ? "Action not allowed" : "Invalid request");
+        response.setShopId(shopId);
+        response.setSubmissionDate(now());
+        if (transaction != null) {
+            response.setTransactionStatusLabel(transaction.status);
+        }
+        return response;
+    }
+
+    private PaymentResponse paymentResponse(StubTransaction transaction) {
+        PaymentResponse response = new PaymentResponse();
+        response.setTransactionUuid(transaction.uuid);
+        response.setTransactionId(transaction.transactionId);
+        response.setAmount(transaction.amount);
+        response.setCurrency(transaction.currency);
+        response.setEffectiveAmount(transaction.amount);
+        response.setEffectiveCurrency(transaction.currency);
+        response.setCreationDate(transaction.creationDate);
+        response.setExpectedCaptureDate(transaction.expectedCaptureDate);
+        response.setOperationType(transaction.operationType);
+        response.setSequenceNumber(1);
+        response.setManualValidation(StubTransaction.AUTHORISED_TO_VALIDATE.equals(transaction.status) ? 1 : 0);
+        return response;
+    }
+
+    private static OrderResponse orderResponse(String orderId) {
+        OrderResponse response = new OrderResponse();
+        response.setOrderId(orderId);
+        return response;
+    }
+
+    private static CardResponse cardResponse(StubTransaction transaction) {
+        CardResponse response = new CardResponse();
+        response.setNumber(transaction.cardNumber);
+        response.setScheme(transaction.cardScheme);
+        response.setBrand(transaction.cardScheme);
+        response.setExpiryMonth(transaction.expiryMonth);
+        response.setExpiryYear(transaction.expiryYear);
+        return response;
+    }
+
+    private AuthorizationResponse authorizationResponse(StubTransaction transaction) {
+        AuthorizationResponse response = new AuthorizationResponse();
+        response.setMode("FULL");
+        response.setAmount(transaction.amount);
+        response.setCurrency(transaction.currency);
+        response.setDate(transaction.creationDate);
+        response.setNumber(transaction.authorizationNumber);
+        response.setResult(StubTransaction.REFUSED.equals(transaction.status)
+                ? AUTHORIZATION_REFUSED : AUTHORIZATION_ACCEPTED);
+        return response;
+    }
+
+    private static String mask(String number) {
+        if (number.length() < 10) {
+            return number;
+        }
+        StringBuilder masked = new StringBuilder(number.substring(0, 6));
+        for (int i = 10; i < number.length(); i++) {
+            masked.append('X');
+        }
+        return masked.append(number.substring(number.length() - 4)).toString();
+    }
+
+    private String newUuid() {
+        return UUID.randomUUID().toString().replace("-", "").toLowerCase(Locale.ROOT);
+    }
+
+    private String digits(int length) {
+        StringBuilder digits = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            digits.append((char) ('0' + random.nextInt(10)));
+        }
+        return digits.toString();
+    }
+
+    private XMLGregorianCalendar now() {
+        return datatypeFactory.newXMLGregorianCalendar(new GregorianCalendar(TimeZone.getTimeZone("UTC")));
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.stub;
+
+import javax.xml.datatype.XMLGregorianCalendar;
+
+/**
+ * Transaction kept in memory by {@link StubGateway}. The state is changed
+ * while holding the lock of the transaction.
+ *
+ * @author Javier Garcia Alonso
+ */
+final class StubTransaction {
+
+    static final String AUTHORISED = "AUTHORISED";
+    static final String AUTHORISED_TO_VALIDATE = "AUTHORISED_TO_VALIDATE";
+    static final String CAPTURED = "CAPTURED";
+    static final String CANCELLED = "CANCELLED";
+    static final String REFUSED = "REFUSED";
+
+    static final int DEBIT = 0;
+    static final int CREDIT = 1;
+
+    final String uuid;
+    final String shopId;
+    final String orderId;
+    final String transactionId;
+    final int operationType;
+    final int currency;
+    final XMLGregorianCalendar creationDate;
+    final String cardNumber;
+    final String cardScheme;
+    final Integer expiryMonth;
+    final Integer expiryYear;
+    final String authorizationNumber;
+
+    long amount;
+    String status;
+    XMLGregorianCalendar expectedCaptureDate;
+    long refundedAmount;
+
+    StubTransaction(String uuid, String shopId, String orderId, String transactionId, int operationType,
+            long amount, int currency, XMLGregorianCalendar creationDate, String cardNumber, String cardScheme,
+            Integer expiryMonth, Integer expiryYear, String authorizationNumber, String status) {
+        this.uuid = uuid;
+        this.shopId = shopId;
+        this.orderId = orderId;
+        this.transactionId = transactionId;
+        this.operationType = operationType;
+        this.amount = amount;
+        this.currency = currency;
+        this.creationDate = creationDate;
+        this.cardNumber = cardNumber;
+        this.cardScheme = cardScheme;
+        this.expiryMonth = expiryMonth;
+        this.expiryYear = expiryYear;
+        this.authorizationNumber = authorizationNumber;
+        this.status = status;
+        this.expectedCaptureDate = creationDate;
+    }
+
+    synchronized boolean isModifiable() {
+        return AUTHORISED.equals(status) || AUTHORISED_TO_VALIDATE.equals(status);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.tracing;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Checks that the default tracer costs nothing
+ *
+ * @author Javier Garcia Alonso
+ */
+public class TracingTest {
+
+    @Test
+    public void testNoopTracerDoesNotAllocate() {
+        Assert.assertFalse(Tracing.isEnabled());
+        Tracer tracer = Tracing.getTracer();
+        Assert.assertSame(tracer.startSpan("createPayment", "12345"), tracer.startSpan("findPayments", null));
+
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        long threadId = Thread.currentThread().getId();
+
+        for (int i = 0; i < 100000; i++) {
+            trace(tracer, i);
+        }
+        long before = allocations.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100000; i++) {
+            trace(tracer, i);
+        }
+        long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+
+        // Only the measurement itself may allocate
+        Assert.assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    @Test
+    public void testSetTracer() {
+        Tracer tracer = (operation, shopId) -> Tracing.getTracer().startSpan(operation, shopId);
+        Tracing.setTracer(tracer);
+        try {
+            Assert.assertTrue(Tracing.isEnabled());
+            Assert.assertSame(tracer, Tracing.getTracer());
+        } finally {
+            Tracing.setTracer(null);
+        }
+        Assert.assertFalse(Tracing.isEnabled());
+    }
+
+    private static void trace(Tracer tracer, long value) {
+        Span span = tracer.startSpan("createPayment", "12345");
+        span.setAttribute(Span.REQUEST_ID, "request");
+        span.setAttribute(Span.RESPONSE_BYTES, value);
+        span.end();
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.transport;
+
+import eu.payzen.webservices.sdk.Payment;
+import eu.payzen.webservices.sdk.PayzenConfig;
+import eu.payzen.webservices.sdk.client.StreamingClientV5;
+import eu.payzen.webservices.sdk.metrics.ConnectionMetrics;
+import eu.payzen.webservices.sdk.stub.PaymentStub;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Calls {@link PaymentStub} with the connections kept alive by the SDK
+ *
+ * @author Javier Garcia Alonso
+ */
+public class HttpConnectionPoolTest {
+
+    private static final String CARD = "4970100000000003";
+
+    @Test
+    public void testConnectionsAreReused() throws Exception {
+        try (PaymentStub stub = PaymentStub.getBuilder().build()) {
+            PayzenConfig config = PayzenConfig.from(stub.config()).toBuilder().maxIdleConnections(2).build();
+            HttpConnectionPool pool = HttpConnectionPool.of(config);
+            assertSame(pool, HttpConnectionPool.of(config.toBuilder().shopId("87654321").build()));
+
+            ConnectionMetrics metrics = ConnectionMetrics.getInstance();
+            long created = metrics.getNewConnections();
+            long reused = metrics.getReusedConnections();
+            callBothClients(config);
+            assertEquals(metrics.toString(), 1, metrics.getNewConnections() - created);
+            assertEquals(metrics.toString(), 3, metrics.getReusedConnections() - reused);
+            assertEquals(1, pool.getIdleCount());
+
+            pool.closeIdleConnections();
+            assertEquals(0, pool.getIdleCount());
+        }
+    }
+
+    @Test
+    public void testSecureConnectionsAreReused() throws Exception {
+        try (PaymentStub stub = PaymentStub.getBuilder().tls().build()) {
+            PayzenConfig config = PayzenConfig.from(stub.config()).toBuilder()
+                    .sslContext(PaymentStub.clientSslContext()).maxIdleConnections(2).build();
+            ConnectionMetrics metrics = ConnectionMetrics.getInstance();
+            long created = metrics.getNewConnections();
+            long reused = metrics.getReusedConnections();
+            callBothClients(config);
+            assertEquals(metrics.toString(), 1, metrics.getNewConnections() - created);
+            assertEquals(metrics.toString(), 3, metrics.getReusedConnections() - reused);
+        }
+    }
+
+    @Test
+    public void testKeepAliveDisabled() throws Exception {
+        try (PaymentStub stub = PaymentStub.getBuilder().build()) {
+            PayzenConfig config = PayzenConfig.from(stub.config()).toBuilder().maxIdleConnections(0).build();
+            ConnectionMetrics metrics = ConnectionMetrics.getInstance();
+            long created = metrics.getNewConnections();
+            long reused = metrics.getReusedConnections();
+            callBothClients(config);
+            assertEquals(metrics.toString(), 4, metrics.getNewConnections() - created);
+            assertEquals(metrics.toString(), 0, metrics.getReusedConnections() - reused);
+            assertEquals(0, HttpConnectionPool.of(config).getIdleCount());
+        }
+    }
+
+    @Test
+    public void testServerClosesConnections() throws Exception {
+        try (PaymentStub stub = PaymentStub.getBuilder().keepAlive(false).build()) {
+            PayzenConfig config = PayzenConfig.from(stub.config()).toBuilder().maxIdleConnections(2).build();
+            ConnectionMetrics metrics = ConnectionMetrics.getInstance();
+            long created = metrics.getNewConnections();
+            long reused = metrics.getReusedConnections();
+            callBothClients(config);
+            assertEquals(metrics.toString(), 4, metrics.getNewConnections() - created);
+            assertEquals(metrics.toString(), 0, metrics.getReusedConnections() - reused);
+        }
+    }
+
+    @Test
+    public void testIdleConnectionsExpire() throws Exception {
+        try (PaymentStub stub = PaymentStub.getBuilder().build()) {
+            PayzenConfig config = PayzenConfig.from(stub.config()).toBuilder().maxIdleConnections(2)
+                    .connectionIdleTimeout(1).build();
+            ConnectionMetrics metrics = ConnectionMetrics.getInstance();
+            String uuid = Payment.create("Idle", 100, 978, CARD, 12, 2030, "123", config)
+                    .getPaymentResponse().getTransactionUuid();
+            Thread.sleep(1500);
+
+            long created = metrics.getNewConnections();
+            long closedIdle = metrics.getClosedIdleConnections();
+            assertEquals(0, (int) Payment.details(uuid, config).getCommonResponse().getResponseCode());
+            assertEquals(metrics.toString(), 1, metrics.getNewConnections() - created);
+            assertTrue(metrics.toString(), metrics.getClosedIdleConnections() - closedIdle >= 1);
+        }
+    }
+
+    @Test
+    public void testDefaultTransport() throws Exception {
+        try (PaymentStub stub = PaymentStub.getBuilder().build()) {
+            PayzenConfig config = PayzenConfig.from(stub.config());
+            assertNull(HttpConnectionPool.of(config));
+            ConnectionMetrics metrics = ConnectionMetrics.getInstance();
+            long created = metrics.getNewConnections();
+            callBothClients(config);
+            assertEquals(created, metrics.getNewConnections());
+        }
+    }
+
+    // Creates a payment and reads it with each client, one connection at a time
+    private static void callBothClients(PayzenConfig config) {
+        for (boolean streaming : new boolean[] {false, true}) {
+            PayzenConfig call = config.toBuilder().property(StreamingClientV5.STREAMING_SERIALIZER,
+                    String.valueOf(streaming)).property(StreamingClientV5.STREAMING_PARSER,
+                    String.valueOf(streaming)).build();
+            String uuid = Payment.create("Pool", 100, 978, CARD, 12, 2030, "123", call)
+                    .getPaymentResponse().getTransactionUuid();
+            assertEquals(0, (int) Payment.details(uuid, call).getCommonResponse().getResponseCode());
+        }
+    }
+}
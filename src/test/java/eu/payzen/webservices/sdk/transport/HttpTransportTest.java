@@ -0,0 +1,120 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.transport;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.lyra.vads.ws.v5.CreatePayment;
+
+import eu.payzen.webservices.sdk.Payment;
+import eu.payzen.webservices.sdk.PaymentClient;
+import eu.payzen.webservices.sdk.PayzenConfig;
+import eu.payzen.webservices.sdk.ServiceResult;
+import eu.payzen.webservices.sdk.builder.PaymentBuilder;
+import eu.payzen.webservices.sdk.builder.request.CardRequestBuilder;
+import eu.payzen.webservices.sdk.builder.request.PaymentRequestBuilder;
+import eu.payzen.webservices.sdk.client.StreamingClientV5;
+import eu.payzen.webservices.sdk.stub.PaymentStub;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Calls {@link PaymentStub} through a transport registered as a provider
+ *
+ * @author Javier Garcia Alonso
+ */
+public class HttpTransportTest {
+
+    private static final String CARD = "4970100000000003";
+
+    @Test
+    public void testProviderTransport() throws Exception {
+        CountingProvider provider = new CountingProvider();
+        HttpTransports.addProvider(provider);
+        try (PaymentStub stub = PaymentStub.getBuilder().build()) {
+            PayzenConfig config = PayzenConfig.from(stub.config()).toBuilder().httpTransport("counting").build();
+            for (boolean streaming : new boolean[] {false, true}) {
+                PayzenConfig call = config.toBuilder().property(StreamingClientV5.STREAMING_SERIALIZER,
+                        String.valueOf(streaming)).property(StreamingClientV5.STREAMING_PARSER,
+                        String.valueOf(streaming)).build();
+                String uuid = Payment.create("Transport", 100, 978, CARD, 12, 2030, "123", call)
+                        .getPaymentResponse().getTransactionUuid();
+                assertEquals(0, (int) Payment.details(uuid, call).getCommonResponse().getResponseCode());
+            }
+            assertEquals(4, provider.sent.get());
+        } finally {
+            HttpTransports.removeProvider(provider);
+        }
+    }
+
+    @Test
+    public void testBlockingTransportAsync() throws Exception {
+        CountingProvider provider = new CountingProvider();
+        HttpTransports.addProvider(provider);
+        try (PaymentStub stub = PaymentStub.getBuilder().build();
+                PaymentClient client = PaymentClient.create(PayzenConfig.from(stub.config()).toBuilder()
+                        .httpTransport("counting").build())) {
+            CreatePayment request = PaymentBuilder.getBuilder()
+                    .payment(PaymentRequestBuilder.create().amount(100).currency(978).build())
+                    .card(CardRequestBuilder.create().number(CARD).expiryMonth(12).expiryYear(2030)
+                            .cardSecurityCode("123").scheme("VISA").build())
+                    .buildCreate();
+            CompletableFuture<ServiceResult> created = client.createAsync(request);
+            String uuid = created.get().getPaymentResponse().getTransactionUuid();
+            assertEquals(0, (int) client.detailsAsync(uuid, null).get().getCommonResponse().getResponseCode());
+            // Made in the executor as the other calls, through the ports of the client
+            assertEquals(2, provider.sent.get());
+            assertFalse(new StreamingClientV5(client.getConfig()).isNonBlocking());
+        } finally {
+            HttpTransports.removeProvider(provider);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownTransport() {
+        HttpTransports.of(PayzenConfig.getBuilder().endpointHost("localhost").httpTransport("unknown").build());
+    }
+
+    @Test
+    public void testDefaultTransport() {
+        PayzenConfig config = PayzenConfig.getBuilder().endpointHost("localhost").httpTransport(" ").build();
+        assertNull(config.getHttpTransport());
+        assertNull(HttpTransports.of(config));
+    }
+
+    // Sends the requests through a pool that closes the connections after each call
+    private static final class CountingProvider implements HttpTransportProvider {
+        final AtomicInteger sent = new AtomicInteger();
+
+        @Override
+        public String getName() {
+            return "counting";
+        }
+
+        @Override
+        public HttpTransport create(PayzenConfig config) {
+            HttpTransport pool = HttpConnectionPool.of(config.toBuilder().maxIdleConnections(0).build());
+            return request -> {
+                sent.incrementAndGet();
+                return pool.send(request);
+            };
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.transport;
+
+import eu.payzen.webservices.sdk.Payment;
+import eu.payzen.webservices.sdk.ServiceResult;
+import eu.payzen.webservices.sdk.stub.PaymentStub;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.xml.ws.WebServiceException;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Records calls made to {@link PaymentStub} and replays them once it is closed
+ *
+ * @author Javier Garcia Alonso
+ */
+public class RecordReplayTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void tearDown() {
+        RecordReplay.reset();
+    }
+
+    @Test
+    public void testRecordAndReplay() throws Exception {
+        File file = folder.newFile("payments.rec");
+        String uuid;
+        String session;
+        try (PaymentStub stub = PaymentStub.getBuilder().build()) {
+            ServiceResult created = Payment.create("Recorded", 100, 978, "4970100000000003", 12, 2030, "123",
+                    config(stub, RecordReplay.RECORD_FILE, file, false));
+            uuid = created.getPaymentResponse().getTransactionUuid();
+            session = created.getWebServiceSession();
+            Payment.details(uuid, config(stub, RecordReplay.RECORD_FILE, file, false));
+            Payment.details(uuid, config(stub, RecordReplay.RECORD_FILE, file, true));
+            Payment.detailsByOrderId("Recorded", config(stub, RecordReplay.RECORD_FILE, file, true));
+        }
+        RecordReplay.reset();
+
+        ReplayStore store = RecordReplay.store(file.getPath());
+        assertEquals(4, store.size());
+        assertEquals(2, store.getExchanges().get("getPaymentDetails").size());
+        RecordedExchange recorded = store.getExchanges().get("createPayment").get(0);
+        assertEquals(200, recorded.getStatus());
+        assertTrue(recorded.getRequestEnvelope().contains("<authToken"));
+        assertTrue(recorded.getRequestEnvelope().contains("497010XXXXXX0003"));
+        assertTrue(recorded.getResponseEnvelope().contains(uuid));
+
+        // The stub is closed: the responses can only come from the recording
+        for (boolean streaming : new boolean[] {false, true}) {
+            ServiceResult created = Payment.create("Replayed", 100, 978, "4970100000000003", 12, 2030, "123",
+                    config(null, RecordReplay.REPLAY_FILE, file, streaming));
+            assertEquals(uuid, created.getPaymentResponse().getTransactionUuid());
+            assertEquals(session, created.getWebServiceSession());
+
+            ServiceResult details = Payment.details(uuid, config(null, RecordReplay.REPLAY_FILE, file, streaming));
+            assertEquals(Long.valueOf(100), details.getPaymentResponse().getAmount());
+
+            ServiceResult found = Payment.detailsByOrderId("Recorded",
+                    config(null, RecordReplay.REPLAY_FILE, file, streaming));
+            assertEquals(uuid, found.getTransactionItems().get(0).getTransactionUuid());
+        }
+
+        try {
+            Payment.cancel(uuid, config(null, RecordReplay.REPLAY_FILE, file, false));
+            fail("Operation replayed without being recorded");
+        } catch (WebServiceException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("cancelPayment"));
+        }
+    }
+
+    @Test
+    public void testRecordingIsMasked() throws Exception {
+        File file = folder.newFile("masked.rec");
+        try (PaymentStub stub = PaymentStub.getBuilder().build()) {
+            Payment.create("Masked", 100, 978, "4970100000000003", 12, 2030, "987",
+                    config(stub, RecordReplay.RECORD_FILE, file, false));
+            Payment.create("Masked", 100, 978, "4970100000000003", 12, 2030, "987",
+                    config(stub, RecordReplay.RECORD_FILE, file, true));
+        }
+        RecordReplay.reset();
+
+        String content = new String(Files.readAllBytes(file.toPath()), "UTF-8");
+        assertFalse(content.contains("4970100000000003"));
+        assertFalse(content.contains(">987<"));
+        for (RecordedExchange recorded : RecordReplay.store(file.getPath()).getExchanges().get("createPayment")) {
+            assertTrue(recorded.getRequestEnvelope(), recorded.getRequestEnvelope().contains("****</"));
+            assertFalse(recorded.getRequestEnvelope().matches("(?s).*authToken>[^*<]+<.*"));
+        }
+    }
+
+    @Test
+    public void testExternalEntitiesAreNotResolved() throws Exception {
+        File file = folder.newFile("recorded.rec");
+        try (PaymentStub stub = PaymentStub.getBuilder().build()) {
+            Payment.create("Entity", 100, 978, "4970100000000003", 12, 2030, "123",
+                    config(stub, RecordReplay.RECORD_FILE, file, false));
+        }
+        RecordReplay.reset();
+        RecordedExchange recorded = RecordReplay.store(file.getPath()).getExchanges().get("createPayment").get(0);
+        RecordReplay.reset();
+
+        File secret = folder.newFile("secret.txt");
+        Files.write(secret.toPath(), "SECRET-CONTENT".getBytes("UTF-8"));
+        String envelope = recorded.getResponseEnvelope().replaceFirst("^<\\?xml[^>]*\\?>", "");
+        envelope = "<!DOCTYPE Envelope [<!ENTITY xxe SYSTEM \"" + secret.toURI() + "\">]>"
+                + envelope.replace(">Entity<", ">&xxe;<");
+        File hostile = folder.newFile("hostile.rec");
+        RecordWriter writer = new RecordWriter(hostile);
+        writer.record("createPayment", 200, recorded.getHeaders(), new byte[0], envelope.getBytes("UTF-8"));
+        writer.close();
+
+        for (boolean streamingParser : new boolean[] {false, true}) {
+            Map<String, String> config = config(null, RecordReplay.REPLAY_FILE, hostile, false);
+            config.put("streamingSerializer", "true");
+            config.put("streamingParser", String.valueOf(streamingParser));
+            try {
+                ServiceResult result = Payment.create("Entity", 100, 978, "4970100000000003", 12, 2030, "123",
+                        config);
+                fail("Entity resolved: " + result.getOrderResponse().getOrderId());
+            } catch (WebServiceException e) {
+                assertFalse(String.valueOf(e.getMessage()).contains("SECRET-CONTENT"));
+            }
+            RecordReplay.reset();
+        }
+    }
+
+    @Test
+    public void testInvalidRecording() throws Exception {
+        File file = folder.newFile("invalid.rec");
+        Files.write(file.toPath(), "not a recording".getBytes("UTF-8"));
+        try {
+            RecordReplay.store(file.getPath());
+            fail("Invalid recording read");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause().getMessage(), e.getCause().getMessage().startsWith("Not a recording"));
+        }
+    }
+
+    private static Map<String, String> config(PaymentStub stub, String mode, File file, boolean streaming) {
+        Map<String, String> config = stub != null ? stub.config() : new HashMap<String, String>();
+        if (stub == null) {
+            config.put("shopId", PaymentStub.DEFAULT_SHOP_ID);
+            config.put("shopKey", PaymentStub.DEFAULT_SHOP_KEY);
+            config.put("mode", "TEST");
+            config.put("endpointHost", "localhost:1");
+            config.put("secureConnection", "false");
+        }
+        config.put(mode, file.getPath());
+        if (streaming) {
+            config.put("streamingSerializer", "true");
+            config.put("streamingParser", "true");
+        }
+        return config;
+    }
+}
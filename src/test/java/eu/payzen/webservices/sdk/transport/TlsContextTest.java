@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.transport;
+
+import eu.payzen.webservices.sdk.Payment;
+import eu.payzen.webservices.sdk.PayzenConfig;
+import eu.payzen.webservices.sdk.ServiceResult;
+import eu.payzen.webservices.sdk.client.StreamingClientV5;
+import eu.payzen.webservices.sdk.metrics.TlsMetrics;
+import eu.payzen.webservices.sdk.stub.PaymentStub;
+import eu.payzen.webservices.sdk.util.PayzenHostnameVerifier;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.security.cert.Certificate;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocketFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Calls {@link PaymentStub} over HTTPS with the TLS settings of each client
+ *
+ * @author Javier Garcia Alonso
+ */
+public class TlsContextTest {
+
+    private static final String CARD = "4970100000000003";
+
+    @Test
+    public void testDefaultsAreNotChanged() throws Exception {
+        HostnameVerifier defaultVerifier = HttpsURLConnection.getDefaultHostnameVerifier();
+        SSLSocketFactory defaultFactory = HttpsURLConnection.getDefaultSSLSocketFactory();
+        try (PaymentStub stub = PaymentStub.getBuilder().tls().build()) {
+            PayzenConfig config = PayzenConfig.from(stub.config()).toBuilder()
+                    .sslContext(PaymentStub.clientSslContext()).build();
+            for (boolean streaming : new boolean[] {false, true}) {
+                PayzenConfig call = config.toBuilder().property(StreamingClientV5.STREAMING_SERIALIZER,
+                        String.valueOf(streaming)).property(StreamingClientV5.STREAMING_PARSER,
+                        String.valueOf(streaming)).build();
+                ServiceResult created = Payment.create("Tls", 100, 978, CARD, 12, 2030, "123", call);
+                assertEquals(0, (int) created.getCommonResponse().getResponseCode());
+                String uuid = created.getPaymentResponse().getTransactionUuid();
+                assertEquals(0, (int) Payment.details(uuid, call).getCommonResponse().getResponseCode());
+            }
+            assertSame(TlsContext.of(config), TlsContext.of(config.toBuilder().shopId("87654321").build()));
+        }
+        assertSame(defaultVerifier, HttpsURLConnection.getDefaultHostnameVerifier());
+        assertSame(defaultFactory, HttpsURLConnection.getDefaultSSLSocketFactory());
+    }
+
+    @Test
+    public void testSessionsAreResumed() throws Exception {
+        SSLContext sslContext = PaymentStub.clientSslContext();
+        try (PaymentStub stub = PaymentStub.getBuilder().tls().keepAlive(false).build()) {
+            PayzenConfig config = PayzenConfig.from(stub.config()).toBuilder()
+                    .sslContext(sslContext).tlsSessionCacheSize(10).tlsSessionTimeout(60).build();
+            TlsContext.of(config);
+            assertEquals(10, sslContext.getClientSessionContext().getSessionCacheSize());
+            assertEquals(60, sslContext.getClientSessionContext().getSessionTimeout());
+
+            TlsMetrics metrics = TlsMetrics.getInstance();
+            long handshakes = metrics.getHandshakes();
+            long resumed = metrics.getResumedHandshakes();
+            String uuid = Payment.create("Resumed", 100, 978, CARD, 12, 2030, "123", config)
+                    .getPaymentResponse().getTransactionUuid();
+            for (int i = 0; i < 3; i++) {
+                assertEquals(0, (int) Payment.details(uuid, config).getCommonResponse().getResponseCode());
+            }
+            // Counted from the notification threads of the JDK
+            long deadline = System.currentTimeMillis() + 5000;
+            while (metrics.getHandshakes() - handshakes < 5 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            // WSDL and one connection per call
+            assertTrue(metrics.toString(), metrics.getHandshakes() - handshakes >= 5);
+            assertTrue(metrics.toString(), metrics.getResumedHandshakes() - resumed >= 4);
+        }
+    }
+
+    @Test
+    public void testExpectedHost() {
+        assertEquals("secure.payzen.eu", new PayzenHostnameVerifier("Secure.PayZen.eu:443").getExpectedHost());
+        assertEquals("::1", new PayzenHostnameVerifier("[::1]:8443").getExpectedHost());
+    }
+
+    @Test
+    public void testVerifyChecksTheEndpointHost() {
+        SSLSession session = session(PaymentStub.certificate());
+        assertTrue(new PayzenHostnameVerifier("localhost:8443").verify("localhost", session));
+        // Connected through another name, the certificate is checked against the endpoint host
+        assertTrue(new PayzenHostnameVerifier("LocalHost").verify("127.0.0.1", session));
+        assertTrue(new PayzenHostnameVerifier("127.0.0.1:8443").verify("gateway-alias", session));
+
+        assertFalse(new PayzenHostnameVerifier("secure.payzen.eu").verify("localhost", session));
+        assertFalse(new PayzenHostnameVerifier("host.localhost").verify("localhost", session));
+        assertFalse(new PayzenHostnameVerifier("localhost").verify("localhost", session((Certificate) null)));
+    }
+
+    // Session of a server that has sent a certificate, or no certificate if null
+    private static SSLSession session(Certificate certificate) {
+        return (SSLSession) Proxy.newProxyInstance(TlsContextTest.class.getClassLoader(),
+                new Class<?>[] {SSLSession.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("getPeerCertificates")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    if (certificate == null) {
+                        throw new SSLPeerUnverifiedException("No certificate");
+                    }
+                    return new Certificate[] {certificate};
+                });
+    }
+}
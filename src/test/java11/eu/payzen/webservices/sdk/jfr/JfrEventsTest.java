@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.jfr;
+
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the events of the Java 11 version of {@link JfrEvents}, loaded from
+ * META-INF/versions/11 as a multi-release jar would do
+ *
+ * @author Javier Garcia Alonso
+ */
+public class JfrEventsTest {
+
+    @Test
+    public void testCommitsEnabledEvents() throws Exception {
+        URL classes = JfrEvents.class.getProtectionDomain().getCodeSource().getLocation();
+        try (URLClassLoader loader = new URLClassLoader(new URL[] {new URL(classes, "META-INF/versions/11/"), classes},
+                ClassLoader.getPlatformClassLoader())) {
+            Class<?> events = loader.loadClass(JfrEvents.class.getName());
+            Method beginCall = events.getMethod("beginCall");
+            Method commitCall = events.getMethod("commitCall", Object.class, String.class, String.class,
+                    String.class, Integer.class, long.class, long.class);
+            Assert.assertTrue((Boolean) events.getMethod("isAvailable").invoke(null));
+            // Nothing is created if no recording wants the event
+            Assert.assertNull(beginCall.invoke(null));
+
+            Path file = Files.createTempFile("payzen-sdk", ".jfr");
+            try (Recording recording = new Recording()) {
+                recording.enable("eu.payzen.webservices.sdk.PaymentCall");
+                recording.enable("eu.payzen.webservices.sdk.Signing");
+                recording.disable("eu.payzen.webservices.sdk.WsdlLoad");
+                recording.start();
+
+                commitCall.invoke(null, beginCall.invoke(null), "createPayment", "12345", "streaming", 0, 889L, 349L);
+                commitCall.invoke(null, beginCall.invoke(null), "findPayments", "12345", "JAX-WS", null, -1L, -1L);
+                Object signing = events.getMethod("beginSigning").invoke(null);
+                events.getMethod("commitSigning", Object.class, String.class).invoke(null, signing, "12345");
+                Assert.assertNull(events.getMethod("beginWsdlLoad").invoke(null));
+
+                recording.stop();
+                recording.dump(file);
+            }
+
+            List<RecordedEvent> recorded = RecordingFile.readAllEvents(file);
+            Files.delete(file);
+            Assert.assertEquals(3, recorded.size());
+
+            RecordedEvent call = recorded.stream()
+                    .filter(e -> "createPayment".equals(e.getString("operation"))).findFirst().get();
+            Assert.assertEquals("eu.payzen.webservices.sdk.PaymentCall", call.getEventType().getName());
+            Assert.assertEquals("12345", call.getString("shopId"));
+            Assert.assertEquals("streaming", call.getString("client"));
+            Assert.assertEquals(0, call.getInt("responseCode"));
+            Assert.assertEquals(889L, call.getLong("bytesSent"));
+            Assert.assertEquals(349L, call.getLong("bytesReceived"));
+
+            RecordedEvent failed = recorded.stream()
+                    .filter(e -> "findPayments".equals(e.getString("operation"))).findFirst().get();
+            Assert.assertEquals(-1, failed.getInt("responseCode"));
+
+            Assert.assertEquals(1, recorded.stream()
+                    .filter(e -> e.getEventType().getName().equals("eu.payzen.webservices.sdk.Signing")).count());
+        }
+    }
+}
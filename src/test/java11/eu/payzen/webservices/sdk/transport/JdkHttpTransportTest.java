@@ -0,0 +1,197 @@
+/*
+ * Copyright 2015-2018 Javier Garcia Alonso.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.payzen.webservices.sdk.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.lyra.vads.ws.v5.CreatePayment;
+
+import eu.payzen.webservices.sdk.Payment;
+import eu.payzen.webservices.sdk.PaymentClient;
+import eu.payzen.webservices.sdk.PayzenConfig;
+import eu.payzen.webservices.sdk.ServiceResult;
+import eu.payzen.webservices.sdk.builder.PaymentBuilder;
+import eu.payzen.webservices.sdk.builder.request.CardRequestBuilder;
+import eu.payzen.webservices.sdk.builder.request.OrderRequestBuilder;
+import eu.payzen.webservices.sdk.builder.request.PaymentRequestBuilder;
+import eu.payzen.webservices.sdk.client.StreamingClientV5;
+import eu.payzen.webservices.sdk.stub.PaymentStub;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Calls {@link PaymentStub} with the Java 11 version of
+ * {@link JdkHttpTransport}, loaded from META-INF/versions/11 as a
+ * multi-release jar would do and registered as the <code>jdk11</code>
+ * transport
+ *
+ * @author Javier Garcia Alonso
+ */
+public class JdkHttpTransportTest {
+
+    private static final String CARD = "4970100000000003";
+    private static final String JDK11 = "jdk11";
+
+    private static VersionedLoader loader;
+    private static HttpTransportProvider provider;
+
+    @BeforeClass
+    public static void registerTransport() throws Exception {
+        loader = new VersionedLoader();
+        Class<?> transport = loader.loadClass(JdkHttpTransport.class.getName());
+        assertTrue((Boolean) transport.getMethod("isAvailable").invoke(null));
+        provider = new HttpTransportProvider() {
+            @Override
+            public String getName() {
+                return JDK11;
+            }
+
+            @Override
+            public HttpTransport create(PayzenConfig config) {
+                try {
+                    return (HttpTransport) transport.getMethod("of", PayzenConfig.class).invoke(null, config);
+                } catch (InvocationTargetException e) {
+                    throw (RuntimeException) e.getCause();
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        HttpTransports.addProvider(provider);
+    }
+
+    @AfterClass
+    public static void removeTransport() throws IOException {
+        HttpTransports.removeProvider(provider);
+        loader.close();
+    }
+
+    @Test
+    public void testCalls() throws Exception {
+        try (PaymentStub stub = PaymentStub.getBuilder().build()) {
+            callBothClients(PayzenConfig.from(stub.config()).toBuilder().httpTransport(JDK11).build());
+        }
+    }
+
+    @Test
+    public void testSecureCalls() throws Exception {
+        try (PaymentStub stub = PaymentStub.getBuilder().tls().build()) {
+            PayzenConfig config = PayzenConfig.from(stub.config()).toBuilder()
+                    .sslContext(PaymentStub.clientSslContext()).httpTransport(JDK11).build();
+            callBothClients(config);
+            assertTrue(new StreamingClientV5(config).isNonBlocking());
+        }
+    }
+
+    @Test
+    public void testNonBlockingCalls() throws Exception {
+        // Any use of the executor would fail the calls
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        try (PaymentStub stub = PaymentStub.getBuilder().latency(50).build();
+                PaymentClient client = PaymentClient.getBuilder().executor(executor)
+                        .config(PayzenConfig.from(stub.config()).toBuilder().httpTransport(JDK11).build())
+                        .build()) {
+            List<CompletableFuture<ServiceResult>> calls = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                calls.add(client.createAsync(createRequest("Async" + i))
+                        .thenCompose(created -> client.detailsAsync(
+                                created.getPaymentResponse().getTransactionUuid(), null)));
+            }
+            for (CompletableFuture<ServiceResult> call : calls) {
+                assertEquals(0, (int) call.get(30, TimeUnit.SECONDS).getCommonResponse().getResponseCode());
+            }
+            assertEquals(100, client.getMetrics().getLatency("createPayment").getCount()
+                    + client.getMetrics().getLatency("getPaymentDetails").getCount());
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testHostnameVerifierCannotBeDisabled() {
+        HttpTransports.of(PayzenConfig.getBuilder().endpointHost("localhost").disableHostnameVerifier(true)
+                .httpTransport(JDK11).build());
+    }
+
+    private static void callBothClients(PayzenConfig config) {
+        for (boolean streaming : new boolean[] {false, true}) {
+            PayzenConfig call = config.toBuilder().property(StreamingClientV5.STREAMING_SERIALIZER,
+                    String.valueOf(streaming)).property(StreamingClientV5.STREAMING_PARSER,
+                    String.valueOf(streaming)).build();
+            String uuid = Payment.create("Jdk", 100, 978, CARD, 12, 2030, "123", call)
+                    .getPaymentResponse().getTransactionUuid();
+            assertEquals(0, (int) Payment.details(uuid, call).getCommonResponse().getResponseCode());
+        }
+    }
+
+    private static CreatePayment createRequest(String orderId) {
+        return PaymentBuilder.getBuilder()
+                .order(OrderRequestBuilder.create().orderId(orderId).build())
+                .payment(PaymentRequestBuilder.create().amount(100).currency(978).build())
+                .card(CardRequestBuilder.create().number(CARD).scheme("VISA")
+                        .expiryMonth(12).expiryYear(2030).cardSecurityCode("123").build())
+                .buildCreate();
+    }
+
+    /**
+     * Loads the Java 11 version of JdkHttpTransport, the other classes from
+     * the class path
+     */
+    private static final class VersionedLoader extends ClassLoader implements AutoCloseable {
+        private final URL versions;
+
+        VersionedLoader() throws IOException {
+            super(JdkHttpTransportTest.class.getClassLoader());
+            URL classes = JdkHttpTransport.class.getProtectionDomain().getCodeSource().getLocation();
+            this.versions = new URL(classes, "META-INF/versions/11/");
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.startsWith(JdkHttpTransport.class.getName())) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> loaded = findLoadedClass(name);
+                if (loaded == null) {
+                    try (InputStream in = new URL(versions, name.replace('.', '/') + ".class").openStream()) {
+                        byte[] bytes = in.readAllBytes();
+                        loaded = defineClass(name, bytes, 0, bytes.length);
+                    } catch (IOException e) {
+                        throw new ClassNotFoundException(name, e);
+                    }
+                }
+                return loaded;
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}